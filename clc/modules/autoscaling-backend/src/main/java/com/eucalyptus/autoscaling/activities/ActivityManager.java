@@ -32,7 +32,6 @@ import static com.eucalyptus.autoscaling.activities.BackoffRunner.TaskWithBackOf
 import static com.eucalyptus.autoscaling.activities.ZoneUnavailabilityMarkers.ZoneCallback;
 import static com.eucalyptus.autoscaling.common.AutoScalingMetadata.AutoScalingGroupMetadata;
 import static com.eucalyptus.autoscaling.common.internal.instances.AutoScalingInstances.availabilityZone;
-import static com.eucalyptus.autoscaling.common.internal.instances.AutoScalingInstances.instanceId;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -53,6 +52,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.log4j.Logger;
@@ -174,6 +174,8 @@ import com.eucalyptus.util.async.AsyncExceptions.AsyncWebServiceError;
 import com.eucalyptus.util.async.CheckedListenableFuture;
 import com.eucalyptus.util.async.FailedRequestException;
 import com.eucalyptus.util.async.Futures;
+import com.eucalyptus.util.metrics.MonitoredAction;
+import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.eucalyptus.ws.EucalyptusWebServiceException;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
@@ -187,6 +189,7 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
@@ -233,17 +236,18 @@ public class ActivityManager {
       .add( state( LifecycleState.InService, ConfigurationState.Instantiated, addToLoadBalancer() )  )
       .build();
   private final AtomicLong selectorCounter = new AtomicLong( );
+  private ScalingSnapshot snapshot;
   private final Random random = new Random( );
   private final List<ScalingTask> scalingTasks = ImmutableList.<ScalingTask>builder()
-      .add( new ScalingTask(   10, ActivityTask.Next              ) { @Override void doWork( ) throws Exception { nextSelectors( ); } } )
-      .add( new ScalingTask(   30, ActivityTask.Timeout           ) { @Override void doWork( ) throws Exception { timeoutScalingActivities( ); } } )
-      .add( new ScalingTask( 3600, ActivityTask.Expiry            ) { @Override void doWork( ) throws Exception { deleteExpiredActivities( ); } } )
-      .add( new ScalingTask(   10, ActivityTask.ZoneHealth        ) { @Override void doWork( ) throws Exception { updateUnavailableZones( ); } } )
-      .add( new ScalingTask(   10, ActivityTask.Recovery          ) { @Override void doWork( ) throws Exception { progressUnstableStates( ); } } )
-      .add( new ScalingTask(   10, ActivityTask.Scaling           ) { @Override void doWork( ) throws Exception { replaceUnhealthy( ); } } )
-      .add( new ScalingTask(   10, ActivityTask.Scaling           ) { @Override void doWork( ) throws Exception { scalingActivities( ); } } )
-      .add( new ScalingTask(   10, ActivityTask.InstanceCleanup   ) { @Override void doWork( ) throws Exception { runningInstanceChecks( ); } } )
-      .add( new ScalingTask(   10, ActivityTask.MetricsSubmission ) { @Override void doWork( ) throws Exception { submitMetrics( ); } } )
+      .add( new ScalingTask(   10, ActivityTask.Next,              MonitoredAction.AUTOSCALING_NEXT_TIMING               ) { @Override void doWork( ) throws Exception { nextSelectors( ); } } )
+      .add( new ScalingTask(   30, ActivityTask.Timeout,           MonitoredAction.AUTOSCALING_TIMEOUT_TIMING            ) { @Override void doWork( ) throws Exception { timeoutScalingActivities( ); } } )
+      .add( new ScalingTask( 3600, ActivityTask.Expiry,            MonitoredAction.AUTOSCALING_EXPIRY_TIMING             ) { @Override void doWork( ) throws Exception { deleteExpiredActivities( ); } } )
+      .add( new ScalingTask(   10, ActivityTask.ZoneHealth,        MonitoredAction.AUTOSCALING_ZONE_HEALTH_TIMING        ) { @Override void doWork( ) throws Exception { updateUnavailableZones( ); } } )
+      .add( new ScalingTask(   10, ActivityTask.Recovery,          MonitoredAction.AUTOSCALING_RECOVERY_TIMING           ) { @Override void doWork( ) throws Exception { progressUnstableStates( ); } } )
+      .add( new ScalingTask(   10, ActivityTask.Scaling,           MonitoredAction.AUTOSCALING_REPLACE_UNHEALTHY_TIMING  ) { @Override void doWork( ) throws Exception { replaceUnhealthy( ); } } )
+      .add( new ScalingTask(   10, ActivityTask.Scaling,           MonitoredAction.AUTOSCALING_SCALING_TIMING            ) { @Override void doWork( ) throws Exception { scalingActivities( ); } } )
+      .add( new ScalingTask(   10, ActivityTask.InstanceCleanup,   MonitoredAction.AUTOSCALING_INSTANCE_CLEANUP_TIMING   ) { @Override void doWork( ) throws Exception { runningInstanceChecks( ); } } )
+      .add( new ScalingTask(   10, ActivityTask.MetricsSubmission, MonitoredAction.AUTOSCALING_METRICS_SUBMISSION_TIMING ) { @Override void doWork( ) throws Exception { submitMetrics( ); } } )
       .build( );
 
   private static UnstableInstanceState state( final LifecycleState lifecycleState,
@@ -302,13 +306,20 @@ public class ActivityManager {
   }
 
   public void doScaling() {
-    for ( final ScalingTask scalingTask : scalingTasks ) {
-      try {
-        scalingTask.perhapsWork( );
-      } catch ( Exception e ) {
-        logger.error( e, e );
+    final long before = System.currentTimeMillis( );
+    snapshot = null;
+    try {
+      for ( final ScalingTask scalingTask : scalingTasks ) {
+        try {
+          scalingTask.perhapsWork( );
+        } catch ( Exception e ) {
+          logger.error( e, e );
+        }
       }
+    } finally {
+      snapshot = null;
     }
+    recordMetric( MonitoredAction.AUTOSCALING_TIMING, System.currentTimeMillis( ) - before );
   }
 
   public boolean scalingInProgress( final AutoScalingGroupMetadata group ) {
@@ -388,6 +399,10 @@ public class ActivityManager {
     return System.currentTimeMillis();
   }
 
+  protected void recordMetric( final MonitoredAction action, final long value ) {
+    ThruputMetrics.addDataPoint( action, value );
+  }
+
   /**
    *
    */
@@ -438,10 +453,11 @@ public class ActivityManager {
   private void runningInstanceChecks() {
     final Map<String,AutoScalingGroupCoreView> autoScalingAccounts = Maps.newHashMap( );
     try {
-      for ( final AutoScalingGroupCoreView group : autoScalingGroups.listRequiringMonitoring( selectors( ), TypeMappers.lookup( AutoScalingGroup.class, AutoScalingGroupCoreView.class ) ) ) {
+      final ScalingSnapshot snapshot = snapshot( );
+      for ( final AutoScalingGroupCoreView group : snapshot.getMonitoredGroups( ) ) {
         autoScalingAccounts.put( group.getOwnerAccountNumber(), group );
-        final List<String> groupInstancesPending = autoScalingInstances.listByGroup( group, LifecycleState.Pending, instanceId() );
-        final List<String> groupInstancesInService = autoScalingInstances.listByGroup( group, LifecycleState.InService, instanceId() );
+        final List<String> groupInstancesPending = snapshot.getInstanceIds( group, LifecycleState.Pending );
+        final List<String> groupInstancesInService = snapshot.getInstanceIds( group, LifecycleState.InService );
         if ( !groupInstancesPending.isEmpty() || !groupInstancesInService.isEmpty() ) {
           runTask( new MonitoringScalingProcessTask( group, groupInstancesPending, groupInstancesInService ) );
         }
@@ -478,16 +494,37 @@ public class ActivityManager {
     ] );
   }
 
+  /**
+   * Get the groups and instances snapshot for this scaling pass, loading if necessary.
+   */
+  private ScalingSnapshot snapshot( ) throws AutoScalingMetadataException {
+    if ( snapshot == null ) {
+      final long before = System.currentTimeMillis( );
+      final List<AutoScalingGroupMetricsView> monitoredGroups = autoScalingGroups.listRequiringMonitoring(
+          selectors( ),
+          TypeMappers.lookup( AutoScalingGroup.class, AutoScalingGroupMetricsView.class ) );
+      final List<AutoScalingInstanceGroupView> instances = autoScalingInstances.list(
+          null,
+          Predicates.alwaysTrue( ),
+          TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceGroupView.class ) );
+      snapshot = new ScalingSnapshot( monitoredGroups, instances );
+      recordMetric( MonitoredAction.AUTOSCALING_SNAPSHOT_SIZE, instances.size( ) );
+      recordMetric( MonitoredAction.AUTOSCALING_SNAPSHOT_TIMING, System.currentTimeMillis( ) - before );
+    }
+    return snapshot;
+  }
+
   /**
    * Periodically executed scaling work.
    */
   private void submitMetrics() {
     try {
-      for ( final AutoScalingGroupMetricsView group : autoScalingGroups.listRequiringMonitoring( selectors( ), TypeMappers.lookup( AutoScalingGroup.class, AutoScalingGroupMetricsView.class ) ) ) {
+      final ScalingSnapshot snapshot = snapshot( );
+      for ( final AutoScalingGroupMetricsView group : snapshot.getMonitoredGroups( ) ) {
         if ( !group.getEnabledMetrics().isEmpty() ) {
           final List<AutoScalingInstanceCoreView> groupInstances = Sets.intersection( group.getEnabledMetrics(), instanceMetrics ).isEmpty() ?
               Collections.emptyList() :
-              autoScalingInstances.listByGroup( group, Predicates.alwaysTrue(), TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceCoreView.class ) );
+              snapshot.getInstances( group );
           runTask( new MetricsSubmissionScalingProcessTask(
               group,
               groupInstances ) );
@@ -502,8 +539,9 @@ public class ActivityManager {
    * Periodically executed scaling work.
    */
   private void replaceUnhealthy() throws AutoScalingMetadataException {
+    final ScalingSnapshot snapshot = snapshot( );
     for ( final AutoScalingGroupScalingView group : autoScalingGroups.listRequiringInstanceReplacement( TypeMappers.lookup( AutoScalingGroup.class, AutoScalingGroupScalingView.class ) ) ) {
-      runTask( perhapsReplaceInstances( group ) ) ;
+      runTask( perhapsReplaceInstances( group, snapshot.getUnhealthyInstances( group ) ) ) ;
     }
   }
 
@@ -519,13 +557,13 @@ public class ActivityManager {
   /**
    * Periodically executed scaling work.
    */
-  private void progressUnstableStates() {
+  private void progressUnstableStates() throws AutoScalingMetadataException {
+    final ScalingSnapshot snapshot = snapshot( );
     for ( final UnstableInstanceState state : unstableInstanceStates ) {
       try {
-        final List<AutoScalingInstanceGroupView> instanceInState = autoScalingInstances.listByState(
+        final List<AutoScalingInstanceGroupView> instanceInState = snapshot.getInstances(
             state.getLifecycleState(),
-            state.getConfigurationState(),
-            TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceGroupView.class ) );
+            state.getConfigurationState() );
         final Set<String> groupArns = Sets.newHashSet( Iterables.transform( instanceInState, AutoScalingInstances.groupArn() ) );
         for ( final String groupArn : groupArns ) {
           final Iterable<AutoScalingInstanceGroupView> groupInstances =
@@ -750,12 +788,11 @@ public class ActivityManager {
     return removeFromLoadBalancerOrTerminate( group, currentCapacity, anyRegisteredInstances, instancesToTerminate, causes, false );
   }
 
-  private ScalingProcessTask<?,?> perhapsReplaceInstances( final AutoScalingGroupScalingView group ) {
+  private ScalingProcessTask<?,?> perhapsReplaceInstances( final AutoScalingGroupScalingView group,
+                                                          final List<? extends AutoScalingInstanceCoreView> currentInstances ) {
     final List<String> instancesToTerminate = Lists.newArrayList();
     boolean anyRegisteredInstances = false;
     if ( scalingProcessEnabled( ScalingProcessType.ReplaceUnhealthy, group ) ) try {
-      final List<AutoScalingInstanceCoreView> currentInstances =
-          autoScalingInstances.listUnhealthyByGroup( group, TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceCoreView.class ) );
       Iterables.addAll(
             instancesToTerminate,
             Iterables.limit(
@@ -3178,14 +3215,16 @@ public class ActivityManager {
     }
   }
 
-  private static abstract class ScalingTask {
+  private abstract class ScalingTask {
     private volatile int count = 0;
     private final int factor;
     private final ActivityTask task;
+    private final MonitoredAction timing;
 
-    ScalingTask( int factor, ActivityTask task ) {
+    ScalingTask( int factor, ActivityTask task, MonitoredAction timing ) {
       this.factor = factor;
       this.task = task;
+      this.timing = timing;
     }
 
     int calcFactor() {
@@ -3195,7 +3234,12 @@ public class ActivityManager {
     void perhapsWork() throws Exception {
       if ( ++count % calcFactor() == 0 && !AutoScalingConfiguration.getSuspendedTasks().contains( task ) ) {
         logger.trace( "Running auto scaling task: " + task );
-        doWork();
+        final long before = System.currentTimeMillis( );
+        try {
+          doWork();
+        } finally {
+          recordMetric( timing, System.currentTimeMillis( ) - before );
+        }
         logger.trace( "Completed auto scaling task: " + task );
       }
     }
@@ -3203,6 +3247,53 @@ public class ActivityManager {
     abstract void doWork( ) throws Exception;
   }
 
+  /**
+   * Groups and instances loaded once for a scaling pass.
+   *
+   * Instances are indexed by group ARN and by lifecycle state.
+   */
+  private static final class ScalingSnapshot {
+    private final List<AutoScalingGroupMetricsView> monitoredGroups;
+    private final ListMultimap<String,AutoScalingInstanceGroupView> instancesByGroupArn;
+    private final ListMultimap<LifecycleState,AutoScalingInstanceGroupView> instancesByLifecycleState;
+
+    private ScalingSnapshot( final List<AutoScalingGroupMetricsView> monitoredGroups,
+                             final List<AutoScalingInstanceGroupView> instances ) {
+      this.monitoredGroups = ImmutableList.copyOf( monitoredGroups );
+      this.instancesByGroupArn = Multimaps.index( instances, AutoScalingInstances.groupArn( ) );
+      this.instancesByLifecycleState = Multimaps.index( instances, AutoScalingInstanceGroupView::getLifecycleState );
+    }
+
+    List<AutoScalingGroupMetricsView> getMonitoredGroups( ) {
+      return monitoredGroups;
+    }
+
+    List<AutoScalingInstanceCoreView> getInstances( final AutoScalingGroupMetadata group ) {
+      return ImmutableList.copyOf( instancesByGroupArn.get( group.getArn( ) ) );
+    }
+
+    List<String> getInstanceIds( final AutoScalingGroupMetadata group,
+                                 final LifecycleState lifecycleState ) {
+      return instancesByGroupArn.get( group.getArn( ) ).stream( )
+          .filter( lifecycleState.forView( )::apply )
+          .map( AutoScalingInstanceCoreView::getInstanceId )
+          .collect( Collectors.toList( ) );
+    }
+
+    List<AutoScalingInstanceGroupView> getUnhealthyInstances( final AutoScalingGroupMetadata group ) {
+      return instancesByGroupArn.get( group.getArn( ) ).stream( )
+          .filter( instance -> instance.getHealthStatus( ) == HealthStatus.Unhealthy )
+          .collect( Collectors.toList( ) );
+    }
+
+    List<AutoScalingInstanceGroupView> getInstances( final LifecycleState lifecycleState,
+                                                     final ConfigurationState configurationState ) {
+      return instancesByLifecycleState.get( lifecycleState ).stream( )
+          .filter( configurationState.forView( )::apply )
+          .collect( Collectors.toList( ) );
+    }
+  }
+
   private static class TimestampedValue<T> {
     private final T value;
     private final long timestamp;
@@ -81,12 +81,15 @@ import com.eucalyptus.util.Callback
 import com.eucalyptus.auth.principal.OwnerFullName
 import com.eucalyptus.util.Classes
 import com.eucalyptus.util.TypeMappers
+import com.eucalyptus.util.metrics.MonitoredAction
 import com.eucalyptus.ws.WebServicesException
 import com.google.common.base.Function
 import com.google.common.base.Functions
 import com.google.common.base.Predicate
 import com.google.common.base.Predicates
 import com.google.common.base.Strings
+import com.google.common.collect.HashMultiset
+import com.google.common.collect.Multiset
 import com.google.common.collect.Sets
 import static org.junit.Assert.*
 
@@ -105,6 +108,8 @@ import javax.annotation.Nullable
 @SuppressWarnings("GroovyAccessibility")
 class ActivityManagerTest {
 
+  private final Multiset<String> storeCalls = HashMultiset.create( )
+
   @BeforeClass
   static void before() {
     TypeMappers.TypeMapperDiscovery discovery = new TypeMappers.TypeMapperDiscovery()
@@ -1117,6 +1122,104 @@ class ActivityManagerTest {
     }
   }
 
+  @Test
+  void testReplaceUnhealthy() {
+    Accounts.setIdentityProvider( identityProvider( ) )
+
+    AutoScalingGroup group = new AutoScalingGroup(
+        id: "1",
+        naturalId: "1",
+        availabilityZones: [ "Zone1" ],
+        displayName: "Group1",
+        launchConfiguration: new LaunchConfiguration(
+            id: "1",
+            naturalId: "1",
+            ownerAccountNumber: "000000000000",
+            displayName: "Config1",
+            imageId: "emi-00000001",
+            instanceType: "m1.small",
+        ),
+        scalingRequired: false,
+        desiredCapacity: 2,
+        capacity:  2,
+        minSize: 1,
+        maxSize: 2,
+        ownerAccountNumber: "000000000000",
+        version: 1,
+    )
+    List<AutoScalingInstance> instances = [
+        instance( 11, group, "Zone1" ),
+        instance( 12, group, "Zone1", HealthStatus.Unhealthy ),
+    ]
+    List<ScalingActivity> scalingActivities = []
+    ActivityManager manager = activityManager( group, scalingActivities, instances )
+
+    assertEquals( "Group capacity", 2, group.capacity )
+    assertEquals( "Instance count", 2, instances.size() )
+    assertEquals( "Scaling activity count", 0, scalingActivities.size() )
+
+    doScaling( scalingActivities, manager )
+
+    assertEquals( "Group capacity", 2, group.capacity )
+    assertEquals( "Instance count", 2, instances.size() )
+    assertEquals( "Instances 1 id", "i-00000011", instances.get(0).instanceId )
+    assertFalse( "Unhealthy instance terminated", instances.any{ instance -> "i-00000012".equals( instance.instanceId ) } )
+    assertTrue( "Instances healthy", instances.every{ instance -> HealthStatus.Healthy.equals( instance.healthStatus ) } )
+    assertEquals( "Scaling activity count", 2, scalingActivities.size() )
+    assertEquals( "Scaling activity 1 status", ActivityStatusCode.Successful, scalingActivities.get(0).statusCode )
+    assertEquals( "Scaling activity 2 status", ActivityStatusCode.Successful, scalingActivities.get(1).statusCode )
+    assertEquals( "Unhealthy instance queries", 0, storeCalls.count( 'instances.listUnhealthyByGroup' ) )
+  }
+
+  @Test
+  void testStoreCallsPerPass() {
+    Accounts.setIdentityProvider( identityProvider( ) )
+
+    AutoScalingGroup group = new AutoScalingGroup(
+        id: "1",
+        naturalId: "1",
+        availabilityZones: [ "Zone1" ],
+        healthCheckType: HealthCheckType.EC2,
+        displayName: "Group1",
+        launchConfiguration: new LaunchConfiguration(
+            id: "1",
+            naturalId: "1",
+            ownerAccountNumber: "000000000000",
+            displayName: "Config1",
+            imageId: "emi-00000001",
+            instanceType: "m1.small",
+        ),
+        scalingRequired: false,
+        desiredCapacity: 2,
+        capacity:  2,
+        minSize: 1,
+        maxSize: 2,
+        ownerAccountNumber: "000000000000",
+        version: 1,
+    )
+    List<AutoScalingInstance> instances = [
+        instance( 1, group, "Zone1" ),
+        instance( 2, group, "Zone1" ),
+    ]
+    List<ScalingActivity> scalingActivities = []
+    ActivityManager manager = activityManager( group, scalingActivities, instances, true )
+
+    int passes = 3
+    for ( int i=0; i<passes; i++ ) {
+      manager.doScaling()
+    }
+
+    assertEquals( "Instance count", 2, instances.size() )
+    assertEquals( "Scaling activity count", 0, scalingActivities.size() )
+    assertEquals( "Instance list calls", passes, storeCalls.count( 'instances.list' ) )
+    assertEquals( "Monitored group list calls", passes, storeCalls.count( 'groups.listRequiringMonitoring' ) )
+    assertEquals( "Replacement group list calls", passes, storeCalls.count( 'groups.listRequiringInstanceReplacement' ) )
+    assertEquals( "Scaling group list calls", passes, storeCalls.count( 'groups.listRequiringScaling' ) )
+    assertEquals( "Instance by group calls", 0, storeCalls.count( 'instances.listByGroup' ) )
+    assertEquals( "Instance by state calls", 0, storeCalls.count( 'instances.listByState' ) )
+    assertEquals( "Unhealthy instance calls", 0, storeCalls.count( 'instances.listUnhealthyByGroup' ) )
+  }
+
   Date timestamp( String text ) {
     Timestamps.parseIso8601Timestamp( text )
   }
@@ -1167,7 +1270,7 @@ class ActivityManagerTest {
                                            List<String> unavailableZones = [] ) {
     ActivityManager manager = new ActivityManager(
         autoScalingActivitiesStore(scalingActivities),
-        autoScalingGroupStore([group],healthChecks),
+        autoScalingGroupStore([group],healthChecks,instances),
         autoScalingInstanceStore(instances),
         zoneAvailabilityMarkers(),
         zoneMonitor(unavailableZones)
@@ -1186,6 +1289,10 @@ class ActivityManagerTest {
         testTimestamp()
       }
 
+      @Override
+      protected void recordMetric( MonitoredAction action, long value ) {
+      }
+
       long testTimestamp() {
         System.currentTimeMillis() + timeOffset
       }
@@ -1369,12 +1476,15 @@ class ActivityManagerTest {
     }
   }
 
-  AutoScalingGroups autoScalingGroupStore( List<AutoScalingGroup> groups = [], boolean healthChecks = false ) {
+  AutoScalingGroups autoScalingGroupStore( List<AutoScalingGroup> groups = [],
+                                           boolean healthChecks = false,
+                                           List<AutoScalingInstance> instances = [] ) {
     new AutoScalingGroups() {
       @Override
       <T> List<T> list(@Nullable OwnerFullName ownerFullName,
                        @Nonnull Predicate<? super AutoScalingGroup> filter,
                        @Nonnull Function<? super AutoScalingGroup, T> transform ) {
+        storeCalls.add( 'groups.list' )
         groups
             .findAll { group -> ( ownerFullName==null || group.ownerAccountNumber.equals( ownerFullName.accountNumber ) ) && filter.apply( group ) }
             .collect { group -> transform.apply( group ) }
@@ -1382,6 +1492,7 @@ class ActivityManagerTest {
 
       @Override
       <T> List<T> listRequiringScaling(@Nonnull Function<? super AutoScalingGroup, T> transform) {
+        storeCalls.add( 'groups.listRequiringScaling' )
         groups
             .findAll { group -> Boolean.TRUE.equals( group.scalingRequired ) }
             .collect { group -> transform.apply( group ) }
@@ -1389,12 +1500,17 @@ class ActivityManagerTest {
 
       @Override
       <T> List<T> listRequiringInstanceReplacement(@Nonnull Function<? super AutoScalingGroup, T> transform) {
-        []
+        storeCalls.add( 'groups.listRequiringInstanceReplacement' )
+        groups
+            .findAll { group -> instances.any { instance ->
+              group.displayName.equals( instance.autoScalingGroupName ) && HealthStatus.Unhealthy.equals( instance.healthStatus ) } }
+            .collect { group -> transform.apply( group ) }
       }
 
       @Override
       <T> List<T> listRequiringMonitoring(Set<AutoScalingGroups.MonitoringSelector> selectors,
                                           @Nonnull Function<? super AutoScalingGroup, T> transform) {
+        storeCalls.add( 'groups.listRequiringMonitoring' )
         healthChecks ?
           groups.collect { group -> transform.apply( group ) } :
           []
@@ -1451,20 +1567,28 @@ class ActivityManagerTest {
     new AutoScalingInstances(){
       long timestamp = System.currentTimeMillis() - 1000
 
+      <T> List<T> select(@Nullable OwnerFullName ownerFullName,
+                         @Nonnull Predicate<? super AutoScalingInstance> filter,
+                         @Nonnull Function<? super AutoScalingInstance, T> transform ) {
+        instances
+            .findAll { instance -> ( ownerFullName==null || instance.ownerAccountNumber.equals( ownerFullName.accountNumber ) ) && filter.apply( instance ) }
+            .collect { instance -> transform.apply( instance ) }
+      }
+
       @Override
       <T> List<T> list(@Nullable OwnerFullName ownerFullName,
                        @Nonnull Predicate<? super AutoScalingInstance> filter,
                        @Nonnull Function<? super AutoScalingInstance, T> transform ) {
-        instances
-            .findAll { instance -> ( ownerFullName==null || instance.ownerAccountNumber.equals( ownerFullName.accountNumber ) ) && filter.apply( instance ) }
-            .collect { instance -> transform.apply( instance ) }
+        storeCalls.add( 'instances.list' )
+        select( ownerFullName, filter, transform )
       }
 
       @Override
       <T> List<T> listByGroup(OwnerFullName ownerFullName,
                               String groupName,
                               Function<? super AutoScalingInstance, T> transform) {
-        list( ownerFullName, { AutoScalingInstance instance ->
+        storeCalls.add( 'instances.listByGroup' )
+        select( ownerFullName, { AutoScalingInstance instance ->
           groupName.equals( instance.autoScalingGroupName )
         } as Predicate, transform )
       }
@@ -1473,20 +1597,19 @@ class ActivityManagerTest {
       <T> List<T> listByGroup(AutoScalingMetadata.AutoScalingGroupMetadata group,
                               Predicate<? super AutoScalingInstance> filter,
                               Function<? super AutoScalingInstance, T> transform) {
+        storeCalls.add( 'instances.listByGroup' )
         group == null ?
-          list( null, filter, transform ) :
-          listByGroup(
-            group.owner,
-            group.displayName,
-            Functions.identity() )
-              .findAll{ AutoScalingInstance instance -> filter.apply( instance ) }
-              .collect{ AutoScalingInstance instance -> transform.apply( instance ) }
+          select( null, filter, transform ) :
+          select( group.owner, { AutoScalingInstance instance ->
+            group.displayName.equals( instance.autoScalingGroupName ) && filter.apply( instance )
+          } as Predicate, transform )
       }
 
       @Override
       <T> List<T> listByState(LifecycleState lifecycleState,
                               ConfigurationState configurationState,
                               Function<? super AutoScalingInstance, T> transform) {
+        storeCalls.add( 'instances.listByState' )
         instances
             .findAll { instance -> lifecycleState.apply( instance ) && configurationState.apply( instance ) }
             .collect { instance -> transform.apply( instance ) }
@@ -1495,14 +1618,17 @@ class ActivityManagerTest {
       @Override
       <T> List<T> listUnhealthyByGroup(AutoScalingMetadata.AutoScalingGroupMetadata group,
                                        Function<? super AutoScalingInstance, T> transform) {
-        []
+        storeCalls.add( 'instances.listUnhealthyByGroup' )
+        select( group.owner, { AutoScalingInstance instance ->
+          group.displayName.equals( instance.autoScalingGroupName ) && HealthStatus.Unhealthy.equals( instance.healthStatus )
+        } as Predicate, transform )
       }
 
       @Override
       <T> T lookup(OwnerFullName ownerFullName,
                    String instanceId,
                    Function<? super AutoScalingInstance, T> transform) {
-        transform.apply( list( ownerFullName, Predicates.alwaysTrue(), { it } as Function<AutoScalingInstance,AutoScalingInstance> ).find { instance ->
+        transform.apply( select( ownerFullName, Predicates.alwaysTrue(), { it } as Function<AutoScalingInstance,AutoScalingInstance> ).find { instance ->
           instance.instanceId.equals( instanceId )
         } )
       }
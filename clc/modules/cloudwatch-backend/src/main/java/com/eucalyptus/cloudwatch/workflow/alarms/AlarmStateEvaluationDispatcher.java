@@ -54,13 +54,17 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 
 import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
 import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmEntity;
+import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmEvaluationIndex;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntityFactory;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
 import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.util.metrics.MonitoredAction;
+import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Lists;
@@ -68,6 +72,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import org.apache.log4j.Logger;
 import org.hibernate.Criteria;
+import org.hibernate.criterion.Restrictions;
 
 import com.eucalyptus.bootstrap.Bootstrap;
 import com.eucalyptus.cloudwatch.common.CloudWatchBackend;
@@ -76,6 +81,7 @@ import com.eucalyptus.entities.Entities;
 
 public class AlarmStateEvaluationDispatcher implements Runnable {
   private static final Logger LOG = Logger.getLogger(AlarmStateEvaluationDispatcher.class);
+  private static final long INDEX_REBUILD_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(15);
   ExecutorService executorService;
 
   public AlarmStateEvaluationDispatcher(ExecutorService executorService) {
@@ -89,14 +95,39 @@ public class AlarmStateEvaluationDispatcher implements Runnable {
       LOG.debug("Kicking off AlarmStateEvaluationDispatcher");
 
       int size = 0;
+      int skipped = 0;
       long before = 0;
       List<List<AlarmEntity>> resultsList = null;
-      try (final TransactionResource db = Entities.transactionFor(AlarmEntity.class)) {
-        Criteria criteria = Entities.createCriteria(AlarmEntity.class);
-        List<AlarmEntity> results = (List<AlarmEntity>) criteria.list();
-        resultsList = makeResultsList(results);
+      final AlarmEvaluationIndex index = AlarmEvaluationIndex.getInstance();
+      if (!CloudWatchConfigProperties.ENABLE_INCREMENTAL_ALARM_EVALUATION) {
+        index.invalidate();
+        try (final TransactionResource db = Entities.transactionFor(AlarmEntity.class)) {
+          Criteria criteria = Entities.createCriteria(AlarmEntity.class);
+          List<AlarmEntity> results = (List<AlarmEntity>) criteria.list();
+          resultsList = makeResultsList(results);
+          before = System.currentTimeMillis();
+          size = results.size();
+        }
+      } else {
+        if (index.isRebuildRequired(INDEX_REBUILD_INTERVAL_MILLIS)) {
+          try (final TransactionResource db = Entities.transactionFor(AlarmEntity.class)) {
+            Criteria criteria = Entities.createCriteria(AlarmEntity.class);
+            index.rebuild((List<AlarmEntity>) criteria.list());
+          }
+        }
         before = System.currentTimeMillis();
+        List<String> dueAlarmIds = index.takeDue(before);
+        List<AlarmEntity> results = Lists.newArrayList();
+        for (List<String> dueAlarmIdsPartial : Iterables.partition(dueAlarmIds, 1000)) {
+          try (final TransactionResource db = Entities.transactionFor(AlarmEntity.class)) {
+            Criteria criteria = Entities.createCriteria(AlarmEntity.class);
+            criteria.add(Restrictions.in("naturalId", dueAlarmIdsPartial));
+            results.addAll((List<AlarmEntity>) criteria.list());
+          }
+        }
+        resultsList = makeResultsList(results);
         size = results.size();
+        skipped = Math.max(0, index.size() - size);
       }
       try {
         if (resultsList != null) {
@@ -117,11 +148,16 @@ public class AlarmStateEvaluationDispatcher implements Runnable {
             }
           }
           long after = System.currentTimeMillis();
-          LOG.debug("Done evaluating " + size + " alarms, time = " + (after - before) + " ms");
+          ThruputMetrics.addDataPoint(MonitoredAction.ALARM_EVALUATION_SIZE, size);
+          ThruputMetrics.addDataPoint(MonitoredAction.ALARM_EVALUATION_SKIPPED, skipped);
+          ThruputMetrics.addDataPoint(MonitoredAction.ALARM_EVALUATION_TIMING, after - before);
+          LOG.debug("Done evaluating " + size + " alarms (" + skipped + " skipped), time = " + (after - before) + " ms");
         }
       } catch (InterruptedException e) {
         LOG.debug(e);
       }
+    } else {
+      AlarmEvaluationIndex.getInstance().invalidate();
     }
   }
 
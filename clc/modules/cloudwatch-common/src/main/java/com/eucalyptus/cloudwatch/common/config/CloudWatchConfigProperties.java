@@ -40,6 +40,21 @@ public class CloudWatchConfigProperties {
   @ConfigurableField(initial = "1000", description = "Size of the reporting data set that stores cloud watch queues performance info (debug only prop)")
   public static volatile int CLOUDWATCH_MONITORING_HISTORY_SIZE = 1000;
 
+  @ConfigurableField(initial = "15", description = "Maximum number of seconds metric data is buffered before being written", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int PUT_METRIC_DATA_FLUSH_INTERVAL_SECS = 15;
+
+  @ConfigurableField(initial = "10000", description = "Number of buffered aggregate metric data points that triggers an early write", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int PUT_METRIC_DATA_FLUSH_THRESHOLD = 10000;
+
+  @ConfigurableField(initial = "100000", description = "Maximum number of buffered aggregate metric data points, further metric data is throttled", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int PUT_METRIC_DATA_MAX_PENDING = 100000;
+
+  @ConfigurableField(initial = "false", description = "Set this to true to answer recent metric statistics queries from memory (only when all metric data is put via this host)", changeListener = PropertyChangeListeners.IsBoolean.class)
+  public static volatile Boolean ENABLE_METRIC_DATA_CACHE = false;
+
+  @ConfigurableField(initial = "false", description = "Set this to true to only evaluate alarms when metric data is received or the alarm period has elapsed (metric data is only detected when put via this host)", changeListener = PropertyChangeListeners.IsBoolean.class)
+  public static volatile Boolean ENABLE_INCREMENTAL_ALARM_EVALUATION = false;
+
   public static Boolean isDisabledCloudWatchService() {
     return !ENABLE_CLOUDWATCH_SERVICE;
   }
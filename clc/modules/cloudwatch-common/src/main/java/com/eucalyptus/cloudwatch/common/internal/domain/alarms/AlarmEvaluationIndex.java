@@ -0,0 +1,223 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.alarms;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricEntity;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Index of alarms by metric used to evaluate only alarms that are due.
+ *
+ * An alarm is due for evaluation when data for its metric is received or
+ * when its period has elapsed since it was last evaluated. The index is
+ * updated as alarms are put or deleted and should be periodically rebuilt
+ * to pick up changes made elsewhere.
+ */
+public class AlarmEvaluationIndex {
+
+  private static final AlarmEvaluationIndex instance = new AlarmEvaluationIndex( );
+
+  private final ConcurrentMap<String,IndexedAlarm> alarmsById = Maps.newConcurrentMap( );
+  private final ConcurrentMap<MetricKey,Set<String>> alarmIdsByMetric = Maps.newConcurrentMap( );
+  private final Set<String> dueAlarmIds = Sets.newConcurrentHashSet( );
+  private volatile long lastRebuild = 0L;
+
+  public static AlarmEvaluationIndex getInstance( ) {
+    return instance;
+  }
+
+  public boolean isRebuildRequired( final long maxAgeMillis ) {
+    return lastRebuild == 0L || ( System.currentTimeMillis( ) - lastRebuild ) > maxAgeMillis;
+  }
+
+  /**
+   * Replace the index content, all alarms are due after a rebuild.
+   */
+  public synchronized void rebuild( final Collection<AlarmEntity> alarmEntities ) {
+    alarmsById.clear( );
+    alarmIdsByMetric.clear( );
+    dueAlarmIds.clear( );
+    for ( final AlarmEntity alarmEntity : alarmEntities ) {
+      put( alarmEntity );
+    }
+    lastRebuild = System.currentTimeMillis( );
+  }
+
+  public void invalidate( ) {
+    lastRebuild = 0L;
+  }
+
+  public int size( ) {
+    return alarmsById.size( );
+  }
+
+  /**
+   * Add or update an alarm, the alarm is due for evaluation.
+   */
+  public void put( final AlarmEntity alarmEntity ) {
+    final String alarmId = alarmEntity.getNaturalId( );
+    final MetricKey metricKey = new MetricKey(
+        alarmEntity.getAccountId( ),
+        alarmEntity.getNamespace( ),
+        alarmEntity.getMetricName( ),
+        alarmEntity.getMetricType( ),
+        MetricManager.hash( alarmEntity.getDimensionMap( ) ) );
+    final IndexedAlarm previous =
+        alarmsById.put( alarmId, new IndexedAlarm( metricKey, alarmEntity.getPeriod( ) ) );
+    if ( previous != null && !previous.metricKey.equals( metricKey ) ) {
+      removeForMetric( previous.metricKey, alarmId );
+    }
+    alarmIdsByMetric.computeIfAbsent( metricKey, key -> Sets.newConcurrentHashSet( ) ).add( alarmId );
+    dueAlarmIds.add( alarmId );
+  }
+
+  public void remove( final String alarmId ) {
+    final IndexedAlarm previous = alarmsById.remove( alarmId );
+    if ( previous != null ) {
+      removeForMetric( previous.metricKey, alarmId );
+    }
+    dueAlarmIds.remove( alarmId );
+  }
+
+  /**
+   * Mark an alarm as due for evaluation, e.g. following a manual state change.
+   */
+  public void markDue( final String alarmId ) {
+    if ( alarmsById.containsKey( alarmId ) ) {
+      dueAlarmIds.add( alarmId );
+    }
+  }
+
+  /**
+   * Mark alarms for the metrics in the given (persisted) data as due.
+   */
+  public void metricDataReceived( final Collection<SimpleMetricEntity> dataBatch ) {
+    if ( alarmIdsByMetric.isEmpty( ) ) {
+      return;
+    }
+    for ( final SimpleMetricEntity item : dataBatch ) {
+      final Set<String> alarmIds = alarmIdsByMetric.get( new MetricKey(
+          item.getAccountId( ),
+          item.getNamespace( ),
+          item.getMetricName( ),
+          item.getMetricType( ),
+          MetricManager.hash( item.getDimensionMap( ) ) ) );
+      if ( alarmIds != null ) {
+        dueAlarmIds.addAll( alarmIds );
+      }
+    }
+  }
+
+  /**
+   * Get the identifiers of alarms due for evaluation.
+   *
+   * Alarms returned are considered evaluated at the given time.
+   */
+  public List<String> takeDue( final long now ) {
+    final List<String> alarmIds = Lists.newArrayList( );
+    for ( final Map.Entry<String,IndexedAlarm> entry : alarmsById.entrySet( ) ) {
+      final String alarmId = entry.getKey( );
+      final IndexedAlarm alarm = entry.getValue( );
+      if ( dueAlarmIds.remove( alarmId ) || alarm.nextEvaluation <= now ) {
+        alarm.nextEvaluation = now + alarm.periodMillis;
+        alarmIds.add( alarmId );
+      }
+    }
+    return alarmIds;
+  }
+
+  private void removeForMetric( final MetricKey metricKey, final String alarmId ) {
+    alarmIdsByMetric.computeIfPresent( metricKey, ( key, alarmIds ) -> {
+      alarmIds.remove( alarmId );
+      return alarmIds.isEmpty( ) ? null : alarmIds;
+    } );
+  }
+
+  private static final class IndexedAlarm {
+    private final MetricKey metricKey;
+    private final long periodMillis;
+    private volatile long nextEvaluation = 0L;
+
+    IndexedAlarm( final MetricKey metricKey, final Integer period ) {
+      this.metricKey = metricKey;
+      this.periodMillis = TimeUnit.SECONDS.toMillis( period == null ? 60 : period );
+    }
+  }
+
+  private static final class MetricKey {
+    private final String accountId;
+    private final String namespace;
+    private final String metricName;
+    private final MetricType metricType;
+    private final String dimensionHash;
+
+    MetricKey(
+        final String accountId,
+        final String namespace,
+        final String metricName,
+        final MetricType metricType,
+        final String dimensionHash
+    ) {
+      this.accountId = accountId;
+      this.namespace = namespace;
+      this.metricName = metricName;
+      this.metricType = metricType;
+      this.dimensionHash = dimensionHash;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final MetricKey that = (MetricKey) o;
+      return Objects.equal( accountId, that.accountId ) &&
+          Objects.equal( namespace, that.namespace ) &&
+          Objects.equal( metricName, that.metricName ) &&
+          metricType == that.metricType &&
+          Objects.equal( dimensionHash, that.dimensionHash );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return Objects.hashCode( accountId, namespace, metricName, metricType, dimensionHash );
+    }
+  }
+}
@@ -194,6 +194,7 @@ public class AlarmManager {
       }
       db.commit();
     }
+    AlarmEvaluationIndex.getInstance().put(alarmEntity);
   }
 
   static void addAlarmHistoryItem(String accountId, String alarmName,
@@ -223,7 +224,8 @@ public class AlarmManager {
     final Collection<String> alarmNames,
     final Predicate<CloudWatchMetadata.AlarmMetadata> filter
   ) {
-    return modifySelectedAlarms( accountId, alarmNames, filter, new Predicate<AlarmEntity>() {
+    final List<String> deletedAlarmIds = Lists.newArrayList( );
+    final boolean deleted = modifySelectedAlarms( accountId, alarmNames, filter, new Predicate<AlarmEntity>() {
       private final Date now = new Date();
 
       @Override
@@ -238,9 +240,17 @@ public class AlarmManager {
         AlarmManager.addAlarmHistoryItem( alarmEntity.getAccountId(), alarmName, historyData,
           HistoryItemType.ConfigurationUpdate, "Alarm \"" + alarmName + "\" deleted", now );
         Entities.delete( alarmEntity );
+        deletedAlarmIds.add( alarmEntity.getNaturalId() );
         return true;
       }
     } );
+    // only update the index once the deletion is committed
+    if ( deleted ) {
+      for ( final String alarmId : deletedAlarmIds ) {
+        AlarmEvaluationIndex.getInstance().remove( alarmId );
+      }
+    }
+    return deleted;
   }
 
   private static JSONObject getJSONObjectFromAlarmEntity(AlarmEntity alarmEntity) {
@@ -419,6 +429,7 @@ public class AlarmManager {
         AlarmManager.executeActions(alarmEntity, newState, true, evaluationDate);
       }
       db.commit();
+      AlarmEvaluationIndex.getInstance().markDue(alarmEntity.getNaturalId());
     }
   }
 
@@ -0,0 +1,295 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Rolling cache of per minute metric data aggregates.
+ *
+ * The cache holds the most recent WINDOW_MINUTES of data for each metric series
+ * written through this host. Data is only served for time ranges that are known
+ * to be complete, callers must fall back to the database when the cache returns
+ * null.
+ */
+public class MetricDataCache {
+  private static final Logger LOG = Logger.getLogger( MetricDataCache.class );
+
+  static final int WINDOW_MINUTES = 180;
+
+  /**
+   * Metric data can be put with timestamps up to two hours in the future, so
+   * following (re)start we cannot know that the cache holds all data until
+   * that time has passed.
+   */
+  static final int FUTURE_MINUTES = 120;
+
+  private static final MetricDataCache instance = new MetricDataCache( );
+
+  private final ConcurrentMap<SeriesKey,Series> seriesMap = Maps.newConcurrentMap( );
+  private final AtomicLong completeAfterMinute = new AtomicLong( -1L );
+
+  public static MetricDataCache getInstance( ) {
+    return instance;
+  }
+
+  long currentMinute( ) {
+    return TimeUnit.MILLISECONDS.toMinutes( System.currentTimeMillis( ) );
+  }
+
+  private static long minute( final Date timestamp ) {
+    return TimeUnit.MILLISECONDS.toMinutes( timestamp.getTime( ) );
+  }
+
+  private boolean isEnabled( ) {
+    return CloudWatchConfigProperties.ENABLE_METRIC_DATA_CACHE;
+  }
+
+  /**
+   * Add data that has been successfully persisted.
+   */
+  public void addAll( final List<SimpleMetricEntity> dataBatch ) {
+    if ( !isEnabled( ) ) {
+      invalidate( );
+      return;
+    }
+    final long nowMinute = currentMinute( );
+    completeAfterMinute.compareAndSet( -1L, nowMinute + FUTURE_MINUTES );
+    for ( final SimpleMetricEntity item : dataBatch ) {
+      final long minute = minute( item.getTimestamp( ) );
+      if ( minute > nowMinute + 1 ) {
+        // not cached, so the cache is not complete until after this minute
+        long completeAfter;
+        while ( ( completeAfter = completeAfterMinute.get( ) ) < minute &&
+            !completeAfterMinute.compareAndSet( completeAfter, minute ) );
+      } else if ( minute > nowMinute - WINDOW_MINUTES ) {
+        final SeriesKey key = new SeriesKey(
+            item.getAccountId( ),
+            item.getNamespace( ),
+            item.getMetricName( ),
+            item.getMetricType( ),
+            MetricManager.hash( item.getDimensionMap( ) ),
+            item.getUnits( ) );
+        Series series = seriesMap.get( key );
+        if ( series == null ) {
+          final Series newSeries = new Series( );
+          series = MoreObjects.firstNonNull( seriesMap.putIfAbsent( key, newSeries ), newSeries );
+        }
+        series.add( minute, item.getSampleSum( ), item.getSampleMin( ), item.getSampleMax( ), item.getSampleSize( ) );
+      }
+    }
+  }
+
+  /**
+   * Discard all cached data, for example following a failure to persist data.
+   */
+  public void invalidate( ) {
+    completeAfterMinute.set( -1L );
+    seriesMap.clear( );
+  }
+
+  /**
+   * Expire series with no data in the cache window.
+   */
+  public void expire( ) {
+    final long oldestMinute = currentMinute( ) - WINDOW_MINUTES;
+    int expired = 0;
+    for ( final Series series : seriesMap.values( ) ) {
+      if ( series.lastMinute( ) <= oldestMinute && seriesMap.values( ).remove( series ) ) {
+        expired++;
+      }
+    }
+    if ( expired > 0 ) {
+      LOG.debug( "Expired " + expired + " metric data cache series" );
+    }
+  }
+
+  /**
+   * Get per minute metric data for the given (validated) parameters.
+   *
+   * @return The metric data or null if the cache cannot answer the query.
+   */
+  public Collection<MetricEntity> getMetricData( final MetricManager.GetMetricStatisticsParams params ) {
+    final long completeAfter = completeAfterMinute.get( );
+    if ( !isEnabled( ) || completeAfter < 0 ) {
+      return null;
+    }
+    final long nowMinute = currentMinute( );
+    final long startMinute = minute( params.getStartTime( ) );
+    final long endMinute = minute( params.getEndTime( ) ); // exclusive
+    if ( startMinute <= completeAfter ||
+        startMinute <= nowMinute - WINDOW_MINUTES ||
+        endMinute > nowMinute + 2 ) {
+      return null;
+    }
+    final List<MetricEntity> metricData = Lists.newArrayList( );
+    for ( final Units units : params.getUnits( ) == null ? Units.values( ) : new Units[]{ params.getUnits( ) } ) {
+      final Series series = seriesMap.get( new SeriesKey(
+          params.getAccountId( ),
+          params.getNamespace( ),
+          params.getMetricName( ),
+          params.getMetricType( ),
+          params.getDimensionHash( ),
+          units ) );
+      if ( series != null && !series.get( params, units, startMinute, endMinute, metricData ) ) {
+        return null;
+      }
+    }
+    return metricData;
+  }
+
+  private static final class SeriesKey {
+    private final String accountId;
+    private final String namespace;
+    private final String metricName;
+    private final MetricType metricType;
+    private final String dimensionHash;
+    private final Units units;
+
+    SeriesKey(
+        final String accountId,
+        final String namespace,
+        final String metricName,
+        final MetricType metricType,
+        final String dimensionHash,
+        final Units units
+    ) {
+      this.accountId = accountId;
+      this.namespace = namespace;
+      this.metricName = metricName;
+      this.metricType = metricType;
+      this.dimensionHash = dimensionHash;
+      this.units = units;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final SeriesKey that = (SeriesKey) o;
+      return Objects.equal( accountId, that.accountId ) &&
+          Objects.equal( namespace, that.namespace ) &&
+          Objects.equal( metricName, that.metricName ) &&
+          metricType == that.metricType &&
+          Objects.equal( dimensionHash, that.dimensionHash ) &&
+          units == that.units;
+    }
+
+    @Override
+    public int hashCode( ) {
+      return Objects.hashCode( accountId, namespace, metricName, metricType, dimensionHash, units );
+    }
+  }
+
+  /**
+   * Ring of per minute aggregates, a slot is valid only when its minute matches.
+   */
+  private static final class Series {
+    private static final int SLOTS = WINDOW_MINUTES + 2;
+    private final long[] minutes = new long[ SLOTS ];
+    private final double[] sums = new double[ SLOTS ];
+    private final double[] mins = new double[ SLOTS ];
+    private final double[] maxes = new double[ SLOTS ];
+    private final double[] counts = new double[ SLOTS ];
+    private long lastMinute = -1L;
+
+    Series( ) {
+      Arrays.fill( minutes, -1L );
+    }
+
+    synchronized long lastMinute( ) {
+      return lastMinute;
+    }
+
+    synchronized void add( final long minute, final double sum, final double min, final double max, final double count ) {
+      final int slot = (int) ( minute % SLOTS );
+      if ( minutes[ slot ] == minute ) {
+        sums[ slot ] += sum;
+        mins[ slot ] = Math.min( mins[ slot ], min );
+        maxes[ slot ] = Math.max( maxes[ slot ], max );
+        counts[ slot ] += count;
+      } else if ( minutes[ slot ] < minute ) {
+        minutes[ slot ] = minute;
+        sums[ slot ] = sum;
+        mins[ slot ] = min;
+        maxes[ slot ] = max;
+        counts[ slot ] = count;
+      }
+      lastMinute = Math.max( lastMinute, minute );
+    }
+
+    /**
+     * @return false if the series no longer holds data for the requested range
+     */
+    synchronized boolean get(
+        final MetricManager.GetMetricStatisticsParams params,
+        final Units units,
+        final long startMinute,
+        final long endMinute,
+        final List<MetricEntity> metricData
+    ) {
+      for ( long minute = startMinute; minute < endMinute; minute++ ) {
+        final int slot = (int) ( minute % SLOTS );
+        if ( minutes[ slot ] > minute ) {
+          return false;
+        } else if ( minutes[ slot ] == minute ) {
+          final MetricEntity me = MetricEntityFactory.getNewMetricEntity( params.getMetricType( ), params.getDimensionHash( ) );
+          me.setAccountId( params.getAccountId( ) );
+          me.setNamespace( params.getNamespace( ) );
+          me.setMetricName( params.getMetricName( ) );
+          me.setMetricType( params.getMetricType( ) );
+          me.setDimensionHash( params.getDimensionHash( ) );
+          me.setUnits( units );
+          me.setTimestamp( new Date( TimeUnit.MINUTES.toMillis( minute ) ) );
+          me.setSampleSum( sums[ slot ] );
+          me.setSampleMin( mins[ slot ] );
+          me.setSampleMax( maxes[ slot ] );
+          me.setSampleSize( counts[ slot ] );
+          metricData.add( me );
+        }
+      }
+      return true;
+    }
+  }
+}
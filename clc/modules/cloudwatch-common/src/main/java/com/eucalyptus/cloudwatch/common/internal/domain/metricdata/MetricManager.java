@@ -36,6 +36,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.eucalyptus.cloudwatch.common.internal.domain.AbstractPersistentWithDimensions;
 import com.eucalyptus.entities.TransactionResource;
@@ -56,6 +59,7 @@ import com.eucalyptus.cloudwatch.common.internal.domain.DimensionEntity;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
 import com.eucalyptus.cloudwatch.common.internal.hashing.HashUtils;
 import com.eucalyptus.entities.Entities;
+import com.eucalyptus.util.Exceptions;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -341,6 +345,11 @@ public class MetricManager {
     for (GetMetricStatisticsParams getMetricStatisticsParams : getMetricStatisticsParamses) {
       if (getMetricStatisticsParams == null) throw new IllegalArgumentException("getMetricStatisticsParams can not be null");
       getMetricStatisticsParams.validate(now);
+      Collection<MetricEntity> cachedMetricData = MetricDataCache.getInstance().getMetricData(getMetricStatisticsParams);
+      if (cachedMetricData != null) {
+        resultMap.put(getMetricStatisticsParams, aggregate(getMetricStatisticsParams, cachedMetricData));
+        continue;
+      }
       Class metricEntityClass = MetricEntityFactory.getClassForEntitiesGet(getMetricStatisticsParams.getMetricType(), getMetricStatisticsParams.getDimensionHash());
       hashGroupMap.put(metricEntityClass, getMetricStatisticsParams);
     }
@@ -397,18 +406,7 @@ public class MetricManager {
             MetricEntity me = getMetricEntity( results );
             for ( GetMetricStatisticsParams getMetricStatisticsParams : hashGroupMap.get( metricEntityClass ) ) {
               if ( metricDataMatches( getMetricStatisticsParams, me ) ) {
-                Map<GetMetricStatisticsAggregationKey, MetricStatistics> aggregationMap = multiAggregationMap.get( getMetricStatisticsParams );
-                GetMetricStatisticsAggregationKey key = new GetMetricStatisticsAggregationKey( me, getMetricStatisticsParams.getStartTime( ), getMetricStatisticsParams.getPeriod( ), getMetricStatisticsParams.getDimensionHash( ) );
-                MetricStatistics item = new MetricStatistics( me, getMetricStatisticsParams.getStartTime( ), getMetricStatisticsParams.getPeriod( ), getMetricStatisticsParams.getDimensions( ) );
-                if ( !aggregationMap.containsKey( key ) ) {
-                  aggregationMap.put( key, item );
-                } else {
-                  MetricStatistics totalSoFar = aggregationMap.get( key );
-                  totalSoFar.setSampleMax( Math.max( item.getSampleMax( ), totalSoFar.getSampleMax( ) ) );
-                  totalSoFar.setSampleMin( Math.min( item.getSampleMin( ), totalSoFar.getSampleMin( ) ) );
-                  totalSoFar.setSampleSize( totalSoFar.getSampleSize( ) + item.getSampleSize( ) );
-                  totalSoFar.setSampleSum( totalSoFar.getSampleSum( ) + item.getSampleSum( ) );
-                }
+                aggregate( multiAggregationMap.get( getMetricStatisticsParams ), getMetricStatisticsParams, me );
               }
             }
           }
@@ -447,6 +445,10 @@ public class MetricManager {
     if (getMetricStatisticsParams == null) throw new IllegalArgumentException("getMetricStatisticsParams can not be null");
     Date now = new Date();
     getMetricStatisticsParams.validate(now);
+    Collection<MetricEntity> cachedMetricData = MetricDataCache.getInstance().getMetricData(getMetricStatisticsParams);
+    if (cachedMetricData != null) {
+      return aggregate(getMetricStatisticsParams, cachedMetricData);
+    }
     Class metricEntityClass = MetricEntityFactory.getClassForEntitiesGet(getMetricStatisticsParams.getMetricType(), getMetricStatisticsParams.getDimensionHash());
     Map<GetMetricStatisticsAggregationKey, MetricStatistics> aggregationMap = new TreeMap<GetMetricStatisticsAggregationKey, MetricStatistics>(GetMetricStatisticsAggregationKey.COMPARATOR_WITH_NULLS.INSTANCE);
     try (final TransactionResource db = Entities.transactionFor(metricEntityClass)) {
@@ -474,17 +476,7 @@ public class MetricManager {
       try {
         while ( results.next( ) ) {
           MetricEntity me = getMetricEntity( getMetricStatisticsParams.getAccountId( ), getMetricStatisticsParams.getMetricName( ), getMetricStatisticsParams.getNamespace( ), getMetricStatisticsParams.getMetricType( ), getMetricStatisticsParams.getDimensionHash( ), results );
-          GetMetricStatisticsAggregationKey key = new GetMetricStatisticsAggregationKey( me, getMetricStatisticsParams.getStartTime( ), getMetricStatisticsParams.getPeriod( ), getMetricStatisticsParams.getDimensionHash( ) );
-          MetricStatistics item = new MetricStatistics( me, getMetricStatisticsParams.getStartTime( ), getMetricStatisticsParams.getPeriod( ), getMetricStatisticsParams.getDimensions( ) );
-          if ( !aggregationMap.containsKey( key ) ) {
-            aggregationMap.put( key, item );
-          } else {
-            MetricStatistics totalSoFar = aggregationMap.get( key );
-            totalSoFar.setSampleMax( Math.max( item.getSampleMax( ), totalSoFar.getSampleMax( ) ) );
-            totalSoFar.setSampleMin( Math.min( item.getSampleMin( ), totalSoFar.getSampleMin( ) ) );
-            totalSoFar.setSampleSize( totalSoFar.getSampleSize( ) + item.getSampleSize( ) );
-            totalSoFar.setSampleSum( totalSoFar.getSampleSum( ) + item.getSampleSum( ) );
-          }
+          aggregate( aggregationMap, getMetricStatisticsParams, me );
         }
       } finally {
         results.close( );
@@ -493,6 +485,33 @@ public class MetricManager {
     return Lists.newArrayList(aggregationMap.values());
   }
 
+  private static Collection<MetricStatistics> aggregate(GetMetricStatisticsParams getMetricStatisticsParams, Collection<MetricEntity> metricData) {
+    Map<GetMetricStatisticsAggregationKey, MetricStatistics> aggregationMap = new TreeMap<GetMetricStatisticsAggregationKey, MetricStatistics>(GetMetricStatisticsAggregationKey.COMPARATOR_WITH_NULLS.INSTANCE);
+    for (MetricEntity me : metricData) {
+      aggregate(aggregationMap, getMetricStatisticsParams, me);
+    }
+    return Lists.newArrayList(aggregationMap.values());
+  }
+
+  /**
+   * Add the metric data to the statistics for its period, used for both cached and stored metric data.
+   */
+  private static void aggregate(Map<GetMetricStatisticsAggregationKey, MetricStatistics> aggregationMap,
+                                GetMetricStatisticsParams getMetricStatisticsParams,
+                                MetricEntity me) {
+    GetMetricStatisticsAggregationKey key = new GetMetricStatisticsAggregationKey( me, getMetricStatisticsParams.getStartTime( ), getMetricStatisticsParams.getPeriod( ), getMetricStatisticsParams.getDimensionHash( ) );
+    MetricStatistics item = new MetricStatistics( me, getMetricStatisticsParams.getStartTime( ), getMetricStatisticsParams.getPeriod( ), getMetricStatisticsParams.getDimensions( ) );
+    if ( !aggregationMap.containsKey( key ) ) {
+      aggregationMap.put( key, item );
+    } else {
+      MetricStatistics totalSoFar = aggregationMap.get( key );
+      totalSoFar.setSampleMax( Math.max( item.getSampleMax( ), totalSoFar.getSampleMax( ) ) );
+      totalSoFar.setSampleMin( Math.min( item.getSampleMin( ), totalSoFar.getSampleMin( ) ) );
+      totalSoFar.setSampleSize( totalSoFar.getSampleSize( ) + item.getSampleSize( ) );
+      totalSoFar.setSampleSum( totalSoFar.getSampleSum( ) + item.getSampleSum( ) );
+    }
+  }
+
   private static MetricEntity getMetricEntity(ScrollableResults results) {
     Double sampleMax = (Double) results.get(0);
     Double sampleMin = (Double) results.get(1);
@@ -568,6 +587,46 @@ public class MetricManager {
     addManyMetrics(makeMetricMap(metricEntities));
   }
 
+  /**
+   * Add a batch of metrics, writing each hashed metric table in a separate
+   * transaction using the given executor.
+   *
+   * <p>All table writes are waited for, the first failure (if any) is then
+   * rethrown.</p>
+   */
+  public static void addMetricBatch(List<SimpleMetricEntity> dataBatch, ExecutorService executor) {
+    ArrayList<MetricEntity> metricEntities = new ArrayList<MetricEntity>();
+    for (SimpleMetricEntity simpleMetricEntity: dataBatch) {
+      validateMetricQueueItem(simpleMetricEntity);
+      metricEntities.addAll(hash(simpleMetricEntity));
+    }
+    Multimap<Class, MetricEntity> metricMap = makeMetricMap(metricEntities);
+    List<Future<?>> tableWrites = Lists.newArrayList();
+    for (Class c : metricMap.keySet()) {
+      final Multimap<Class, MetricEntity> tableMetricMap = ArrayListMultimap.create();
+      tableMetricMap.putAll(c, metricMap.get(c));
+      tableWrites.add(executor.submit(() -> addManyMetrics(tableMetricMap)));
+    }
+    Throwable failure = null;
+    for (Future<?> tableWrite : tableWrites) {
+      try {
+        tableWrite.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw Exceptions.toUndeclared(e);
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        } else {
+          LOG.error("Error adding metric batch", e.getCause());
+        }
+      }
+    }
+    if (failure != null) {
+      throw Exceptions.toUndeclared(failure);
+    }
+  }
+
   private static void validateMetricQueueItem(SimpleMetricEntity simpleMetricEntity) {
     LOG.trace("metricName="+simpleMetricEntity.getMetricName());
     LOG.trace("namespace="+simpleMetricEntity.getNamespace());
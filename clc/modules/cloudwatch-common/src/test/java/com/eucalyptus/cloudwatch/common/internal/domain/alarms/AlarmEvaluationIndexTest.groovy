@@ -0,0 +1,151 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.alarms
+
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricEntity
+import groovy.transform.CompileStatic
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+@CompileStatic
+class AlarmEvaluationIndexTest {
+
+  @Test
+  void testPutIsDue( ) {
+    AlarmEvaluationIndex index = new AlarmEvaluationIndex( )
+    index.put( alarm( 'alarm-1', 'Metric1', 60 ) )
+    assertEquals( 'size', 1, index.size( ) )
+    assertEquals( 'due after put', [ 'alarm-1' ], index.takeDue( 1000L ) )
+    assertEquals( 'not due after evaluation', [ ], index.takeDue( 1000L ) )
+  }
+
+  @Test
+  void testPeriodElapsed( ) {
+    AlarmEvaluationIndex index = new AlarmEvaluationIndex( )
+    index.put( alarm( 'alarm-1', 'Metric1', 60 ) )
+    index.put( alarm( 'alarm-2', 'Metric2', 300 ) )
+    assertEquals( 'due after put', [ 'alarm-1', 'alarm-2' ] as Set, index.takeDue( 0L ) as Set )
+    assertEquals( 'none due in period', [ ], index.takeDue( 59_999L ) )
+    assertEquals( 'short period due', [ 'alarm-1' ], index.takeDue( 60_000L ) )
+    assertEquals( 'none due in period', [ ], index.takeDue( 119_999L ) )
+    assertEquals( 'both periods due', [ 'alarm-1', 'alarm-2' ] as Set, index.takeDue( 300_000L ) as Set )
+  }
+
+  @Test
+  void testMetricDataReceived( ) {
+    AlarmEvaluationIndex index = new AlarmEvaluationIndex( )
+    index.put( alarm( 'alarm-1', 'Metric1', 60 ) )
+    index.put( alarm( 'alarm-2', 'Metric2', 60 ) )
+    index.takeDue( 0L )
+    index.metricDataReceived( [ data( 'Metric2' ), data( 'Metric3' ) ] )
+    assertEquals( 'due for metric data', [ 'alarm-2' ], index.takeDue( 1000L ) )
+    assertEquals( 'not due after evaluation', [ ], index.takeDue( 1000L ) )
+  }
+
+  @Test
+  void testRemove( ) {
+    AlarmEvaluationIndex index = new AlarmEvaluationIndex( )
+    index.put( alarm( 'alarm-1', 'Metric1', 60 ) )
+    index.remove( 'alarm-1' )
+    assertEquals( 'size', 0, index.size( ) )
+    index.metricDataReceived( [ data( 'Metric1' ) ] )
+    index.markDue( 'alarm-1' )
+    assertEquals( 'removed not due', [ ], index.takeDue( 1000_000L ) )
+  }
+
+  @Test
+  void testUpdateMetric( ) {
+    AlarmEvaluationIndex index = new AlarmEvaluationIndex( )
+    index.put( alarm( 'alarm-1', 'Metric1', 60 ) )
+    index.put( alarm( 'alarm-1', 'Metric2', 60 ) )
+    assertEquals( 'size', 1, index.size( ) )
+    index.takeDue( 0L )
+    index.metricDataReceived( [ data( 'Metric1' ) ] )
+    assertEquals( 'not due for previous metric', [ ], index.takeDue( 1000L ) )
+    index.metricDataReceived( [ data( 'Metric2' ) ] )
+    assertEquals( 'due for updated metric', [ 'alarm-1' ], index.takeDue( 1000L ) )
+  }
+
+  @Test
+  void testMarkDue( ) {
+    AlarmEvaluationIndex index = new AlarmEvaluationIndex( )
+    index.put( alarm( 'alarm-1', 'Metric1', 60 ) )
+    index.takeDue( 0L )
+    index.markDue( 'alarm-1' )
+    index.markDue( 'alarm-2' )
+    assertEquals( 'marked due', [ 'alarm-1' ], index.takeDue( 1000L ) )
+  }
+
+  @Test
+  void testRebuild( ) {
+    AlarmEvaluationIndex index = new AlarmEvaluationIndex( )
+    assertTrue( 'rebuild required initially', index.isRebuildRequired( 60_000L ) )
+    index.put( alarm( 'alarm-1', 'Metric1', 60 ) )
+    index.rebuild( [ alarm( 'alarm-2', 'Metric2', 60 ) ] as List<AlarmEntity> )
+    assertFalse( 'rebuild not required', index.isRebuildRequired( 60_000L ) )
+    assertEquals( 'size', 1, index.size( ) )
+    assertEquals( 'rebuilt alarms due', [ 'alarm-2' ], index.takeDue( 0L ) )
+    index.invalidate( )
+    assertTrue( 'rebuild required after invalidate', index.isRebuildRequired( 60_000L ) )
+  }
+
+  private static AlarmEntity alarm( String id, String metricName, Integer period ) {
+    AlarmEntity alarm = new TestAlarmEntity( id: id )
+    alarm.accountId = '000000000001'
+    alarm.namespace = 'Test'
+    alarm.metricName = metricName
+    alarm.metricType = MetricType.Custom
+    alarm.period = period
+    alarm
+  }
+
+  private static SimpleMetricEntity data( String metricName ) {
+    SimpleMetricEntity entity = new SimpleMetricEntity( )
+    entity.accountId = '000000000001'
+    entity.namespace = 'Test'
+    entity.metricName = metricName
+    entity.metricType = MetricType.Custom
+    entity.dimensionMap = [ : ]
+    entity
+  }
+
+  static class TestAlarmEntity extends AlarmEntity {
+    String id
+
+    @Override
+    String getNaturalId( ) {
+      id
+    }
+  }
+}
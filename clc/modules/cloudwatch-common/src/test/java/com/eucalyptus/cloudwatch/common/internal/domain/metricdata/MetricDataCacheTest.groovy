@@ -0,0 +1,197 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata
+
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType
+import groovy.transform.CompileStatic
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import java.util.concurrent.TimeUnit
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+@CompileStatic
+class MetricDataCacheTest {
+
+  private static final long START = 25_000_000L
+
+  private Boolean enabled
+
+  @Before
+  void enable( ) {
+    enabled = CloudWatchConfigProperties.ENABLE_METRIC_DATA_CACHE
+    CloudWatchConfigProperties.ENABLE_METRIC_DATA_CACHE = true
+  }
+
+  @After
+  void restore( ) {
+    CloudWatchConfigProperties.ENABLE_METRIC_DATA_CACHE = enabled
+  }
+
+  @Test
+  void testMissUntilComplete( ) {
+    TestMetricDataCache cache = new TestMetricDataCache( minute: START )
+    cache.addAll( [ data( START - 5, 1d ) ] )
+    assertNull( 'miss before complete', cache.getMetricData( params( START - 10, START + 1 ) ) )
+    cache.minute = START + MetricDataCache.FUTURE_MINUTES
+    assertNull( 'miss at complete', cache.getMetricData( params( START + 100, START + 110 ) ) )
+  }
+
+  @Test
+  void testHit( ) {
+    TestMetricDataCache cache = warmCache( )
+    long now = cache.minute
+    cache.addAll( [ data( now - 10, 1d ), data( now - 10, 3d ), data( now - 5, 7d ) ] )
+    Collection<MetricEntity> metricData = cache.getMetricData( params( now - 15, now ) )
+    assertNotNull( 'hit', metricData )
+    assertEquals( 'data count', 2, metricData.size( ) )
+    MetricEntity first = metricData.iterator( ).next( )
+    assertEquals( 'timestamp', new Date( TimeUnit.MINUTES.toMillis( now - 10 ) ), first.timestamp )
+    assertEquals( 'sum', 4d, first.sampleSum, 0d )
+    assertEquals( 'min', 1d, first.sampleMin, 0d )
+    assertEquals( 'max', 3d, first.sampleMax, 0d )
+    assertEquals( 'count', 2d, first.sampleSize, 0d )
+    assertEquals( 'account', '000000000001', first.accountId )
+    assertEquals( 'units', Units.Count, first.units )
+  }
+
+  @Test
+  void testHitWithoutData( ) {
+    TestMetricDataCache cache = warmCache( )
+    Collection<MetricEntity> metricData = cache.getMetricData( params( cache.minute - 15, cache.minute ) )
+    assertNotNull( 'hit', metricData )
+    assertTrue( 'no data', metricData.isEmpty( ) )
+  }
+
+  @Test
+  void testMissOutsideWindow( ) {
+    TestMetricDataCache cache = warmCache( )
+    long now = cache.minute
+    assertNull( 'start before window',
+        cache.getMetricData( params( now - MetricDataCache.WINDOW_MINUTES, now ) ) )
+    assertNull( 'end in future', cache.getMetricData( params( now - 10, now + 3 ) ) )
+  }
+
+  @Test
+  void testFutureDataDelaysComplete( ) {
+    TestMetricDataCache cache = warmCache( )
+    long now = cache.minute
+    cache.addAll( [ data( now + 30, 1d ) ] )
+    assertNull( 'miss until future data time', cache.getMetricData( params( now - 10, now ) ) )
+    cache.minute = now + 31
+    assertNotNull( 'hit after future data time', cache.getMetricData( params( now + 31, now + 32 ) ) )
+  }
+
+  @Test
+  void testInvalidate( ) {
+    TestMetricDataCache cache = warmCache( )
+    long now = cache.minute
+    cache.addAll( [ data( now - 10, 1d ) ] )
+    cache.invalidate( )
+    assertNull( 'miss after invalidate', cache.getMetricData( params( now - 15, now ) ) )
+    cache.addAll( [ data( now - 10, 1d ) ] )
+    assertNull( 'miss until complete after invalidate', cache.getMetricData( params( now - 15, now ) ) )
+  }
+
+  @Test
+  void testDisableInvalidates( ) {
+    TestMetricDataCache cache = warmCache( )
+    long now = cache.minute
+    cache.addAll( [ data( now - 10, 1d ) ] )
+    CloudWatchConfigProperties.ENABLE_METRIC_DATA_CACHE = false
+    assertNull( 'miss when disabled', cache.getMetricData( params( now - 15, now ) ) )
+    cache.addAll( [ data( now - 10, 1d ) ] )
+    CloudWatchConfigProperties.ENABLE_METRIC_DATA_CACHE = true
+    assertNull( 'miss after disabled', cache.getMetricData( params( now - 15, now ) ) )
+  }
+
+  @Test
+  void testExpire( ) {
+    TestMetricDataCache cache = warmCache( )
+    long now = cache.minute
+    cache.addAll( [ data( now - 10, 1d ) ] )
+    cache.minute = now + MetricDataCache.WINDOW_MINUTES
+    cache.expire( )
+    cache.minute = now
+    Collection<MetricEntity> metricData = cache.getMetricData( params( now - 15, now ) )
+    assertNotNull( 'hit', metricData )
+    assertTrue( 'expired', metricData.isEmpty( ) )
+  }
+
+  private static TestMetricDataCache warmCache( ) {
+    TestMetricDataCache cache = new TestMetricDataCache( minute: START )
+    cache.addAll( [ ] )
+    cache.minute = START + MetricDataCache.FUTURE_MINUTES + 30
+    cache
+  }
+
+  private static SimpleMetricEntity data( long minute, double value ) {
+    SimpleMetricEntity entity = new SimpleMetricEntity( )
+    entity.accountId = '000000000001'
+    entity.namespace = 'Test'
+    entity.metricName = 'Metric'
+    entity.metricType = MetricType.Custom
+    entity.dimensionMap = [ name: 'value' ]
+    entity.units = Units.Count
+    entity.timestamp = new Date( TimeUnit.MINUTES.toMillis( minute ) )
+    entity.sampleSum = value
+    entity.sampleMin = value
+    entity.sampleMax = value
+    entity.sampleSize = 1d
+    entity
+  }
+
+  private static MetricManager.GetMetricStatisticsParams params( long startMinute, long endMinute ) {
+    new MetricManager.GetMetricStatisticsParams(
+        '000000000001',
+        'Metric',
+        'Test',
+        [ name: 'value' ],
+        MetricType.Custom,
+        Units.Count,
+        new Date( TimeUnit.MINUTES.toMillis( startMinute ) ),
+        new Date( TimeUnit.MINUTES.toMillis( endMinute ) ),
+        60 )
+  }
+
+  static class TestMetricDataCache extends MetricDataCache {
+    long minute
+
+    @Override
+    long currentMinute( ) {
+      minute
+    }
+  }
+}
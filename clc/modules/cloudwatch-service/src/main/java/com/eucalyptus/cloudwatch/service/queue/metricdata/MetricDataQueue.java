@@ -28,7 +28,9 @@
  ************************************************************************/
 package com.eucalyptus.cloudwatch.service.queue.metricdata;
 
-import com.eucalyptus.cloudwatch.common.internal.domain.listmetrics.ListMetricManager;
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
+import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmEvaluationIndex;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricDataCache;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricUtils;
@@ -36,11 +38,11 @@ import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricE
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.Units;
 import com.eucalyptus.cloudwatch.common.msgs.Dimension;
 import com.eucalyptus.cloudwatch.common.msgs.MetricDatum;
+import com.eucalyptus.cloudwatch.service.ThrottlingException;
 import com.eucalyptus.cloudwatch.service.queue.listmetrics.ListMetricQueue;
 import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.metrics.MonitoredAction;
 import com.eucalyptus.util.metrics.ThruputMetrics;
-import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -52,18 +54,35 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Buffers metric data aggregated by PutMetricDataAggregationKey.
+ *
+ * Data is aggregated as it is queued and written when the buffer reaches the
+ * flush threshold or the flush interval elapses. When the buffer is full
+ * callers are throttled.
+ */
 public class MetricDataQueue {
   private static final Logger LOG = Logger.getLogger(MetricDataQueue.class);
-  final static LinkedBlockingQueue<MetricQueueItem> dataQueue = new LinkedBlockingQueue<MetricQueueItem>();
+  final static ConcurrentMap<PutMetricDataAggregationKey, SimpleMetricEntity> dataQueue = Maps.newConcurrentMap();
+
+  private static final AtomicLong oldestPendingTimestamp = new AtomicLong(0L);
+  private static final AtomicLong lastFlushTimestamp = new AtomicLong(System.currentTimeMillis());
+  private static final AtomicBoolean flushRequested = new AtomicBoolean(false);
 
   private static final ScheduledExecutorService dataFlushTimer = Executors
       .newSingleThreadScheduledExecutor( Threads.threadFactory( "cloudwatch-metric-data-flush-%d" ) );
 
+  private static final ExecutorService dataWriteExecutor = Executors
+      .newFixedThreadPool( 8, Threads.threadFactory( "cloudwatch-metric-data-write-%d" ) );
+
   private static MetricDataQueue singleton = getInstance();
 
   public static MetricDataQueue getInstance() {
@@ -74,32 +93,51 @@ public class MetricDataQueue {
     return singleton;
   }
 
-  private void queue(Supplier<MetricQueueItem> metriMetaDataSupplier) {
-    final MetricQueueItem metricData = metriMetaDataSupplier.get();
-    dataQueue.offer(metricData);
+  private void queue(final SimpleMetricEntity item) {
+    item.setTimestamp(MetricUtils.stripSeconds(item.getTimestamp()));
+    dataQueue.merge(new PutMetricDataAggregationKey(item), item, MetricDataQueue::combine);
+    oldestPendingTimestamp.compareAndSet(0L, System.currentTimeMillis());
+  }
+
+  private static void requestFlush() {
+    if (flushRequested.compareAndSet(false, true)) {
+      dataFlushTimer.execute(safeRunner);
+    }
   }
 
   private static Runnable safeRunner = new Runnable() {
     @Override
     public void run() {
+      flushRequested.set(false);
+      lastFlushTimestamp.set(System.currentTimeMillis());
       long before = System.currentTimeMillis();
       try {
-        List<MetricQueueItem> dataBatch = Lists.newArrayList();
-        dataQueue.drainTo(dataBatch);
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_SIZE, dataBatch.size( ));
-        long t1 = System.currentTimeMillis();
-        List<SimpleMetricEntity> simpleDataBatch = convertToSimpleDataBatch(dataBatch);
+        long oldestPending = oldestPendingTimestamp.getAndSet(0L);
+        if (oldestPending > 0L) {
+          ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_LAG, before-oldestPending);
+        }
+        List<SimpleMetricEntity> simpleDataBatch = drain();
+        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_SIZE, simpleDataBatch.size( ));
         long t2 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_CONVERT, t2-t1);
-        simpleDataBatch = aggregate(simpleDataBatch);
+        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_DRAIN, t2-before);
+        if (simpleDataBatch.isEmpty()) {
+          return;
+        }
+        try {
+          MetricManager.addMetricBatch(simpleDataBatch, dataWriteExecutor);
+        } catch (Throwable ex) {
+          // some data may be persisted, cached data is no longer complete
+          MetricDataCache.getInstance().invalidate();
+          throw ex;
+        }
+        MetricDataCache.getInstance().addAll(simpleDataBatch);
+        MetricDataCache.getInstance().expire();
+        AlarmEvaluationIndex.getInstance().metricDataReceived(simpleDataBatch);
         long t3 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_AGGREGATE, t3-t2);
-        MetricManager.addMetricBatch(simpleDataBatch);
-        long t4 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_MERTIC_ADD_BATCH, t4-t3);
+        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_MERTIC_ADD_BATCH, t3-t2);
         ListMetricQueue.getInstance().addAll(simpleDataBatch);
-        long t5 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_MERTIC_QUEUE_ADDALL, t5-t4);
+        long t4 = System.currentTimeMillis();
+        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_MERTIC_QUEUE_ADDALL, t4-t3);
       } catch (Throwable ex) {
         LOG.debug("PutMetricDataQueue:error");
         ex.printStackTrace();
@@ -110,8 +148,37 @@ public class MetricDataQueue {
     }
   };
 
+  private static Runnable intervalCheckRunner = new Runnable() {
+    @Override
+    public void run() {
+      long flushIntervalMillis = TimeUnit.SECONDS.toMillis(CloudWatchConfigProperties.PUT_METRIC_DATA_FLUSH_INTERVAL_SECS);
+      if (System.currentTimeMillis() - lastFlushTimestamp.get() >= flushIntervalMillis) {
+        requestFlush();
+      }
+    }
+  };
+
   static {
-    dataFlushTimer.scheduleAtFixedRate(safeRunner, 0, 1, TimeUnit.MINUTES);
+    dataFlushTimer.scheduleWithFixedDelay(intervalCheckRunner, 1, 1, TimeUnit.SECONDS);
+  }
+
+  private static List<SimpleMetricEntity> drain() {
+    List<SimpleMetricEntity> dataBatch = Lists.newArrayListWithExpectedSize(dataQueue.size());
+    for (PutMetricDataAggregationKey key : dataQueue.keySet()) {
+      SimpleMetricEntity item = dataQueue.remove(key);
+      if (item != null) {
+        dataBatch.add(item);
+      }
+    }
+    return dataBatch;
+  }
+
+  private static SimpleMetricEntity combine(SimpleMetricEntity totalSoFar, SimpleMetricEntity item) {
+    totalSoFar.setSampleMax(Math.max(item.getSampleMax(), totalSoFar.getSampleMax()));
+    totalSoFar.setSampleMin(Math.min(item.getSampleMin(), totalSoFar.getSampleMin()));
+    totalSoFar.setSampleSize(totalSoFar.getSampleSize() + item.getSampleSize());
+    totalSoFar.setSampleSum(totalSoFar.getSampleSum() + item.getSampleSum());
+    return totalSoFar;
   }
 
   public static List<SimpleMetricEntity> aggregate(List<SimpleMetricEntity> dataBatch) {
@@ -122,11 +189,7 @@ public class MetricDataQueue {
       if (!aggregationMap.containsKey(key)) {
         aggregationMap.put(key, new SimpleMetricEntity(item));
       } else {
-        SimpleMetricEntity totalSoFar = aggregationMap.get(key);
-        totalSoFar.setSampleMax(Math.max(item.getSampleMax(), totalSoFar.getSampleMax()));
-        totalSoFar.setSampleMin(Math.min(item.getSampleMin(), totalSoFar.getSampleMin()));
-        totalSoFar.setSampleSize(totalSoFar.getSampleSize() + item.getSampleSize());
-        totalSoFar.setSampleSum(totalSoFar.getSampleSum() + item.getSampleSum());
+        combine(aggregationMap.get(key), item);
       }
     }
     return Lists.newArrayList(aggregationMap.values());
@@ -136,60 +199,70 @@ public class MetricDataQueue {
       List<MetricQueueItem> stupidDataBatch) {
     ArrayList<SimpleMetricEntity> returnValue = new ArrayList<SimpleMetricEntity>();
     for(MetricQueueItem item: stupidDataBatch) {
-      SimpleMetricEntity metricMetadata = new SimpleMetricEntity();
-      metricMetadata.setAccountId(item.getAccountId());
-      MetricDatum datum = item.getMetricDatum();
-      
-      metricMetadata.setMetricName(datum.getMetricName());
-      metricMetadata.setNamespace(item.getNamespace());
-      final List<Dimension> dimensions = datum.getDimensions( ) == null ?
-          Collections.<Dimension>emptyList( ) :
-          datum.getDimensions( ).getMember( );
-      metricMetadata.setDimensionMap(makeDimensionMap(dimensions));
-      metricMetadata.setMetricType(item.getMetricType());
-      metricMetadata.setUnits(Units.fromValue(datum.getUnit()));
-      metricMetadata.setTimestamp(datum.getTimestamp());
-      if (datum.getValue() != null) { // Either or case taken care of in service
-        metricMetadata.setSampleMax(datum.getValue());
-        metricMetadata.setSampleMin(datum.getValue());
-        metricMetadata.setSampleSum(datum.getValue());
-        metricMetadata.setSampleSize(1.0);
-      } else if ((datum.getStatisticValues() != null) &&
-            (datum.getStatisticValues().getMaximum() != null) &&
-            (datum.getStatisticValues().getMinimum() != null) &&
-            (datum.getStatisticValues().getSum() != null) &&
-            (datum.getStatisticValues().getSampleCount() != null)) {
-          metricMetadata.setSampleMax(datum.getStatisticValues().getMaximum());
-          metricMetadata.setSampleMin(datum.getStatisticValues().getMinimum());
-          metricMetadata.setSampleSum(datum.getStatisticValues().getSum());
-          metricMetadata.setSampleSize(datum.getStatisticValues().getSampleCount());
-      } else {
-        throw new RuntimeException("Statistics set (all values) or Value must be set"); 
-      }
-      returnValue.add(metricMetadata);
+      returnValue.add(convertToSimpleMetricEntity(item));
     }
     return returnValue;
   }
 
+  protected static SimpleMetricEntity convertToSimpleMetricEntity(MetricQueueItem item) {
+    SimpleMetricEntity metricMetadata = new SimpleMetricEntity();
+    metricMetadata.setAccountId(item.getAccountId());
+    MetricDatum datum = item.getMetricDatum();
+
+    metricMetadata.setMetricName(datum.getMetricName());
+    metricMetadata.setNamespace(item.getNamespace());
+    final List<Dimension> dimensions = datum.getDimensions( ) == null ?
+        Collections.<Dimension>emptyList( ) :
+        datum.getDimensions( ).getMember( );
+    metricMetadata.setDimensionMap(makeDimensionMap(dimensions));
+    metricMetadata.setMetricType(item.getMetricType());
+    metricMetadata.setUnits(Units.fromValue(datum.getUnit()));
+    metricMetadata.setTimestamp(datum.getTimestamp());
+    if (datum.getValue() != null) { // Either or case taken care of in service
+      metricMetadata.setSampleMax(datum.getValue());
+      metricMetadata.setSampleMin(datum.getValue());
+      metricMetadata.setSampleSum(datum.getValue());
+      metricMetadata.setSampleSize(1.0);
+    } else if ((datum.getStatisticValues() != null) &&
+          (datum.getStatisticValues().getMaximum() != null) &&
+          (datum.getStatisticValues().getMinimum() != null) &&
+          (datum.getStatisticValues().getSum() != null) &&
+          (datum.getStatisticValues().getSampleCount() != null)) {
+        metricMetadata.setSampleMax(datum.getStatisticValues().getMaximum());
+        metricMetadata.setSampleMin(datum.getStatisticValues().getMinimum());
+        metricMetadata.setSampleSum(datum.getStatisticValues().getSum());
+        metricMetadata.setSampleSize(datum.getStatisticValues().getSampleCount());
+    } else {
+      throw new RuntimeException("Statistics set (all values) or Value must be set"); 
+    }
+    return metricMetadata;
+  }
+
   public void insertMetricData(final String ownerAccountId, final String nameSpace,
-                               final List<MetricDatum> metricDatum, final MetricType metricType) {
+                               final List<MetricDatum> metricDatum, final MetricType metricType) throws ThrottlingException {
     // Some points do not actually go in.  If a data point represents an absolute value, the first one does not go in.
     // Also, some data points are added while we go through the list (derived metrics)
     Date now = new Date();
 
+    final int pending = dataQueue.size();
+    if (pending >= CloudWatchConfigProperties.PUT_METRIC_DATA_MAX_PENDING) {
+      requestFlush();
+      ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_THROTTLED, metricDatum.size());
+      throw new ThrottlingException("Rate exceeded");
+    }
+
     for (final MetricDatum datum : metricDatum) {
       scrub(datum, now);
-      queue(new Supplier<MetricQueueItem>() {
-        @Override
-        public MetricQueueItem get() {
-          MetricQueueItem metricMetadata = new MetricQueueItem();
-          metricMetadata.setAccountId(ownerAccountId);
-          metricMetadata.setMetricDatum(datum);
-          metricMetadata.setNamespace(nameSpace);
-          metricMetadata.setMetricType(metricType);
-          return metricMetadata;
-        }
-      });
+      MetricQueueItem metricMetadata = new MetricQueueItem();
+      metricMetadata.setAccountId(ownerAccountId);
+      metricMetadata.setMetricDatum(datum);
+      metricMetadata.setNamespace(nameSpace);
+      metricMetadata.setMetricType(metricType);
+      queue(convertToSimpleMetricEntity(metricMetadata));
+    }
+
+    if (pending + metricDatum.size() >= CloudWatchConfigProperties.PUT_METRIC_DATA_FLUSH_THRESHOLD) {
+      requestFlush();
     }
   }
 
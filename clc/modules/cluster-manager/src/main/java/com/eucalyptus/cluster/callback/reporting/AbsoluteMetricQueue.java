@@ -29,6 +29,7 @@
 package com.eucalyptus.cluster.callback.reporting;
 
 import com.eucalyptus.bootstrap.Bootstrap;
+import com.eucalyptus.bootstrap.OrderedShutdown;
 import com.eucalyptus.cloudwatch.common.CloudWatch;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.Units;
 import com.eucalyptus.cloudwatch.common.msgs.Dimension;
@@ -40,6 +41,12 @@ import com.eucalyptus.cloudwatch.common.msgs.PutMetricDataType;
 import com.eucalyptus.component.ServiceConfiguration;
 import com.eucalyptus.component.Topology;
 import com.eucalyptus.component.id.Eucalyptus;
+import com.eucalyptus.configurable.ConfigurableClass;
+import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.configurable.ConfigurableProperty;
+import com.eucalyptus.configurable.ConfigurablePropertyException;
+import com.eucalyptus.configurable.PropertyChangeListener;
+import com.eucalyptus.configurable.PropertyChangeListeners;
 import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.CollectionUtils;
 import com.eucalyptus.util.async.AsyncRequests;
@@ -48,6 +55,7 @@ import com.eucalyptus.util.metrics.MonitoredAction;
 import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -73,12 +81,19 @@ import java.util.concurrent.TimeUnit;
 /**
  * Created by ethomas on 6/16/15.
  */
+@ConfigurableClass( root = "cloud.monitor", description = "Parameters controlling compute metrics")
 public class AbsoluteMetricQueue {
 
   public static volatile Integer ABSOLUTE_METRIC_NUM_DB_OPERATIONS_PER_TRANSACTION = 10000;
   public static volatile Integer ABSOLUTE_METRIC_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH = 50;
 
-  static boolean useScanningConverter = true;
+  @ConfigurableField( initial = "cached", description = "Absolute metric conversion, one of cached, scanning or default",
+      changeListener = AbsoluteMetricConverterChangeListener.class )
+  public static volatile String ABSOLUTE_METRIC_CONVERTER = "cached";
+
+  @ConfigurableField( initial = "300", description = "How often in seconds cached absolute metric history is written to the database",
+      changeListener = PropertyChangeListeners.IsPositiveInteger.class )
+  public static volatile Integer ABSOLUTE_METRIC_FLUSH_INTERVAL_SECS = 300;
 
   static {
     ScheduledExecutorService dbCleanupService = Executors
@@ -121,12 +136,20 @@ public class AbsoluteMetricQueue {
         }
         ThruputMetrics.addDataPoint(MonitoredAction.CLUSTER_SIZE, dataBatch.size( ) );
         long t1 = System.currentTimeMillis();
-        if ( useScanningConverter ) {
-          dataBatch = FullTableScanAbsoluteMetricConverter.dealWithAbsoluteMetrics(
-              Iterables.filter( dataBatch, Predicates.not( expired ) ) );
-        } else {
-          dataBatch = DefaultAbsoluteMetricConverter.dealWithAbsoluteMetrics(
-              Iterables.filter( dataBatch, Predicates.not( expired ) ) );
+        switch ( ABSOLUTE_METRIC_CONVERTER ) {
+          case "scanning":
+            CachedAbsoluteMetricConverter.invalidateAll( );
+            dataBatch = FullTableScanAbsoluteMetricConverter.dealWithAbsoluteMetrics(
+                Iterables.filter( dataBatch, Predicates.not( expired ) ) );
+            break;
+          case "default":
+            CachedAbsoluteMetricConverter.invalidateAll( );
+            dataBatch = DefaultAbsoluteMetricConverter.dealWithAbsoluteMetrics(
+                Iterables.filter( dataBatch, Predicates.not( expired ) ) );
+            break;
+          default:
+            dataBatch = CachedAbsoluteMetricConverter.dealWithAbsoluteMetrics(
+                Iterables.filter( dataBatch, Predicates.not( expired ) ) );
         }
         long t2 = System.currentTimeMillis();
         ThruputMetrics.addDataPoint(MonitoredAction.CLUSTER_DEAL_WITH_ABSOLUTE_METRICS, t2 - t1);
@@ -250,8 +273,30 @@ public class AbsoluteMetricQueue {
     return foldedMetrics;
   }
 
+  /**
+   * Runs on the conversion thread so cached history is not written mid batch
+   */
+  private static Runnable historyFlushRunner = new Runnable( ) {
+    @Override
+    public void run() {
+      try {
+        CachedAbsoluteMetricConverter.flushIfDue( );
+      } catch (Throwable ex) {
+        LOG.error(ex,ex);
+      }
+    }
+  };
+
   static {
     dataFlushTimer.scheduleAtFixedRate(safeRunner, 0, 1, TimeUnit.MINUTES);
+    dataFlushTimer.scheduleWithFixedDelay(historyFlushRunner, 1, 1, TimeUnit.MINUTES);
+    OrderedShutdown.registerPreShutdownHook( new Runnable( ) {
+      @Override
+      public void run( ) {
+        LOG.info( "Writing cached absolute metric history" );
+        CachedAbsoluteMetricConverter.flushAll( );
+      }
+    } );
   }
 
   private void scrub(AbsoluteMetricQueueItem absoluteMetricQueueItem, Date now) {
@@ -269,6 +314,17 @@ public class AbsoluteMetricQueue {
     }
   }
 
+  public static class AbsoluteMetricConverterChangeListener implements PropertyChangeListener {
+    private static final Set<String> CONVERTERS = ImmutableSet.of( "cached", "scanning", "default" );
+
+    @Override
+    public void fireChange( final ConfigurableProperty t, final Object newValue ) throws ConfigurablePropertyException {
+      if ( !CONVERTERS.contains( String.valueOf( newValue ) ) ) {
+        throw new ConfigurablePropertyException( "Value must be one of " + CONVERTERS );
+      }
+    }
+  }
+
   private static class DBCleanupService implements Runnable {
     @Override
     public void run() {
@@ -282,6 +338,7 @@ public class AbsoluteMetricQueue {
       Date thirtyMinutesAgo = new Date(System.currentTimeMillis() - 30 * 60 * 1000L);
       try {
         AbsoluteMetricHelper.deleteAbsoluteMetricHistory(thirtyMinutesAgo);
+        CachedAbsoluteMetricConverter.expire(thirtyMinutesAgo);
       } catch (Exception ex) {
         LOG.error(ex);
         LOG.error(ex, ex);
@@ -0,0 +1,353 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.cluster.callback.reporting;
+
+import com.eucalyptus.cloudwatch.common.msgs.MetricDatum;
+import com.eucalyptus.cluster.callback.reporting.FullTableScanAbsoluteMetricConverter.AbsoluteMetricMap;
+import com.eucalyptus.cluster.callback.reporting.FullTableScanAbsoluteMetricConverter.AbsoluteMetricMap.NamespaceMetricNameAndDimension;
+import com.eucalyptus.cluster.callback.reporting.FullTableScanAbsoluteMetricConverter.MetricsAndOtherFields;
+import com.eucalyptus.cluster.callback.reporting.FullTableScanAbsoluteMetricConverter.SequentialMetrics;
+import com.eucalyptus.cluster.callback.reporting.FullTableScanAbsoluteMetricConverter.SortedAbsoluteMetrics;
+import com.eucalyptus.cluster.callback.reporting.FullTableScanAbsoluteMetricConverter.TimestampAndMetricValue;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.log4j.Logger;
+import org.hibernate.CacheMode;
+import org.hibernate.criterion.Restrictions;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Absolute metric converter using an in memory cache of last metric values.
+ *
+ * History for a metric is read from the database the first time the metric is
+ * converted and changes are written behind, so batches are converted without
+ * reading the table. Values are written periodically, when conversion goes
+ * idle (e.g. following failover to another host) and on shutdown.
+ */
+public class CachedAbsoluteMetricConverter {
+
+  private static final Logger LOG = Logger.getLogger(CachedAbsoluteMetricConverter.class);
+
+  /**
+   * Conversion runs every minute when active, so two missed runs means this
+   * host is no longer converting and values are written for the next host.
+   */
+  static final long IDLE_FLUSH_MS = TimeUnit.MINUTES.toMillis(2L);
+
+  private static final CachedAbsoluteMetricConverter converter =
+      new CachedAbsoluteMetricConverter(new PersistentHistoryStore());
+
+  private final HistoryStore store;
+  private final ConcurrentMap<NamespaceMetricNameAndDimension, AbsoluteMetricHistory> lastValues =
+      Maps.newConcurrentMap();
+  private final Set<NamespaceMetricNameAndDimension> dirtyKeys = Sets.newConcurrentHashSet();
+
+  private volatile long lastConverted = 0L;
+  private volatile long lastFlushed = 0L;
+
+  CachedAbsoluteMetricConverter(final HistoryStore store) {
+    this.store = store;
+  }
+
+  protected static List<AbsoluteMetricQueueItem> dealWithAbsoluteMetrics(Iterable<AbsoluteMetricQueueItem> dataBatch) {
+    return converter.convert(dataBatch, System.currentTimeMillis());
+  }
+
+  /**
+   * Write cached values if the flush interval has elapsed or conversion is idle.
+   */
+  static void flushIfDue() {
+    converter.maybeFlush(System.currentTimeMillis(),
+        TimeUnit.SECONDS.toMillis(AbsoluteMetricQueue.ABSOLUTE_METRIC_FLUSH_INTERVAL_SECS));
+  }
+
+  /**
+   * Write all cached values that have changed since they were last written.
+   */
+  static void flushAll() {
+    converter.flush();
+  }
+
+  /**
+   * Write changed values and discard the cache, used when another converter is selected.
+   */
+  static void invalidateAll() {
+    converter.invalidate();
+  }
+
+  /**
+   * Remove cached values last updated before the given date, the matching
+   * history is deleted from the database.
+   */
+  static void expire(Date before) {
+    converter.expireBefore(before);
+  }
+
+  List<AbsoluteMetricQueueItem> convert(Iterable<AbsoluteMetricQueueItem> dataBatch, long now) {
+    final List<AbsoluteMetricQueueItem> regularMetrics = Lists.newArrayList();
+    SortedAbsoluteMetrics sortedAbsoluteMetrics = FullTableScanAbsoluteMetricConverter.sortAbsoluteMetrics(dataBatch);
+    regularMetrics.addAll(sortedAbsoluteMetrics.getRegularMetrics());
+    AbsoluteMetricMap absoluteMetricMap = sortedAbsoluteMetrics.getAbsoluteMetricMap();
+    if (absoluteMetricMap.keySet().isEmpty()) {
+      return regularMetrics;
+    }
+    if (lastConverted == 0L) {
+      // first write is a flush interval after the first conversion
+      lastFlushed = now;
+    } else if (now - lastConverted > AbsoluteMetricHelper.MAX_DIFFERENCE_DURATION_MS) {
+      // history may have been updated by another host while we were not converting
+      LOG.info("Invalidating absolute metric history after " + (now - lastConverted) + "ms without conversion");
+      invalidate();
+    }
+    lastConverted = now;
+    warmUp(absoluteMetricMap.keySet());
+    for (NamespaceMetricNameAndDimension key : absoluteMetricMap.keySet()) {
+      final MetricsAndOtherFields metricsAndOtherFields = absoluteMetricMap.get(key);
+      final Map<TimestampAndMetricValue, MetricDatum> metricDatumMap = metricsAndOtherFields.getMetricDatumMap();
+      if (metricDatumMap.isEmpty()) continue;
+      lastValues.compute(key, (cacheKey, absoluteMetricHistory) -> {
+        if (absoluteMetricHistory == null) {
+          TimestampAndMetricValue firstValue = metricDatumMap.keySet().iterator().next();
+          metricDatumMap.remove(firstValue);
+          absoluteMetricHistory = history(cacheKey, firstValue.getTimestamp(), firstValue.getMetricValue());
+        }
+        if (!metricDatumMap.isEmpty()) {
+          SequentialMetrics sequentialMetrics = FullTableScanAbsoluteMetricConverter.calculateSequentialMetrics(
+              absoluteMetricHistory, metricDatumMap, metricsAndOtherFields.getAccountId(), metricsAndOtherFields.getRelativeMetricName());
+          FullTableScanAbsoluteMetricConverter.addRegularMetrics(regularMetrics, sequentialMetrics);
+          absoluteMetricHistory.setTimestamp(sequentialMetrics.getUpdateTimestamp());
+          absoluteMetricHistory.setLastMetricValue(sequentialMetrics.getUpdateValue());
+        }
+        return absoluteMetricHistory;
+      });
+      dirtyKeys.add(key);
+    }
+    return regularMetrics;
+  }
+
+  void maybeFlush(long now, long flushIntervalMs) {
+    if (dirtyKeys.isEmpty()) return;
+    if (now - lastFlushed >= flushIntervalMs || now - lastConverted >= IDLE_FLUSH_MS) {
+      if (flush()) {
+        lastFlushed = now;
+      }
+    }
+  }
+
+  /**
+   * @return true if all changed values were written
+   */
+  synchronized boolean flush() {
+    final List<NamespaceMetricNameAndDimension> keys = Lists.newArrayList(dirtyKeys);
+    final List<AbsoluteMetricHistory> histories = Lists.newArrayListWithCapacity(keys.size());
+    for (NamespaceMetricNameAndDimension key : keys) {
+      dirtyKeys.remove(key);
+      lastValues.computeIfPresent(key, (cacheKey, absoluteMetricHistory) -> {
+        histories.add(copyOf(absoluteMetricHistory));
+        return absoluteMetricHistory;
+      });
+    }
+    if (histories.isEmpty()) return true;
+    try {
+      store.store(histories);
+      LOG.debug("Wrote " + histories.size() + " absolute metric history values");
+      return true;
+    } catch (RuntimeException e) {
+      dirtyKeys.addAll(keys);
+      LOG.error("Error writing absolute metric history", e);
+      return false;
+    }
+  }
+
+  void invalidate() {
+    flush();
+    // values that could not be written are newer than the stored history so are kept
+    for (NamespaceMetricNameAndDimension key : lastValues.keySet()) {
+      lastValues.computeIfPresent(key, (cacheKey, absoluteMetricHistory) ->
+          dirtyKeys.contains(cacheKey) ? absoluteMetricHistory : null);
+    }
+  }
+
+  void expireBefore(Date before) {
+    for (NamespaceMetricNameAndDimension key : lastValues.keySet()) {
+      lastValues.computeIfPresent(key, (cacheKey, absoluteMetricHistory) -> {
+        if (absoluteMetricHistory.getTimestamp().before(before)) {
+          dirtyKeys.remove(cacheKey);
+          return null;
+        }
+        return absoluteMetricHistory;
+      });
+    }
+  }
+
+  private void warmUp(Set<NamespaceMetricNameAndDimension> keys) {
+    final List<NamespaceMetricNameAndDimension> missingKeys = Lists.newArrayList();
+    for (NamespaceMetricNameAndDimension key : keys) {
+      if (!lastValues.containsKey(key)) {
+        missingKeys.add(key);
+      }
+    }
+    if (!missingKeys.isEmpty()) {
+      Map<NamespaceMetricNameAndDimension, AbsoluteMetricHistory> loadedValues = store.load(missingKeys);
+      for (Map.Entry<NamespaceMetricNameAndDimension, AbsoluteMetricHistory> entry : loadedValues.entrySet()) {
+        lastValues.putIfAbsent(entry.getKey(), entry.getValue());
+      }
+      LOG.debug("Loaded " + loadedValues.size() + " of " + missingKeys.size() + " absolute metric history values");
+    }
+  }
+
+  static NamespaceMetricNameAndDimension key(AbsoluteMetricHistory absoluteMetricHistory) {
+    return new NamespaceMetricNameAndDimension(absoluteMetricHistory.getNamespace(), absoluteMetricHistory.getMetricName(),
+        absoluteMetricHistory.getDimensionName(), absoluteMetricHistory.getDimensionValue());
+  }
+
+  static AbsoluteMetricHistory history(NamespaceMetricNameAndDimension key, Date timestamp, Double lastMetricValue) {
+    AbsoluteMetricHistory absoluteMetricHistory = new AbsoluteMetricHistory();
+    absoluteMetricHistory.setNamespace(key.getNamespace());
+    absoluteMetricHistory.setMetricName(key.getMetricName());
+    absoluteMetricHistory.setDimensionName(key.getDimensionName());
+    absoluteMetricHistory.setDimensionValue(key.getDimensionValue());
+    absoluteMetricHistory.setTimestamp(timestamp);
+    absoluteMetricHistory.setLastMetricValue(lastMetricValue);
+    return absoluteMetricHistory;
+  }
+
+  private static AbsoluteMetricHistory copyOf(AbsoluteMetricHistory absoluteMetricHistory) {
+    return history(key(absoluteMetricHistory), absoluteMetricHistory.getTimestamp(), absoluteMetricHistory.getLastMetricValue());
+  }
+
+  /**
+   * Storage for absolute metric history.
+   */
+  interface HistoryStore {
+
+    /**
+     * Load the stored history for the given keys, keys without history are omitted.
+     */
+    Map<NamespaceMetricNameAndDimension, AbsoluteMetricHistory> load(Collection<NamespaceMetricNameAndDimension> keys);
+
+    /**
+     * Update or insert the given history.
+     */
+    void store(Collection<AbsoluteMetricHistory> histories);
+  }
+
+  private static class PersistentHistoryStore implements HistoryStore {
+
+    @Override
+    public Map<NamespaceMetricNameAndDimension, AbsoluteMetricHistory> load(Collection<NamespaceMetricNameAndDimension> keys) {
+      final Set<NamespaceMetricNameAndDimension> keySet = Sets.newHashSet(keys);
+      final Map<NamespaceMetricNameAndDimension, AbsoluteMetricHistory> loadedValues = Maps.newHashMap();
+      try (final TransactionResource db = Entities.transactionFor(AbsoluteMetricHistory.class)) {
+        for (List<String> dimensionValues : Iterables.partition(dimensionValues(keySet),
+            AbsoluteMetricQueue.ABSOLUTE_METRIC_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH)) {
+          for (AbsoluteMetricHistory storedHistory : list(dimensionValues)) {
+            NamespaceMetricNameAndDimension key = key(storedHistory);
+            if (keySet.contains(key)) {
+              loadedValues.put(key, copyOf(storedHistory));
+            }
+          }
+          Entities.clearSession(AbsoluteMetricHistory.class);
+        }
+        db.commit();
+      }
+      return loadedValues;
+    }
+
+    @Override
+    public void store(Collection<AbsoluteMetricHistory> histories) {
+      for (List<AbsoluteMetricHistory> partialHistories :
+          Iterables.partition(histories, AbsoluteMetricQueue.ABSOLUTE_METRIC_NUM_DB_OPERATIONS_PER_TRANSACTION)) {
+        storeInTransaction(partialHistories);
+      }
+    }
+
+    private void storeInTransaction(List<AbsoluteMetricHistory> histories) {
+      final Map<NamespaceMetricNameAndDimension, AbsoluteMetricHistory> pending = Maps.newLinkedHashMap();
+      for (AbsoluteMetricHistory absoluteMetricHistory : histories) {
+        pending.put(key(absoluteMetricHistory), absoluteMetricHistory);
+      }
+      final Set<NamespaceMetricNameAndDimension> updated = Sets.newHashSet();
+      try (final TransactionResource db = Entities.transactionFor(AbsoluteMetricHistory.class)) {
+        for (List<String> dimensionValues : Iterables.partition(dimensionValues(pending.keySet()),
+            AbsoluteMetricQueue.ABSOLUTE_METRIC_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH)) {
+          for (AbsoluteMetricHistory storedHistory : list(dimensionValues)) {
+            NamespaceMetricNameAndDimension key = key(storedHistory);
+            AbsoluteMetricHistory absoluteMetricHistory = pending.get(key);
+            if (absoluteMetricHistory != null) {
+              storedHistory.setTimestamp(absoluteMetricHistory.getTimestamp());
+              storedHistory.setLastMetricValue(absoluteMetricHistory.getLastMetricValue());
+              updated.add(key);
+            }
+          }
+          Entities.flushSession(AbsoluteMetricHistory.class);
+          Entities.clearSession(AbsoluteMetricHistory.class);
+        }
+        // anything not found is new or was deleted by the history cleanup
+        pending.keySet().removeAll(updated);
+        int count = 0;
+        for (AbsoluteMetricHistory absoluteMetricHistory : pending.values()) {
+          Entities.persist(copyOf(absoluteMetricHistory));
+          if (++count % AbsoluteMetricQueue.ABSOLUTE_METRIC_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH == 0) {
+            Entities.flushSession(AbsoluteMetricHistory.class);
+            Entities.clearSession(AbsoluteMetricHistory.class);
+          }
+        }
+        db.commit();
+      }
+    }
+
+    private static List<String> dimensionValues(Collection<NamespaceMetricNameAndDimension> keys) {
+      final Set<String> dimensionValues = Sets.newTreeSet();
+      for (NamespaceMetricNameAndDimension key : keys) {
+        dimensionValues.add(key.getDimensionValue());
+      }
+      return Lists.newArrayList(dimensionValues);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<AbsoluteMetricHistory> list(List<String> dimensionValues) {
+      return (List<AbsoluteMetricHistory>) Entities.createCriteria(AbsoluteMetricHistory.class)
+          .add(Restrictions.in("dimensionValue", dimensionValues))
+          .setCacheMode(CacheMode.IGNORE)
+          .list();
+    }
+  }
+}
@@ -76,16 +76,7 @@ public class FullTableScanAbsoluteMetricConverter {
             SequentialMetrics sequentialMetrics = calculateSequentialMetrics( absoluteMetricHistory, metricDatumMap, metricsAndOtherFields.getAccountId( ), metricsAndOtherFields.getRelativeMetricName( ) );
             absoluteMetricMap.removeEntries( absoluteMetricHistory.getNamespace( ), absoluteMetricHistory.getMetricName( ),
                 absoluteMetricHistory.getDimensionName( ), absoluteMetricHistory.getDimensionValue( ) );
-            for ( AbsoluteMetricQueueItem regularMetric : sequentialMetrics.getRegularMetrics( ) ) {
-              if ( AbsoluteMetricHelper.AWS_EBS_NAMESPACE.equals( regularMetric.getNamespace( ) ) ) {
-                if ( AbsoluteMetricHelper.VOLUME_READ_OPS_METRIC_NAME.equals( regularMetric.getMetricDatum( ).getMetricName( ) ) ) { // special case
-                  regularMetrics.add( AbsoluteMetricHelper.createVolumeThroughputMetric( regularMetric.getAccountId( ), regularMetric.getNamespace( ), regularMetric.getMetricDatum( ) ) );
-                } else if ( AbsoluteMetricHelper.VOLUME_TOTAL_READ_WRITE_TIME_METRIC_NAME.equals( regularMetric.getMetricDatum( ).getMetricName( ) ) ) {
-                  AbsoluteMetricHelper.convertVolumeTotalReadWriteTimeToVolumeIdleTime( regularMetric.getMetricDatum( ) );
-                }
-              }
-              regularMetrics.add( regularMetric );
-            }
+            addRegularMetrics( regularMetrics, sequentialMetrics );
             absoluteMetricHistory.setTimestamp( sequentialMetrics.getUpdateTimestamp( ) );
             absoluteMetricHistory.setLastMetricValue( sequentialMetrics.getUpdateValue( ) );
             if ( ++count % AbsoluteMetricQueue.ABSOLUTE_METRIC_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH == 0 ) {
@@ -116,16 +107,7 @@ public class FullTableScanAbsoluteMetricConverter {
       if (metricDataMap.size() != 0) {
         SequentialMetrics sequentialMetrics = calculateSequentialMetrics(absoluteMetricHistory, metricDataMap,
           metricsAndOtherFields.getAccountId(), metricsAndOtherFields.getRelativeMetricName());
-        for (AbsoluteMetricQueueItem regularMetric: sequentialMetrics.getRegularMetrics()) {
-          if (AbsoluteMetricHelper.AWS_EBS_NAMESPACE.equals(regularMetric.getNamespace())) {
-            if (AbsoluteMetricHelper.VOLUME_READ_OPS_METRIC_NAME.equals(regularMetric.getMetricDatum().getMetricName())) { // special case
-              regularMetrics.add(AbsoluteMetricHelper.createVolumeThroughputMetric(regularMetric.getAccountId(), regularMetric.getNamespace(), regularMetric.getMetricDatum()));
-            } else if (AbsoluteMetricHelper.VOLUME_TOTAL_READ_WRITE_TIME_METRIC_NAME.equals(regularMetric.getMetricDatum().getMetricName())) {
-              AbsoluteMetricHelper.convertVolumeTotalReadWriteTimeToVolumeIdleTime(regularMetric.getMetricDatum());
-            }
-          }
-          regularMetrics.add(regularMetric);
-        }
+        addRegularMetrics(regularMetrics, sequentialMetrics);
         absoluteMetricHistory.setTimestamp(sequentialMetrics.getUpdateTimestamp());
         absoluteMetricHistory.setLastMetricValue(sequentialMetrics.getUpdateValue());
       }
@@ -147,6 +129,19 @@ public class FullTableScanAbsoluteMetricConverter {
     return regularMetrics;
   }
 
+  static void addRegularMetrics(List<AbsoluteMetricQueueItem> regularMetrics, SequentialMetrics sequentialMetrics) {
+    for (AbsoluteMetricQueueItem regularMetric: sequentialMetrics.getRegularMetrics()) {
+      if (AbsoluteMetricHelper.AWS_EBS_NAMESPACE.equals(regularMetric.getNamespace())) {
+        if (AbsoluteMetricHelper.VOLUME_READ_OPS_METRIC_NAME.equals(regularMetric.getMetricDatum().getMetricName())) { // special case
+          regularMetrics.add(AbsoluteMetricHelper.createVolumeThroughputMetric(regularMetric.getAccountId(), regularMetric.getNamespace(), regularMetric.getMetricDatum()));
+        } else if (AbsoluteMetricHelper.VOLUME_TOTAL_READ_WRITE_TIME_METRIC_NAME.equals(regularMetric.getMetricDatum().getMetricName())) {
+          AbsoluteMetricHelper.convertVolumeTotalReadWriteTimeToVolumeIdleTime(regularMetric.getMetricDatum());
+        }
+      }
+      regularMetrics.add(regularMetric);
+    }
+  }
+
   private static SimpleAbsoluteMetricHistory convertToSimpleAbsoluteMetricHistory(AbsoluteMetricHistory absoluteMetricHistory) {
     SimpleAbsoluteMetricHistory simpleAbsoluteMetricHistory = new SimpleAbsoluteMetricHistory();
     simpleAbsoluteMetricHistory.setNamespace(absoluteMetricHistory.getNamespace());
@@ -169,7 +164,7 @@ public class FullTableScanAbsoluteMetricConverter {
     return absoluteMetricHistory;
   }
 
-  private static SequentialMetrics calculateSequentialMetrics(AbsoluteMetricHistory absoluteMetricHistory,
+  static SequentialMetrics calculateSequentialMetrics(AbsoluteMetricHistory absoluteMetricHistory,
                                                               Map<TimestampAndMetricValue, MetricDatum> metricDatumMap,
                                                               String accountId,
                                                               String relativeMetricName) {
@@ -253,7 +248,7 @@ public class FullTableScanAbsoluteMetricConverter {
     return sequentialMetrics;
   }
 
-  private static SortedAbsoluteMetrics sortAbsoluteMetrics(Iterable<AbsoluteMetricQueueItem> dataBatch) {
+  static SortedAbsoluteMetrics sortAbsoluteMetrics(Iterable<AbsoluteMetricQueueItem> dataBatch) {
     SortedAbsoluteMetrics sortedAbsoluteMetrics = new SortedAbsoluteMetrics();
     for (AbsoluteMetricQueueItem item : dataBatch) {
       String accountId = item.getAccountId();
@@ -314,7 +309,7 @@ public class FullTableScanAbsoluteMetricConverter {
   */
   public static class AbsoluteMetricMap {
 
-    private static class NamespaceMetricNameAndDimension {
+    static class NamespaceMetricNameAndDimension {
       private String namespace;
       private String metricName;
       private String dimensionName;
@@ -458,7 +453,7 @@ public class FullTableScanAbsoluteMetricConverter {
     }
   }
 
-  private static class MetricsAndOtherFields {
+  static class MetricsAndOtherFields {
     private String accountId;
     private String relativeMetricName;
     private Map<TimestampAndMetricValue, MetricDatum> metricDatumMap = Maps.newTreeMap();
@@ -544,7 +539,7 @@ public class FullTableScanAbsoluteMetricConverter {
     }
   }
 
-  private static class SortedAbsoluteMetrics {
+  static class SortedAbsoluteMetrics {
     private List<AbsoluteMetricQueueItem> regularMetrics = Lists.newArrayList();
     private AbsoluteMetricMap absoluteMetricMap = new AbsoluteMetricMap();
 
@@ -560,7 +555,7 @@ public class FullTableScanAbsoluteMetricConverter {
     }
   }
 
-  private static class SequentialMetrics {
+  static class SequentialMetrics {
     private Collection<AbsoluteMetricQueueItem> regularMetrics = Lists.newArrayList();
 
     private Date updateTimestamp;
@@ -82,23 +82,38 @@ public class InstanceDataDnsResolver extends DnsResolver {
     } else if ( RequestType.PTR.apply( query ) ) {
       return name.equals( INSTANCE_PTR );
     } else {
-      boolean nameMatch = false;
-      if ( INSTANCE_DATA.equals( name ) ) {
-        nameMatch = true;
-      } else if ( name.subdomain( DomainNames.internalSubdomain( ) )
-                  && RELATIVE_INSTANCE_DATA.equals( DomainNames.relativize( name, DomainNames.internalSubdomain( ) ) ) ) {
-        nameMatch = true;
-      } else if ( name.subdomain( DomainNames.internalSubdomain( Eucalyptus.class ) )
-                  && RELATIVE_INSTANCE_DATA.equals( DomainNames.relativize( name, DomainNames.internalSubdomain( Eucalyptus.class ) ) ) ) {
-        nameMatch = true;
-      } else if ( InstanceDomainNames.isInstanceSubdomain( name )
-                  && RELATIVE_INSTANCE_DATA.equals( DomainNames.relativize( name, InstanceDomainNames.lookupInstanceDomain( name ) ) ) ) {
-        nameMatch = true;
-      }
       // subnet check can be slow, so put last
-      return nameMatch && Subnets.isSystemManagedAddress( source );
+      return isInstanceDataName( name ) && Subnets.isSystemManagedAddress( source );
     }       
   }
+
+  /**
+   * Instance data names are only answered for system managed sources.
+   */
+  @Override
+  public Object horizon( final DnsRequest request ) {
+    final Record query = request.getQuery( );
+    return enabled && !RequestType.PTR.apply( query ) && isInstanceDataName( query.getName( ) ) ?
+        Subnets.isSystemManagedAddress( request.getRemoteAddress( ) ) :
+        null;
+  }
+
+  private static boolean isInstanceDataName( final Name name ) {
+    boolean nameMatch = false;
+    if ( INSTANCE_DATA.equals( name ) ) {
+      nameMatch = true;
+    } else if ( name.subdomain( DomainNames.internalSubdomain( ) )
+                && RELATIVE_INSTANCE_DATA.equals( DomainNames.relativize( name, DomainNames.internalSubdomain( ) ) ) ) {
+      nameMatch = true;
+    } else if ( name.subdomain( DomainNames.internalSubdomain( Eucalyptus.class ) )
+                && RELATIVE_INSTANCE_DATA.equals( DomainNames.relativize( name, DomainNames.internalSubdomain( Eucalyptus.class ) ) ) ) {
+      nameMatch = true;
+    } else if ( InstanceDomainNames.isInstanceSubdomain( name )
+                && RELATIVE_INSTANCE_DATA.equals( DomainNames.relativize( name, InstanceDomainNames.lookupInstanceDomain( name ) ) ) ) {
+      nameMatch = true;
+    }
+    return nameMatch;
+  }
   
   @Override
   public DnsResponse lookupRecords( DnsRequest request ) {
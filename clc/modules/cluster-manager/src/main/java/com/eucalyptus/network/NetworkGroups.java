@@ -106,6 +106,8 @@ public class NetworkGroups extends com.eucalyptus.compute.common.internal.networ
   public static volatile Integer      MIN_BROADCAST_INTERVAL        = 5;
   @ConfigurableField( description = "Maximum time to apply network information (seconds).", initial = "120" )
   public static volatile Integer      MAX_BROADCAST_APPLY           = 120;
+  @ConfigurableField( description = "Maximum time to reuse unchanged network information before rebuilding (seconds), zero to always rebuild.", initial = "60" )
+  public static volatile Integer      MAX_BROADCAST_REUSE           = 60;
 
   public static NetworkGroup delete( final String groupId ) throws MetadataException {
     try ( final TransactionResource db = Entities.transactionFor( NetworkGroup.class ) ) {
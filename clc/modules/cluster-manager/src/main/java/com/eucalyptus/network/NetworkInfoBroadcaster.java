@@ -100,6 +100,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -116,6 +117,7 @@ public class NetworkInfoBroadcaster {
   private static final AtomicLong lastBroadcastTime = new AtomicLong( 0L );
   private static final Lock lastBroadcastTimeLock = new ReentrantLock( );
   private static final Semaphore activeBroadcastSemaphore = new Semaphore( 1 );
+  private static final AtomicReference<BroadcastBuild> lastBroadcastBuild = new AtomicReference<>( );
   private static final EntityCache<VmInstance,NetworkInfoBroadcasts.VmInstanceNetworkView> instanceCache = new EntityCache<>(
       VmInstance.named(null),
       Restrictions.not( VmInstance.criterion( TORNDOWN.array( ) ) ),
@@ -234,30 +236,40 @@ public class NetworkInfoBroadcaster {
 
       final NetworkInfoSource source = cacheSource( );
       final Set<String> dirtyPublicAddresses = PublicAddresses.dirtySnapshot( );
-      final Set<RouteKey> invalidStateRoutes = Sets.newHashSetWithExpectedSize( 50 );
+      final String clcHost = Topology.lookup( Eucalyptus.class ).getInetAddress( ).getHostAddress( );
       final int sourceFingerprint = fingerprint( source, clusters, dirtyPublicAddresses, NetworkGroups.NETWORK_CONFIGURATION );
-      final NetworkInfo info = NetworkInfoBroadcasts.buildNetworkConfiguration(
-              networkConfiguration,
-              source,
-              Suppliers.ofInstance( clusters ),
-              Suppliers.ofInstance( otherClusters ),
-              new Supplier<String>( ) {
-                @Override
-                public String get() {
-                  return Topology.lookup( Eucalyptus.class ).getInetAddress( ).getHostAddress( );
-                }
-              },
-              new Function<List<String>, List<String>>( ) {
-                @Nullable
-                @Override
-                public List<String> apply( final List<String> defaultServers ) {
-                  return NetworkConfigurations.loadSystemNameservers( defaultServers );
-                }
-              },
-              dirtyPublicAddresses,
-              invalidStateRoutes
-          );
-          info.setVersion( BaseEncoding.base16( ).lowerCase( ).encode( Ints.toByteArray( sourceFingerprint ) ) );
+      final int buildFingerprint = buildFingerprint( sourceFingerprint, clusters, otherClusters, clcHost );
+      final BroadcastBuild lastBuild = lastBroadcastBuild.get( );
+      final NetworkInfo info;
+      final Set<RouteKey> invalidStateRoutes;
+      if ( lastBuild != null && lastBuild.isReusable( buildFingerprint ) ) {
+        logger.debug( "Reusing unchanged network information version " + lastBuild.info.getVersion( ) );
+        info = lastBuild.info;
+        invalidStateRoutes = lastBuild.invalidStateRoutes;
+      } else {
+        final long buildStart = System.currentTimeMillis( );
+        invalidStateRoutes = Sets.newHashSetWithExpectedSize( 50 );
+        info = NetworkInfoBroadcasts.buildNetworkConfiguration(
+            networkConfiguration,
+            source,
+            Suppliers.ofInstance( clusters ),
+            Suppliers.ofInstance( otherClusters ),
+            Suppliers.ofInstance( clcHost ),
+            new Function<List<String>, List<String>>( ) {
+              @Nullable
+              @Override
+              public List<String> apply( final List<String> defaultServers ) {
+                return NetworkConfigurations.loadSystemNameservers( defaultServers );
+              }
+            },
+            dirtyPublicAddresses,
+            invalidStateRoutes
+        );
+        info.setVersion( BaseEncoding.base16( ).lowerCase( ).encode( Ints.toByteArray( sourceFingerprint ) ) );
+        lastBroadcastBuild.set( new BroadcastBuild( buildFingerprint, info, invalidStateRoutes ) );
+        logger.debug( "Built network information version " + info.getVersion( ) + " in " +
+            ( System.currentTimeMillis( ) - buildStart ) + "ms" );
+      }
 
       if ( !invalidStateRoutes.isEmpty( ) ) {
         vpcRouteStateInvalidator.accept( invalidStateRoutes );
@@ -300,6 +312,55 @@ public class NetworkInfoBroadcaster {
     return hasher.hash( ).asInt( );
   }
 
+  /**
+   * Fingerprint for all inputs to the network information build, this covers
+   * items that do not affect the broadcast version.
+   */
+  private static int buildFingerprint(
+      final int sourceFingerprint,
+      final List<Cluster> clusters,
+      final List<Cluster> otherClusters,
+      final String clcHost
+  ) {
+    final Hasher hasher = goodFastHash( 32 ).newHasher( );
+    hasher.putInt( sourceFingerprint );
+    for ( final Cluster cluster : Iterables.concat( clusters, otherClusters ) ) {
+      hasher.putString( cluster.getPartition( ), StandardCharsets.UTF_8 );
+      hasher.putChar( '@' );
+      hasher.putString( String.valueOf( cluster.getHostName( ) ), StandardCharsets.UTF_8 );
+      for ( final String node : cluster.getNodeMap( ).keySet( ) ) {
+        hasher.putChar( ',' );
+        hasher.putString( node, StandardCharsets.UTF_8 );
+      }
+      hasher.putChar( ';' );
+    }
+    hasher.putString( clcHost, StandardCharsets.UTF_8 );
+    return hasher.hash( ).asInt( );
+  }
+
+  /**
+   * Network information built for a broadcast, reused while the build inputs
+   * are unchanged so that unchanged views are not rebuilt on every broadcast.
+   */
+  private static final class BroadcastBuild {
+    private final int buildFingerprint;
+    private final long buildTime;
+    private final NetworkInfo info;
+    private final Set<RouteKey> invalidStateRoutes;
+
+    BroadcastBuild( final int buildFingerprint, final NetworkInfo info, final Set<RouteKey> invalidStateRoutes ) {
+      this.buildFingerprint = buildFingerprint;
+      this.buildTime = System.currentTimeMillis( );
+      this.info = info;
+      this.invalidStateRoutes = invalidStateRoutes;
+    }
+
+    boolean isReusable( final int buildFingerprint ) {
+      return this.buildFingerprint == buildFingerprint &&
+          ( buildTime + TimeUnit.SECONDS.toMillis( NetworkGroups.MAX_BROADCAST_REUSE ) ) > System.currentTimeMillis( );
+    }
+  }
+
   @SuppressWarnings( { "WeakerAccess", "unused" } )
   public static class NetworkInfoBroadcasterEventListener implements EventListener<ClockTick> {
     private final int intervalTicks = 3;
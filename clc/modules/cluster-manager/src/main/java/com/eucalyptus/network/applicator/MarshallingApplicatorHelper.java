@@ -29,8 +29,13 @@
 package com.eucalyptus.network.applicator;
 
 import java.io.StringWriter;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
 import org.apache.log4j.Logger;
 import com.eucalyptus.cluster.common.broadcast.NetworkInfo;
 import com.eucalyptus.util.TypedKey;
@@ -44,6 +49,21 @@ class MarshallingApplicatorHelper {
 
   private static final TypedKey<String> MARSHALLED_INFO_KEY = TypedKey.create( "MarshalledNetworkInfo" );
 
+  private static final int MAX_POOLED_MARSHALLERS = 4;
+
+  /**
+   * JAXB contexts are thread safe and expensive to create, marshallers are not
+   * thread safe so they are pooled.
+   */
+  private static volatile JAXBContext jaxbContext;
+  private static final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<>( );
+
+  /**
+   * Document for the last marshalled network information, reused when an
+   * unchanged network information is broadcast again.
+   */
+  private static final AtomicReference<MarshalledNetworkInfo> lastMarshalled = new AtomicReference<>( );
+
   static void clearMarshalledNetworkInfoCache( final ApplicatorContext context ) {
     context.removeAttribute( MARSHALLED_INFO_KEY );
   }
@@ -52,11 +72,13 @@ class MarshallingApplicatorHelper {
     String networkInfo = context.getAttribute( MARSHALLED_INFO_KEY );
     if ( networkInfo == null ) try {
       final NetworkInfo info = context.getNetworkInfo( );
-      final JAXBContext jc = JAXBContext.newInstance( NetworkInfo.class.getPackage( ).getName( ) );
-      final StringWriter writer = new StringWriter( 8192 );
-      jc.createMarshaller().marshal( info, writer );
-
-      networkInfo = writer.toString( );
+      final MarshalledNetworkInfo marshalled = lastMarshalled.get( );
+      if ( marshalled != null && marshalled.isFor( info ) ) {
+        networkInfo = marshalled.getMarshalled( );
+      } else {
+        networkInfo = marshal( info );
+        lastMarshalled.set( new MarshalledNetworkInfo( info, networkInfo ) );
+      }
       if ( logger.isTraceEnabled( ) ) {
         logger.trace( "Broadcasting network information:\n${networkInfo}" );
       }
@@ -67,4 +89,60 @@ class MarshallingApplicatorHelper {
     return networkInfo;
   }
 
+  private static String marshal( final NetworkInfo info ) throws JAXBException {
+    Marshaller marshaller = marshallers.poll( );
+    if ( marshaller == null ) {
+      marshaller = getContext( ).createMarshaller( );
+    }
+    final StringWriter writer = new StringWriter( 8192 );
+    marshaller.marshal( info, writer );
+    if ( marshallers.size( ) < MAX_POOLED_MARSHALLERS ) {
+      marshallers.offer( marshaller );
+    }
+    return writer.toString( );
+  }
+
+  private static JAXBContext getContext( ) throws JAXBException {
+    JAXBContext jc = jaxbContext;
+    if ( jc == null ) {
+      synchronized ( MarshallingApplicatorHelper.class ) {
+        jc = jaxbContext;
+        if ( jc == null ) {
+          jaxbContext = jc = JAXBContext.newInstance( NetworkInfo.class.getPackage( ).getName( ) );
+        }
+      }
+    }
+    return jc;
+  }
+
+  /**
+   * Marshalled document for a network information instance, the applied
+   * version and time are tracked as they are updated after building.
+   */
+  private static final class MarshalledNetworkInfo {
+    private final NetworkInfo info;
+    private final String version;
+    private final String appliedVersion;
+    private final String appliedTime;
+    private final String marshalled;
+
+    MarshalledNetworkInfo( final NetworkInfo info, final String marshalled ) {
+      this.info = info;
+      this.version = info.getVersion( );
+      this.appliedVersion = info.getAppliedVersion( );
+      this.appliedTime = info.getAppliedTime( );
+      this.marshalled = marshalled;
+    }
+
+    boolean isFor( final NetworkInfo info ) {
+      return this.info == info &&
+          Objects.equals( version, info.getVersion( ) ) &&
+          Objects.equals( appliedVersion, info.getAppliedVersion( ) ) &&
+          Objects.equals( appliedTime, info.getAppliedTime( ) );
+    }
+
+    String getMarshalled( ) {
+      return marshalled;
+    }
+  }
 }
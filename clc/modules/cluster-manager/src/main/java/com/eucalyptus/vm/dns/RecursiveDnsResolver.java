@@ -46,11 +46,15 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.log4j.Logger;
 import org.xbill.DNS.Cache;
 import org.xbill.DNS.Credibility;
 import org.xbill.DNS.Lookup;
+import org.xbill.DNS.Message;
 import org.xbill.DNS.NSRecord;
 import org.xbill.DNS.Name;
 import org.xbill.DNS.RRset;
@@ -61,6 +65,9 @@ import org.xbill.DNS.Type;
 import com.eucalyptus.bootstrap.Bootstrap;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.configurable.PropertyChangeListeners;
+import com.eucalyptus.util.Exceptions;
+import com.eucalyptus.util.Pair;
 import com.eucalyptus.util.Subnets;
 import com.eucalyptus.util.dns.DnsResolvers.DnsResolver;
 import com.eucalyptus.util.dns.DnsResolvers.DnsResponse;
@@ -71,6 +78,7 @@ import com.eucalyptus.compute.common.internal.vm.VmInstance;
 import com.eucalyptus.vm.VmInstances;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.net.InetAddresses;
 
@@ -97,6 +105,26 @@ public class RecursiveDnsResolver extends DnsResolver {
       initial = "true" )
   public static Boolean enabled = Boolean.TRUE;
 
+  @ConfigurableField( displayName = "cache_size",
+      description = "Maximum number of names in the shared recursive DNS cache.",
+      initial = "50000",
+      changeListener = PropertyChangeListeners.IsPositiveInteger.class )
+  public static volatile Integer cacheSize = 50000;
+
+  @ConfigurableField( displayName = "negative_ttl",
+      description = "Maximum time in seconds to cache negative (NXDOMAIN/NODATA) recursive DNS responses.",
+      initial = "300",
+      changeListener = PropertyChangeListeners.IsPositiveInteger.class )
+  public static volatile Integer negativeTtl = 300;
+
+  /**
+   * Cache shared across requests, entries expire according to record TTL
+   */
+  private static final Cache sharedCache = new Cache( );
+
+  private static final ConcurrentMap<Pair<Name,Integer>,CompletableFuture<DnsResponse>> lookupsInProgress =
+      Maps.newConcurrentMap( );
+
   private static List<Name> subdomainsForName( Name name ) {
     final List<Name> names = Lists.newArrayList( name );
     final String sub = parentDomainForName( name );
@@ -136,7 +164,40 @@ public class RecursiveDnsResolver extends DnsResolver {
       .recursive( )
       .refused();
 
-    final Cache cache = new NonExpiringCache( );
+    // identical lookups in progress share the result
+    final Pair<Name,Integer> lookupKey = Pair.pair( name, type );
+    final CompletableFuture<DnsResponse> lookup = new CompletableFuture<>( );
+    final CompletableFuture<DnsResponse> existingLookup = lookupsInProgress.putIfAbsent( lookupKey, lookup );
+    if ( existingLookup != null ) {
+      try {
+        return existingLookup.get( );
+      } catch ( final InterruptedException e ) {
+        Thread.currentThread( ).interrupt( );
+        throw Exceptions.toUndeclared( e );
+      } catch ( final ExecutionException e ) {
+        throw Exceptions.toUndeclared( e.getCause( ) );
+      }
+    }
+    try {
+      final DnsResponse response = lookupRecords( name, type );
+      lookup.complete( response );
+      return response;
+    } catch ( final RuntimeException e ) {
+      lookup.completeExceptionally( e );
+      throw e;
+    } finally {
+      lookupsInProgress.remove( lookupKey, lookup );
+    }
+  }
+
+  private static DnsResponse lookupRecords( final Name name, final int type ) {
+    if ( sharedCache.getMaxEntries( ) != cacheSize ) {
+      sharedCache.setMaxEntries( cacheSize );
+    }
+    if ( sharedCache.getMaxNCache( ) != negativeTtl ) {
+      sharedCache.setMaxNCache( negativeTtl );
+    }
+    final Cache cache = new RequestCache( sharedCache );
     Lookup aLookup = new Lookup( name, type );
     aLookup.setCache( cache );
     Record[] found = aLookup.run( );
@@ -206,14 +267,14 @@ public class RecursiveDnsResolver extends DnsResolver {
       }
     }
 
-    DnsResponse response = DnsResponse.forName( query.getName( ) )
+    DnsResponse response = DnsResponse.forName( name )
         .recursive( )
         .withAuthority( Lists.newArrayList( authority ) )
         .withAdditional( Lists.newArrayList( additional ) )
         .answer( Lists.newArrayList( answer ) );
 
     if(aLookup.getResult() == Lookup.HOST_NOT_FOUND && queriedrrs.size()==0){
-        response = DnsResponse.forName( query.getName( ) )
+        response = DnsResponse.forName( name )
           .recursive( )
           .withAuthority( Lists.newArrayList( authority ) )
           .nxdomain();
@@ -246,6 +307,16 @@ public class RecursiveDnsResolver extends DnsResolver {
     return false;
   }
 
+  /**
+   * Recursive lookups are refused unless the source is system managed.
+   */
+  @Override
+  public Object horizon( final DnsRequest request ) {
+    return enabled && !DomainNames.isSystemSubdomain( request.getQuery( ).getName( ) ) ?
+        Subnets.isSystemManagedAddress( request.getRemoteAddress( ) ) :
+        null;
+  }
+
   @Override
   public int getOrder( ) {
     return DEFAULT_ORDER + 1;
@@ -255,4 +326,32 @@ public class RecursiveDnsResolver extends DnsResolver {
   public String toString( ) {
     return this.getClass( ).getSimpleName( );
   }
+
+  /**
+   * Request cache that does not expire records during resolution, records
+   * not found are looked up in the shared cache which is updated with all
+   * responses.
+   */
+  private static final class RequestCache extends NonExpiringCache {
+    private final Cache sharedCache;
+
+    private RequestCache( final Cache sharedCache ) {
+      this.sharedCache = sharedCache;
+    }
+
+    @Override
+    public SetResponse lookupRecords( final Name name, final int type, final int minCred ) {
+      final SetResponse response = super.lookupRecords( name, type, minCred );
+      if ( response.isUnknown( ) ) {
+        return sharedCache.lookupRecords( name, type, minCred );
+      }
+      return response;
+    }
+
+    @Override
+    public SetResponse addMessage( final Message in ) {
+      sharedCache.addMessage( in );
+      return super.addMessage( in );
+    }
+  }
 }
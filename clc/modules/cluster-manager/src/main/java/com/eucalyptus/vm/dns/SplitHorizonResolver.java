@@ -251,6 +251,16 @@ public abstract class SplitHorizonResolver extends DnsResolver {
     return false;
   }
 
+  /**
+   * Instance public names are answered depending on the network of the source.
+   */
+  protected static Object externalNameHorizon( final DnsRequest request ) {
+    final Record query = request.getQuery( );
+    return enabled && !RequestType.PTR.apply( query ) && query.getName( ).subdomain( InstanceDomainNames.EXTERNAL.get( ) ) ?
+        lookupNetwork( request.getRemoteAddress( ) ) :
+        null;
+  }
+
   private static Optional<VmDnsInfo> lookupAny( InetAddress ip ) {
     return lookupPrivate( ip ).or( lookupPublic( ip ) );
   }
@@ -328,6 +338,11 @@ public abstract class SplitHorizonResolver extends DnsResolver {
             && query.getName( ).subdomain( InstanceDomainNames.EXTERNAL.get( ) );
     }
 
+    @Override
+    public Object horizon( final DnsRequest request ) {
+      return externalNameHorizon( request );
+    }
+
     @Override
     public DnsResponse lookupRecords( DnsRequest request ) {
       final Record query = request.getQuery( );
@@ -372,6 +387,11 @@ public abstract class SplitHorizonResolver extends DnsResolver {
             && !lookupNetwork( source ).isPresent( )
             && query.getName( ).subdomain( InstanceDomainNames.EXTERNAL.get( ) );
     }
+
+    @Override
+    public Object horizon( final DnsRequest request ) {
+      return externalNameHorizon( request );
+    }
     
     @Override
     public DnsResponse lookupRecords( DnsRequest request ) {
@@ -0,0 +1,211 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.cluster.callback.reporting
+
+import com.eucalyptus.cloudwatch.common.msgs.Dimension
+import com.eucalyptus.cloudwatch.common.msgs.Dimensions
+import com.eucalyptus.cloudwatch.common.msgs.MetricDatum
+import com.eucalyptus.cluster.callback.reporting.CachedAbsoluteMetricConverter.HistoryStore
+import com.eucalyptus.cluster.callback.reporting.FullTableScanAbsoluteMetricConverter.AbsoluteMetricMap.NamespaceMetricNameAndDimension
+import groovy.transform.CompileStatic
+import org.junit.Test
+
+import java.util.concurrent.TimeUnit
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+
+/**
+ * Unit tests for the cached absolute metric converter
+ */
+@CompileStatic
+class CachedAbsoluteMetricConverterTest {
+
+  private static final long START = 1_500_000_000_000L
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis( 1 )
+
+  @Test
+  void testHistoryLoadedOnFirstUse( ) {
+    MapHistoryStore store = new MapHistoryStore( )
+    store.stored.put( key( 'i-00000001' ), CachedAbsoluteMetricConverter.history( key( 'i-00000001' ), new Date( START ), 100d ) )
+    CachedAbsoluteMetricConverter converter = new CachedAbsoluteMetricConverter( store )
+
+    List<AbsoluteMetricQueueItem> metrics = converter.convert( [ item( 'i-00000001', START + MINUTE, 160d ) ], START + MINUTE )
+    assertEquals( 'metrics', 1, metrics.size( ) )
+    assertEquals( 'sum', 60d, metrics[0].metricDatum.statisticValues.sum, 0.1d )
+    assertEquals( 'loads', [ [ key( 'i-00000001' ) ] ], store.loads )
+
+    converter.convert( [ item( 'i-00000001', START + 2 * MINUTE, 200d ) ], START + 2 * MINUTE )
+    assertEquals( 'loads after cached', 1, store.loads.size( ) )
+  }
+
+  @Test
+  void testOnlyMissingHistoryLoaded( ) {
+    MapHistoryStore store = new MapHistoryStore( )
+    CachedAbsoluteMetricConverter converter = new CachedAbsoluteMetricConverter( store )
+
+    assertEquals( 'first point metrics', 0,
+        converter.convert( [ item( 'i-00000001', START, 100d ) ], START ).size( ) )
+    assertEquals( 'second point metrics', 1, converter.convert( [
+        item( 'i-00000001', START + MINUTE, 160d ),
+        item( 'i-00000002', START + MINUTE, 10d ),
+    ], START + MINUTE ).size( ) )
+    assertEquals( 'loads', [ [ key( 'i-00000001' ) ], [ key( 'i-00000002' ) ] ], store.loads )
+  }
+
+  @Test
+  void testFlushWhenIntervalElapsed( ) {
+    MapHistoryStore store = new MapHistoryStore( )
+    CachedAbsoluteMetricConverter converter = new CachedAbsoluteMetricConverter( store )
+    converter.convert( [ item( 'i-00000001', START, 100d ) ], START )
+
+    converter.maybeFlush( START, 5 * MINUTE )
+    assertTrue( 'stored before interval', store.stored.isEmpty( ) )
+
+    converter.convert( [ item( 'i-00000001', START + MINUTE, 160d ) ], START + MINUTE )
+    converter.maybeFlush( START + MINUTE, MINUTE )
+    assertEquals( 'stored value', 160d, store.stored.get( key( 'i-00000001' ) ).lastMetricValue, 0d )
+    assertEquals( 'stores', 1, store.stores )
+
+    converter.maybeFlush( START + MINUTE, MINUTE )
+    assertEquals( 'stores when clean', 1, store.stores )
+  }
+
+  @Test
+  void testFlushWhenIdle( ) {
+    MapHistoryStore store = new MapHistoryStore( )
+    CachedAbsoluteMetricConverter converter = new CachedAbsoluteMetricConverter( store )
+    converter.convert( [ item( 'i-00000001', START, 100d ) ], START )
+    converter.maybeFlush( START, TimeUnit.HOURS.toMillis( 1 ) )
+
+    converter.maybeFlush( START + CachedAbsoluteMetricConverter.IDLE_FLUSH_MS, TimeUnit.HOURS.toMillis( 1 ) )
+    assertEquals( 'stored value', 100d, store.stored.get( key( 'i-00000001' ) ).lastMetricValue, 0d )
+  }
+
+  @Test
+  void testFailedFlushRetried( ) {
+    MapHistoryStore store = new MapHistoryStore( failures: 1 )
+    CachedAbsoluteMetricConverter converter = new CachedAbsoluteMetricConverter( store )
+    converter.convert( [ item( 'i-00000001', START, 100d ) ], START )
+
+    assertFalse( 'first flush', converter.flush( ) )
+    assertTrue( 'second flush', converter.flush( ) )
+    assertEquals( 'stored value', 100d, store.stored.get( key( 'i-00000001' ) ).lastMetricValue, 0d )
+  }
+
+  @Test
+  void testExpiredHistoryNotWritten( ) {
+    MapHistoryStore store = new MapHistoryStore( )
+    CachedAbsoluteMetricConverter converter = new CachedAbsoluteMetricConverter( store )
+    converter.convert( [ item( 'i-00000001', START, 100d ), item( 'i-00000002', START + MINUTE, 10d ) ], START + MINUTE )
+
+    converter.expireBefore( new Date( START + 1 ) )
+    assertTrue( 'flush', converter.flush( ) )
+    assertEquals( 'stored keys', [ key( 'i-00000002' ) ] as Set, store.stored.keySet( ) )
+
+    converter.convert( [ item( 'i-00000001', START + 2 * MINUTE, 160d ) ], START + 2 * MINUTE )
+    assertEquals( 'loads', [ key( 'i-00000001' ) ], store.loads.last( ) )
+  }
+
+  @Test
+  void testInvalidateWritesAndReloads( ) {
+    MapHistoryStore store = new MapHistoryStore( )
+    CachedAbsoluteMetricConverter converter = new CachedAbsoluteMetricConverter( store )
+    converter.convert( [ item( 'i-00000001', START, 100d ) ], START )
+
+    converter.invalidate( )
+    assertEquals( 'stored value', 100d, store.stored.get( key( 'i-00000001' ) ).lastMetricValue, 0d )
+
+    // value updated elsewhere while not cached
+    store.stored.put( key( 'i-00000001' ), CachedAbsoluteMetricConverter.history( key( 'i-00000001' ), new Date( START + MINUTE ), 130d ) )
+    List<AbsoluteMetricQueueItem> metrics = converter.convert( [ item( 'i-00000001', START + 2 * MINUTE, 160d ) ], START + 2 * MINUTE )
+    assertEquals( 'metrics', 1, metrics.size( ) )
+    assertEquals( 'sum', 30d, metrics[0].metricDatum.statisticValues.sum, 0.1d )
+  }
+
+  @Test
+  void testIdleConverterReloads( ) {
+    MapHistoryStore store = new MapHistoryStore( )
+    CachedAbsoluteMetricConverter converter = new CachedAbsoluteMetricConverter( store )
+    converter.convert( [ item( 'i-00000001', START, 100d ) ], START )
+
+    long later = START + AbsoluteMetricHelper.MAX_DIFFERENCE_DURATION_MS + MINUTE
+    converter.convert( [ item( 'i-00000001', later, 160d ) ], later )
+    assertEquals( 'stores', 1, store.stores )
+    assertEquals( 'loads', 2, store.loads.size( ) )
+  }
+
+  private static NamespaceMetricNameAndDimension key( String instanceId ) {
+    new NamespaceMetricNameAndDimension( AbsoluteMetricHelper.AWS_EC2_NAMESPACE, 'NetworkInAbsolute',
+        AbsoluteMetricHelper.INSTANCE_ID_DIM_NAME, instanceId )
+  }
+
+  private static AbsoluteMetricQueueItem item( String instanceId, long timestamp, double value ) {
+    AbsoluteMetricQueueItem item = new AbsoluteMetricQueueItem( )
+    item.accountId = '000000000000'
+    item.namespace = AbsoluteMetricHelper.AWS_EC2_NAMESPACE
+    item.metricDatum = new MetricDatum(
+        metricName: 'NetworkInAbsolute',
+        dimensions: new Dimensions( new Dimension( AbsoluteMetricHelper.INSTANCE_ID_DIM_NAME, instanceId ) ),
+        timestamp: new Date( timestamp ),
+        value: value
+    )
+    item
+  }
+
+  private static class MapHistoryStore implements HistoryStore {
+    final Map<NamespaceMetricNameAndDimension, AbsoluteMetricHistory> stored = [:]
+    final List<List<NamespaceMetricNameAndDimension>> loads = []
+    int stores = 0
+    int failures = 0
+
+    @Override
+    Map<NamespaceMetricNameAndDimension, AbsoluteMetricHistory> load( Collection<NamespaceMetricNameAndDimension> keys ) {
+      loads.add( new ArrayList<NamespaceMetricNameAndDimension>( keys ) )
+      Map<NamespaceMetricNameAndDimension, AbsoluteMetricHistory> loaded = [:]
+      for ( NamespaceMetricNameAndDimension key : keys ) {
+        AbsoluteMetricHistory history = stored.get( key )
+        if ( history != null ) {
+          loaded.put( key, CachedAbsoluteMetricConverter.history( key, history.timestamp, history.lastMetricValue ) )
+        }
+      }
+      loaded
+    }
+
+    @Override
+    void store( Collection<AbsoluteMetricHistory> histories ) {
+      if ( failures-- > 0 ) throw new RuntimeException( 'Store failure' )
+      stores++
+      for ( AbsoluteMetricHistory history : histories ) {
+        stored.put( CachedAbsoluteMetricConverter.key( history ), history )
+      }
+    }
+  }
+}
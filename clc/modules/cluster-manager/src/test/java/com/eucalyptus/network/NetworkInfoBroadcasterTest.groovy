@@ -72,6 +72,7 @@ import com.google.common.base.Optional
 import com.google.common.base.Supplier
 import com.eucalyptus.cluster.common.msgs.NodeInfo
 import org.junit.BeforeClass
+import org.junit.Ignore
 import org.junit.Test
 
 import static org.junit.Assert.*
@@ -1155,6 +1156,61 @@ class NetworkInfoBroadcasterTest {
     ), info )
   }
 
+  @Ignore("Manual development test")
+  @Test
+  void testBroadcastBuildTiming( ) {
+    [ 100, 1000, 5000, 10000 ].each { int instanceCount ->
+      List<NetworkInfoBroadcasts.VmInstanceNetworkView> instances = (1..instanceCount).collect { int index ->
+        instance( String.format( 'i-%08x', index ), 'cluster1', "node${index%10}", '000000000002',
+            String.format( 'd0:0d:00:00:%02x:%02x', (index>>8)&0xff, index&0xff ),
+            "2.0.${(index>>8)&0xff}.${index&0xff}", "10.0.${(index>>8)&0xff}.${index&0xff}",
+            null, null, [ String.format( 'sg-%08x', index%100 ) ] )
+      }
+      List<NetworkInfoBroadcasts.NetworkGroupNetworkView> groups = (0..<100).collect { int index ->
+        group( String.format( 'sg-%08x', index ), '000000000002', null, [ permission( String.format( 'sg-%08x', index ), '000000000002' ) ], [] )
+      }
+      NetworkInfoBroadcasts.NetworkInfoSource source = new NetworkInfoBroadcasts.NetworkInfoSource( ) {
+        @Override Iterable<NetworkInfoBroadcasts.VmInstanceNetworkView> getInstances() { instances }
+        @Override Iterable<NetworkInfoBroadcasts.NetworkGroupNetworkView> getSecurityGroups() { groups }
+        @Override Iterable<NetworkInfoBroadcasts.VpcNetworkView> getVpcs() { [] }
+        @Override Iterable<NetworkInfoBroadcasts.SubnetNetworkView> getSubnets() { [] }
+        @Override Iterable<NetworkInfoBroadcasts.DhcpOptionSetNetworkView> getDhcpOptionSets() { [] }
+        @Override Iterable<NetworkInfoBroadcasts.NetworkAclNetworkView> getNetworkAcls() { [] }
+        @Override Iterable<NetworkInfoBroadcasts.RouteTableNetworkView> getRouteTables() { [] }
+        @Override Iterable<NetworkInfoBroadcasts.InternetGatewayNetworkView> getInternetGateways() { [] }
+        @Override Iterable<NetworkInfoBroadcasts.NetworkInterfaceNetworkView> getNetworkInterfaces() { [] }
+        @Override Iterable<NetworkInfoBroadcasts.NatGatewayNetworkView> getNatGateways() { [] }
+        @Override Map<String,Iterable<? extends NetworkInfoBroadcasts.VmInstanceNetworkView>> getView() { [:] }
+      }
+      Optional<NetworkConfiguration> configuration = Optional.of( new NetworkConfiguration(
+          instanceDnsDomain: 'eucalyptus.internal',
+          instanceDnsServers: [ '1.2.3.4' ],
+          publicIps: [ '2.0.0.2-2.0.255.255' ],
+          privateIps: [ '10.0.0.0-10.0.255.255' ],
+          subnets: [ new EdgeSubnet( name: 'default', subnet: '10.0.0.0', netmask: '255.255.0.0', gateway: '10.0.0.1' ) ],
+          clusters: [ new ConfigCluster( name: 'cluster1', subnet: new EdgeSubnet( name: 'default' ) ) ]
+      ) )
+      List<Cluster> clusters = [ cluster( 'cluster1', '6.6.6.6', (0..<10).collect{ int index -> "node${index}".toString( ) } ) ]
+      long totalMillis = 0
+      int iterations = 10
+      (0..iterations).each { int iteration ->
+        long start = System.currentTimeMillis( )
+        NetworkInfoBroadcasts.buildNetworkConfiguration(
+            configuration,
+            source,
+            { clusters } as Supplier<List<Cluster>>,
+            { [ ] } as Supplier<List<Cluster>>,
+            { '1.1.1.1' } as Supplier<String>,
+            { [ '127.0.0.1' ] } as Function<List<String>, List<String>>,
+            [] as Set<String>,
+            [] as Set<RouteKey>
+        )
+        if ( iteration > 0 ) totalMillis += System.currentTimeMillis( ) - start // first iteration is warm up
+      }
+      println "Built network information for ${instanceCount} instances in ${totalMillis/iterations}ms (average)"
+    }
+  }
+
   private static Cluster cluster( String partition, String host, List<String> nodes = [ ] ) {
     Cluster cluster = new Cluster( new TestClusterProvider( name: partition, partition: partition, hostName: host ) )
     nodes.each{ String node -> cluster.nodeMap.put( node, new NodeInfo( name: node ) ) }
@@ -42,18 +42,24 @@ public class ClusterEucaConf {
   private final Set<String> nodes;
   private final int nodePort;
   private final int maxInstances;
+  private final int sensorsBatchSize;
+  private final long sensorsTimeoutMs;
 
   public ClusterEucaConf(
       final long creationTime,
       final String scheduler,
       final Set<String> nodes,
       final int nodePort,
-      final int maxInstances ) {
+      final int maxInstances,
+      final int sensorsBatchSize,
+      final long sensorsTimeoutMs ) {
     this.creationTime = creationTime;
     this.scheduler = MoreObjects.firstNonNull( scheduler, "ROUNDROBIN" );
     this.nodes = MoreObjects.firstNonNull( nodes, Collections.emptySet( ) );
     this.nodePort = nodePort;
     this.maxInstances = maxInstances;
+    this.sensorsBatchSize = sensorsBatchSize;
+    this.sensorsTimeoutMs = sensorsTimeoutMs;
   }
 
   public long getCreationTime( ) {
@@ -77,4 +83,18 @@ public class ClusterEucaConf {
   public String getScheduler( ) {
     return scheduler;
   }
+
+  /**
+   * Maximum number of instances to request sensors for in one node request.
+   */
+  public int getSensorsBatchSize( ) {
+    return sensorsBatchSize;
+  }
+
+  /**
+   * Time to wait for node replies when refreshing sensors.
+   */
+  public long getSensorsTimeoutMs( ) {
+    return sensorsTimeoutMs;
+  }
 }
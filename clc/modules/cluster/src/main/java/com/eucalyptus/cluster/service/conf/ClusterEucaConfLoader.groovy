@@ -7,7 +7,10 @@ import com.google.common.collect.Maps
 import com.google.common.collect.Sets
 import com.google.common.net.InetAddresses
 import groovy.transform.CompileStatic
+import javaslang.Tuple
+import javaslang.Tuple2
 
+import java.util.concurrent.atomic.AtomicReference
 import java.util.function.Supplier
 
 /**
@@ -18,19 +21,30 @@ import java.util.function.Supplier
 class ClusterEucaConfLoader {
 
   private final Supplier<Map<String,String>> propertiesSupplier;
+  private final AtomicReference<Tuple2<Map<String,String>,ClusterEucaConf>> lastLoaded = new AtomicReference<>( )
 
   ClusterEucaConfLoader( ) {
-    this( { loadEucalyptusConf( ).collectEntries( Maps.<String,String>newHashMap( ) ){
-      Object key, Object value -> [ String.valueOf(key), String.valueOf(value) ]
-    } } as Supplier<Map<String,String>> )
+    this( new EucalyptusConfPropertiesSupplier( ) )
   }
 
   ClusterEucaConfLoader( final Supplier<Map<String,String> > propertiesSupplier ) {
     this.propertiesSupplier = propertiesSupplier;
   }
 
+  /**
+   * Load the configuration, the previously loaded configuration is returned
+   * if the properties are unchanged.
+   */
   ClusterEucaConf load( ) {
-    load( propertiesSupplier.get( ) )
+    final Map<String,String> properties = propertiesSupplier.get( )
+    final Tuple2<Map<String,String>,ClusterEucaConf> loaded = lastLoaded.get( )
+    if ( loaded != null && loaded._1( ).equals( properties ) ) {
+      loaded._2( )
+    } else {
+      final ClusterEucaConf conf = load( Maps.newHashMap( properties ) ) // copy as defaults are added when loading
+      lastLoaded.set( Tuple.of( properties, conf ) )
+      conf
+    }
   }
 
   ClusterEucaConf load( Map<String,String> properties ) {
@@ -39,13 +53,18 @@ class ClusterEucaConfLoader {
         getTrimmedDequotedProperty( properties, 'SCHEDPOLICY', 'ROUNDROBIN' ),
         Sets.newLinkedHashSet( getFilteredDequotedPropertyList( properties, 'NODES', '', InetAddresses.&isInetAddress ) ),
         getTrimmedDequotedMappedProperty( properties, 'NC_PORT', '8775', Integer.&valueOf ) as Integer,
-        getTrimmedDequotedMappedProperty( properties, 'MAX_INSTANCES_PER_CC', '10000', Integer.&valueOf ) as Integer
+        getTrimmedDequotedMappedProperty( properties, 'MAX_INSTANCES_PER_CC', '10000', Integer.&valueOf ) as Integer,
+        getTrimmedDequotedMappedProperty( properties, 'CC_SENSORS_BATCH_SIZE', '50', Integer.&valueOf ) as Integer,
+        getTrimmedDequotedMappedProperty( properties, 'CC_SENSORS_TIMEOUT_MS', '30000', Long.&valueOf ) as Long
     )
   }
 
-  private static Properties loadEucalyptusConf( ) {
+  private static File eucalyptusConfFile( ) {
+    new File( "${System.getenv('EUCALYPTUS')}/etc/eucalyptus/eucalyptus.conf" )
+  }
+
+  private static Properties loadEucalyptusConf( File eucalyptusConf ) {
     Properties properties = new Properties()
-    File eucalyptusConf = new File( "${System.getenv('EUCALYPTUS')}/etc/eucalyptus/eucalyptus.conf" )
     if ( eucalyptusConf.canRead( ) && eucalyptusConf.isFile( ) ) {
       eucalyptusConf.newInputStream( ).withStream{ BufferedInputStream input ->
         properties.load( input )
@@ -69,4 +88,25 @@ class ClusterEucaConfLoader {
     Lists.newArrayList( splitter.split( getTrimmedDequotedProperty( properties, name, defaultValue ) ) )
         .findAll( filter ) as List<String>
   }
+
+  /**
+   * Supplier for eucalyptus.conf properties that only reloads the file when
+   * it is modified.
+   */
+  private static final class EucalyptusConfPropertiesSupplier implements Supplier<Map<String,String>> {
+    private Tuple2<List<Long>,Map<String,String>> snapshot
+
+    @Override
+    synchronized Map<String,String> get( ) {
+      final File eucalyptusConf = eucalyptusConfFile( )
+      final List<Long> fileVersion = [ eucalyptusConf.lastModified( ), eucalyptusConf.length( ) ]
+      if ( snapshot == null || snapshot._1( ) != fileVersion ) {
+        snapshot = Tuple.of( fileVersion, Collections.unmodifiableMap(
+            loadEucalyptusConf( eucalyptusConf ).collectEntries( Maps.<String,String>newHashMap( ) ){
+              Object key, Object value -> [ String.valueOf(key), String.valueOf(value) ]
+            } as Map<String,String> ) )
+      }
+      snapshot._2( )
+    }
+  }
 }
@@ -29,8 +29,14 @@
 package com.eucalyptus.cluster.service.node;
 
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import com.eucalyptus.cluster.service.vm.VmInfo;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import javaslang.collection.Stream;
 
 /**
@@ -40,11 +46,9 @@ public final class ClusterNode {
   private final String node;
 
   private String iqn;
-  private int coresAvailable;
+  private final AtomicReference<Resources> available;
   private int coresTotal;
-  private int diskAvailable;
   private int diskTotal;
-  private int memoryAvailable;
   private int memoryTotal;
   private String nodeStatus;
   private Boolean migrationCapable;
@@ -52,23 +56,45 @@ public final class ClusterNode {
   private String hypervisor;
 
   private List<VmInfo> vms = Lists.newCopyOnWriteArrayList( );
+  private final LatencyHistogram sensorsLatency = new LatencyHistogram( );
+  private final BiConsumer<ClusterNode,VmInfo> vmListener;
+  private final Set<Consumer<ClusterNode>> availableListeners = Sets.newConcurrentHashSet( );
 
   public ClusterNode( final String node ) {
     this( node, null, 0, 0, 0 );
   }
 
+  /**
+   * Create a node with a listener that is notified when a vm is added.
+   */
+  public ClusterNode( final String node, final BiConsumer<ClusterNode,VmInfo> vmListener ) {
+    this( node, null, 0, 0, 0, vmListener );
+  }
+
   public ClusterNode( final String node,
                       final String iqn,
                       final int cores,
                       final int disk,
                       final int memory
+  ) {
+    this( node, iqn, cores, disk, memory, ( clusterNode, vm ) -> { } );
+  }
+
+  private ClusterNode( final String node,
+                       final String iqn,
+                       final int cores,
+                       final int disk,
+                       final int memory,
+                       final BiConsumer<ClusterNode,VmInfo> vmListener
   ) {
     this.node = node;
+    this.vmListener = vmListener;
     this.nodeStatus = "LOADED";
     this.iqn = iqn;
-    this.coresAvailable = this.coresTotal = cores;
-    this.diskAvailable = this.diskTotal = disk;
-    this.memoryAvailable = this.memoryTotal = memory;
+    this.available = new AtomicReference<>( new Resources( cores, disk, memory, 0, 0, 0 ) );
+    this.coresTotal = cores;
+    this.diskTotal = disk;
+    this.memoryTotal = memory;
   }
 
   public String getIqn( ) {
@@ -80,11 +106,11 @@ public final class ClusterNode {
   }
 
   public int getCoresAvailable( ) {
-    return coresAvailable;
+    return available.get( ).coresAvailable( );
   }
 
   public void setCoresAvailable( final int coresAvailable ) {
-    this.coresAvailable = coresAvailable;
+    update( current -> current.reported( coresAvailable, current.disk, current.memory ) );
   }
 
   public int getCoresTotal( ) {
@@ -96,11 +122,11 @@ public final class ClusterNode {
   }
 
   public int getDiskAvailable( ) {
-    return diskAvailable;
+    return available.get( ).diskAvailable( );
   }
 
   public void setDiskAvailable( final int diskAvailable ) {
-    this.diskAvailable = diskAvailable;
+    update( current -> current.reported( current.cores, diskAvailable, current.memory ) );
   }
 
   public int getDiskTotal( ) {
@@ -112,11 +138,11 @@ public final class ClusterNode {
   }
 
   public int getMemoryAvailable( ) {
-    return memoryAvailable;
+    return available.get( ).memoryAvailable( );
   }
 
   public void setMemoryAvailable( final int memoryAvailable ) {
-    this.memoryAvailable = memoryAvailable;
+    update( current -> current.reported( current.cores, current.disk, memoryAvailable ) );
   }
 
   public int getMemoryTotal( ) {
@@ -167,12 +193,132 @@ public final class ClusterNode {
     return "http://" + node + ":8775/axis2/services/EucalyptusNC";
   }
 
+  /**
+   * Latency for sensor collection requests to this node.
+   */
+  public LatencyHistogram getSensorsLatency( ) {
+    return sensorsLatency;
+  }
+
   public Stream<VmInfo> getVms( ) {
     return Stream.ofAll( vms );
   }
 
+  /**
+   * Set all available resources as reported by the node in one update.
+   *
+   * <p>Resources reserved for instances that are being scheduled are not yet
+   * reflected in the reported values so they remain reserved.</p>
+   */
+  public void setAvailable( final int cores, final int disk, final int memory ) {
+    update( current -> current.reported( cores, disk, memory ) );
+  }
+
+  /**
+   * Atomically reserve resources if available.
+   *
+   * @return True if the resources were reserved
+   * @see #release(int, int, int)
+   * @see #commit(int, int, int)
+   */
+  public boolean reserve( final int cores, final int disk, final int memory ) {
+    Resources current;
+    do {
+      current = available.get( );
+      if ( current.coresAvailable( ) < cores || current.diskAvailable( ) < disk || current.memoryAvailable( ) < memory ) {
+        return false;
+      }
+    } while ( !available.compareAndSet( current, current.reserved( cores, disk, memory ) ) );
+    availableListeners.forEach( listener -> listener.accept( this ) );
+    return true;
+  }
+
+  /**
+   * Release reserved resources, making them available again.
+   */
+  public void release( final int cores, final int disk, final int memory ) {
+    update( current -> current.reserved( -cores, -disk, -memory ) );
+  }
+
+  /**
+   * Commit reserved resources, they remain unavailable until the node next
+   * reports its available resources.
+   */
+  public void commit( final int cores, final int disk, final int memory ) {
+    update( current -> current.reserved( -cores, -disk, -memory )
+        .reported( current.cores - cores, current.disk - disk, current.memory - memory ) );
+  }
+
+  /**
+   * Add a listener that is notified when the available resources change.
+   */
+  public void addAvailableListener( final Consumer<ClusterNode> listener ) {
+    availableListeners.add( listener );
+  }
+
+  public void removeAvailableListener( final Consumer<ClusterNode> listener ) {
+    availableListeners.remove( listener );
+  }
+
+  private void update( final UnaryOperator<Resources> updater ) {
+    available.updateAndGet( updater );
+    availableListeners.forEach( listener -> listener.accept( this ) );
+  }
+
   public VmInfo vm( final VmInfo vm ) {
     vms.add( vm );
+    vmListener.accept( this, vm );
     return vm;
   }
+
+  /**
+   * Resources as last reported by the node along with resources reserved
+   * since, available resources are the difference.
+   */
+  private static final class Resources {
+    private final int cores;
+    private final int disk;
+    private final int memory;
+    private final int coresReserved;
+    private final int diskReserved;
+    private final int memoryReserved;
+
+    private Resources(
+        final int cores,
+        final int disk,
+        final int memory,
+        final int coresReserved,
+        final int diskReserved,
+        final int memoryReserved
+    ) {
+      this.cores = cores;
+      this.disk = disk;
+      this.memory = memory;
+      this.coresReserved = coresReserved;
+      this.diskReserved = diskReserved;
+      this.memoryReserved = memoryReserved;
+    }
+
+    private int coresAvailable( ) {
+      return cores - coresReserved;
+    }
+
+    private int diskAvailable( ) {
+      return disk - diskReserved;
+    }
+
+    private int memoryAvailable( ) {
+      return memory - memoryReserved;
+    }
+
+    private Resources reported( final int cores, final int disk, final int memory ) {
+      return new Resources( cores, disk, memory, coresReserved, diskReserved, memoryReserved );
+    }
+
+    private Resources reserved( final int cores, final int disk, final int memory ) {
+      return new Resources(
+          this.cores, this.disk, this.memory,
+          coresReserved + cores, diskReserved + disk, memoryReserved + memory );
+    }
+  }
 }
@@ -29,13 +29,19 @@
 package com.eucalyptus.cluster.service.node;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Inject;
+import org.apache.log4j.Logger;
 import com.eucalyptus.cluster.common.msgs.NcDescribeInstancesResponseType;
 import com.eucalyptus.cluster.common.msgs.NcDescribeInstancesType;
 import com.eucalyptus.cluster.common.msgs.NcDescribeResourceResponseType;
@@ -46,13 +52,14 @@ import com.eucalyptus.cluster.common.msgs.SensorsResourceType;
 import com.eucalyptus.cluster.service.NodeService;
 import com.eucalyptus.cluster.service.conf.ClusterEucaConf;
 import com.eucalyptus.cluster.service.conf.ClusterEucaConfLoader;
-import com.eucalyptus.cluster.service.scheduler.Scheduler;
 import com.eucalyptus.cluster.service.vm.VmInfo;
 import com.eucalyptus.cluster.service.vm.VmVolumeAttachment;
 import com.eucalyptus.component.annotation.ComponentNamed;
 import com.eucalyptus.util.Assert;
 import com.eucalyptus.util.async.CheckedListenableFuture;
 import com.eucalyptus.util.async.Futures;
+import com.eucalyptus.util.metrics.MonitoredAction;
+import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -68,9 +75,13 @@ import javaslang.control.Option;
 @ComponentNamed
 public class ClusterNodes {
 
+  private static final Logger logger = Logger.getLogger( ClusterNodes.class );
+
   private static final int DEFAULT_PORT = 8775;
 
   private final ConcurrentMap<String,ClusterNode> nodesByIp = Maps.newConcurrentMap( );
+  private final ConcurrentMap<String,Tuple2<ClusterNode,VmInfo>> nodesWithVmsById = Maps.newConcurrentMap( );
+  private final AtomicReference<Tuple2<ClusterEucaConf,Stream<ClusterNode>>> confNodes = new AtomicReference<>( );
   private final AtomicReference<Integer> nodePort = new AtomicReference<>( DEFAULT_PORT );
   private final AtomicLong lastSensorRefresh = new AtomicLong( );
   private final ClusterEucaConfLoader clusterEucaConfLoader;
@@ -86,7 +97,7 @@ public class ClusterNodes {
   }
 
   public ClusterNode getClusterNode( final String node ) {
-    return nodesByIp.computeIfAbsent( node, ClusterNode::new );
+    return nodesByIp.computeIfAbsent( node, nodeIp -> new ClusterNode( nodeIp, this::indexVm ) );
   }
 
   public int getNodePort( ) {
@@ -107,19 +118,36 @@ public class ClusterNodes {
   }
 
   public Option<Tuple2<ClusterNode,VmInfo>> nodeWithVm( final String vmId ) {
-    for ( final ClusterNode clusterNode : nodes( ) ) {
-      for ( final VmInfo vmInfo : clusterNode.getVms( ) ) {
-        if ( vmInfo.getId( ).equals( vmId ) ) {
-          return Option.some( Tuple.of( clusterNode, vmInfo ) );
-        }
-      }
+    final Tuple2<ClusterNode,VmInfo> nodeWithVm = nodesWithVmsById.get( vmId );
+    if ( nodeWithVm != null && confNodes( )._1( ).getNodes( ).contains( nodeWithVm._1( ).getNode( ) ) ) {
+      return Option.some( nodeWithVm );
     }
     return Option.none( );
   }
 
+  /**
+   * Nodes for the current configuration, the same stream is returned until the
+   * configuration changes.
+   */
   public Stream<ClusterNode> nodes( ) {
+    return confNodes( )._2( );
+  }
+  /**
+   * Nodes for the current configuration, sorted nodes are cached until the
+   * configuration changes.
+   */
+  private Tuple2<ClusterEucaConf,Stream<ClusterNode>> confNodes( ) {
     final ClusterEucaConf conf = clusterEucaConfLoader.load( );
-    return Stream.ofAll( conf.getNodes( ) ).sorted( ).map( this::getClusterNode );
+    Tuple2<ClusterEucaConf,Stream<ClusterNode>> nodes = confNodes.get( );
+    if ( nodes == null || nodes._1( ) != conf ) {
+      nodes = Tuple.of( conf, Stream.ofAll( Stream.ofAll( conf.getNodes( ) ).sorted( ).map( this::getClusterNode ).toJavaList( ) ) );
+      confNodes.set( nodes );
+    }
+    return nodes;
+  }
+
+  private void indexVm( final ClusterNode node, final VmInfo vmInfo ) {
+    nodesWithVmsById.put( vmInfo.getId( ), Tuple.of( node, vmInfo ) );
   }
 
   public void status( final String status, final Stream<String> nodes ) {
@@ -145,21 +173,26 @@ public class ClusterNodes {
       node.setMigrationCapable( reply.getMigrationCapable( ) );
       node.setNodeStatus( reply.getNodeStatus( ) );
       node.setPublicSubnets( reply.getPublicSubnets( ) );
-      Scheduler.withLock( () -> { //TODO accounting not correct here for reserved/pending resources
-        node.setCoresAvailable( MoreObjects.firstNonNull( reply.getNumberOfCoresAvailable( ), 0 ) );
-        node.setCoresTotal( MoreObjects.firstNonNull( reply.getNumberOfCoresMax( ), 0 ) );
-        node.setDiskAvailable( MoreObjects.firstNonNull( reply.getDiskSizeAvailable( ), 0 ) );
-        node.setDiskTotal( MoreObjects.firstNonNull( reply.getDiskSizeMax( ), 0 ) );
-        node.setMemoryAvailable( MoreObjects.firstNonNull( reply.getMemorySizeAvailable( ), 0 ) );
-        node.setMemoryTotal( MoreObjects.firstNonNull( reply.getMemorySizeMax( ), 0 ) );
-        Scheduler.adjust( node );
-        return true;
-      } );
+      // resources reserved by in progress scheduling are held on the node and remain reserved
+      node.setAvailable(
+          MoreObjects.firstNonNull( reply.getNumberOfCoresAvailable( ), 0 ),
+          MoreObjects.firstNonNull( reply.getDiskSizeAvailable( ), 0 ),
+          MoreObjects.firstNonNull( reply.getMemorySizeAvailable( ), 0 ) );
+      node.setCoresTotal( MoreObjects.firstNonNull( reply.getNumberOfCoresMax( ), 0 ) );
+      node.setDiskTotal( MoreObjects.firstNonNull( reply.getDiskSizeMax( ), 0 ) );
+      node.setMemoryTotal( MoreObjects.firstNonNull( reply.getMemorySizeMax( ), 0 ) );
     }
   }
 
   /**
-   * Refresh sensors if necessary based on interval
+   * Refresh sensors if necessary based on interval.
+   *
+   * <p>Instances are requested from each node in batches and results are
+   * applied as each reply arrives. Requests to nodes that do not reply within
+   * the timeout are cancelled and the nodes are skipped for this refresh.</p>
+   *
+   * @see ClusterEucaConf#getSensorsBatchSize()
+   * @see ClusterEucaConf#getSensorsTimeoutMs()
    */
   public void refreshSensors(
       final long now,
@@ -168,25 +201,75 @@ public class ClusterNodes {
   ) throws Exception {
     final long lastRefresh = lastSensorRefresh.get( );
     if ( ( (now - lastRefresh) >= collectionIntervalTimeMs ) && lastSensorRefresh.compareAndSet( lastRefresh, now ) ) {
-      final Stream<ClusterNode> nodes = nodes( );
-      final List<CheckedListenableFuture<NcDescribeSensorsResponseType>> replyFutures = Lists.newArrayList( );
-      for ( final ClusterNode node : nodes ) {
+      final ClusterEucaConf conf = clusterEucaConfLoader.load( );
+      final int batchSize = Math.max( 1, conf.getSensorsBatchSize( ) );
+      final long startTime = System.currentTimeMillis( );
+      final List<Tuple2<ClusterNode,CheckedListenableFuture<NcDescribeSensorsResponseType>>> replyFutures = Lists.newArrayList( );
+      for ( final ClusterNode node : nodes( ) ) {
         final NodeService nodeService = nodeService( node );
-        final NcDescribeSensorsType describeSensors = new NcDescribeSensorsType( );
-        describeSensors.setInstanceIds( node.getVms( ).map( VmInfo::getId ).toJavaList( ArrayList::new ) ); //TODO batching
-        describeSensors.setHistorySize( historySize );
-        describeSensors.setCollectionIntervalTimeMs( collectionIntervalTimeMs );
-        replyFutures.add( nodeService.describeSensorsAsync( describeSensors ) );
+        final List<String> instanceIds = node.getVms( ).map( VmInfo::getId ).toJavaList( ArrayList::new );
+        final List<List<String>> instanceIdBatches = instanceIds.isEmpty( ) ?
+            Collections.singletonList( instanceIds ) :
+            Lists.partition( instanceIds, batchSize );
+        for ( final List<String> instanceIdBatch : instanceIdBatches ) {
+          final NcDescribeSensorsType describeSensors = new NcDescribeSensorsType( );
+          describeSensors.setInstanceIds( Lists.newArrayList( instanceIdBatch ) );
+          describeSensors.setHistorySize( historySize );
+          describeSensors.setCollectionIntervalTimeMs( collectionIntervalTimeMs );
+          final CheckedListenableFuture<NcDescribeSensorsResponseType> replyFuture =
+              nodeService.describeSensorsAsync( describeSensors );
+          replyFuture.addListener( ( ) -> applySensors( node, replyFuture, startTime ) );
+          replyFutures.add( Tuple.of( node, replyFuture ) );
+        }
       }
 
-      for ( final NcDescribeSensorsResponseType reply : Futures.allAsList( replyFutures ).get( ) ) {
-        for ( final SensorsResourceType sensorsResource : reply.getSensorsResources() ) {
-          if ( "instance".equals( sensorsResource.getResourceType( ) ) ) {
-            vm( sensorsResource.getResourceName( ) ).forEach(
-                vmInfo -> vmInfo.setMetrics( sensorsResource.getMetrics( ) ) );
+      final long timeoutTime = startTime + conf.getSensorsTimeoutMs( );
+      final Set<String> timedOutNodes = Sets.newTreeSet( );
+      for ( final Tuple2<ClusterNode,CheckedListenableFuture<NcDescribeSensorsResponseType>> nodeAndFuture : replyFutures ) {
+        try {
+          nodeAndFuture._2( ).get( Math.max( 0, timeoutTime - System.currentTimeMillis( ) ), TimeUnit.MILLISECONDS );
+        } catch ( final TimeoutException e ) {
+          nodeAndFuture._2( ).cancel( true );
+          if ( timedOutNodes.add( nodeAndFuture._1( ).getNode( ) ) ) {
+            nodeAndFuture._1( ).getSensorsLatency( ).recordTimeout( );
           }
+        } catch ( final ExecutionException e ) {
+          logger.warn( "Error describing sensors for node " + nodeAndFuture._1( ).getNode( ) + ": " + e.getCause( ) );
         }
       }
+      ThruputMetrics.addDataPoint( MonitoredAction.CLUSTER_SERVICE_SENSORS_TIMEOUTS, timedOutNodes.size( ) );
+      ThruputMetrics.addDataPoint( MonitoredAction.CLUSTER_SERVICE_SENSORS_TIMING, System.currentTimeMillis( ) - startTime );
+      if ( !timedOutNodes.isEmpty( ) ) {
+        logger.warn( "Timed out describing sensors for nodes " + timedOutNodes );
+      }
+    }
+  }
+
+  private void applySensors(
+      final ClusterNode node,
+      final CheckedListenableFuture<NcDescribeSensorsResponseType> replyFuture,
+      final long startTime
+  ) {
+    if ( replyFuture.isCancelled( ) ) {
+      return; // timeout recorded when waiting for replies
+    }
+    final long latency = System.currentTimeMillis( ) - startTime;
+    node.getSensorsLatency( ).record( latency );
+    ThruputMetrics.addDataPoint( MonitoredAction.CLUSTER_SERVICE_SENSORS_NODE_LATENCY, latency );
+    try {
+      for ( final SensorsResourceType sensorsResource : replyFuture.get( ).getSensorsResources( ) ) {
+        if ( "instance".equals( sensorsResource.getResourceType( ) ) ) {
+          vm( sensorsResource.getResourceName( ) ).forEach(
+              vmInfo -> vmInfo.setMetrics( sensorsResource.getMetrics( ) ) );
+        }
+      }
+    } catch ( final InterruptedException e ) {
+      Thread.currentThread( ).interrupt( );
+    } catch ( final ExecutionException | CancellationException e ) {
+      // logged when waiting for replies
+    }
+    if ( logger.isTraceEnabled( ) ) {
+      logger.trace( "Sensors latency for node " + node.getNode( ) + " " + node.getSensorsLatency( ) );
     }
   }
 
@@ -0,0 +1,118 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.cluster.service.node;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import com.google.common.base.MoreObjects;
+
+/**
+ * Histogram of request latencies for a node using fixed millisecond buckets.
+ */
+public final class LatencyHistogram {
+
+  private static final long[] BUCKET_LIMITS_MS = { 10, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000 };
+
+  private final AtomicLongArray buckets = new AtomicLongArray( BUCKET_LIMITS_MS.length + 1 );
+  private final LongAdder count = new LongAdder( );
+  private final LongAdder total = new LongAdder( );
+  private final LongAccumulator max = new LongAccumulator( Long::max, 0 );
+  private final LongAdder timeouts = new LongAdder( );
+
+  public void record( final long latencyMs ) {
+    int bucket = 0;
+    while ( bucket < BUCKET_LIMITS_MS.length && latencyMs > BUCKET_LIMITS_MS[ bucket ] ) {
+      bucket++;
+    }
+    buckets.incrementAndGet( bucket );
+    count.increment( );
+    total.add( latencyMs );
+    max.accumulate( latencyMs );
+  }
+
+  public void recordTimeout( ) {
+    timeouts.increment( );
+  }
+
+  public long getCount( ) {
+    return count.sum( );
+  }
+
+  public long getMeanMs( ) {
+    final long count = getCount( );
+    return count == 0 ? 0 : total.sum( ) / count;
+  }
+
+  public long getMaxMs( ) {
+    return max.get( );
+  }
+
+  public long getTimeouts( ) {
+    return timeouts.sum( );
+  }
+
+  /**
+   * Get the bucket counts, the last bucket counts latencies over the largest
+   * limit.
+   *
+   * @see #getBucketLimitsMs()
+   */
+  public long[] getBuckets( ) {
+    final long[] counts = new long[ buckets.length( ) ];
+    for ( int i = 0; i < counts.length; i++ ) {
+      counts[ i ] = buckets.get( i );
+    }
+    return counts;
+  }
+
+  public long[] getBucketLimitsMs( ) {
+    return BUCKET_LIMITS_MS.clone( );
+  }
+
+  @Override
+  public String toString( ) {
+    final long[] counts = getBuckets( );
+    final StringBuilder histogram = new StringBuilder( );
+    for ( int i = 0; i < counts.length; i++ ) {
+      if ( counts[ i ] > 0 ) {
+        if ( histogram.length( ) > 0 ) histogram.append( ' ' );
+        histogram.append( i < BUCKET_LIMITS_MS.length ? "<=" + BUCKET_LIMITS_MS[ i ] : ">" + BUCKET_LIMITS_MS[ i - 1 ] );
+        histogram.append( "ms:" ).append( counts[ i ] );
+      }
+    }
+    return MoreObjects.toStringHelper( this )
+        .add( "count", getCount( ) )
+        .add( "meanMs", getMeanMs( ) )
+        .add( "maxMs", getMaxMs( ) )
+        .add( "timeouts", getTimeouts( ) )
+        .add( "histogram", histogram )
+        .toString( );
+  }
+}
@@ -0,0 +1,161 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.cluster.service.scheduler;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import com.eucalyptus.cluster.common.msgs.VmTypeInfo;
+import com.eucalyptus.cluster.service.node.ClusterNode;
+import com.eucalyptus.util.LockResource;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import javaslang.collection.Stream;
+import javaslang.control.Option;
+
+/**
+ * Scheduler that places instances on the nodes with the most available cores.
+ *
+ * <p>Nodes are indexed by available cores, the index is updated as node
+ * resources change and rebuilt only when the set of nodes changes. The index
+ * is shared by all capacity schedulers so replacing the scheduler on a policy
+ * change does not add node listeners.</p>
+ *
+ * <p>Placement reads the index without locking, resources are reserved on
+ * each node atomically so a node taken concurrently is skipped and the next
+ * candidate tried. Only changes to the set of nodes are serialized.</p>
+ */
+public class CapacityScheduler implements Scheduler {
+
+  private static final Lock nodesLock = new ReentrantLock( );
+  private static final Consumer<ClusterNode> reindex = CapacityScheduler::reindex;
+  private static final ConcurrentNavigableMap<Integer,Set<ClusterNode>> nodesByCoresAvailable = new ConcurrentSkipListMap<>( );
+  private static final ConcurrentMap<ClusterNode,Integer> indexedCoresAvailable = Maps.newConcurrentMap( );
+  private static volatile Stream<ClusterNode> indexedNodes = Stream.empty( );
+
+  @Override
+  public String name( ) {
+    return "CAPACITY";
+  }
+
+  @Override
+  public Option<ClusterNode> schedule(
+      final Stream<ClusterNode> nodes,
+      final VmTypeInfo vmTypeInfo
+  ) {
+    final Option<ScheduleResource> resourceOption = ScheduleResource.active( );
+    if ( resourceOption.isEmpty( ) ) {
+      return Option.none( );
+    }
+    final ScheduleResource resource = resourceOption.get( );
+    resource.resources( vmTypeInfo.getCores( ), vmTypeInfo.getDisk( ), vmTypeInfo.getMemory( ) );
+
+    index( nodes );
+    final Predicate<ClusterNode> hasResources = Scheduler.resourcesFor( vmTypeInfo );
+    Option<ClusterNode> node;
+    do {
+      node = mostCoresAvailable( vmTypeInfo.getCores( ), hasResources );
+      // a failed reservation means resources were taken concurrently, the index is updated by the node
+    } while ( node.isDefined( ) && !resource.apply( node.get( ) ) );
+    return node;
+  }
+
+  private static Option<ClusterNode> mostCoresAvailable( final int cores, final Predicate<ClusterNode> hasResources ) {
+    for ( final Set<ClusterNode> nodes : nodesByCoresAvailable.tailMap( cores, true ).descendingMap( ).values( ) ) {
+      for ( final ClusterNode node : nodes ) {
+        if ( hasResources.test( node ) ) {
+          return Option.some( node );
+        }
+      }
+    }
+    return Option.none( );
+  }
+
+  /**
+   * Index the given nodes if they differ from those already indexed.
+   */
+  private static void index( final Stream<ClusterNode> nodes ) {
+    if ( nodes == indexedNodes ) {
+      return;
+    }
+    try ( final LockResource lock = LockResource.lock( nodesLock ) ) {
+      if ( nodes == indexedNodes ) {
+        return;
+      }
+      final Set<ClusterNode> nodeSet = nodes.toJavaSet( );
+      for ( final ClusterNode node : indexedCoresAvailable.keySet( ) ) {
+        if ( !nodeSet.contains( node ) ) {
+          indexedCoresAvailable.computeIfPresent( node, ( indexedNode, indexedCores ) -> {
+            indexedNode.removeAvailableListener( reindex );
+            nodesWithCoresAvailable( indexedCores ).remove( indexedNode );
+            return null;
+          } );
+        }
+      }
+      for ( final ClusterNode node : nodeSet ) {
+        indexedCoresAvailable.computeIfAbsent( node, indexedNode -> {
+          // listener added first so a change while indexing is reindexed
+          indexedNode.addAvailableListener( reindex );
+          final int cores = indexedNode.getCoresAvailable( );
+          nodesWithCoresAvailable( cores ).add( indexedNode );
+          return cores;
+        } );
+      }
+      indexedNodes = nodes;
+    }
+  }
+
+  /**
+   * Move the node to the entry for its available cores, updates for a node
+   * are serialized by the index map.
+   */
+  private static void reindex( final ClusterNode node ) {
+    indexedCoresAvailable.computeIfPresent( node, ( indexedNode, indexedCores ) -> {
+      final int cores = indexedNode.getCoresAvailable( );
+      if ( indexedCores != cores ) {
+        nodesWithCoresAvailable( cores ).add( indexedNode );
+        nodesWithCoresAvailable( indexedCores ).remove( indexedNode );
+      }
+      return cores;
+    } );
+  }
+
+  /**
+   * Entries are retained when empty, there is at most one for each core count
+   * and removal could race with a concurrent addition.
+   */
+  private static Set<ClusterNode> nodesWithCoresAvailable( final int cores ) {
+    return nodesByCoresAvailable.computeIfAbsent( cores, __ -> Sets.newConcurrentHashSet( ) );
+  }
+}
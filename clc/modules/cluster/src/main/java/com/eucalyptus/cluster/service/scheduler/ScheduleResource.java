@@ -28,53 +28,48 @@
  ************************************************************************/
 package com.eucalyptus.cluster.service.scheduler;
 
-import java.util.Set;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import com.eucalyptus.cluster.service.node.ClusterNode;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Lists;
 import javaslang.control.Option;
 
 /**
+ * Resources reserved on nodes during scheduling.
  *
+ * <p>Reservations are released on rollback and committed to the node on
+ * commit, they are held on the node so that node resource refreshes do not
+ * race with scheduling.</p>
  */
 public class ScheduleResource implements AutoCloseable {
 
   private static final ThreadLocal<ScheduleResource> threadScheduleResource = new ThreadLocal<>( );
-  private static final Set<ScheduleResource> activeScheduleResources = Sets.newConcurrentHashSet( );
 
   private final AtomicBoolean complete = new AtomicBoolean( false );
+  private final List<Reservation> reservations = Lists.newCopyOnWriteArrayList( );
 
-  private volatile String node;
   private volatile int cores;
   private volatile int disk;
   private volatile int memory;
-  private volatile Runnable rollback;
 
   static Option<ScheduleResource> active( ) {
     return Option.of( threadScheduleResource.get( ) );
   }
 
-  static void adjustAll( final ClusterNode node ) {
-    activeScheduleResources.forEach( resource -> resource.adjust( node ) );
-  }
-
   ScheduleResource( ) {
     threadScheduleResource.set( this );
-    activeScheduleResources.add( this );
   }
 
   public void commit( ) {
-    complete( );
+    if ( complete( ) ) {
+      reservations.forEach( Reservation::commit );
+    }
   }
 
   public void rollback( ) {
-    final Runnable rollback = this.rollback;
-    Scheduler.withLock( () -> {
-      if ( complete( ) && rollback != null ) {
-        rollback.run( );
-      }
-      return true;
-    } );
+    if ( complete( ) ) {
+      reservations.forEach( Reservation::release );
+    }
   }
 
   @Override
@@ -88,30 +83,46 @@ public class ScheduleResource implements AutoCloseable {
     this.memory = memory;
   }
 
-  void apply( final ClusterNode clusterNode ) {
-    this.node = clusterNode.getNode( );
-    adjust( clusterNode );
-    this.rollback = ( ) -> adjustWithFactor( clusterNode, -1 );
-  }
-
-  void adjust( final ClusterNode clusterNode ) {
-    adjustWithFactor( clusterNode, 1 );
-  }
-
-  private void adjustWithFactor( final ClusterNode clusterNode, final int factor ) {
-    if ( clusterNode.getNode( ).equals( this.node ) ) {
-      clusterNode.setCoresAvailable( clusterNode.getCoresAvailable( ) - (cores * factor) );
-      clusterNode.setDiskAvailable( clusterNode.getDiskAvailable( ) - (disk * factor) );
-      clusterNode.setMemoryAvailable( clusterNode.getMemoryAvailable( ) - (memory * factor) );
+  /**
+   * Reserve resources on the given node.
+   *
+   * @return True if the resources were reserved
+   */
+  boolean apply( final ClusterNode clusterNode ) {
+    final boolean reserved = clusterNode.reserve( cores, disk, memory );
+    if ( reserved ) {
+      reservations.add( new Reservation( clusterNode, cores, disk, memory ) );
     }
+    return reserved;
   }
 
   private boolean complete( ) {
     final boolean completing = complete.compareAndSet( false, true );
     if ( completing ) {
       threadScheduleResource.set( null );
-      activeScheduleResources.remove( this );
     }
     return completing;
   }
+
+  private static final class Reservation {
+    private final ClusterNode clusterNode;
+    private final int cores;
+    private final int disk;
+    private final int memory;
+
+    private Reservation( final ClusterNode clusterNode, final int cores, final int disk, final int memory ) {
+      this.clusterNode = clusterNode;
+      this.cores = cores;
+      this.disk = disk;
+      this.memory = memory;
+    }
+
+    private void commit( ) {
+      clusterNode.commit( cores, disk, memory );
+    }
+
+    private void release( ) {
+      clusterNode.release( cores, disk, memory );
+    }
+  }
 }
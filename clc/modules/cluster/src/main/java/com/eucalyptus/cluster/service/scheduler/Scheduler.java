@@ -56,10 +56,6 @@ public interface Scheduler {
     }
   }
 
-  static void adjust( final ClusterNode node ) {
-    ScheduleResource.adjustAll( node );
-  }
-
   static Predicate<ClusterNode> resourcesFor( final VmTypeInfo vmTypeInfo ) {
     return clusterNode ->
         clusterNode.getCoresAvailable( ) >= vmTypeInfo.getCores( ) &&
@@ -73,8 +69,7 @@ public interface Scheduler {
       boolean reserved = false;
       if ( resourceOption.isDefined( ) && resourcesFor( vmTypeInfo ).test( clusterNode ) ) {
         resourceOption.get( ).resources( vmTypeInfo.getCores( ), vmTypeInfo.getDisk( ), vmTypeInfo.getMemory( ) );
-        resourceOption.get( ).apply( clusterNode );
-        reserved = true;
+        reserved = resourceOption.get( ).apply( clusterNode );
       }
       return reserved;
     } );
@@ -41,10 +41,13 @@ import com.eucalyptus.cluster.common.msgs.VmKeyInfo
 import com.eucalyptus.cluster.common.msgs.VmRunType
 import com.eucalyptus.cluster.service.conf.ClusterEucaConfLoader
 import com.eucalyptus.cluster.service.fake.FakeClusterNodeServiceFactory
+import com.eucalyptus.cluster.service.node.ClusterNode
 import com.eucalyptus.cluster.service.node.ClusterNodes
+import com.eucalyptus.cluster.service.vm.VmInfo
 import com.eucalyptus.compute.common.internal.network.NetworkGroup
 import com.eucalyptus.cluster.common.msgs.VmTypeInfo
 import groovy.transform.CompileStatic
+import org.junit.Ignore
 import org.junit.Test
 
 import static org.junit.Assert.assertEquals
@@ -197,4 +200,40 @@ class ClusterServiceTest {
     }
   }
 
+  @Ignore("Manual development test")
+  @Test
+  void testRefreshVmsTiming( ) {
+    final int nodeCount = 500
+    final int vmsPerNode = 50
+    final ClusterEucaConfLoader loader = new ClusterEucaConfLoader( { [
+        NODES: '"' + (0..<nodeCount).collect{ int index -> "10.20.${index.intdiv( 250 )}.${index % 250 + 1}" }.join( ' ' ) + '"'
+    ] as Map<String,String> } )
+    final ClusterNodes nodes = new ClusterNodes(
+        loader,
+        new FakeClusterNodeServiceFactory( false )
+    )
+    int vmIndex = 0
+    nodes.nodes( ).forEach{ ClusterNode node ->
+      (0..<vmsPerNode).each {
+        vmIndex++
+        node.vm( VmInfo.create( (VmRunType) VmRunType.builder( )
+            .reservationId( String.format( 'r-%08x', vmIndex ) )
+            .platform( 'linux' )
+            .launchIndex( 1 )
+            .instanceId( String.format( 'i-%08x', vmIndex ) )
+            .naturalId( UUID.randomUUID( ).toString( ) )
+            .macAddress( String.format( 'd0:0d:00:%02x:%02x:%02x', (vmIndex>>16)&0xff, (vmIndex>>8)&0xff, vmIndex&0xff ) )
+            .privateAddress( "10.10.${(vmIndex>>8)&0xff}.${vmIndex&0xff}".toString( ) )
+            .networkNames( [ new NetworkGroup( groupId: 'sg-00000001', displayName: 'group-1' ) ] )
+            .networkIds([ new NetworkGroup( groupId: 'sg-00000001', displayName: 'group-1'  ) ] )
+            .vmTypeInfo( new VmTypeInfo( name: 'm1.small', memory: 512, disk: 5, cores: 1 ) )
+            .create( ), System.currentTimeMillis( ) ) )
+      }
+    }
+    nodes.refreshVms( ) // warm up
+    final int iterations = 10
+    final long start = System.currentTimeMillis( )
+    (0..<iterations).each { nodes.refreshVms( ) }
+    println "Refreshed ${nodeCount} nodes with ${vmsPerNode} vms in ${(System.currentTimeMillis( ) - start).intdiv( iterations )}ms (average)"
+  }
 }
@@ -36,12 +36,16 @@ class ClusterEucaConfLoaderTest {
         VNET_DHCPDAEMON: "/usr/sbin/dhcpd",
         METADATA_USE_VM_PRIVATE: "N",
         DISABLE_TUNNELING: "Y",
-        MAX_INSTANCES_PER_CC: "128"
+        MAX_INSTANCES_PER_CC: "128",
+        CC_SENSORS_BATCH_SIZE: "20",
+        CC_SENSORS_TIMEOUT_MS: '"5000"'
     ] } ).load( )
     assertEquals( 'Scheduler', 'ROUNDROBIN', configuration.scheduler )
     assertThat( 'Nodes', configuration.nodes, Matchers.contains( '10.111.5.210', '10.111.5.211') )
     assertEquals( 'Port', 8775, configuration.nodePort )
     assertEquals( 'Max instances', 128, configuration.maxInstances )
+    assertEquals( 'Sensors batch size', 20, configuration.sensorsBatchSize )
+    assertEquals( 'Sensors timeout', 5000L, configuration.sensorsTimeoutMs )
   }
 
   @Test
@@ -51,5 +55,7 @@ class ClusterEucaConfLoaderTest {
     assertThat( 'Nodes', configuration.nodes, Matchers.empty( ) )
     assertEquals( 'Port', 8775, configuration.nodePort )
     assertEquals( 'Max instances', 10_000, configuration.maxInstances )
+    assertEquals( 'Sensors batch size', 50, configuration.sensorsBatchSize )
+    assertEquals( 'Sensors timeout', 30_000L, configuration.sensorsTimeoutMs )
   }
 }
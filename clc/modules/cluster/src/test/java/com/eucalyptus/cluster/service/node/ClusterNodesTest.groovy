@@ -0,0 +1,153 @@
+/*************************************************************************
+ * Copyright 2009-2015 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.cluster.service.node
+
+import com.eucalyptus.cluster.common.msgs.NcDescribeSensorsResponseType
+import com.eucalyptus.cluster.common.msgs.NcDescribeSensorsType
+import com.eucalyptus.cluster.common.msgs.VmRunType
+import com.eucalyptus.cluster.common.msgs.VmTypeInfo
+import com.eucalyptus.cluster.service.NodeService
+import com.eucalyptus.cluster.service.conf.ClusterEucaConfLoader
+import com.eucalyptus.cluster.service.fake.FakeNodeService
+import com.eucalyptus.cluster.service.vm.VmInfo
+import com.eucalyptus.compute.common.internal.network.NetworkGroup
+import com.eucalyptus.util.async.CheckedListenableFuture
+import com.eucalyptus.util.async.Futures
+import com.google.common.collect.Maps
+import groovy.transform.CompileStatic
+import org.junit.Test
+
+import java.util.concurrent.ConcurrentMap
+import java.util.concurrent.CopyOnWriteArrayList
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+
+/**
+ *
+ */
+@CompileStatic
+class ClusterNodesTest {
+
+  @Test
+  void testRefreshSensorsBatches( ) {
+    final SensorsNodeServiceFactory factory = new SensorsNodeServiceFactory( )
+    final ClusterNodes nodes = new ClusterNodes( new ClusterEucaConfLoader( { [
+        NODES: '"10.20.40.1 10.20.40.2"',
+        CC_SENSORS_BATCH_SIZE: '2'
+    ] } ), factory )
+    addVms( nodes.getClusterNode( '10.20.40.1' ), 5 )
+
+    nodes.refreshSensors( System.currentTimeMillis( ), 5, 60000 )
+
+    assertEquals( 'node 1 batches', [ 2, 2, 1 ], factory.batchSizes( '10.20.40.1' ) )
+    assertEquals( 'node 2 batches', [ 0 ], factory.batchSizes( '10.20.40.2' ) )
+    assertEquals( 'node 1 replies', 3L, nodes.getClusterNode( '10.20.40.1' ).sensorsLatency.count )
+  }
+
+  @Test
+  void testRefreshSensorsTimeout( ) {
+    final SensorsNodeServiceFactory factory = new SensorsNodeServiceFactory( )
+    factory.unresponsiveNodes << '10.20.40.2'
+    final ClusterNodes nodes = new ClusterNodes( new ClusterEucaConfLoader( { [
+        NODES: '"10.20.40.1 10.20.40.2"',
+        CC_SENSORS_TIMEOUT_MS: '100'
+    ] } ), factory )
+
+    nodes.refreshSensors( System.currentTimeMillis( ), 5, 60000 )
+
+    assertTrue( 'unresponsive node request cancelled', factory.replies( '10.20.40.2' ).every { it.isCancelled( ) } )
+    nodes.getClusterNode( '10.20.40.2' ).sensorsLatency.with {
+      assertEquals( 'unresponsive node timeouts', 1L, timeouts )
+      assertEquals( 'unresponsive node replies', 0L, count )
+    }
+    nodes.getClusterNode( '10.20.40.1' ).sensorsLatency.with {
+      assertEquals( 'node timeouts', 0L, timeouts )
+      assertEquals( 'node replies', 1L, count )
+    }
+  }
+
+  private static void addVms( final ClusterNode node, final int count ) {
+    (1..count).each { int index ->
+      node.vm( VmInfo.create( (VmRunType) VmRunType.builder( )
+          .reservationId( 'r-00000001' )
+          .platform( 'linux' )
+          .launchIndex( index )
+          .instanceId( String.format( 'i-%08x', index ) )
+          .naturalId( UUID.randomUUID( ).toString( ) )
+          .macAddress( String.format( 'd0:0d:00:00:00:%02x', index ) )
+          .privateAddress( "10.10.10.${index}".toString( ) )
+          .networkNames( [ new NetworkGroup( groupId: 'sg-00000001', displayName: 'group-1' ) ] )
+          .networkIds( [ new NetworkGroup( groupId: 'sg-00000001', displayName: 'group-1' ) ] )
+          .vmTypeInfo( new VmTypeInfo( name: 'm1.small', memory: 512, disk: 5, cores: 1 ) )
+          .create( ), System.currentTimeMillis( ) ) )
+    }
+  }
+
+  private static final class SensorsNodeServiceFactory implements ClusterNodeServiceFactory {
+    private final ConcurrentMap<String,SensorsNodeService> nodeServices = Maps.newConcurrentMap( )
+    final Set<String> unresponsiveNodes = [ ] as Set<String>
+
+    @Override
+    NodeService nodeService( final ClusterNode node, final int port ) {
+      nodeServices.computeIfAbsent( node.node ){ String key ->
+        new SensorsNodeService( node, unresponsiveNodes.contains( key ) )
+      }
+    }
+
+    List<Integer> batchSizes( final String node ) {
+      nodeServices.get( node ).requests.collect{ NcDescribeSensorsType request -> request.instanceIds.size( ) }
+    }
+
+    List<CheckedListenableFuture<NcDescribeSensorsResponseType>> replies( final String node ) {
+      nodeServices.get( node ).replies
+    }
+  }
+
+  private static final class SensorsNodeService extends FakeNodeService {
+    private final boolean unresponsive
+    final List<NcDescribeSensorsType> requests = new CopyOnWriteArrayList<>( )
+    final List<CheckedListenableFuture<NcDescribeSensorsResponseType>> replies = new CopyOnWriteArrayList<>( )
+
+    SensorsNodeService( final ClusterNode node, final boolean unresponsive ) {
+      super( node, false )
+      this.unresponsive = unresponsive
+    }
+
+    @Override
+    CheckedListenableFuture<NcDescribeSensorsResponseType> describeSensorsAsync( final NcDescribeSensorsType request ) {
+      requests << request
+      final CheckedListenableFuture<NcDescribeSensorsResponseType> reply = unresponsive ?
+          Futures.<NcDescribeSensorsResponseType>newGenericeFuture( ) :
+          super.describeSensorsAsync( request )
+      replies << reply
+      reply
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.cluster.service.scheduler
+
+import com.eucalyptus.cluster.common.msgs.VmTypeInfo
+import com.eucalyptus.cluster.service.node.ClusterNode
+import groovy.transform.CompileStatic
+import javaslang.collection.Stream
+import org.junit.Ignore
+import org.junit.Test
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+
+/**
+ *
+ */
+@CompileStatic
+class CapacitySchedulerTest {
+
+  private static final VmTypeInfo SMALL = new VmTypeInfo( name: 'm1.small', cores: 1, disk: 5, memory: 512 )
+
+  @Test
+  void testScheduleSpreadsInstances( ) {
+    final List<ClusterNode> nodes = nodes( 3, 4 )
+    final Stream<ClusterNode> nodeStream = Stream.ofAll( nodes )
+    final CapacityScheduler scheduler = new CapacityScheduler( )
+    final ScheduleResource resource = Schedulers.context( )
+    try {
+      (1..6).each {
+        assertTrue( 'scheduled', scheduler.schedule( nodeStream, SMALL ).isDefined( ) )
+      }
+      nodes.each { ClusterNode node ->
+        assertEquals( "cores available ${node.node}".toString( ), 2, node.coresAvailable )
+        assertEquals( "memory available ${node.node}".toString( ), 1024, node.memoryAvailable )
+      }
+      resource.commit( )
+    } finally {
+      resource.close( )
+    }
+    nodes.each { ClusterNode node ->
+      assertEquals( "cores available after commit ${node.node}".toString( ), 2, node.coresAvailable )
+    }
+  }
+
+  @Test
+  void testScheduleInsufficientResources( ) {
+    final List<ClusterNode> nodes = nodes( 2, 2 )
+    final Stream<ClusterNode> nodeStream = Stream.ofAll( nodes )
+    final CapacityScheduler scheduler = new CapacityScheduler( )
+    final ScheduleResource resource = Schedulers.context( )
+    try {
+      final int scheduled = (1..10).count { scheduler.schedule( nodeStream, SMALL ).isDefined( ) } as int
+      assertEquals( 'scheduled count', 4, scheduled )
+      nodes.each { ClusterNode node ->
+        assertEquals( "cores available ${node.node}".toString( ), 0, node.coresAvailable )
+      }
+    } finally {
+      resource.close( )
+    }
+    nodes.each { ClusterNode node ->
+      assertEquals( "cores available after rollback ${node.node}".toString( ), 2, node.coresAvailable )
+      assertEquals( "disk available after rollback ${node.node}".toString( ), 100, node.diskAvailable )
+    }
+  }
+
+  @Test
+  void testScheduleWithoutContext( ) {
+    final List<ClusterNode> nodes = nodes( 1, 2 )
+    assertEquals( 'scheduled', false, new CapacityScheduler( ).schedule( Stream.ofAll( nodes ), SMALL ).isDefined( ) )
+    assertEquals( 'cores available', 2, nodes.get( 0 ).coresAvailable )
+  }
+
+  @Test
+  void testIndexUpdatedOnRefresh( ) {
+    final List<ClusterNode> nodes = nodes( 3, 4 )
+    final Stream<ClusterNode> nodeStream = Stream.ofAll( nodes )
+    final CapacityScheduler scheduler = new CapacityScheduler( )
+    final ScheduleResource resource = Schedulers.context( )
+    try {
+      scheduler.schedule( nodeStream, SMALL )
+      nodes.get( 2 ).setAvailable( 8, 100, 4096 )
+      assertEquals( 'scheduled to refreshed node', nodes.get( 2 ), scheduler.schedule( nodeStream, SMALL ).get( ) )
+    } finally {
+      resource.close( )
+    }
+  }
+
+  @Test
+  void testIndexUpdatedOnNodesChange( ) {
+    final List<ClusterNode> nodes = nodes( 2, 4 )
+    final CapacityScheduler scheduler = new CapacityScheduler( )
+    final ScheduleResource resource = Schedulers.context( )
+    try {
+      scheduler.schedule( Stream.ofAll( nodes ), SMALL )
+      final ClusterNode added = new ClusterNode( '10.0.1.1', null, 16, 100, 8192 )
+      assertEquals( 'scheduled to added node', added, scheduler.schedule( Stream.ofAll( nodes ).append( added ), SMALL ).get( ) )
+      assertEquals( 'scheduled without removed node', nodes.get( 0 ), scheduler.schedule( Stream.of( nodes.get( 0 ) ), SMALL ).get( ) )
+    } finally {
+      resource.close( )
+    }
+  }
+
+  @Test
+  void testRefreshKeepsReservation( ) {
+    final ClusterNode node = new ClusterNode( '10.0.0.1', null, 4, 100, 2048 )
+    final ScheduleResource resource = Schedulers.context( )
+    try {
+      assertTrue( 'scheduled', new CapacityScheduler( ).schedule( Stream.of( node ), SMALL ).isDefined( ) )
+      node.setAvailable( 4, 100, 2048 )
+      assertEquals( 'cores available after refresh', 3, node.coresAvailable )
+      assertEquals( 'memory available after refresh', 1536, node.memoryAvailable )
+    } finally {
+      resource.close( )
+    }
+    assertEquals( 'cores available after rollback', 4, node.coresAvailable )
+  }
+
+  @Ignore("Manual development test")
+  @Test
+  void testSchedulingTiming( ) {
+    [ 100, 1000, 10000 ].each { int nodeCount ->
+      final List<ClusterNode> nodes = nodes( nodeCount, 64 )
+      [ new RoundRobinScheduler( ), new GreedyScheduler( ), new CapacityScheduler( ) ].each { Scheduler scheduler ->
+        final int instances = 1000
+        final long start = System.nanoTime( )
+        final ScheduleResource resource = Schedulers.context( )
+        try {
+          final Stream<ClusterNode> nodeStream = Stream.ofAll( nodes )
+          (0..<instances).each { scheduler.schedule( nodeStream, SMALL ) }
+        } finally {
+          resource.close( ) // rollback
+        }
+        final double seconds = ( System.nanoTime( ) - start ) / 1_000_000_000d
+        println "${scheduler.name( )} placed ${instances} instances on ${nodeCount} nodes at ${(long)(instances / seconds)} placements/second"
+      }
+    }
+  }
+
+  private static List<ClusterNode> nodes( final int count, final int cores ) {
+    (1..count).collect { int index ->
+      new ClusterNode( "10.0.${index.intdiv( 250 )}.${index % 250}".toString( ), null, cores, 100, cores * 512 )
+    }
+  }
+}
@@ -123,6 +123,12 @@ public class DNSControl {
       changeListener = WebServices.CheckNonNegativeIntegerPropertyChangeListener.class )
   public static Integer       SERVER_POOL_MAX_THREADS           = 512;
 
+  @ConfigurableField( displayName = "answer_cache_ttl",
+      description = "Time in seconds to reuse answers for identical UDP queries from the same network, 0 to disable.",
+      initial = "2",
+      changeListener = WebServices.CheckNonNegativeIntegerPropertyChangeListener.class )
+  public static volatile Integer ANSWER_CACHE_TTL = 2;
+
 	@ConfigurableField( displayName = "server",
 			description = "Comma separated list of nameservers, OS settings used if none specified (change requires restart)",
 			initial = "",
@@ -239,8 +245,13 @@ public class DNSControl {
         final ChannelBuffer buffer = ((ChannelBuffer) me.getMessage());
         final TimedDns wrappedRequest = new TimedDns();
         wrappedRequest.receivedTime = (new Date()).getTime();
-        wrappedRequest.request = new byte[buffer.readableBytes( )];
-        buffer.getBytes(0, wrappedRequest.request);
+        if ( buffer.hasArray( ) && buffer.arrayOffset( ) == 0 && buffer.readerIndex( ) == 0 &&
+            buffer.readableBytes( ) == buffer.array( ).length ) {
+          wrappedRequest.request = buffer.array( ); // use received buffer when it is exactly the request
+        } else {
+          wrappedRequest.request = new byte[buffer.readableBytes( )];
+          buffer.getBytes(0, wrappedRequest.request);
+        }
         Channels.fireMessageReceived(ctx, wrappedRequest,  
             ((InetSocketAddress) me.getRemoteAddress()));
       }catch(final Exception ex) {
@@ -0,0 +1,177 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.cloud.ws;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import com.eucalyptus.util.Pair;
+import com.eucalyptus.util.dns.DnsResolvers;
+import com.eucalyptus.util.dns.DnsResolvers.DnsRequest;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of wire format answers for repeated identical UDP queries.
+ *
+ * Answers are keyed by the query (without the message identifier), the local
+ * address and the horizon of the remote address, since resolvers answer
+ * differently depending on the source network (split horizon.)
+ */
+class DnsAnswerCache {
+
+  private static final int ID_LENGTH = 2;
+  private static final int HEADER_LENGTH = 12;
+
+  private static final AtomicReference<Pair<Integer,Cache<AnswerKey,byte[]>>> cacheReference =
+      new AtomicReference<>( );
+
+  /**
+   * Get the key for a query, null if answers should not be cached.
+   */
+  @Nullable
+  static AnswerKey key(
+      @Nonnull final InetAddress localAddress,
+      @Nonnull final InetAddress remoteAddress,
+      @Nonnull final Message query,
+      @Nonnull final byte[] queryBytes
+  ) {
+    if ( DNSControl.ANSWER_CACHE_TTL <= 0 || queryBytes.length < HEADER_LENGTH || query.getQuestion( ) == null ) {
+      return null;
+    }
+    final List<Object> horizon = DnsResolvers.horizonFor( new DnsRequest( ) {
+      @Override public Record getQuery( ) { return query.getQuestion( ); }
+      @Override public InetAddress getLocalAddress( ) { return localAddress; }
+      @Override public InetAddress getRemoteAddress( ) { return remoteAddress; }
+    } );
+    if ( horizon == null ) {
+      return null;
+    }
+    return new AnswerKey(
+        localAddress,
+        horizon,
+        ByteBuffer.wrap( queryBytes, ID_LENGTH, queryBytes.length - ID_LENGTH ).slice( ) );
+  }
+
+  /**
+   * Get a cached answer with the identifier for the given query.
+   */
+  @Nullable
+  static byte[] answer( @Nullable final AnswerKey key, @Nonnull final byte[] queryBytes ) {
+    if ( key == null ) {
+      return null;
+    }
+    final byte[] cachedReply = answers( ).getIfPresent( key );
+    if ( cachedReply == null ) {
+      return null;
+    }
+    final byte[] reply = cachedReply.clone( );
+    System.arraycopy( queryBytes, 0, reply, 0, ID_LENGTH );
+    return reply;
+  }
+
+  /**
+   * Cache a successful or name error answer.
+   */
+  static void put( @Nullable final AnswerKey key, @Nonnull final byte[] reply ) {
+    if ( key == null || reply.length < HEADER_LENGTH ) {
+      return;
+    }
+    final int rcode = reply[ 3 ] & 0x0F;
+    if ( rcode == Rcode.NOERROR || rcode == Rcode.NXDOMAIN ) {
+      answers( ).put( key, reply );
+    }
+  }
+
+  private static Cache<AnswerKey,byte[]> answers( ) {
+    Cache<AnswerKey,byte[]> cache;
+    final Pair<Integer,Cache<AnswerKey,byte[]>> cachePair = cacheReference.get( );
+    final Integer ttl = DNSControl.ANSWER_CACHE_TTL;
+    if ( cachePair == null || !ttl.equals( cachePair.getLeft( ) ) ) {
+      final Pair<Integer,Cache<AnswerKey,byte[]>> newCachePair = Pair.pair( ttl, answers( ttl ) );
+      if ( cacheReference.compareAndSet( cachePair, newCachePair ) || cachePair == null ) {
+        cache = newCachePair.getRight( );
+      } else {
+        cache = cachePair.getRight( );
+      }
+    } else {
+      cache = cachePair.getRight( );
+    }
+    return cache;
+  }
+
+  private static Cache<AnswerKey,byte[]> answers( final int ttl ) {
+    return CacheBuilder
+        .newBuilder( )
+        .maximumSize( 10_000 )
+        .expireAfterWrite( Math.max( 1, ttl ), TimeUnit.SECONDS )
+        .build( );
+  }
+
+  static final class AnswerKey {
+    private final InetAddress localAddress;
+    private final List<Object> horizon;
+    private final ByteBuffer query;
+
+    private AnswerKey(
+        final InetAddress localAddress,
+        final List<Object> horizon,
+        final ByteBuffer query
+    ) {
+      this.localAddress = localAddress;
+      this.horizon = horizon;
+      this.query = query;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final AnswerKey answerKey = (AnswerKey) o;
+      return localAddress.equals( answerKey.localAddress ) &&
+          horizon.equals( answerKey.horizon ) &&
+          query.equals( answerKey.query );
+    }
+
+    @Override
+    public int hashCode( ) {
+      int result = localAddress.hashCode( );
+      result = 31 * result + horizon.hashCode( );
+      result = 31 * result + query.hashCode( );
+      return result;
+    }
+  }
+}
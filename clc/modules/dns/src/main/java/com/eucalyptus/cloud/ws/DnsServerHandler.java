@@ -42,7 +42,9 @@ import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.xbill.DNS.Message;
 import org.xbill.DNS.Rcode;
 
+import com.eucalyptus.bootstrap.Bootstrap;
 import com.eucalyptus.cloud.ws.DNSControl.TimedDns;
+import com.eucalyptus.util.dns.DnsResolvers;
 
 public class DnsServerHandler extends SimpleChannelUpstreamHandler {
   private static Logger LOG = Logger.getLogger( DnsServerHandler.class );
@@ -67,12 +69,21 @@ public class DnsServerHandler extends SimpleChannelUpstreamHandler {
         buffer.getBytes( 0, inbuf );
       }
       
-      Message query = new Message(inbuf);
       final InetAddress localAddr = ((InetSocketAddress) e.getChannel( ).getLocalAddress( )).getAddress( );
       final InetAddress remoteAddr = ((InetSocketAddress) e.getRemoteAddress()).getAddress();
+      Message query = new Message(inbuf);
+      final DnsAnswerCache.AnswerKey answerKey = DnsResolvers.enabled && Bootstrap.isOperational( ) ?
+          DnsAnswerCache.key( localAddr, remoteAddr, query, inbuf ) :
+          null;
+      final byte[] cachedOutbuf = DnsAnswerCache.answer( answerKey, inbuf );
+      if ( cachedOutbuf != null ) {
+        ctx.getChannel().write(ChannelBuffers.wrappedBuffer( cachedOutbuf ),e.getRemoteAddress( ));
+        return;
+      }
       ConnectionHandler.setLocalAndRemoteInetAddresses(localAddr, remoteAddr );
       try {
         byte[] outbuf = legacyDns.generateReply( query, inbuf, inbuf.length, null );
+        DnsAnswerCache.put( answerKey, outbuf );
         ChannelBuffer chanOutBuf = ChannelBuffers.wrappedBuffer( outbuf );
         ctx.getChannel().write(chanOutBuf,e.getRemoteAddress( ));
         return;
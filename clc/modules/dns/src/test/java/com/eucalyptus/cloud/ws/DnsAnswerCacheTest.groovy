@@ -0,0 +1,127 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.cloud.ws
+
+import groovy.transform.CompileStatic
+import org.junit.After
+import org.junit.Test
+import org.xbill.DNS.DClass
+import org.xbill.DNS.Flags
+import org.xbill.DNS.Message
+import org.xbill.DNS.Name
+import org.xbill.DNS.Rcode
+import org.xbill.DNS.Record
+import org.xbill.DNS.Type
+
+import static org.junit.Assert.assertArrayEquals
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNotNull
+import static org.junit.Assert.assertNull
+
+/**
+ * Unit tests for the UDP answer cache
+ */
+@CompileStatic
+class DnsAnswerCacheTest {
+
+  private static final InetAddress local = InetAddress.getByName( '10.0.0.1' )
+  private static final InetAddress otherLocal = InetAddress.getByName( '10.0.0.2' )
+  private static final InetAddress client = InetAddress.getByName( '192.168.0.10' )
+  private static final InetAddress otherClient = InetAddress.getByName( '192.168.0.11' )
+
+  @After
+  void resetTtl( ) {
+    DNSControl.ANSWER_CACHE_TTL = 2
+  }
+
+  @Test
+  void testAnswerSharedAcrossClients( ) {
+    byte[] query = query( 'shared.example.com.', 1 )
+    DnsAnswerCache.put( key( local, client, query ), reply( query, Rcode.NOERROR ) )
+
+    byte[] otherQuery = query( 'shared.example.com.', 2 )
+    byte[] answer = DnsAnswerCache.answer( key( local, otherClient, otherQuery ), otherQuery )
+    assertNotNull( 'answer', answer )
+    Message message = new Message( answer )
+    assertEquals( 'id', 2, message.header.getID( ) )
+    assertEquals( 'rcode', Rcode.NOERROR, message.header.rcode )
+    assertEquals( 'question', Name.fromString( 'shared.example.com.' ), message.question.name )
+  }
+
+  @Test
+  void testAnswerNotSharedAcrossLocalAddresses( ) {
+    byte[] query = query( 'local.example.com.', 1 )
+    DnsAnswerCache.put( key( local, client, query ), reply( query, Rcode.NOERROR ) )
+
+    assertNull( 'answer', DnsAnswerCache.answer( key( otherLocal, client, query ), query ) )
+    assertNotNull( 'answer', DnsAnswerCache.answer( key( local, client, query ), query ) )
+  }
+
+  @Test
+  void testErrorNotCached( ) {
+    byte[] query = query( 'error.example.com.', 1 )
+    DnsAnswerCache.put( key( local, client, query ), reply( query, Rcode.SERVFAIL ) )
+    assertNull( 'answer', DnsAnswerCache.answer( key( local, client, query ), query ) )
+
+    DnsAnswerCache.put( key( local, client, query ), reply( query, Rcode.NXDOMAIN ) )
+    byte[] answer = DnsAnswerCache.answer( key( local, client, query ), query )
+    assertArrayEquals( 'answer', reply( query, Rcode.NXDOMAIN ), answer )
+  }
+
+  @Test
+  void testTtlConfiguration( ) {
+    DNSControl.ANSWER_CACHE_TTL = 300
+    byte[] query = query( 'ttl.example.com.', 1 )
+    DnsAnswerCache.put( key( local, client, query ), reply( query, Rcode.NOERROR ) )
+    assertNotNull( 'answer', DnsAnswerCache.answer( key( local, client, query ), query ) )
+
+    DNSControl.ANSWER_CACHE_TTL = 0
+    assertNull( 'key when disabled', key( local, client, query ) )
+
+    DNSControl.ANSWER_CACHE_TTL = 300
+    assertNull( 'answer after ttl change', DnsAnswerCache.answer( key( local, client, query ), query ) )
+  }
+
+  private static DnsAnswerCache.AnswerKey key( InetAddress localAddress, InetAddress remoteAddress, byte[] query ) {
+    DnsAnswerCache.key( localAddress, remoteAddress, new Message( query ), query )
+  }
+
+  private static byte[] query( String name, int id ) {
+    Message message = Message.newQuery( Record.newRecord( Name.fromString( name ), Type.A, DClass.IN ) )
+    message.header.setID( id )
+    message.toWire( )
+  }
+
+  private static byte[] reply( byte[] query, int rcode ) {
+    Message message = new Message( query )
+    message.header.setFlag( Flags.QR )
+    message.header.rcode = rcode
+    message.toWire( )
+  }
+}
@@ -31,29 +31,61 @@ package com.eucalyptus.auth.euare;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.text.IsEmptyString.isEmptyOrNullString;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
 import com.eucalyptus.auth.AuthException;
 import com.eucalyptus.auth.AuthenticationProperties;
 import com.eucalyptus.auth.principal.UserPrincipal;
+import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.Pair;
 import com.eucalyptus.util.Parameters;
 import com.eucalyptus.util.async.AsyncExceptions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 
 /**
  *
  */
 public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider {
 
+  private static final Logger logger = Logger.getLogger( CachingPrincipalProvider.class );
+
   private final static AtomicReference<Pair<String,Cache<PrincipalCacheKey,PrincipalCacheValue>>> cacheReference =
       new AtomicReference<>( );
 
+  private final static ConcurrentMap<PrincipalCacheKey,CompletableFuture<PrincipalCacheValue>> refreshesInProgress =
+      Maps.newConcurrentMap( );
+
+  /**
+   * Bounded so a backlog of refreshes is rejected, the principal is then
+   * refreshed by a later request or loaded on expiry.
+   */
+  private final static ExecutorService refreshExecutor = new ThreadPoolExecutor(
+      4, 4, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>( 1000 ),
+      Threads.threadFactory( "auth-principal-refresh-%d" ) );
+
+  private final static LongAdder hits = new LongAdder( );
+  private final static LongAdder misses = new LongAdder( );
+  private final static LongAdder refreshes = new LongAdder( );
+  private final static LongAdder staleServes = new LongAdder( );
+
   @Override
   public UserPrincipal lookupCachedPrincipalByUserId( final UserPrincipal cached, final String userId, final String nonce ) throws AuthException {
     return cache( new UserIdPrincipalCacheKey( userId, nonce ), new PrincipalLoader( ) {
@@ -103,31 +135,127 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
     } );
   }
 
+  /**
+   * Principal cache hit, miss, refresh and stale-serve counts.
+   */
+  public static Map<String,Long> getCacheStatistics( ) {
+    return ImmutableMap.of(
+        "hits", hits.sum( ),
+        "misses", misses.sum( ),
+        "refreshes", refreshes.sum( ),
+        "staleServes", staleServes.sum( )
+    );
+  }
+
+  /**
+   * Cached principals are refreshed asynchronously once half the expiry has
+   * passed so frequently used principals are not loaded on request threads.
+   *
+   * An expired principal is loaded on the request thread, concurrent requests
+   * for the same principal wait for the same load.
+   */
   private UserPrincipal cache(
       final PrincipalCacheKey key,
       final PrincipalLoader loader ) throws AuthException {
-    PrincipalCacheValue principalValue = null;
-    final Cache<PrincipalCacheKey,PrincipalCacheValue> cache = cache( );
-    try {
-      principalValue = cache.get( key, loader.callable( null ) );
-      if ( principalValue.updated + AuthenticationProperties.getAuthorizationExpiry( ) < System.currentTimeMillis( ) ) {
-        cache.invalidate( key ); // invalidate expired and refresh
-        principalValue =  cache.get( key, loader.callable( principalValue.principal ) );
+    return cache(
+        cache( ),
+        key,
+        loader,
+        refreshExecutor,
+        AuthenticationProperties.getAuthorizationExpiry( ),
+        AuthenticationProperties.getAuthorizationReuseExpiry( ) );
+  }
+
+  static UserPrincipal cache(
+      final Cache<PrincipalCacheKey,PrincipalCacheValue> cache,
+      final PrincipalCacheKey key,
+      final PrincipalLoader loader,
+      final Executor refreshExecutor,
+      final long expiry,
+      final long reuseExpiry ) throws AuthException {
+    final PrincipalCacheValue principalValue = cache.getIfPresent( key );
+    final long now = System.currentTimeMillis( );
+    if ( principalValue == null ) {
+      misses.increment( );
+      try {
+        return cache.get( key, loader.callable( null ) ).principal;
+      } catch ( final ExecutionException e ) {
+        throw authException( e );
+      }
+    }
+    if ( principalValue.updated + expiry >= now ) {
+      hits.increment( );
+      if ( principalValue.updated + ( expiry / 2 ) < now ) {
+        refresh( cache, key, loader, principalValue, refreshExecutor );
       }
       return principalValue.principal;
+    }
+    final CompletableFuture<PrincipalCacheValue> refresh =
+        refresh( cache, key, loader, principalValue, Runnable::run );
+    if ( !refresh.isDone( ) && principalValue.created + reuseExpiry > now ) {
+      // reuse cached value within configured limit while refresh in progress
+      staleServes.increment( );
+      return principalValue.principal;
+    }
+    try {
+      return refresh.get( ).principal;
+    } catch ( final InterruptedException e ) {
+      Thread.currentThread( ).interrupt( );
+      throw new AuthException( e );
     } catch ( final ExecutionException e ) {
       // reuse cached value on failure within configured limit, but not for web service error responses
       if ( !AsyncExceptions.asWebServiceError( e ).isPresent( ) &&
-          principalValue != null &&
-          principalValue.created + AuthenticationProperties.getAuthorizationReuseExpiry( ) > System.currentTimeMillis( ) ) {
+          principalValue.created + reuseExpiry > System.currentTimeMillis( ) ) {
         cache.put( key, new PrincipalCacheValue( principalValue ) );
         return principalValue.principal;
       }
-      if ( e.getCause( ) instanceof AuthException ) {
-        throw (AuthException) e.getCause( );
-      } else {
-        throw new AuthException( e );
-      }
+      throw authException( e );
+    }
+  }
+
+  /**
+   * Start a refresh for the given key, or return the refresh already in progress.
+   */
+  private static CompletableFuture<PrincipalCacheValue> refresh(
+      final Cache<PrincipalCacheKey,PrincipalCacheValue> cache,
+      final PrincipalCacheKey key,
+      final PrincipalLoader loader,
+      final PrincipalCacheValue principalValue,
+      final Executor executor
+  ) {
+    final CompletableFuture<PrincipalCacheValue> refresh = new CompletableFuture<>( );
+    final CompletableFuture<PrincipalCacheValue> existingRefresh = refreshesInProgress.putIfAbsent( key, refresh );
+    if ( existingRefresh != null ) {
+      return existingRefresh;
+    }
+    refreshes.increment( );
+    try {
+      executor.execute( ( ) -> {
+        try {
+          final PrincipalCacheValue refreshedValue = loader.callable( principalValue.principal ).call( );
+          cache.put( key, refreshedValue );
+          refresh.complete( refreshedValue );
+        } catch ( final Throwable e ) {
+          logger.warn( "Error refreshing cached principal " + key + ": " + e.getMessage( ) );
+          logger.debug( "Error refreshing cached principal " + key, e );
+          refresh.completeExceptionally( e );
+        } finally {
+          refreshesInProgress.remove( key, refresh );
+        }
+      } );
+    } catch ( final RejectedExecutionException e ) {
+      logger.debug( "Principal refresh rejected for " + key );
+      refreshesInProgress.remove( key, refresh );
+      refresh.completeExceptionally( e );
+    }
+    return refresh;
+  }
+
+  private static AuthException authException( final ExecutionException e ) {
+    if ( e.getCause( ) instanceof AuthException ) {
+      return (AuthException) e.getCause( );
+    } else {
+      return new AuthException( e );
     }
   }
 
@@ -155,7 +283,7 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
         .build( );
   }
 
-  private static abstract class PrincipalLoader {
+  static abstract class PrincipalLoader {
     abstract UserPrincipal load( UserPrincipal cached ) throws AuthException;
 
     Callable<PrincipalCacheValue> callable( final UserPrincipal cached ) {
@@ -168,7 +296,7 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
     }
   }
 
-  private static final class PrincipalCacheValue {
+  static final class PrincipalCacheValue {
              private final long created;
              private final long updated;
     @Nonnull private final UserPrincipal principal;
@@ -188,7 +316,7 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
     }
   }
 
-  private static abstract class PrincipalCacheKey {
+  static abstract class PrincipalCacheKey {
     @Nonnull  private final String identifier;
     @Nullable private final String nonce;
 
@@ -221,9 +349,14 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
       result = 31 * result + ( nonce != null ? nonce.hashCode() : 0 );
       return result;
     }
+
+    @Override
+    public String toString( ) {
+      return getClass( ).getSimpleName( ) + ":" + identifier;
+    }
   }
 
-  private static final class UserIdPrincipalCacheKey extends PrincipalCacheKey {
+  static final class UserIdPrincipalCacheKey extends PrincipalCacheKey {
     protected UserIdPrincipalCacheKey(
         @Nonnull final String identifier,
         @Nullable final String nonce
@@ -0,0 +1,139 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.auth.euare
+
+import com.eucalyptus.auth.AuthException
+import com.eucalyptus.auth.euare.CachingPrincipalProvider.PrincipalCacheKey
+import com.eucalyptus.auth.euare.CachingPrincipalProvider.PrincipalCacheValue
+import com.eucalyptus.auth.euare.CachingPrincipalProvider.PrincipalLoader
+import com.eucalyptus.auth.euare.CachingPrincipalProvider.UserIdPrincipalCacheKey
+import com.eucalyptus.auth.principal.Principals
+import com.eucalyptus.auth.principal.UserPrincipal
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import groovy.transform.CompileStatic
+import org.junit.Test
+
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertSame
+
+/**
+ * Unit tests for principal caching and refresh
+ */
+@CompileStatic
+class CachingPrincipalProviderTest {
+
+  private static final long EXPIRY = 500
+  private static final long PAST_HALF_EXPIRY = 300
+  private static final UserPrincipal first = Principals.nobodyUser( )
+  private static final UserPrincipal second = Principals.systemUser( )
+
+  private final Cache<PrincipalCacheKey,PrincipalCacheValue> cache = CacheBuilder.newBuilder( ).build( )
+  private final List<Runnable> refreshes = [ ]
+  private final Executor executor = { Runnable runnable -> refreshes.add( runnable ) } as Executor
+
+  @Test
+  void testFreshPrincipalNotRefreshed( ) {
+    PrincipalCacheKey key = new UserIdPrincipalCacheKey( 'fresh', null )
+    assertSame( 'loaded', first, lookup( key, loader( first ), 0 ) )
+    assertSame( 'cached', first, lookup( key, loader( second ), 0 ) )
+    assertEquals( 'refreshes', 0, refreshes.size( ) )
+  }
+
+  @Test
+  void testStalePrincipalServedWhileRefreshing( ) {
+    PrincipalCacheKey key = new UserIdPrincipalCacheKey( 'stale', null )
+    lookup( key, loader( first ), 0 )
+    sleep( PAST_HALF_EXPIRY )
+
+    assertSame( 'stale', first, lookup( key, loader( second ), 0 ) )
+    assertSame( 'stale while refreshing', first, lookup( key, loader( second ), 0 ) )
+    assertEquals( 'refreshes', 1, refreshes.size( ) )
+
+    refreshes.remove( 0 ).run( )
+    assertSame( 'refreshed', second, lookup( key, loader( first ), 0 ) )
+  }
+
+  @Test
+  void testExpiredPrincipalReusedWhileRefreshing( ) {
+    PrincipalCacheKey key = new UserIdPrincipalCacheKey( 'expired', null )
+    lookup( key, loader( first ), 0 )
+    sleep( PAST_HALF_EXPIRY )
+    lookup( key, loader( second ), 0 )
+    sleep( EXPIRY )
+
+    assertSame( 'reused', first, lookup( key, loader( second ), 60_000 ) )
+    refreshes.remove( 0 ).run( )
+    assertSame( 'refreshed', second, lookup( key, loader( first ), 0 ) )
+  }
+
+  @Test
+  void testRejectedRefreshRetried( ) {
+    PrincipalCacheKey key = new UserIdPrincipalCacheKey( 'rejected', null )
+    lookup( key, loader( first ), 0 )
+    sleep( PAST_HALF_EXPIRY )
+
+    Executor rejecting = { Runnable runnable -> throw new RejectedExecutionException( ) } as Executor
+    assertSame( 'stale', first, CachingPrincipalProvider.cache( cache, key, loader( second ), rejecting, EXPIRY, 0 ) )
+    assertSame( 'stale after rejection', first, lookup( key, loader( second ), 0 ) )
+    assertEquals( 'refreshes', 1, refreshes.size( ) )
+  }
+
+  @Test
+  void testFailedRefreshKeepsPrincipal( ) {
+    PrincipalCacheKey key = new UserIdPrincipalCacheKey( 'failed', null )
+    lookup( key, loader( first ), 0 )
+    sleep( PAST_HALF_EXPIRY )
+
+    lookup( key, new PrincipalLoader( ) {
+      @Override
+      UserPrincipal load( final UserPrincipal cached ) throws AuthException {
+        throw new AuthException( 'Refresh failure' )
+      }
+    }, 0 )
+    refreshes.remove( 0 ).run( )
+    assertSame( 'cached', first, lookup( key, loader( second ), 0 ) )
+  }
+
+  private UserPrincipal lookup( PrincipalCacheKey key, PrincipalLoader loader, long reuseExpiry ) {
+    CachingPrincipalProvider.cache( cache, key, loader, executor, EXPIRY, reuseExpiry )
+  }
+
+  private static PrincipalLoader loader( UserPrincipal principal ) {
+    new PrincipalLoader( ) {
+      @Override
+      UserPrincipal load( final UserPrincipal cached ) throws AuthException {
+        principal
+      }
+    }
+  }
+}
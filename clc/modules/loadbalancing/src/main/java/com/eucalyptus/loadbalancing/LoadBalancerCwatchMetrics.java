@@ -35,6 +35,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.Nullable;
 
@@ -61,18 +67,17 @@ public class LoadBalancerCwatchMetrics {
 	private static Logger    LOG     = Logger.getLogger( LoadBalancerCwatchMetrics.class );
 
 	private static LoadBalancerCwatchMetrics _instance = new LoadBalancerCwatchMetrics();
-	private Map<ElbDimension, ElbAggregate> metricsMap = new ConcurrentHashMap<ElbDimension, ElbAggregate>();
+	private ConcurrentMap<ElbDimension, ElbAggregate> metricsMap = new ConcurrentHashMap<ElbDimension, ElbAggregate>();
 	
-	private Map<BackendInstance, Boolean> instanceHealthMap = new ConcurrentHashMap<BackendInstance, Boolean>();
-	private Map<BackendInstance, ElbDimension> instanceToDimensionMap = new ConcurrentHashMap<BackendInstance, ElbDimension>();
+	private ConcurrentMap<BackendInstance, Boolean> instanceHealthMap = new ConcurrentHashMap<BackendInstance, Boolean>();
+	private ConcurrentMap<BackendInstance, ElbDimension> instanceToDimensionMap = new ConcurrentHashMap<BackendInstance, ElbDimension>();
 	
 	
-	private Map<String, Date> lastReported = new ConcurrentHashMap<String, Date>();
+	private ConcurrentMap<String, Date> lastReported = new ConcurrentHashMap<String, Date>();
 	
 	private final int CLOUDWATCH_REPORTING_INTERVAL_SEC = 60;// http://docs.aws.amazon.com/ElasticLoadBalancing/latest/DeveloperGuide/US_MonitoringLoadBalancerWithCW.html
 	private final String CLOUDWATCH_ELB_METRIC_NAMESPACE = "AWS/ELB";
 	
-	private Object lock = new Object();
 	private LoadBalancerCwatchMetrics(){	}
 	public static LoadBalancerCwatchMetrics getInstance(){
 		return _instance;
@@ -85,11 +90,8 @@ public class LoadBalancerCwatchMetrics {
 		final String lbName = lb.getDisplayName();
 		final String zoneName = lbZone.getName();
 		ElbDimension dim = new ElbDimension(userId, lbName, zoneName);
-		synchronized(lock) {
-			if(!metricsMap.containsKey(dim))
-				metricsMap.put(dim, new ElbAggregate(lbName, zoneName));
-			metricsMap.get(dim).addMetric(metric);
-		}
+		// retry if the aggregate was exported concurrently
+		while(!aggregateFor(dim).tryAddMetric(metric));
 		
 		try{
 			maybeReport(userId);
@@ -102,39 +104,42 @@ public class LoadBalancerCwatchMetrics {
 		final ElbDimension dim = new ElbDimension(lb.getOwnerUserId(), lb.getDisplayName(), zone);
 		final BackendInstance key = new BackendInstance(lb, instanceId);
 
-		synchronized(lock){
-			if(!this.instanceToDimensionMap.containsKey(key))
-				this.instanceToDimensionMap.put(key, dim);
-			this.instanceHealthMap.put(key, Boolean.TRUE);
-			if(!metricsMap.containsKey(dim))
-				metricsMap.put(dim, new ElbAggregate(lb.getDisplayName(), zone)); 
-		}
+		this.instanceToDimensionMap.putIfAbsent(key, dim);
+		this.instanceHealthMap.put(key, Boolean.TRUE);
+		aggregateFor(dim);
 	}
 	
 	public void updateUnHealthy(final LoadBalancerCoreView lb, final String zone, final String instanceId){
 		final ElbDimension dim = new ElbDimension(lb.getOwnerUserId(), lb.getDisplayName(), zone);
 		final BackendInstance key = new BackendInstance(lb, instanceId);
 		
-		synchronized(lock){
-			if(!this.instanceToDimensionMap.containsKey(key))
-				this.instanceToDimensionMap.put(key, dim);
-			this.instanceHealthMap.put(key, Boolean.FALSE);
-			if(!metricsMap.containsKey(dim))
-				metricsMap.put(dim, new ElbAggregate(lb.getDisplayName(), zone));
+		this.instanceToDimensionMap.putIfAbsent(key, dim);
+		this.instanceHealthMap.put(key, Boolean.FALSE);
+		aggregateFor(dim);
+	}
+
+	private ElbAggregate aggregateFor(final ElbDimension dim){
+		ElbAggregate aggregate = metricsMap.get(dim);
+		if(aggregate == null){
+			final ElbAggregate newAggregate = new ElbAggregate(dim.getLoadbalancer(), dim.getAvailabilityZone());
+			aggregate = metricsMap.putIfAbsent(dim, newAggregate);
+			if(aggregate == null)
+				aggregate = newAggregate;
 		}
+		return aggregate;
 	}
 	
 	private void maybeReport(final String userId){
 		MetricData data = null;
-		if(! this.lastReported.containsKey(userId)){
-		  this.lastReported.put(userId, new Date(System.currentTimeMillis()));
+		final Date lastReport = this.lastReported.get(userId);
+		if(lastReport == null){
+		  this.lastReported.putIfAbsent(userId, new Date(System.currentTimeMillis()));
 		  return;
 		}
-		final Date lastReport = this.lastReported.get(userId);
 		long currentTime = System.currentTimeMillis();
 		int diffSec = (int)((currentTime - lastReport.getTime())/1000.0);
-		if(diffSec >= CLOUDWATCH_REPORTING_INTERVAL_SEC) {
-      this.lastReported.put(userId, new Date(currentTime));
+		// only one caller reports for each interval
+		if(diffSec >= CLOUDWATCH_REPORTING_INTERVAL_SEC && this.lastReported.replace(userId, lastReport, new Date(currentTime))) {
 		  data = this.getDataAndClear(userId);
 		}
 
@@ -206,7 +211,6 @@ public class LoadBalancerCwatchMetrics {
 		/// lb - availability zone	
 		final MetricData data = new MetricData();		
 		data.setMember(Lists.<MetricDatum>newArrayList());
-		final List<ElbDimension> toCleanup = Lists.newArrayList();
     	
 		final Map<ElbDimension, Integer> healthyCountMap = new HashMap<ElbDimension, Integer>();
     	final Map<ElbDimension, Integer> unhealthyCountMap = new HashMap<ElbDimension, Integer>();
@@ -224,109 +228,135 @@ public class LoadBalancerCwatchMetrics {
 				}
 			}
     	}));
-    	synchronized(lock){
-			/// add HealthyHostCount and UnHealthyHostCount
-        	for(final BackendInstance instance : candidates){
-            if (! this.instanceHealthMap.containsKey(instance))
-              continue;
-        	  final ElbDimension thisDim = this.instanceToDimensionMap.get(instance);
-        	  if(!healthyCountMap.containsKey(thisDim))
-              healthyCountMap.put(thisDim, 0);
-            if(!unhealthyCountMap.containsKey(thisDim))
-              unhealthyCountMap.put(thisDim,  0);
-        		if(this.instanceHealthMap.get(instance).booleanValue()) // healthy	
-        			healthyCountMap.put(thisDim, healthyCountMap.get(thisDim)+1);
-        		else
-        			unhealthyCountMap.put(thisDim, unhealthyCountMap.get(thisDim)+1);
-        	}
-        	
-			for (final ElbDimension dim : this.metricsMap.keySet()){
-				if(!dim.getUserId().equals(userId))
-					continue;
-				
-				final ElbAggregate aggr = this.metricsMap.get(dim);
-				final  List<MetricDatum> datumList = aggr.toELBStatistics();
-				
-			 	Dimensions dims = new Dimensions();
-	        	Dimension lb = new Dimension();
-	        	lb.setName("LoadBalancerName");
-	        	lb.setValue(dim.getLoadbalancer());
-	        	Dimension az = new Dimension();
-	        	az.setName("AvailabilityZone");
-	        	az.setValue(dim.getAvailabilityZone());
-	        	dims.setMember(Lists.newArrayList(lb, az));
-	        		
-				if(healthyCountMap.containsKey(dim)){
-		        	int numHealthy = healthyCountMap.get(dim);
-		        	if(numHealthy >= 0){
-						MetricDatum datum = new MetricDatum();
-						datum.setDimensions(dims);
-						datum.setMetricName("HealthyHostCount");
-						datum.setUnit("Count");
-			        	final StatisticSet sset = new StatisticSet();
-			        	sset.setSampleCount(1.0);
-			        	sset.setMaximum((double)numHealthy);
-			        	sset.setMinimum((double)numHealthy);
-			        	sset.setSum((double)numHealthy);
-			        	datum.setStatisticValues(sset);
-						datumList.add(datum);
-		        	}
-				}
-				if(unhealthyCountMap.containsKey(dim)){
-					int numUnhealthy = unhealthyCountMap.get(dim);
-					if(numUnhealthy >= 0){
-						MetricDatum datum = new MetricDatum();
-						datum.setDimensions(dims);
-						datum.setMetricName("UnHealthyHostCount");
-						datum.setUnit("Count");
-			        	final StatisticSet sset = new StatisticSet();
-			        	sset.setSampleCount(1.0);
-			        	sset.setMaximum((double)numUnhealthy);
-			        	sset.setMinimum((double)numUnhealthy);
-			        	sset.setSum((double)numUnhealthy);
-			        	datum.setStatisticValues(sset);
-			        	datumList.add(datum);
-					}
-				}
-	        	
-				if(datumList.size()>0)
-					data.getMember().addAll(datumList);
-				
-				toCleanup.add(dim);
-			}
+		/// add HealthyHostCount and UnHealthyHostCount, removing each reported instance state
+		for(final BackendInstance instance : candidates){
+		  final ElbDimension thisDim = this.instanceToDimensionMap.remove(instance);
+		  final Boolean healthy = this.instanceHealthMap.remove(instance);
+		  if (thisDim == null || healthy == null)
+		    continue;
+		  if(!healthyCountMap.containsKey(thisDim))
+		    healthyCountMap.put(thisDim, 0);
+		  if(!unhealthyCountMap.containsKey(thisDim))
+		    unhealthyCountMap.put(thisDim,  0);
+		  if(healthy.booleanValue()) // healthy
+		    healthyCountMap.put(thisDim, healthyCountMap.get(thisDim)+1);
+		  else
+		    unhealthyCountMap.put(thisDim, unhealthyCountMap.get(thisDim)+1);
+		}
+
+		for (final ElbDimension dim : this.metricsMap.keySet()){
+			if(!dim.getUserId().equals(userId))
+				continue;
+
+			// swap out the aggregate, later metrics go to a new aggregate
+			final ElbAggregate aggr = this.metricsMap.remove(dim);
+			if(aggr == null)
+				continue;
+			aggr.markExported();
+			final  List<MetricDatum> datumList = aggr.toELBStatistics();
 			
-			for(final ElbDimension cleanup : toCleanup){
-				this.metricsMap.remove(cleanup);
-				healthyCountMap.remove(cleanup);
-				unhealthyCountMap.remove(cleanup);
+		 	Dimensions dims = new Dimensions();
+        	Dimension lb = new Dimension();
+        	lb.setName("LoadBalancerName");
+        	lb.setValue(dim.getLoadbalancer());
+        	Dimension az = new Dimension();
+        	az.setName("AvailabilityZone");
+        	az.setValue(dim.getAvailabilityZone());
+        	dims.setMember(Lists.newArrayList(lb, az));
+        		
+			if(healthyCountMap.containsKey(dim)){
+	        	int numHealthy = healthyCountMap.get(dim);
+	        	if(numHealthy >= 0){
+					MetricDatum datum = new MetricDatum();
+					datum.setDimensions(dims);
+					datum.setMetricName("HealthyHostCount");
+					datum.setUnit("Count");
+		        	final StatisticSet sset = new StatisticSet();
+		        	sset.setSampleCount(1.0);
+		        	sset.setMaximum((double)numHealthy);
+		        	sset.setMinimum((double)numHealthy);
+		        	sset.setSum((double)numHealthy);
+		        	datum.setStatisticValues(sset);
+					datumList.add(datum);
+	        	}
 			}
-			for(final BackendInstance instance : candidates){
-				this.instanceHealthMap.remove(instance);
-				this.instanceToDimensionMap.remove(instance);
+			if(unhealthyCountMap.containsKey(dim)){
+				int numUnhealthy = unhealthyCountMap.get(dim);
+				if(numUnhealthy >= 0){
+					MetricDatum datum = new MetricDatum();
+					datum.setDimensions(dims);
+					datum.setMetricName("UnHealthyHostCount");
+					datum.setUnit("Count");
+		        	final StatisticSet sset = new StatisticSet();
+		        	sset.setSampleCount(1.0);
+		        	sset.setMaximum((double)numUnhealthy);
+		        	sset.setMinimum((double)numUnhealthy);
+		        	sset.setSum((double)numUnhealthy);
+		        	datum.setStatisticValues(sset);
+		        	datumList.add(datum);
+				}
 			}
-		}// end of lock
+        	
+			if(datumList.size()>0)
+				data.getMember().addAll(datumList);
+		}
 		
 		return data;
 	}
 	
 	
 	public static class ElbAggregate{
-        private double latency = 0; // latency in seconds
-        private long requestCount = 0;
-        private long httpCode_ELB_4XX = 0;
-        private long httpCode_ELB_5XX = 0;
-        private long httpCode_Backend_2XX = 0;
-        private long httpCode_Backend_3XX = 0;
-        private long httpCode_Backend_4XX = 0;
-        private long httpCode_Backend_5XX = 0;
+        private final DoubleAdder latency = new DoubleAdder(); // latency in seconds
+        private final LongAdder requestCount = new LongAdder();
+        private final LongAdder httpCode_ELB_4XX = new LongAdder();
+        private final LongAdder httpCode_ELB_5XX = new LongAdder();
+        private final LongAdder httpCode_Backend_2XX = new LongAdder();
+        private final LongAdder httpCode_Backend_3XX = new LongAdder();
+        private final LongAdder httpCode_Backend_4XX = new LongAdder();
+        private final LongAdder httpCode_Backend_5XX = new LongAdder();
         private String loadbalancer = null;
         private String availabilityZone = null;
+        // metrics are added under the read lock, export takes the write lock
+        private final ReadWriteLock exportLock = new ReentrantReadWriteLock();
+        private volatile boolean exported = false;
         
         public ElbAggregate(final String loadbalancer, final String availabilityZone){
         	this.loadbalancer = loadbalancer;
         	this.availabilityZone = availabilityZone;
         }
        
+        /**
+         * Add the metric unless this aggregate has been exported.
+         *
+         * @return false if the aggregate was exported
+         */
+        boolean tryAddMetric(final MetricData metric){
+        	final Lock lock = exportLock.readLock();
+        	if(!lock.tryLock())
+        		return false;
+        	try{
+        		if(exported)
+        			return false;
+        		addMetric(metric);
+        		return true;
+        	}finally{
+        		lock.unlock();
+        	}
+        }
+
+        /**
+         * Wait for in progress additions and reject any further metrics.
+         */
+        void markExported(){
+        	final Lock lock = exportLock.writeLock();
+        	lock.lock();
+        	try{
+        		exported = true;
+        	}finally{
+        		lock.unlock();
+        	}
+        }
+
         public void addMetric(final MetricData metric){
         	//        name = ['Latency','RequestCount','HTTPCode_ELB_4XX','HTTPCode_ELB_5XX','HTTPCode_Backend_2XX','HTTPCode_Backend_3XX','HTTPCode_Backend_4XX','HTTPCode_Backend_5XX']
             // value = [metric.Latency, metric.RequestCount, metric.HTTPCode_ELB_4XX, metric.HTTPCode_ELB_5XX, metric.HTTPCode_Backend_2XX, metric.HTTPCode_Backend_3XX, metric.HTTPCode_Backend_4XX, metric.HTTPCode_Backend_5XX]
@@ -336,27 +366,35 @@ public class LoadBalancerCwatchMetrics {
         			double value = datum.getValue();
         			if(name.equals("Latency")){ /// sent in milliseconds
         				value = value / 1000.0; // to seconds
-        				this.latency += value;
+        				this.latency.add(value);
         			}else if(name.equals("RequestCount")){
-        				this.requestCount += (long) value;
+        				this.requestCount.add((long) value);
         			}else if (name.equals("HTTPCode_ELB_4XX")){
-        				this.httpCode_ELB_4XX += (long) value;
+        				this.httpCode_ELB_4XX.add((long) value);
         			}else if (name.equals("HTTPCode_ELB_5XX")){
-        				this.httpCode_ELB_5XX += (long) value;
+        				this.httpCode_ELB_5XX.add((long) value);
         			}else if(name.equals("HTTPCode_Backend_2XX")){
-        				this.httpCode_Backend_2XX += (long) value;
+        				this.httpCode_Backend_2XX.add((long) value);
         			}else if(name.equals("HTTPCode_Backend_3XX")){
-        				this.httpCode_Backend_3XX += (long) value;
+        				this.httpCode_Backend_3XX.add((long) value);
         			}else if(name.equals("HTTPCode_Backend_4XX")){
-        				this.httpCode_Backend_4XX += (long) value;
+        				this.httpCode_Backend_4XX.add((long) value);
         			}else if(name.equals("HTTPCode_Backend_5XX")){
-        				this.httpCode_Backend_5XX += (long) value;
+        				this.httpCode_Backend_5XX.add((long) value);
         			}
         		}
         	}
         }
         
         public List<MetricDatum> toELBStatistics(){
+        	final double latency = this.latency.sum();
+        	final long requestCount = this.requestCount.sum();
+        	final long elb4XXCount = this.httpCode_ELB_4XX.sum();
+        	final long elb5XXCount = this.httpCode_ELB_5XX.sum();
+        	final long backend2XXCount = this.httpCode_Backend_2XX.sum();
+        	final long backend3XXCount = this.httpCode_Backend_3XX.sum();
+        	final long backend4XXCount = this.httpCode_Backend_4XX.sum();
+        	final long backend5XXCount = this.httpCode_Backend_5XX.sum();
         	List<MetricDatum> result = Lists.<MetricDatum>newArrayList();
         	Dimensions dims = new Dimensions();
         	Dimension lb = new Dimension();
@@ -367,104 +405,104 @@ public class LoadBalancerCwatchMetrics {
         	az.setValue(this.availabilityZone);
         	dims.setMember(Lists.newArrayList(lb, az));
         	
-        	if(this.latency > 0 && this.requestCount>0){
+        	if(latency>0 && requestCount>0){
 	        	final MetricDatum latencyData = new MetricDatum();
 	        	latencyData.setDimensions(dims);
 	        	latencyData.setMetricName("Latency");
 	        	latencyData.setUnit("Seconds");
-	        	double latency = this.latency / (double) this.requestCount;
-	        	latencyData.setValue(latency);
+	        	double averageLatency = latency / (double) requestCount;
+	        	latencyData.setValue(averageLatency);
 	        	result.add(latencyData);
         	}
         	
-        	if(this.requestCount>0){
+        	if(requestCount>0){
         		final MetricDatum reqCountData = new MetricDatum();
 	        	reqCountData.setDimensions(dims);
 	        	reqCountData.setMetricName("RequestCount");
 	        	reqCountData.setUnit("Count");
 	        	final StatisticSet sset = new StatisticSet();
-	        	sset.setSampleCount((double)this.requestCount);
+	        	sset.setSampleCount((double)requestCount);
 	        	sset.setMaximum(1.0);
 	        	sset.setMinimum(1.0);
-	        	sset.setSum((double)this.requestCount);
+	        	sset.setSum((double)requestCount);
 	        	reqCountData.setStatisticValues(sset);
 	        	result.add(reqCountData);
         	}
-        	if(this.httpCode_ELB_4XX>0){
+        	if(elb4XXCount>0){
 	        	final MetricDatum httpCode_ELB_4XX = new MetricDatum();
 	        	httpCode_ELB_4XX.setDimensions(dims);
 	        	httpCode_ELB_4XX.setMetricName("HTTPCode_ELB_4XX");
 	        	httpCode_ELB_4XX.setUnit("Count");
 	        	final StatisticSet sset = new StatisticSet();
-	        	sset.setSampleCount((double)this.httpCode_ELB_4XX);
+	        	sset.setSampleCount((double)elb4XXCount);
 	        	sset.setMaximum(0.0);
 	        	sset.setMinimum(0.0);
-	        	sset.setSum((double)this.httpCode_ELB_4XX);
+	        	sset.setSum((double)elb4XXCount);
 	        	httpCode_ELB_4XX.setStatisticValues(sset);
 	        	result.add(httpCode_ELB_4XX);
         	}
-        	if(this.httpCode_ELB_5XX>0){
+        	if(elb5XXCount>0){
 	        	final MetricDatum httpCode_ELB_5XX = new MetricDatum();
 	        	httpCode_ELB_5XX.setDimensions(dims);
 	        	httpCode_ELB_5XX.setMetricName("HTTPCode_ELB_5XX");
 	        	httpCode_ELB_5XX.setUnit("Count");
 	        	final StatisticSet sset = new StatisticSet();
-	        	sset.setSampleCount((double)this.httpCode_ELB_5XX);
+	        	sset.setSampleCount((double)elb5XXCount);
 	        	sset.setMaximum(0.0);
 	        	sset.setMinimum(0.0);
-	        	sset.setSum((double)this.httpCode_ELB_5XX);
+	        	sset.setSum((double)elb5XXCount);
 	        	httpCode_ELB_5XX.setStatisticValues(sset);
 	        	result.add(httpCode_ELB_5XX);
         	}
-        	if(this.httpCode_Backend_2XX>0){
+        	if(backend2XXCount>0){
 	        	final MetricDatum httpCode_Backend_2XX = new MetricDatum();
 	        	httpCode_Backend_2XX.setDimensions(dims);
 	        	httpCode_Backend_2XX.setMetricName("HTTPCode_Backend_2XX");
 	        	httpCode_Backend_2XX.setUnit("Count");
 	        	final StatisticSet sset = new StatisticSet();
-	        	sset.setSampleCount((double)this.httpCode_Backend_2XX);
+	        	sset.setSampleCount((double)backend2XXCount);
 	        	sset.setMaximum(0.0);
 	        	sset.setMinimum(0.0);
-	        	sset.setSum((double)this.httpCode_Backend_2XX);
+	        	sset.setSum((double)backend2XXCount);
 	        	httpCode_Backend_2XX.setStatisticValues(sset);
 	        	result.add(httpCode_Backend_2XX);
         	}
-        	if(this.httpCode_Backend_3XX>0){
+        	if(backend3XXCount>0){
 	        	final MetricDatum httpCode_Backend_3XX = new MetricDatum();
 	        	httpCode_Backend_3XX.setDimensions(dims);
 	        	httpCode_Backend_3XX.setMetricName("HTTPCode_Backend_3XX");
 	        	httpCode_Backend_3XX.setUnit("Count");
 	        	final StatisticSet sset = new StatisticSet();
-	        	sset.setSampleCount((double)this.httpCode_Backend_3XX);
+	        	sset.setSampleCount((double)backend3XXCount);
 	        	sset.setMaximum(0.0);
 	        	sset.setMinimum(0.0);
-	        	sset.setSum((double)this.httpCode_Backend_3XX);
+	        	sset.setSum((double)backend3XXCount);
 	        	httpCode_Backend_3XX.setStatisticValues(sset);	        	
 	        	result.add(httpCode_Backend_3XX);
         	}
-        	if(this.httpCode_Backend_4XX > 0){
+        	if(backend4XXCount>0){
 	        	final MetricDatum httpCode_Backend_4XX = new MetricDatum();
 	        	httpCode_Backend_4XX.setDimensions(dims);
 	        	httpCode_Backend_4XX.setMetricName("HTTPCode_Backend_4XX");
 	        	httpCode_Backend_4XX.setUnit("Count");
 	        	final StatisticSet sset = new StatisticSet();
-	        	sset.setSampleCount((double)this.httpCode_Backend_4XX);
+	        	sset.setSampleCount((double)backend4XXCount);
 	        	sset.setMaximum(0.0);
 	        	sset.setMinimum(0.0);
-	        	sset.setSum((double)this.httpCode_Backend_4XX);
+	        	sset.setSum((double)backend4XXCount);
 	        	httpCode_Backend_4XX.setStatisticValues(sset);
 	        	result.add(httpCode_Backend_4XX);
         	}
-        	if(this.httpCode_Backend_5XX > 0){
+        	if(backend5XXCount>0){
 	        	final MetricDatum httpCode_Backend_5XX = new MetricDatum();
 	        	httpCode_Backend_5XX.setDimensions(dims);
 	        	httpCode_Backend_5XX.setMetricName("HTTPCode_Backend_5XX");
 	        	httpCode_Backend_5XX.setUnit("Count");
 	        	final StatisticSet sset = new StatisticSet();
-	        	sset.setSampleCount((double)this.httpCode_Backend_5XX);
+	        	sset.setSampleCount((double)backend5XXCount);
 	        	sset.setMaximum(0.0);
 	        	sset.setMinimum(0.0);
-	        	sset.setSum((double)this.httpCode_Backend_5XX);
+	        	sset.setSum((double)backend5XXCount);
 	        	httpCode_Backend_5XX.setStatisticValues(sset);
 	        	result.add(httpCode_Backend_5XX);
         	}
@@ -474,8 +512,8 @@ public class LoadBalancerCwatchMetrics {
 
         @Override
         public String toString(){
-        	return String.format("aggregate=%.2f %d %d %d %d %d %d %d", this.latency, this.requestCount, this.httpCode_ELB_4XX, this.httpCode_ELB_5XX,
-        			this.httpCode_Backend_2XX, this.httpCode_Backend_3XX, this.httpCode_Backend_4XX, this.httpCode_Backend_5XX);
+        	return String.format("aggregate=%.2f %d %d %d %d %d %d %d", this.latency.sum(), this.requestCount.sum(), this.httpCode_ELB_4XX.sum(), this.httpCode_ELB_5XX.sum(),
+        			this.httpCode_Backend_2XX.sum(), this.httpCode_Backend_3XX.sum(), this.httpCode_Backend_4XX.sum(), this.httpCode_Backend_5XX.sum());
         }
 	}
 	
@@ -0,0 +1,128 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.loadbalancing
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+import com.eucalyptus.cloudwatch.common.msgs.MetricData
+import com.eucalyptus.cloudwatch.common.msgs.MetricDatum
+import com.eucalyptus.loadbalancing.LoadBalancerCwatchMetrics.ElbAggregate
+import groovy.transform.CompileStatic
+import org.junit.Ignore
+import org.junit.Test
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ *
+ */
+@CompileStatic
+class LoadBalancerCwatchMetricsTest {
+
+  @Test
+  void testAddMetric( ) {
+    ElbAggregate aggregate = new ElbAggregate( 'lb', 'zone' )
+    assertTrue( 'Metric added', aggregate.tryAddMetric( requestCount( 2 ) ) )
+    assertTrue( 'Metric added', aggregate.tryAddMetric( requestCount( 3 ) ) )
+    assertEquals( 'Request count', 5L, requestCountOf( aggregate ) )
+  }
+
+  @Test
+  void testAddMetricAfterExport( ) {
+    ElbAggregate aggregate = new ElbAggregate( 'lb', 'zone' )
+    aggregate.markExported( )
+    assertFalse( 'Metric added', aggregate.tryAddMetric( requestCount( 1 ) ) )
+    assertEquals( 'Request count', 0L, requestCountOf( aggregate ) )
+  }
+
+  @Test
+  void testConcurrentAddAndExport( ) {
+    assertEquals( 'Request count', 4 * 5_000L, addAndExport( 4, 5_000 ) )
+  }
+
+  @Ignore("Manual development test")
+  @Test
+  void testContentionTiming( ) {
+    [ 1, 2, 4, 8, 16 ].each { Integer threads ->
+      long before = System.nanoTime( )
+      long count = addAndExport( threads, 1_000_000 )
+      long millis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) - before )
+      println "${threads} threads added ${count} metrics in ${millis}ms (${(long)(count * 1000 / Math.max( 1L, millis ))}/s)"
+    }
+  }
+
+  /**
+   * Add metrics from the given number of threads while exporting, returns
+   * the total exported request count.
+   */
+  private static long addAndExport( int threads, int metricsPerThread ) {
+    AtomicReference<ElbAggregate> aggregateRef = new AtomicReference<>( new ElbAggregate( 'lb', 'zone' ) )
+    AtomicBoolean adding = new AtomicBoolean( true )
+    CountDownLatch done = new CountDownLatch( threads )
+    MetricData metric = requestCount( 1 )
+    long exported = 0
+    ( 1..threads ).each {
+      Thread.start {
+        for ( int i=0; i<metricsPerThread; i++ ) {
+          while ( !aggregateRef.get( ).tryAddMetric( metric ) );
+        }
+        done.countDown( )
+      }
+    }
+    Thread exporter = Thread.start {
+      while ( adding.get( ) ) {
+        ElbAggregate aggregate = aggregateRef.getAndSet( new ElbAggregate( 'lb', 'zone' ) )
+        aggregate.markExported( )
+        exported += requestCountOf( aggregate )
+        Thread.sleep( 1 )
+      }
+    }
+    done.await( )
+    adding.set( false )
+    exporter.join( )
+    ElbAggregate aggregate = aggregateRef.get( )
+    aggregate.markExported( )
+    exported + requestCountOf( aggregate )
+  }
+
+  private static MetricData requestCount( double count ) {
+    new MetricData( member: [
+        new MetricDatum( metricName: 'RequestCount', value: count )
+    ] as ArrayList<MetricDatum> )
+  }
+
+  private static long requestCountOf( ElbAggregate aggregate ) {
+    MetricDatum datum = aggregate.toELBStatistics( ).find{ MetricDatum datum -> datum.metricName == 'RequestCount' }
+    datum ? datum.statisticValues.sum.longValue( ) : 0L
+  }
+}
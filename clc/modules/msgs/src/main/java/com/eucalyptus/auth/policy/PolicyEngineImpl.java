@@ -90,6 +90,8 @@ import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -110,6 +112,21 @@ public class PolicyEngineImpl implements PolicyEngine {
       .expireAfterWrite( 1, TimeUnit.HOURS )
       .build( );
 
+  /**
+   * Compiled regular expressions by policy pattern (or server certificate
+   * pattern) text, patterns are shared across policies so are cached
+   * separately from authorizations.
+   */
+  private static final LoadingCache<String,Pattern> policyPatternCache = CacheBuilder
+      .newBuilder( )
+      .maximumSize( 10_000 )
+      .build( CacheLoader.from( PolicyEngineImpl::compilePolicyPattern ) );
+
+  private static final LoadingCache<String,Pattern> regexPatternCache = CacheBuilder
+      .newBuilder( )
+      .maximumSize( 1_000 )
+      .build( CacheLoader.from( Pattern::compile ) );
+
   @Nonnull
   private final Function<String,String> accountResolver;
 
@@ -132,11 +149,13 @@ public class PolicyEngineImpl implements PolicyEngine {
   private static final Matcher PATTERN_MATCHER = new Matcher( ) {
     @Override
     public boolean match( String pattern, String instance ) {
-      pattern = PolicyUtils.toJavaPattern( pattern );
       if ( pattern == null ) {
         return false;
       }
-      return Pattern.matches( pattern, instance );
+      if ( pattern.indexOf( '*' ) < 0 && pattern.indexOf( '?' ) < 0 ) {
+        return instance.equals( pattern ); // no wildcards so literal match
+      }
+      return policyPatternCache.getUnchecked( pattern ).matcher( instance ).matches( );
     }
   };
 
@@ -167,10 +186,14 @@ public class PolicyEngineImpl implements PolicyEngine {
         return false;
 
       final String certPathAndName = instance.substring(idx);
-      return Pattern.matches( pattern, certPathAndName );
+      return regexPatternCache.getUnchecked( pattern ).matcher( certPathAndName ).matches( );
     }
   };
 
+  private static Pattern compilePolicyPattern( final String pattern ) {
+    return Pattern.compile( PolicyUtils.toJavaPattern( pattern ) );
+  }
+
   public PolicyEngineImpl(
       @Nonnull final Supplier<Boolean> enableSystemQuotas,
       @Nonnull final Supplier<String> region
@@ -85,6 +85,7 @@ import org.hibernate.Criteria;
 import org.hibernate.FlushMode;
 import org.hibernate.Hibernate;
 import org.hibernate.HibernateException;
+import org.hibernate.SQLQuery;
 import org.hibernate.Session;
 import org.hibernate.StaleObjectStateException;
 import org.hibernate.Transaction;
@@ -102,6 +103,7 @@ import org.hibernate.engine.transaction.spi.TransactionCoordinator;
 import org.hibernate.exception.ConstraintViolationException;
 import org.hibernate.exception.LockAcquisitionException;
 import org.hibernate.jpa.internal.EntityManagerFactoryImpl;
+import org.hibernate.persister.entity.AbstractEntityPersister;
 import org.hibernate.proxy.HibernateProxy;
 import org.hibernate.sql.JoinType;
 import com.eucalyptus.bootstrap.Databases;
@@ -1085,6 +1087,76 @@ public class Entities {
     }
   }
 
+  /**
+   * Lock and load entities matching the given SQL condition, skipping any
+   * rows locked by other transactions.
+   *
+   * <P>The caller must have an active transaction for the entity. The
+   * condition and order are SQL using table column names. The generated
+   * SQL uses FOR UPDATE SKIP LOCKED (PostgreSQL 9.5+) regardless of the
+   * configured hibernate dialect.</P>
+   *
+   * @param <T> The entity type
+   * @param entityClass The entity class
+   * @param condition The SQL condition to match
+   * @param order The SQL order by clause
+   * @param parameters The named parameters for the condition
+   * @param maxResults The maximum number of entities to lock
+   * @return The locked entities
+   */
+  @SuppressWarnings( "unchecked" )
+  public static <T> List<T> lockSkipLocked( final Class<T> entityClass,
+                                            final String condition,
+                                            final String order,
+                                            final Map<String,?> parameters,
+                                            final int maxResults ) {
+    final Session session = getTransaction( entityClass ).getTxState( ).getSession( );
+    final SQLQuery query = session.createSQLQuery(
+        "select * from " + persister( session, entityClass ).getTableName( ) + " where " + condition +
+        " order by " + order + " limit " + maxResults + " for update skip locked" );
+    query.addEntity( entityClass );
+    for ( final Entry<String,?> entry : parameters.entrySet() ) {
+      query.setParameter( entry.getKey(), entry.getValue() );
+    }
+    return (List<T>) query.list( );
+  }
+
+  /**
+   * Delete up to the given number of entities matching the given SQL condition.
+   *
+   * <P>The caller must have an active transaction for the entity. The
+   * condition is SQL using table column names. Rows locked by other
+   * transactions are skipped.</P>
+   *
+   * @param <T> The entity type
+   * @param deleteClass The entity class
+   * @param condition The SQL condition to match
+   * @param parameters The named parameters for the condition
+   * @param batchSize The maximum number of entities to delete
+   * @return The number of entities deleted
+   */
+  public static <T> int deleteBatchMatching( final Class<T> deleteClass,
+                                             final String condition,
+                                             final Map<String,?> parameters,
+                                             final int batchSize ) {
+    final Session session = getTransaction( deleteClass ).getTxState( ).getSession( );
+    final AbstractEntityPersister persister = persister( session, deleteClass );
+    final String tableName = persister.getTableName( );
+    final String idColumn = persister.getIdentifierColumnNames( )[0];
+    final SQLQuery query = session.createSQLQuery(
+        "delete from " + tableName + " where " + idColumn + " in ( select " + idColumn + " from " + tableName +
+        " where " + condition + " limit " + batchSize + " for update skip locked )" );
+    query.addSynchronizedEntityClass( deleteClass );
+    for ( final Entry<String,?> entry : parameters.entrySet() ) {
+      query.setParameter( entry.getKey(), entry.getValue() );
+    }
+    return query.executeUpdate( );
+  }
+
+  private static AbstractEntityPersister persister( final Session session, final Class<?> entityClass ) {
+    return (AbstractEntityPersister) session.getSessionFactory( ).getClassMetadata( entityClass );
+  }
+
   /**
    * Count the matching entities for the given example.
    * 
@@ -2221,6 +2293,21 @@ public class Entities {
       return self( );
     }
 
+    /**
+     * Add a contains condition for the given values to the criteria.
+     *
+     * @param attribute The attribute to check if contained
+     * @param values The values to match, must not be empty
+     * @param <V> The contained value type
+     * @return This criteria query for method chaining.
+     */
+    public <V> B whereIn(
+        @Nonnull final SingularAttribute<? super E, V> attribute,
+        @Nonnull final Collection<? extends V> values ) {
+      context.restrictions.add( context.from.get( attribute ).in( values ) );
+      return self( );
+    }
+
     /**
      * Add a subselect contains condition to the criteria.
      *
@@ -3069,6 +3156,21 @@ public class Entities {
       return this;
     }
 
+    /**
+     * Add a contains condition for the given values to the criteria.
+     *
+     * @param attribute The attribute to check if contained
+     * @param values The values to match, must not be empty
+     * @param <V> The contained value type
+     * @return This delete criteria for method chaining.
+     */
+    public <V> EntityCriteriaDelete<E> whereIn(
+        @Nonnull final SingularAttribute<? super E, V> attribute,
+        @Nonnull final Collection<? extends V> values ) {
+      context.restrictions.add( context.from.get( attribute ).in( values ) );
+      return this;
+    }
+
     /**
      * Add a subselect contains condition to the criteria.
      *
@@ -46,6 +46,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 import org.apache.log4j.Logger;
 import org.springframework.core.OrderComparator;
@@ -67,6 +68,7 @@ import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ClassToInstanceMap;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
@@ -83,6 +85,7 @@ public class DnsResolvers extends ServiceJarDiscovery {
                                     + "See 'euca-describe-properties dns'.", initial = "true" )
   public static Boolean enabled = Boolean.TRUE;
   private static final ClassToInstanceMap<DnsResolver> resolvers = MutableClassToInstanceMap.create( );
+  private static volatile List<DnsResolver> orderedResolvers = Collections.emptyList( );
   
   public enum RequestType implements Predicate<Record> {
     A( 1 ),
@@ -410,6 +413,17 @@ public class DnsResolvers extends ServiceJarDiscovery {
     public abstract boolean checkAccepts( DnsRequest request );
     
     public abstract DnsResponse lookupRecords( DnsRequest request );
+
+    /**
+     * Resolvers that answer differently depending on the request source
+     * address must return a value identifying the answer for the source.
+     *
+     * @return The horizon for the request or null if the source address is not used
+     */
+    @Nullable
+    public Object horizon( DnsRequest request ) {
+      return null;
+    }
     
     protected static final int DEFAULT_ORDER = 0;
     @Override
@@ -418,26 +432,47 @@ public class DnsResolvers extends ServiceJarDiscovery {
     }
   }
   
+  /**
+   * Returns the horizon for the request, requests for the same query from
+   * the same local address and horizon receive the same answer.
+   *
+   * @return The horizon or null if not available
+   */
+  @Nullable
+  public static List<Object> horizonFor( final DnsRequest request ) {
+    final List<DnsResolver> resolvers = orderedResolvers;
+    final List<Object> horizon = Lists.newArrayListWithCapacity( resolvers.size( ) );
+    for ( final DnsResolver resolver : resolvers ) {
+      try {
+        horizon.add( resolver.horizon( request ) );
+      } catch ( final Exception ex ) {
+        LOG.debug( "Error getting horizon using " + resolver + ": " + ex.getMessage( ) );
+        return null;
+      }
+    }
+    return horizon;
+  }
+
   /**
    * Returns the list of resolvers which accept the name from the given source address.
    */
-  private static Iterable<DnsResolver> resolversFor( final DnsRequest request ) {
-    final List<DnsResolver> acceptingResolvers = Lists.newArrayList(Collections2.filter( resolvers.values( ), new Predicate<DnsResolver>( ) {
-      @Override
-      public boolean apply( final DnsResolver input ) {
-        try {
-          return input.checkAccepts( request );
-        } catch ( final Exception ex ) {
-          return false;
+  private static List<DnsResolver> resolversFor( final DnsRequest request ) {
+    final List<DnsResolver> acceptingResolvers = Lists.newArrayListWithCapacity( 4 );
+    for ( final DnsResolver resolver : orderedResolvers ) {
+      try {
+        if ( resolver.checkAccepts( request ) ) {
+          acceptingResolvers.add( resolver );
         }
+      } catch ( final Exception ex ) {
+        // not accepted
       }
-    } ));
-    Collections.sort(acceptingResolvers, new OrderComparator( ) );
+    }
     return acceptingResolvers;
   }
   
   private static SetResponse lookupRecords( final Message response,
-                                            final DnsRequest request ) {
+                                            final DnsRequest request,
+                                            final List<DnsResolver> resolverList ) {
     final Record query = request.getQuery( );
     final InetAddress source = request.getRemoteAddress( );
     final Name name = query.getName( );
@@ -445,7 +480,7 @@ public class DnsResolvers extends ServiceJarDiscovery {
     response.getHeader( ).setFlag( Flags.RA );// always mark the response w/ the recursion available
 // bit
     LOG.debug( "DnsResolver: " + RequestType.typeOf( type ) + " " + name );
-    for ( final DnsResolver r : DnsResolvers.resolversFor( request ) ) {
+    for ( final DnsResolver r : resolverList ) {
       try {
         final DnsResponse reply = r.lookupRecords( request );
         if ( reply == null ) {
@@ -492,6 +527,9 @@ public class DnsResolvers extends ServiceJarDiscovery {
       try {
         final DnsResolver resolver = ( DnsResolver ) candidate.newInstance( );
         resolvers.putInstance( candidate, resolver );
+        final List<DnsResolver> sortedResolvers = Lists.newArrayList( resolvers.values( ) );
+        Collections.sort( sortedResolvers, new OrderComparator( ) );
+        orderedResolvers = ImmutableList.copyOf( sortedResolvers );
         return true;
       } catch ( final Exception ex ) {
         LOG.error( "Failed to create instance of DnsResolver: "
@@ -514,11 +552,11 @@ public class DnsResolvers extends ServiceJarDiscovery {
       if ( !enabled || !Bootstrap.isOperational( ) ) {
         return SetResponse.ofType( SetResponse.UNKNOWN );
       } else {
-        final Iterable<DnsResolver> resolverList = DnsResolvers.resolversFor( request );
-        if ( Iterables.isEmpty( resolverList ) ) {
+        final List<DnsResolver> resolverList = DnsResolvers.resolversFor( request );
+        if ( resolverList.isEmpty( ) ) {
           return SetResponse.ofType( SetResponse.NXDOMAIN );
         } else {
-          return DnsResolvers.lookupRecords( response, request );
+          return DnsResolvers.lookupRecords( response, request, resolverList );
         }
       }
     } catch ( final Exception ex ) {
@@ -38,8 +38,9 @@ public enum MonitoredAction {
   CLUSTER_LIST_METRIC_MANAGER_CALL_PUT_METRIC_DATA("Cluster:Timing:ListMetricManager.callPutMetricData():time"),
   CLUSTER_TIMING("Cluster:Timing:time"),
   PUT_DATA_QUEUE_SIZE("PutMetricDataQueue:Timing:dataBatch.size"),
-  PUT_DATA_QUEUE_CONVERT("PutMetricDataQueue:Timing:dataBatch.convertToSimpleDataBatch():time"),
-  PUT_DATA_QUEUE_AGGREGATE("PutMetricDataQueue:Timing:dataBatch.aggregate():time"),
+  PUT_DATA_QUEUE_LAG("PutMetricDataQueue:Timing:dataQueue.oldestPending:time"),
+  PUT_DATA_QUEUE_DRAIN("PutMetricDataQueue:Timing:dataQueue.drain():time"),
+  PUT_DATA_QUEUE_THROTTLED("PutMetricDataQueue:Timing:throttled.size"),
   PUT_DATA_QUEUE_MERTIC_ADD_BATCH("PutMetricDataQueue:Timing:dataBatch.MetricManager.addMetricBatch():time"),
   PUT_DATA_QUEUE_MERTIC_QUEUE_ADDALL("PutMetricDataQueue:Timing:ListMetricQueue.addAll():time"),
   PUT_DATA_TIMING("PutMetricDataQueue:Timing:time"),
@@ -48,6 +49,34 @@ public enum MonitoredAction {
   LIST_METRIC_CONVERT("ListMetricQueue:Timing:convertToListMetrics:time"),
   LIST_METRIC_MERTIC_ADD_BATCH("ListMetricQueue:Timing:ListMetricManager.addMetricBatch:time"),
   LIST_METRIC_TIMING("ListMetricQueue:Timing:time"),
+  ALARM_EVALUATION_SIZE("AlarmStateEvaluation:Timing:alarms.size"),
+  ALARM_EVALUATION_SKIPPED("AlarmStateEvaluation:Timing:alarms.skipped.size"),
+  ALARM_EVALUATION_TIMING("AlarmStateEvaluation:Timing:time"),
+  // Cluster service
+  CLUSTER_SERVICE_SENSORS_NODE_LATENCY("ClusterServiceSensors:Timing:node.describeSensors():time"),
+  CLUSTER_SERVICE_SENSORS_TIMEOUTS("ClusterServiceSensors:Timing:nodes.timedOut.size"),
+  CLUSTER_SERVICE_SENSORS_TIMING("ClusterServiceSensors:Timing:time"),
+  // Object storage
+  S3_PROVIDER_PARALLEL_GET_RANGES("S3ProviderParallelGet:Timing:ranges.size"),
+  S3_PROVIDER_PARALLEL_GET_CONCURRENCY("S3ProviderParallelGet:Timing:backendRequests.concurrent.size"),
+  S3_PROVIDER_PARALLEL_GET_TIMING("S3ProviderParallelGet:Timing:time"),
+  // Auto scaling
+  AUTOSCALING_SNAPSHOT_SIZE("AutoScalingActivities:Timing:snapshot.instances.size"),
+  AUTOSCALING_SNAPSHOT_TIMING("AutoScalingActivities:Timing:snapshot:time"),
+  AUTOSCALING_NEXT_TIMING("AutoScalingActivities:Timing:nextSelectors():time"),
+  AUTOSCALING_TIMEOUT_TIMING("AutoScalingActivities:Timing:timeoutScalingActivities():time"),
+  AUTOSCALING_EXPIRY_TIMING("AutoScalingActivities:Timing:deleteExpiredActivities():time"),
+  AUTOSCALING_ZONE_HEALTH_TIMING("AutoScalingActivities:Timing:updateUnavailableZones():time"),
+  AUTOSCALING_RECOVERY_TIMING("AutoScalingActivities:Timing:progressUnstableStates():time"),
+  AUTOSCALING_REPLACE_UNHEALTHY_TIMING("AutoScalingActivities:Timing:replaceUnhealthy():time"),
+  AUTOSCALING_SCALING_TIMING("AutoScalingActivities:Timing:scalingActivities():time"),
+  AUTOSCALING_INSTANCE_CLEANUP_TIMING("AutoScalingActivities:Timing:runningInstanceChecks():time"),
+  AUTOSCALING_METRICS_SUBMISSION_TIMING("AutoScalingActivities:Timing:submitMetrics():time"),
+  AUTOSCALING_TIMING("AutoScalingActivities:Timing:time"),
+  // Simple workflow
+  SWF_TIMEOUTS_DUE("SimpleWorkflowTimeouts:Timing:dueTimeouts.size"),
+  SWF_TIMEOUTS_LAG("SimpleWorkflowTimeouts:Timing:dueTimeouts.maxLag:time"),
+  SWF_TIMEOUTS_TIMING("SimpleWorkflowTimeouts:Timing:time"),
   // Storage
   CREATE_VOLUME("Create Volume"),
   CREATE_VOLUME_FROM_SNAPSHOT("Create Volume from Snapshot"),
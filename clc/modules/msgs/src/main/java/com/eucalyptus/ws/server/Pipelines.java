@@ -43,8 +43,12 @@ import static com.eucalyptus.auth.principal.TemporaryAccessKey.TemporaryKeyType;
 import java.lang.reflect.Modifier;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.net.URLCodec;
 import org.apache.log4j.Logger;
@@ -74,6 +78,7 @@ import com.eucalyptus.records.EventType;
 import com.eucalyptus.records.Logs;
 import com.eucalyptus.system.Ats;
 import com.eucalyptus.util.Classes;
+import com.eucalyptus.util.Pair;
 import com.eucalyptus.ws.Handlers;
 import com.eucalyptus.ws.handlers.HmacHandler;
 import com.eucalyptus.ws.handlers.MessageStackHandler;
@@ -82,6 +87,8 @@ import com.eucalyptus.ws.protocol.OperationParameter;
 import com.eucalyptus.ws.handlers.SoapHandler;
 import com.eucalyptus.ws.util.HmacUtils.SignatureVersion;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import edu.ucsb.eucalyptus.cloud.entities.SystemConfiguration;
 
@@ -94,6 +101,7 @@ public class Pipelines {
   private static final Set<FilteredPipeline>                                     pipelines         = Sets.newHashSet( );
   //GRZE:TODO: this is not happy ==> {@link DomainNames}
   private static final Supplier<String> subDomain = () -> SystemConfiguration.getSystemConfiguration( ).getDnsDomain( );
+  private static final AtomicReference<Pair<String,List<HostRoute>>> hostRoutes = new AtomicReference<>( );
 
 
 
@@ -137,26 +145,19 @@ public class Pipelines {
     }
 
     final String hostHeader = request.getHeader( HttpHeaders.Names.HOST );
-    if ( hostHeader != null && ( hostHeader.contains( "amazonaws.com" ) || hostHeader.contains( subDomain.get( ) ) ) ) {
-      final String host = hostHeader.indexOf( ':' ) > 0 ? hostHeader.substring( 0, hostHeader.indexOf( ':' ) ) : hostHeader;
-      LOG.debug( "Trying to intercept request for " + hostHeader );
-      for ( final FilteredPipeline f : pipelines ) {
-        if ( Ats.from( f ).has( ComponentPart.class ) ) {
-          Class<? extends ComponentId> compIdClass = Ats.from( f ).get( ComponentPart.class ).value( );
-          ComponentId compId = ComponentIds.lookup( compIdClass );
-          if ( Ats.from( compIdClass ).has( PublicService.class ) ) {
-            if ( request.getHeaderNames().contains( "SOAPAction" ) && f.addHandlers( Channels.pipeline( ) ).get( SoapHandler.class ) == null ) {
-              continue;//Skip pipeline which doesn't handle SOAP for this SOAP request
-            } else if ( !request.getHeaderNames().contains( "SOAPAction" ) && f.addHandlers( Channels.pipeline( ) ).get( SoapHandler.class ) != null ) {
-              continue;//Skip pipeline which handles SOAP for this non-SOAP request
-            }
-            LOG.debug( "Maybe intercepting: " + hostHeader + " using " + f.getClass( ) );
-            if ( Ats.from( compIdClass ).has( AwsServiceName.class )
-                && host.matches( "[\\w\\.-_]*" + compId.getAwsServiceName( ) + "(?:\\.[\\w\\-]+)?\\.amazonaws.com" ) ) {
-              return f;//Return pipeline which can handle the request for ${service}.${region}.amazonaws.com
-            } else if ( host.matches( "[\\w\\.-_]*" + compId.name( ) + "\\." + subDomain.get( ) ) ) {
-              return f;//Return pipeline which can handle the request for ${service}.${system.dns.dnsdomain}
-            }
+    if ( hostHeader != null ) {
+      final String domain = subDomain.get( );
+      if ( hostHeader.contains( "amazonaws.com" ) || hostHeader.contains( domain ) ) {
+        final String host = hostHeader.indexOf( ':' ) > 0 ? hostHeader.substring( 0, hostHeader.indexOf( ':' ) ) : hostHeader;
+        LOG.debug( "Trying to intercept request for " + hostHeader );
+        final boolean soapRequest = request.getHeaderNames( ).contains( "SOAPAction" );
+        for ( final HostRoute route : hostRoutes( domain ) ) {
+          if ( route.soap != soapRequest ) {
+            continue;//Skip pipeline which does not match the SOAP or non-SOAP request
+          }
+          LOG.debug( "Maybe intercepting: " + hostHeader + " using " + route.pipeline.getClass( ) );
+          if ( route.accepts( host ) ) {
+            return route.pipeline;
           }
         }
       }
@@ -171,6 +172,62 @@ public class Pipelines {
     return null;
   }
 
+  /**
+   * Host routes for public service pipelines, built once for the current
+   * pipelines and dns domain.
+   */
+  private static List<HostRoute> hostRoutes( final String domain ) {
+    Pair<String,List<HostRoute>> routes = hostRoutes.get( );
+    if ( routes == null || !routes.getLeft( ).equals( domain ) ) {
+      final List<HostRoute> routeList = Lists.newArrayList( );
+      for ( final FilteredPipeline f : pipelines ) {
+        if ( Ats.from( f ).has( ComponentPart.class ) ) {
+          final Class<? extends ComponentId> compIdClass = Ats.from( f ).get( ComponentPart.class ).value( );
+          final ComponentId compId = ComponentIds.lookup( compIdClass );
+          if ( Ats.from( compIdClass ).has( PublicService.class ) ) {
+            routeList.add( new HostRoute(
+                f,
+                f.addHandlers( Channels.pipeline( ) ).get( SoapHandler.class ) != null,
+                Ats.from( compIdClass ).has( AwsServiceName.class ) ?
+                    //Pipeline which can handle the request for ${service}.${region}.amazonaws.com
+                    Pattern.compile( "[\\w\\.-_]*" + compId.getAwsServiceName( ) + "(?:\\.[\\w\\-]+)?\\.amazonaws.com" ) :
+                    null,
+                //Pipeline which can handle the request for ${service}.${system.dns.dnsdomain}
+                Pattern.compile( "[\\w\\.-_]*" + compId.name( ) + "\\." + domain )
+            ) );
+          }
+        }
+      }
+      routes = Pair.pair( domain, ImmutableList.copyOf( routeList ) );
+      hostRoutes.set( routes );
+    }
+    return routes.getRight( );
+  }
+
+  private static final class HostRoute {
+    private final FilteredPipeline pipeline;
+    private final boolean soap;
+    @Nullable private final Pattern awsHostPattern;
+    private final Pattern hostPattern;
+
+    private HostRoute(
+        final FilteredPipeline pipeline,
+        final boolean soap,
+        @Nullable final Pattern awsHostPattern,
+        final Pattern hostPattern
+    ) {
+      this.pipeline = pipeline;
+      this.soap = soap;
+      this.awsHostPattern = awsHostPattern;
+      this.hostPattern = hostPattern;
+    }
+
+    private boolean accepts( final String host ) {
+      return ( awsHostPattern != null && awsHostPattern.matcher( host ).matches( ) ) ||
+          hostPattern.matcher( host ).matches( );
+    }
+  }
+
   /**
    * Registers internal query and SOAP pipelines for all components.
    */
@@ -204,6 +261,7 @@ public class Pipelines {
           final Class<? extends FilteredPipeline> pipelineClass = candidate;
           final FilteredPipeline pipeline = Classes.newInstance( pipelineClass );
           Pipelines.pipelines.add( pipeline );
+          Pipelines.hostRoutes.set( null );
           return true;
         } catch ( final Exception ex ) {
           LOG.trace( ex, ex );
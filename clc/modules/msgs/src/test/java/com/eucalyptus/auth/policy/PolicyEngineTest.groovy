@@ -1080,6 +1080,45 @@ class PolicyEngineTest {
     """.stripIndent(), "iam:account", "iam:ListAccounts", "123456789012", "/admin" )
   }
 
+  @Test
+  void testLiteralActionMatch( ) {
+    evaluateAuthorization( """\
+      {
+        "Statement":[ {
+          "Effect": "Allow",
+          "Action": "testservice:Foo",
+          "Resource": "arn:aws:testservice:::resourcetype/*"
+        } ]
+      }
+    """.stripIndent(), "testservice:resourcetype", "testservice:Foo", "010101010101", "" )
+  }
+
+  @Test( expected = AuthException.class )
+  void testLiteralActionMismatch( ) {
+    evaluateAuthorization( """\
+      {
+        "Statement":[ {
+          "Effect": "Allow",
+          "Action": "testservice:Fo.",
+          "Resource": "arn:aws:testservice:::resourcetype/*"
+        } ]
+      }
+    """.stripIndent(), "testservice:resourcetype", "testservice:Foo", "010101010101", "" )
+  }
+
+  @Test
+  void testSingleCharacterWildcardActionMatch( ) {
+    evaluateAuthorization( """\
+      {
+        "Statement":[ {
+          "Effect": "Allow",
+          "Action": "testservice:F?o",
+          "Resource": "arn:aws:testservice:::resourcetype/*"
+        } ]
+      }
+    """.stripIndent(), "testservice:resourcetype", "testservice:Foo", "010101010101", "" )
+  }
+
   private void evaluateAuthorization( String policy,
                                       String resourceType,
                                       String requestAction,
@@ -48,6 +48,7 @@ import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.configurable.ConfigurableFieldType;
 import com.eucalyptus.configurable.ConfigurableInit;
+import com.eucalyptus.configurable.PropertyChangeListeners;
 import com.eucalyptus.entities.AbstractPersistent;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.TransactionResource;
@@ -79,6 +80,14 @@ public class S3ProviderConfiguration extends AbstractPersistent implements Cache
   private static final Boolean DEFAULT_BACKEND_HTTPS = false;
   @Transient
   private static final String DEFAULT_S3_HEAD_RESPONSE = "405";
+  @Transient
+  private static final String DEFAULT_PARALLEL_GET_THRESHOLD_MB = "0";
+  @Transient
+  private static final String DEFAULT_PARALLEL_GET_CONCURRENCY = "4";
+  @Transient
+  private static final String DEFAULT_PARALLEL_GET_RANGE_SIZE_MB = "8";
+  @Transient
+  private static final String DEFAULT_PARALLEL_GET_THREADS = "16";
 
   @ConfigurableField(description = "External S3 endpoint.", displayName = "s3_endpoint", initial = DEFAULT_S3_ENDPOINT)
   @Column(name = "endpoint")
@@ -114,6 +123,30 @@ public class S3ProviderConfiguration extends AbstractPersistent implements Cache
   @Column(name = "endpoint_head_response")
   protected Integer S3EndpointHeadResponse;
 
+  @ConfigurableField(description = "Minimum size in MB of objects that are read from the backend using concurrent ranged GETs, 0 to disable.",
+      displayName = "parallel_get_threshold_mb", initial = DEFAULT_PARALLEL_GET_THRESHOLD_MB,
+      changeListener = PropertyChangeListeners.IsNonNegativeInteger.class)
+  @Column(name = "parallel_get_threshold_mb")
+  protected Integer S3ParallelGetThresholdMB;
+
+  @ConfigurableField(description = "Maximum number of concurrent ranged GETs to the backend when reading an object.",
+      displayName = "parallel_get_concurrency", initial = DEFAULT_PARALLEL_GET_CONCURRENCY,
+      changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  @Column(name = "parallel_get_concurrency")
+  protected Integer S3ParallelGetConcurrency;
+
+  @ConfigurableField(description = "Size in MB of each ranged GET to the backend when reading an object using concurrent ranged GETs, at most 1024.",
+      displayName = "parallel_get_range_size_mb", initial = DEFAULT_PARALLEL_GET_RANGE_SIZE_MB,
+      changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  @Column(name = "parallel_get_range_size_mb")
+  protected Integer S3ParallelGetRangeSizeMB;
+
+  @ConfigurableField(description = "Number of threads shared by all requests for ranged GETs to the backend.",
+      displayName = "parallel_get_threads", initial = DEFAULT_PARALLEL_GET_THREADS,
+      changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  @Column(name = "parallel_get_threads")
+  protected Integer S3ParallelGetThreads;
+
   public Boolean getS3UseBackendDns() {
     return S3UseBackendDns;
   }
@@ -190,12 +223,48 @@ public class S3ProviderConfiguration extends AbstractPersistent implements Cache
     S3EndpointHeadResponse = s3EndpointHeadResponse;
   }
 
+  public Integer getS3ParallelGetThresholdMB() {
+    return S3ParallelGetThresholdMB != null ? S3ParallelGetThresholdMB : Integer.valueOf(DEFAULT_PARALLEL_GET_THRESHOLD_MB);
+  }
+
+  public void setS3ParallelGetThresholdMB(Integer s3ParallelGetThresholdMB) {
+    S3ParallelGetThresholdMB = s3ParallelGetThresholdMB;
+  }
+
+  public Integer getS3ParallelGetConcurrency() {
+    return S3ParallelGetConcurrency != null ? S3ParallelGetConcurrency : Integer.valueOf(DEFAULT_PARALLEL_GET_CONCURRENCY);
+  }
+
+  public void setS3ParallelGetConcurrency(Integer s3ParallelGetConcurrency) {
+    S3ParallelGetConcurrency = s3ParallelGetConcurrency;
+  }
+
+  public Integer getS3ParallelGetRangeSizeMB() {
+    return S3ParallelGetRangeSizeMB != null ? S3ParallelGetRangeSizeMB : Integer.valueOf(DEFAULT_PARALLEL_GET_RANGE_SIZE_MB);
+  }
+
+  public void setS3ParallelGetRangeSizeMB(Integer s3ParallelGetRangeSizeMB) {
+    S3ParallelGetRangeSizeMB = s3ParallelGetRangeSizeMB;
+  }
+
+  public Integer getS3ParallelGetThreads() {
+    return S3ParallelGetThreads != null ? S3ParallelGetThreads : Integer.valueOf(DEFAULT_PARALLEL_GET_THREADS);
+  }
+
+  public void setS3ParallelGetThreads(Integer s3ParallelGetThreads) {
+    S3ParallelGetThreads = s3ParallelGetThreads;
+  }
+
   @ConfigurableInit
   public S3ProviderConfiguration initializeDefaults() {
     this.setS3Endpoint(DEFAULT_S3_ENDPOINT);
     this.setS3UseBackendDns(DEFAULT_BACKEND_DNS);
     this.setS3UseHttps(DEFAULT_BACKEND_HTTPS);
     this.setS3EndpointHeadResponse(Integer.valueOf(DEFAULT_S3_HEAD_RESPONSE));
+    this.setS3ParallelGetThresholdMB(Integer.valueOf(DEFAULT_PARALLEL_GET_THRESHOLD_MB));
+    this.setS3ParallelGetConcurrency(Integer.valueOf(DEFAULT_PARALLEL_GET_CONCURRENCY));
+    this.setS3ParallelGetRangeSizeMB(Integer.valueOf(DEFAULT_PARALLEL_GET_RANGE_SIZE_MB));
+    this.setS3ParallelGetThreads(Integer.valueOf(DEFAULT_PARALLEL_GET_THREADS));
     return this;
   }
 
@@ -205,6 +274,18 @@ public class S3ProviderConfiguration extends AbstractPersistent implements Cache
     if (this.S3EndpointHeadResponse == null) {
       this.S3EndpointHeadResponse = Integer.valueOf(DEFAULT_S3_HEAD_RESPONSE);
     }
+    if (this.S3ParallelGetThresholdMB == null) {
+      this.S3ParallelGetThresholdMB = Integer.valueOf(DEFAULT_PARALLEL_GET_THRESHOLD_MB);
+    }
+    if (this.S3ParallelGetConcurrency == null) {
+      this.S3ParallelGetConcurrency = Integer.valueOf(DEFAULT_PARALLEL_GET_CONCURRENCY);
+    }
+    if (this.S3ParallelGetRangeSizeMB == null) {
+      this.S3ParallelGetRangeSizeMB = Integer.valueOf(DEFAULT_PARALLEL_GET_RANGE_SIZE_MB);
+    }
+    if (this.S3ParallelGetThreads == null) {
+      this.S3ParallelGetThreads = Integer.valueOf(DEFAULT_PARALLEL_GET_THREADS);
+    }
   }
 
   public static S3ProviderConfiguration getS3ProviderConfiguration() {
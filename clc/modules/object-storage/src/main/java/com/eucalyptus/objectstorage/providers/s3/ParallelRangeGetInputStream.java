@@ -0,0 +1,233 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+
+package com.eucalyptus.objectstorage.providers.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.eucalyptus.util.metrics.MonitoredAction;
+import com.eucalyptus.util.metrics.ThruputMetrics;
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Input stream for an object byte range that is read from the backend using concurrent ranged GETs.
+ *
+ * Ranges are buffered in memory and returned in order. At most concurrency ranges are in flight or waiting to be read, so buffering is bounded by
+ * (concurrency + 1) * range size.
+ *
+ * The stream is read by a single thread but may be closed from any thread. Closing cancels pending ranges and closes the backend streams of
+ * ranges that are being read.
+ */
+class ParallelRangeGetInputStream extends InputStream {
+
+  /**
+   * Opens a stream for an inclusive byte range of the object.
+   */
+  interface RangeReader {
+    InputStream open(long start, long end) throws IOException;
+  }
+
+  private final ExecutorService executor;
+  private final RangeReader rangeReader;
+  private final AtomicReference<InputStream> initialStream;
+  private final long start;
+  private final long end;
+  private final long rangeSize;
+  private final int concurrency;
+  private final Deque<Future<byte[]>> pendingRanges = new ConcurrentLinkedDeque<>();
+  private final Set<InputStream> openStreams = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger activeRequests = new AtomicInteger();
+  private final AtomicInteger maxActiveRequests = new AtomicInteger();
+  private final long startTime = System.currentTimeMillis();
+  private volatile boolean closed = false;
+  private long nextRangeStart;
+  private int ranges = 0;
+  private byte[] current;
+  private int currentPosition;
+
+  /**
+   * @param initialStream Optional stream already open at the first byte to read, used for the first range instead of a new request
+   * @param start The first byte to read
+   * @param end The last byte to read (inclusive)
+   * @param rangeSize The size of each range, at most Integer.MAX_VALUE as ranges are buffered in arrays
+   */
+  ParallelRangeGetInputStream(ExecutorService executor, RangeReader rangeReader, InputStream initialStream, long start, long end, long rangeSize,
+      int concurrency) {
+    Preconditions.checkArgument(rangeSize > 0 && rangeSize <= Integer.MAX_VALUE, "Invalid range size %s", rangeSize);
+    Preconditions.checkArgument(concurrency > 0, "Invalid concurrency %s", concurrency);
+    this.executor = executor;
+    this.rangeReader = rangeReader;
+    this.initialStream = new AtomicReference<>(initialStream);
+    this.start = start;
+    this.end = end;
+    this.rangeSize = rangeSize;
+    this.concurrency = concurrency;
+    this.nextRangeStart = start;
+    requestRanges();
+  }
+
+  @Override
+  public synchronized int read() throws IOException {
+    if (!ensureData()) {
+      return -1;
+    }
+    return current[currentPosition++] & 0xff;
+  }
+
+  @Override
+  public synchronized int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!ensureData()) {
+      return -1;
+    }
+    int read = Math.min(len, current.length - currentPosition);
+    System.arraycopy(current, currentPosition, b, off, read);
+    currentPosition += read;
+    return read;
+  }
+
+  @Override
+  public synchronized int available() throws IOException {
+    return closed || current == null ? 0 : current.length - currentPosition;
+  }
+
+  /**
+   * Close the stream, this does not wait for a concurrent read so that a read blocked on the backend can be cancelled.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (pendingRanges) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    for (Future<byte[]> pendingRange : pendingRanges) {
+      pendingRange.cancel(true);
+    }
+    pendingRanges.clear();
+    closeQuietly(initialStream.getAndSet(null));
+    for (InputStream openStream : openStreams) {
+      closeQuietly(openStream);
+    }
+    ThruputMetrics.addDataPoint(MonitoredAction.S3_PROVIDER_PARALLEL_GET_RANGES, ranges);
+    ThruputMetrics.addDataPoint(MonitoredAction.S3_PROVIDER_PARALLEL_GET_CONCURRENCY, maxActiveRequests.get());
+    ThruputMetrics.addDataPoint(MonitoredAction.S3_PROVIDER_PARALLEL_GET_TIMING, System.currentTimeMillis() - startTime);
+  }
+
+  private boolean ensureData() throws IOException {
+    checkOpen();
+    while (current == null || currentPosition >= current.length) {
+      Future<byte[]> nextRange = pendingRanges.poll();
+      if (nextRange == null) {
+        checkOpen();
+        current = null;
+        return false;
+      }
+      try {
+        current = nextRange.get();
+        currentPosition = 0;
+      } catch (CancellationException e) {
+        throw new IOException("Stream closed");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted reading object range");
+      } catch (ExecutionException e) {
+        checkOpen();
+        throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException("Error reading object range", e.getCause());
+      }
+      requestRanges();
+    }
+    return true;
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  private void requestRanges() {
+    synchronized (pendingRanges) {
+      while (!closed && pendingRanges.size() < concurrency && nextRangeStart <= end) {
+        final long rangeStart = nextRangeStart;
+        final long rangeEnd = Math.min(end, rangeStart + rangeSize - 1);
+        nextRangeStart = rangeEnd + 1;
+        ranges++;
+        pendingRanges.add(executor.submit(() -> readRange(rangeStart, rangeEnd)));
+      }
+    }
+  }
+
+  private byte[] readRange(long rangeStart, long rangeEnd) throws IOException {
+    maxActiveRequests.accumulateAndGet(activeRequests.incrementAndGet(), Math::max);
+    InputStream in = null;
+    try {
+      checkOpen();
+      InputStream initial = rangeStart == start ? initialStream.getAndSet(null) : null;
+      in = initial != null ? initial : rangeReader.open(rangeStart, rangeEnd);
+      openStreams.add(in);
+      checkOpen();
+      byte[] data = new byte[(int) (rangeEnd - rangeStart + 1)];
+      ByteStreams.readFully(in, data);
+      return data;
+    } finally {
+      activeRequests.decrementAndGet();
+      if (in != null) {
+        openStreams.remove(in);
+        closeQuietly(in);
+      }
+    }
+  }
+
+  private static void closeQuietly(InputStream in) {
+    if (in != null) {
+      try {
+        in.close();
+      } catch (IOException e) {
+        // stream is no longer needed
+      }
+    }
+  }
+}
@@ -29,6 +29,7 @@
 
 package com.eucalyptus.objectstorage.providers.s3;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -40,6 +41,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nonnull;
 import org.apache.log4j.Logger;
@@ -81,6 +83,7 @@ import com.amazonaws.services.s3.model.PartSummary;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.PutObjectResult;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.model.S3VersionSummary;
 import com.amazonaws.services.s3.model.SetBucketLoggingConfigurationRequest;
@@ -90,6 +93,7 @@ import com.amazonaws.services.s3.model.UploadPartResult;
 import com.amazonaws.services.s3.model.VersionListing;
 import com.eucalyptus.auth.principal.User;
 import com.eucalyptus.auth.principal.UserPrincipal;
+import com.eucalyptus.objectstorage.ObjectStorage;
 import com.eucalyptus.objectstorage.client.OsgInternalS3Client;
 import com.eucalyptus.objectstorage.entities.S3ProviderConfiguration;
 import com.eucalyptus.objectstorage.exceptions.S3ExceptionMapper;
@@ -178,6 +182,7 @@ import com.eucalyptus.storage.msgs.s3.LoggingEnabled;
 import com.eucalyptus.storage.msgs.s3.MetaDataEntry;
 import com.eucalyptus.storage.msgs.s3.Part;
 import com.eucalyptus.storage.msgs.s3.VersionEntry;
+import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.EucalyptusCloudException;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
@@ -195,6 +200,8 @@ import com.google.common.collect.Lists;
 
 public class S3ProviderClient implements ObjectStorageProviderClient {
   private static final Logger LOG = Logger.getLogger(S3ProviderClient.class);
+  private static final long MB = 1024 * 1024;
+  private static final long MAX_PARALLEL_GET_RANGE_SIZE = 1024 * MB;
   private volatile URI upstreamEndpoint;
   private volatile OsgInternalS3Client backendClient;
 
@@ -785,6 +792,48 @@ public class S3ProviderClient implements ObjectStorageProviderClient {
 
   }
 
+  /**
+   * Get the content for a full object GET, reading the rest of the object using concurrent ranged GETs if the object is at least the configured
+   * threshold size.
+   *
+   * The response of the initial GET supplies the object size and the first range, so objects below the threshold need no additional requests.
+   * Ranged GETs are constrained to the ETag of the initial GET so changes to the object while reading result in an error rather than mixed
+   * content.
+   */
+  protected InputStream getObjectContent(final AmazonS3Client s3Client, final String bucket, final String key, final S3Object response) {
+    final S3ObjectInputStream content = response.getObjectContent();
+    S3ProviderConfiguration providerConfig = ConfigurationCache.getConfiguration(S3ProviderConfiguration.class);
+    long threshold = providerConfig.getS3ParallelGetThresholdMB() * MB;
+    long contentLength = response.getObjectMetadata().getContentLength();
+    long rangeSize = Math.min(MAX_PARALLEL_GET_RANGE_SIZE, providerConfig.getS3ParallelGetRangeSizeMB() * MB);
+    if (threshold <= 0 || contentLength < threshold || contentLength <= rangeSize) {
+      return content;
+    }
+    final String etag = response.getObjectMetadata().getETag();
+    InputStream initialContent = new FilterInputStream(content) {
+      @Override
+      public void close() throws IOException {
+        // only the first range is read so abort rather than drain the remainder
+        content.abort();
+      }
+    };
+    int concurrency = providerConfig.getS3ParallelGetConcurrency();
+    return new ParallelRangeGetInputStream(parallelGetExecutor(providerConfig), (start, end) -> {
+      GetObjectRequest rangeRequest = new GetObjectRequest(bucket, key);
+      rangeRequest.setRange(start, end);
+      rangeRequest.setMatchingETagConstraints(Collections.singletonList(etag));
+      S3Object rangeObject = s3Client.getObject(rangeRequest);
+      if (rangeObject == null) {
+        throw new IOException("Object " + bucket + "/" + key + " modified while reading");
+      }
+      return rangeObject.getObjectContent();
+    }, initialContent, 0, contentLength - 1, rangeSize, concurrency);
+  }
+
+  private static ExecutorService parallelGetExecutor(final S3ProviderConfiguration providerConfig) {
+    return Threads.lookup(ObjectStorage.class, S3ProviderClient.class, "parallel-get").limitTo(providerConfig.getS3ParallelGetThreads());
+  }
+
   @Override
   public GetObjectResponseType getObject(final GetObjectType request) throws S3Exception {
     User requestUser = getRequestUser(request);
@@ -797,7 +846,7 @@ public class S3ProviderClient implements ObjectStorageProviderClient {
       S3Object response;
       response = s3Client.getObject(getRequest);
       populateResponseMetadata(reply, response.getObjectMetadata());
-      reply.setDataInputStream(response.getObjectContent());
+      reply.setDataInputStream(getObjectContent(s3Client, request.getBucket(), request.getKey(), response));
       return reply;
     } catch (AmazonServiceException e) {
       LOG.debug("Error from backend", e);
@@ -825,7 +874,9 @@ public class S3ProviderClient implements ObjectStorageProviderClient {
 
       GetObjectExtendedResponseType reply = request.getReply();
       populateResponseMetadata(reply, response.getObjectMetadata());
-      reply.setDataInputStream(response.getObjectContent());
+      reply.setDataInputStream(getRequest.getRange() == null ?
+          getObjectContent(s3Client, request.getBucket(), request.getKey(), response) :
+          response.getObjectContent());
       reply.setByteRangeStart(request.getByteRangeStart());
       reply.setByteRangeEnd(request.getByteRangeEnd());
       return reply;
@@ -0,0 +1,175 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.objectstorage.providers.s3
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import com.google.common.io.ByteStreams
+import groovy.transform.CompileStatic
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+@CompileStatic
+class ParallelRangeGetInputStreamTest {
+
+  private ExecutorService executor
+
+  @Before
+  void setUp( ) {
+    executor = Executors.newFixedThreadPool( 4 )
+  }
+
+  @After
+  void tearDown( ) {
+    executor.shutdownNow( )
+  }
+
+  @Test
+  void testRangesSplitAndReassembled( ) {
+    byte[] data = testData( 10000 )
+    List<List<Long>> requested = new CopyOnWriteArrayList<>( )
+    ParallelRangeGetInputStream stream = new ParallelRangeGetInputStream( executor, { long start, long end ->
+      requested.add( [ start, end ] )
+      return (InputStream) new ByteArrayInputStream( data, (int) start, (int) ( end - start + 1 ) )
+    } as ParallelRangeGetInputStream.RangeReader, null, 0, data.length - 1, 1024, 3 )
+    try {
+      assertArrayEquals( 'content', data, ByteStreams.toByteArray( stream ) )
+    } finally {
+      stream.close( )
+    }
+    List<List<Long>> expected = ( 0..9 ).collect{ int range ->
+      [ range * 1024L, Math.min( data.length - 1L, range * 1024L + 1023 ) ]
+    }
+    assertEquals( 'ranges', expected, requested.sort( false ){ List<Long> range -> range[0] } )
+  }
+
+  @Test
+  void testInitialStreamUsedForFirstRange( ) {
+    byte[] data = testData( 3000 )
+    List<Long> requestedStarts = new CopyOnWriteArrayList<>( )
+    ParallelRangeGetInputStream stream = new ParallelRangeGetInputStream( executor, { long start, long end ->
+      requestedStarts.add( start )
+      return (InputStream) new ByteArrayInputStream( data, (int) start, (int) ( end - start + 1 ) )
+    } as ParallelRangeGetInputStream.RangeReader, new ByteArrayInputStream( data ), 0, data.length - 1, 1000, 2 )
+    try {
+      assertArrayEquals( 'content', data, ByteStreams.toByteArray( stream ) )
+    } finally {
+      stream.close( )
+    }
+    assertEquals( 'ranged requests', [ 1000L, 2000L ], requestedStarts.sort( false ) )
+  }
+
+  @Test
+  void testRangesInFlightBoundedByConcurrency( ) {
+    CountDownLatch release = new CountDownLatch( 1 )
+    List<Long> requestedStarts = new CopyOnWriteArrayList<>( )
+    ParallelRangeGetInputStream stream = new ParallelRangeGetInputStream( executor, { long start, long end ->
+      requestedStarts.add( start )
+      release.await( )
+      return (InputStream) new ByteArrayInputStream( new byte[ (int) ( end - start + 1 ) ] )
+    } as ParallelRangeGetInputStream.RangeReader, null, 0, 9999, 1000, 2 )
+    try {
+      for ( int i = 0; i < 50 && requestedStarts.size( ) < 2; i++ ) {
+        Thread.sleep( 100 )
+      }
+      Thread.sleep( 100 )
+      assertEquals( 'ranges requested before read', 2, requestedStarts.size( ) )
+    } finally {
+      release.countDown( )
+      stream.close( )
+    }
+  }
+
+  @Test
+  void testCloseAbortsRangesBeingRead( ) {
+    CountDownLatch reading = new CountDownLatch( 1 )
+    CountDownLatch backendClosed = new CountDownLatch( 1 )
+    ParallelRangeGetInputStream stream = new ParallelRangeGetInputStream( executor, { long start, long end ->
+      return (InputStream) new InputStream( ) {
+        @Override
+        int read( ) throws IOException {
+          reading.countDown( )
+          backendClosed.await( )
+          throw new IOException( 'Aborted' )
+        }
+
+        @Override
+        void close( ) throws IOException {
+          backendClosed.countDown( )
+        }
+      }
+    } as ParallelRangeGetInputStream.RangeReader, null, 0, 999, 1000, 1 )
+    assertTrue( 'range read started', reading.await( 5, TimeUnit.SECONDS ) )
+    stream.close( )
+    assertTrue( 'backend stream closed', backendClosed.await( 5, TimeUnit.SECONDS ) )
+    try {
+      stream.read( )
+      fail( 'Expected read after close to fail' )
+    } catch ( IOException e ) {
+      assertEquals( 'message', 'Stream closed', e.message )
+    }
+  }
+
+  @Test
+  void testRangeErrorFailsRead( ) {
+    ParallelRangeGetInputStream stream = new ParallelRangeGetInputStream( executor, { long start, long end ->
+      throw new IOException( 'Object modified while reading' )
+    } as ParallelRangeGetInputStream.RangeReader, null, 0, 999, 1000, 1 )
+    try {
+      stream.read( )
+      fail( 'Expected read to fail' )
+    } catch ( IOException e ) {
+      assertEquals( 'message', 'Object modified while reading', e.message )
+    } finally {
+      stream.close( )
+    }
+  }
+
+  @Test( expected = IllegalArgumentException )
+  void testRangeSizeBounded( ) {
+    new ParallelRangeGetInputStream( executor, { long start, long end ->
+      return (InputStream) new ByteArrayInputStream( new byte[0] )
+    } as ParallelRangeGetInputStream.RangeReader, null, 0, 999, Integer.MAX_VALUE + 1L, 1 )
+  }
+
+  private static byte[] testData( int size ) {
+    byte[] data = new byte[ size ]
+    new Random( size ).nextBytes( data )
+    data
+  }
+}
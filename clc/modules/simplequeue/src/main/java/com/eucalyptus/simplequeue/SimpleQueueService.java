@@ -64,6 +64,7 @@ import com.eucalyptus.component.annotation.ComponentNamed;
 import com.eucalyptus.context.Context;
 import com.eucalyptus.context.Contexts;
 import com.eucalyptus.simplequeue.async.CloudWatchClient;
+import com.eucalyptus.simplequeue.async.LocalQueueWaiters;
 import com.eucalyptus.simplequeue.async.NotifyClient;
 import com.eucalyptus.simplequeue.common.policy.SimpleQueuePolicySpec;
 import com.eucalyptus.simplequeue.config.SimpleQueueProperties;
@@ -85,6 +86,7 @@ import com.eucalyptus.simplequeue.exceptions.UnsupportedOperationException;
 import com.eucalyptus.simplequeue.persistence.PersistenceFactory;
 import com.eucalyptus.simplequeue.persistence.Queue;
 import com.eucalyptus.system.Threads;
+import com.eucalyptus.util.Either;
 import com.eucalyptus.util.EucalyptusCloudException;
 import com.eucalyptus.util.Exceptions;
 import com.eucalyptus.util.RestrictedTypes;
@@ -104,6 +106,8 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.Sets;
+import javaslang.Tuple;
+import javaslang.Tuple2;
 import net.sf.json.JSONException;
 import org.apache.log4j.Logger;
 import org.apache.xml.security.exceptions.Base64DecodingException;
@@ -130,6 +134,7 @@ import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -142,6 +147,9 @@ public class SimpleQueueService {
   private static final ScheduledExecutorService sendMessageNotificationsScheduledExecutorService = Executors
     .newScheduledThreadPool(4, Threads.threadFactory( "simplequeue-send-message-notification-%d" ) );
 
+  private static final ExecutorService receiveWakeupExecutorService = Executors
+    .newFixedThreadPool(8, Threads.threadFactory( "simplequeue-receive-wakeup-%d" ) );
+
   static final Logger LOG = Logger.getLogger(SimpleQueueService.class);
 
   private static int checkAttributeIntMinMax(Attribute attribute, int min, int max) throws InvalidParameterValueException {
@@ -712,6 +720,11 @@ public class SimpleQueueService {
   }
 
   private static void handleChangeMessageVisibility(Integer visibilityTimeout, String receiptHandle, Queue queue) throws SimpleQueueException {
+    checkChangeMessageVisibility(visibilityTimeout, receiptHandle);
+    PersistenceFactory.getMessagePersistence().changeMessageVisibility(queue.getKey(), receiptHandle, visibilityTimeout);
+  }
+
+  private static void checkChangeMessageVisibility(Integer visibilityTimeout, String receiptHandle) throws SimpleQueueException {
     if (visibilityTimeout == null) {
       throw new MissingParameterException("VisibilityTimeout is a required field");
     }
@@ -721,8 +734,6 @@ public class SimpleQueueService {
     if (receiptHandle == null) {
       throw new MissingParameterException("ReceiptHandle is a required field");
     }
-
-    PersistenceFactory.getMessagePersistence().changeMessageVisibility(queue.getKey(), receiptHandle, visibilityTimeout);
   }
 
   public DeleteMessageResponseType deleteMessage(DeleteMessageType request) throws EucalyptusCloudException {
@@ -1383,23 +1394,42 @@ public class SimpleQueueService {
         }
         previousIds.add(batchRequestEntry.getId());
       }
+      // invalid entries fail without being passed to persistence
+      List<Either<SimpleQueueException, Boolean>> results = Lists.newArrayList();
+      List<Tuple2<String, Integer>> receiptHandlesAndVisibilityTimeouts = Lists.newArrayList();
       for (ChangeMessageVisibilityBatchRequestEntry batchRequestEntry: request.getChangeMessageVisibilityBatchRequestEntry()) {
         try {
-          handleChangeMessageVisibility(batchRequestEntry.getVisibilityTimeout(), batchRequestEntry.getReceiptHandle(), queue);
+          checkChangeMessageVisibility(batchRequestEntry.getVisibilityTimeout(), batchRequestEntry.getReceiptHandle());
+          receiptHandlesAndVisibilityTimeouts.add(Tuple.of(batchRequestEntry.getReceiptHandle(), batchRequestEntry.getVisibilityTimeout()));
+          results.add(null);
+        } catch (SimpleQueueException ex) {
+          results.add(Either.left(ex));
+        }
+      }
+      if (!receiptHandlesAndVisibilityTimeouts.isEmpty()) {
+        List<Either<SimpleQueueException, Boolean>> changeResults;
+        try {
+          changeResults = PersistenceFactory.getMessagePersistence().changeMessageVisibilityBatch(queue.getKey(), receiptHandlesAndVisibilityTimeouts);
+        } catch (Exception ex) {
+          changeResults = batchFailure(ex, receiptHandlesAndVisibilityTimeouts.size());
+        }
+        Iterator<Either<SimpleQueueException, Boolean>> changeResultIterator = changeResults.iterator();
+        for (int i = 0; i < results.size(); i++) {
+          if (results.get(i) == null) {
+            results.set(i, changeResultIterator.next());
+          }
+        }
+      }
+      for (int i = 0; i < results.size(); i++) {
+        ChangeMessageVisibilityBatchRequestEntry batchRequestEntry = request.getChangeMessageVisibilityBatchRequestEntry().get(i);
+        Either<SimpleQueueException, Boolean> result = results.get(i);
+        if (result.isRight()) {
           ChangeMessageVisibilityBatchResultEntry success = new ChangeMessageVisibilityBatchResultEntry();
           success.setId(batchRequestEntry.getId());
           reply.getChangeMessageVisibilityBatchResult().getChangeMessageVisibilityBatchResultEntry().add(success);
-        } catch (Exception ex) {
-          try {
-            handleException(ex);
-          } catch (SimpleQueueException ex1) {
-            BatchResultErrorEntry failure = new BatchResultErrorEntry();
-            failure.setId(batchRequestEntry.getId());
-            failure.setCode(ex1.getCode());
-            failure.setMessage(ex1.getMessage());
-            failure.setSenderFault(ex1.getRole() != null && ex1.getRole().equals(Role.Sender));
-            reply.getChangeMessageVisibilityBatchResult().getBatchResultErrorEntry().add(failure);
-          }
+        } else {
+          reply.getChangeMessageVisibilityBatchResult().getBatchResultErrorEntry().add(
+            batchResultErrorEntry(batchRequestEntry.getId(), result.getLeft()));
         }
       }
     } catch (Exception ex) {
@@ -1440,9 +1470,21 @@ public class SimpleQueueService {
       }
       Date now = new Date();
       int numSuccessfulRealDeletes = 0;
+      List<String> receiptHandles = Lists.newArrayList();
       for (DeleteMessageBatchRequestEntry batchRequestEntry: request.getDeleteMessageBatchRequestEntry()) {
-        try {
-          if (PersistenceFactory.getMessagePersistence().deleteMessage(queue.getKey(), batchRequestEntry.getReceiptHandle())) {
+        receiptHandles.add(batchRequestEntry.getReceiptHandle());
+      }
+      List<Either<SimpleQueueException, Boolean>> results;
+      try {
+        results = PersistenceFactory.getMessagePersistence().deleteMessageBatch(queue.getKey(), receiptHandles);
+      } catch (Exception ex) {
+        results = batchFailure(ex, receiptHandles.size());
+      }
+      for (int i = 0; i < results.size(); i++) {
+        DeleteMessageBatchRequestEntry batchRequestEntry = request.getDeleteMessageBatchRequestEntry().get(i);
+        Either<SimpleQueueException, Boolean> result = results.get(i);
+        if (result.isRight()) {
+          if (result.getRight()) {
             // note: only send a CW metric if we actually delete a message.  We can still 'succeed' on a stale
             // receipt handle.
             numSuccessfulRealDeletes++;
@@ -1450,17 +1492,9 @@ public class SimpleQueueService {
           DeleteMessageBatchResultEntry success = new DeleteMessageBatchResultEntry();
           success.setId(batchRequestEntry.getId());
           reply.getDeleteMessageBatchResult().getDeleteMessageBatchResultEntry().add(success);
-        } catch (Exception ex) {
-          try {
-            handleException(ex);
-          } catch (SimpleQueueException ex1) {
-            BatchResultErrorEntry failure = new BatchResultErrorEntry();
-            failure.setId(batchRequestEntry.getId());
-            failure.setCode(ex1.getCode());
-            failure.setMessage(ex1.getMessage());
-            failure.setSenderFault(ex1.getRole() != null && ex1.getRole().equals(Role.Sender));
-            reply.getDeleteMessageBatchResult().getBatchResultErrorEntry().add(failure);
-          }
+        } else {
+          reply.getDeleteMessageBatchResult().getBatchResultErrorEntry().add(
+            batchResultErrorEntry(batchRequestEntry.getId(), result.getLeft()));
         }
       }
       if (SimpleQueueProperties.ENABLE_METRICS_COLLECTION && numSuccessfulRealDeletes > 0) {
@@ -1521,10 +1555,21 @@ public class SimpleQueueService {
       int totalSuccessfulMessagesLength = 0;
       Integer smallestSuccessfulMessageLength = null;
       Integer largestSuccessfulMessageLength = null;
-      for (SendMessageBatchRequestEntry batchRequestEntry: request.getSendMessageBatchRequestEntry()) {
-        try {
+      List<Tuple2<Message, Map<String, String>>> messages = Lists.newArrayList();
+      for (MessageInfo messageInfo : messageInfoMap.values()) {
+        messages.add(Tuple.of(messageInfo.getMessage(), messageInfo.getSendAttributes()));
+      }
+      List<Either<SimpleQueueException, Boolean>> results;
+      try {
+        results = PersistenceFactory.getMessagePersistence().sendMessageBatch(queue, messages);
+      } catch (Exception ex) {
+        results = batchFailure(ex, messages.size());
+      }
+      for (int i = 0; i < results.size(); i++) {
+        SendMessageBatchRequestEntry batchRequestEntry = request.getSendMessageBatchRequestEntry().get(i);
+        Either<SimpleQueueException, Boolean> result = results.get(i);
+        if (result.isRight()) {
           MessageInfo messageInfo = messageInfoMap.get(batchRequestEntry.getId());
-          PersistenceFactory.getMessagePersistence().sendMessage(queue, messageInfo.getMessage(), messageInfo.getSendAttributes());
           SendMessageBatchResultEntry success = new SendMessageBatchResultEntry();
           success.setmD5OfMessageAttributes(messageInfo.getMessage().getmD5OfMessageAttributes());
           success.setMessageId(messageInfo.getMessage().getMessageId());
@@ -1543,17 +1588,9 @@ public class SimpleQueueService {
             largestSuccessfulMessageLength = messageInfo.getMessageLength();
           }
           totalSuccessfulMessagesLength += messageInfo.getMessageLength();
-        } catch (Exception ex) {
-          try {
-            handleException(ex);
-          } catch (SimpleQueueException ex1) {
-            BatchResultErrorEntry failure = new BatchResultErrorEntry();
-            failure.setId(batchRequestEntry.getId());
-            failure.setCode(ex1.getCode());
-            failure.setMessage(ex1.getMessage());
-            failure.setSenderFault(ex1.getRole() != null && ex1.getRole().equals(Role.Sender));
-            reply.getSendMessageBatchResult().getBatchResultErrorEntry().add(failure);
-          }
+        } else {
+          reply.getSendMessageBatchResult().getBatchResultErrorEntry().add(
+            batchResultErrorEntry(batchRequestEntry.getId(), result.getLeft()));
         }
       }
       if (SimpleQueueProperties.ENABLE_METRICS_COLLECTION && numSuccessfulMessages > 0) {
@@ -1592,6 +1629,24 @@ public class SimpleQueueService {
     return messageAttributes == null ? null : messageAttributes.stream().collect(Collectors.toMap(MessageAttribute::getName, MessageAttribute::getValue));
   }
 
+  private static List<Either<SimpleQueueException, Boolean>> batchFailure(final Exception ex, final int size) {
+    try {
+      handleException(ex);
+    } catch (SimpleQueueException ex1) {
+      return Collections.nCopies(size, Either.<SimpleQueueException, Boolean>left(ex1));
+    }
+    throw new IllegalStateException("Unhandled batch failure", ex);
+  }
+
+  private static BatchResultErrorEntry batchResultErrorEntry(final String id, final SimpleQueueException ex) {
+    BatchResultErrorEntry failure = new BatchResultErrorEntry();
+    failure.setId(id);
+    failure.setCode(ex.getCode());
+    failure.setMessage(ex.getMessage());
+    failure.setSenderFault(ex.getRole() != null && ex.getRole().equals(Role.Sender));
+    return failure;
+  }
+
   private static void handleException(final Exception e) throws SimpleQueueException {
     final SimpleQueueException cause = Exceptions.findCause(e, SimpleQueueException.class);
     if (cause != null) {
@@ -1631,34 +1686,113 @@ public class SimpleQueueService {
                                                     final ReceiveMessageResponseType response,
                                                     final Callable<? extends ReceiveMessageResult> resultCallable,
                                                     final long pollTimeout) throws AuthException {
-    try {
-      NotifyClient.pollQueue(queue, pollTimeout, Contexts.consumerWithCurrentContext(
-        (notified) -> {
-          try {
-            if (notified) {
-              final ReceiveMessageResult receiveMessageResult = resultCallable.call();
-              if (receiveMessageResult != null) {
-                response.setReceiveMessageResult(receiveMessageResult);
-                Contexts.response(response);
-                return;
-              } else if (System.currentTimeMillis() < pollTimeout) {
-                handleQueuePollingForReceive(queue, response, resultCallable, pollTimeout);
-                return;
-              }
+    new ReceiveMessagePoll(queue, response, resultCallable, pollTimeout).start();
+  }
+
+  /**
+   * Long poll for a receive, woken by sends on this host or by notifications from any host.
+   */
+  private static final class ReceiveMessagePoll {
+    private final Queue queue;
+    private final ReceiveMessageResponseType response;
+    private final Callable<? extends ReceiveMessageResult> resultCallable;
+    private final long pollTimeout;
+    private LocalQueueWaiters.Waiter waiter;
+    private boolean done; // guarded by this
+
+    private ReceiveMessagePoll( final Queue queue,
+                                final ReceiveMessageResponseType response,
+                                final Callable<? extends ReceiveMessageResult> resultCallable,
+                                final long pollTimeout ) {
+      this.queue = queue;
+      this.response = response;
+      this.resultCallable = resultCallable;
+      this.pollTimeout = pollTimeout;
+    }
+
+    private void start() throws AuthException {
+      waiter = LocalQueueWaiters.register(
+          queue.getKey(),
+          receiveWakeupExecutorService,
+          Contexts.consumerWithCurrentContext(this::localNotification));
+      pollRemote();
+    }
+
+    private void pollRemote() throws AuthException {
+      try {
+        NotifyClient.pollQueue(queue, pollTimeout, Contexts.consumerWithCurrentContext(this::remoteNotification));
+      } catch ( Exception e ) {
+        LOG.error("Error polling for task " + queue.getArn(), e);
+        respondEmpty();
+      }
+    }
+
+    private void localNotification( final Boolean notified ) {
+      try {
+        if (isDone()) {
+          // completed since being woken so pass on the notification
+          LocalQueueWaiters.wakeOldest(queue.getKey());
+        } else if (!receive()) {
+          synchronized (this) {
+            if (!done && System.currentTimeMillis() < pollTimeout) {
+              LocalQueueWaiters.reregister(waiter);
             }
-            sendEmptyReceiveCW(queue);
-            Contexts.response(response);
-          } catch (final InterruptedException e) {
-            LOG.info("Interrupted while polling for task " + queue.getArn(), e);
-          } catch (final Exception e) {
-            LOG.error("Error polling for task " + queue.getArn(), e);
           }
         }
-      ));
-    } catch ( Exception e ) {
-      LOG.error("Error polling for task " + queue.getArn(), e);
-      sendEmptyReceiveCW(queue);
-      Contexts.response( response );
+      } catch (final Exception e) {
+        LOG.error("Error polling for task " + queue.getArn(), e);
+      }
+    }
+
+    private void remoteNotification( final Boolean notified ) {
+      try {
+        if (notified) {
+          if (receive()) {
+            return;
+          } else if (System.currentTimeMillis() < pollTimeout) {
+            if (!isDone()) {
+              pollRemote();
+            }
+            return;
+          }
+        }
+        respondEmpty();
+      } catch (final InterruptedException e) {
+        LOG.info("Interrupted while polling for task " + queue.getArn(), e);
+      } catch (final Exception e) {
+        LOG.error("Error polling for task " + queue.getArn(), e);
+      }
+    }
+
+    /**
+     * @return True if messages were received or the poll is already complete
+     */
+    private synchronized boolean receive() throws Exception {
+      if (done) {
+        return true;
+      }
+      final ReceiveMessageResult receiveMessageResult = resultCallable.call();
+      if (receiveMessageResult != null) {
+        done = true;
+        LocalQueueWaiters.remove(waiter);
+        response.setReceiveMessageResult(receiveMessageResult);
+        Contexts.response(response);
+        return true;
+      }
+      return false;
+    }
+
+    private synchronized boolean isDone() {
+      return done;
+    }
+
+    private synchronized void respondEmpty() throws AuthException {
+      if (!done) {
+        done = true;
+        LocalQueueWaiters.remove(waiter);
+        sendEmptyReceiveCW(queue);
+        Contexts.response(response);
+      }
     }
   }
 
@@ -0,0 +1,137 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simplequeue.async;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.apache.log4j.Logger;
+import com.eucalyptus.simplequeue.persistence.Queue;
+import com.eucalyptus.util.Consumer;
+import com.google.common.collect.Maps;
+
+/**
+ * Long poll receive waiters for queues on this host.
+ *
+ * <p>Waiters are woken oldest first, one waiter for each notification. A
+ * waiter is woken using its own executor so the notifying thread does not
+ * perform the receive.</p>
+ */
+public class LocalQueueWaiters {
+  private static final Logger logger = Logger.getLogger( LocalQueueWaiters.class );
+
+  private static final ConcurrentMap<Queue.Key,Deque<Waiter>> waiters = Maps.newConcurrentMap( );
+
+  public static final class Waiter {
+    private final Queue.Key queueKey;
+    private final Executor executor;
+    private final Consumer<Boolean> wakeup;
+
+    private Waiter( final Queue.Key queueKey, final Executor executor, final Consumer<Boolean> wakeup ) {
+      this.queueKey = queueKey;
+      this.executor = executor;
+      this.wakeup = wakeup;
+    }
+  }
+
+  /**
+   * Register a waiter for the queue.
+   *
+   * @param queueKey The queue to wait on
+   * @param executor The executor used to invoke the wakeup
+   * @param wakeup Consumer invoked with true when woken
+   * @return The waiter
+   */
+  public static Waiter register( final Queue.Key queueKey, final Executor executor, final Consumer<Boolean> wakeup ) {
+    final Waiter waiter = new Waiter( queueKey, executor, wakeup );
+    waiters.compute( queueKey, ( key, queueWaiters ) -> {
+      final Deque<Waiter> deque = queueWaiters == null ? new ConcurrentLinkedDeque<>( ) : queueWaiters;
+      deque.addLast( waiter );
+      return deque;
+    } );
+    return waiter;
+  }
+
+  /**
+   * Register a woken waiter again, the waiter keeps its place as oldest.
+   */
+  public static void reregister( final Waiter waiter ) {
+    waiters.compute( waiter.queueKey, ( key, queueWaiters ) -> {
+      final Deque<Waiter> deque = queueWaiters == null ? new ConcurrentLinkedDeque<>( ) : queueWaiters;
+      deque.addFirst( waiter );
+      return deque;
+    } );
+  }
+
+  public static void remove( final Waiter waiter ) {
+    waiters.computeIfPresent( waiter.queueKey, ( key, queueWaiters ) -> {
+      queueWaiters.remove( waiter );
+      return queueWaiters.isEmpty( ) ? null : queueWaiters;
+    } );
+  }
+
+  /**
+   * Wake the oldest waiter for the queue.
+   *
+   * <p>The wakeup is dispatched to the waiter's executor, this method does
+   * not wait for the wakeup to run.</p>
+   *
+   * @return True if a waiter was woken
+   */
+  public static boolean wakeOldest( final Queue.Key queueKey ) {
+    Waiter woken;
+    while ( ( woken = pollOldest( queueKey ) ) != null ) {
+      final Waiter waiter = woken;
+      try {
+        waiter.executor.execute( ( ) -> {
+          try {
+            waiter.wakeup.accept( true );
+          } catch ( final Exception e ) {
+            logger.error( "Error waking receive for queue " + queueKey.getArn( ), e );
+          }
+        } );
+        return true;
+      } catch ( final RejectedExecutionException e ) {
+        logger.warn( "Unable to wake receive for queue " + queueKey.getArn( ) + ": " + e.getMessage( ) );
+      }
+    }
+    return false;
+  }
+
+  private static Waiter pollOldest( final Queue.Key queueKey ) {
+    final Waiter[] oldest = new Waiter[ 1 ];
+    waiters.computeIfPresent( queueKey, ( key, queueWaiters ) -> {
+      oldest[ 0 ] = queueWaiters.pollFirst( );
+      return queueWaiters.isEmpty( ) ? null : queueWaiters;
+    } );
+    return oldest[ 0 ];
+  }
+}
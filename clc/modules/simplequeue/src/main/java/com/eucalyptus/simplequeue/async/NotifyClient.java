@@ -51,8 +51,14 @@ public class NotifyClient {
   }
   private static final Logger logger = Logger.getLogger(NotifyClient.class);
 
+  /**
+   * Notify the oldest waiter on this host, or waiters on any host if there
+   * are no local waiters.
+   */
   public static void notifyQueue(final Queue queue) {
-    NotifyClientUtils.notifyChannel(new QueueChannelWrapper(queue));
+    if (!LocalQueueWaiters.wakeOldest(queue.getKey())) {
+      NotifyClientUtils.notifyChannel(new QueueChannelWrapper(queue));
+    }
   }
 
   public static void pollQueue(final Queue queue,
@@ -153,6 +153,24 @@ public class SimpleQueueProperties {
     description = "Set 'true' to allow Long Polling for SQS",
     changeListener = PropertyChangeListeners.IsBoolean.class )
   public static volatile Boolean ENABLE_LONG_POLLING = true;
+  @ConfigurableField(
+    initial = "false",
+    description = "Set 'true' to cache messages in memory (postgres only, used when a single simplequeue service is enabled)",
+    changeListener = PropertyChangeListeners.IsBoolean.class )
+  public static volatile Boolean ENABLE_MESSAGE_CACHE = false;
+  @ConfigurableField(
+    initial = "sync",
+    description = "How cached message changes are written to the database (sync|group-commit)",
+    changeListener = MessageCacheWriteModePropertyChangeListener.class )
+  public static volatile String MESSAGE_CACHE_WRITE_MODE = "sync";
+  @ConfigurableField( description = "Interval for group-commit writes of cached message changes. (millis)",
+    initial = "50", changeListener = MinValuePropertyChangeListener.class )
+  @MinValue(min = 1)
+  public volatile static int MESSAGE_CACHE_WRITE_INTERVAL_MILLIS = 50;
+  @ConfigurableField( description = "Maximum number of messages in a queue for the queue to be cached.",
+    initial = "100000", changeListener = MinValuePropertyChangeListener.class )
+  @MinValue(min = 1)
+  public volatile static int MESSAGE_CACHE_MAX_QUEUE_MESSAGES = 100000;
 
   @Target(ElementType.FIELD)
   @Retention(RetentionPolicy.RUNTIME)
@@ -186,4 +204,13 @@ public class SimpleQueueProperties {
     }
   }
 
+  public static class MessageCacheWriteModePropertyChangeListener implements PropertyChangeListener {
+    @Override
+    public void fireChange( final ConfigurableProperty t, final Object newValue ) throws ConfigurablePropertyException {
+      if ( !"sync".equals( newValue ) && !"group-commit".equals( newValue ) ) {
+        throw new ConfigurablePropertyException("Invalid value " + newValue);
+      }
+    }
+  }
+
 }
@@ -30,8 +30,12 @@ package com.eucalyptus.simplequeue.persistence;
 
 import com.eucalyptus.simplequeue.Message;
 import com.eucalyptus.simplequeue.exceptions.SimpleQueueException;
+import com.eucalyptus.util.Either;
+import com.google.common.collect.Lists;
+import javaslang.Tuple2;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -48,12 +52,67 @@ public interface MessagePersistence {
 
   boolean deleteMessage(Queue.Key queueKey, String receiptHandle) throws SimpleQueueException;
 
+  /**
+   * Send a batch of messages to a queue.
+   *
+   * @param messages The messages with their send attributes
+   * @return The result for each message in batch order, failures do not prevent other messages being sent
+   */
+  default List<Either<SimpleQueueException, Boolean>> sendMessageBatch(Queue queue, List<Tuple2<Message, Map<String, String>>> messages) {
+    List<Either<SimpleQueueException, Boolean>> results = Lists.newArrayListWithCapacity(messages.size());
+    for (Tuple2<Message, Map<String, String>> message : messages) {
+      try {
+        sendMessage(queue, message._1(), message._2());
+        results.add(Either.right(true));
+      } catch (SimpleQueueException e) {
+        results.add(Either.left(e));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Delete a batch of messages from a queue.
+   *
+   * @return The result for each receipt handle in batch order, true if a message was deleted
+   */
+  default List<Either<SimpleQueueException, Boolean>> deleteMessageBatch(Queue.Key queueKey, List<String> receiptHandles) {
+    List<Either<SimpleQueueException, Boolean>> results = Lists.newArrayListWithCapacity(receiptHandles.size());
+    for (String receiptHandle : receiptHandles) {
+      try {
+        results.add(Either.right(deleteMessage(queueKey, receiptHandle)));
+      } catch (SimpleQueueException e) {
+        results.add(Either.left(e));
+      }
+    }
+    return results;
+  }
+
   void deleteAllMessages(Queue.Key queueKey);
 
   Map<String, String> getApproximateMessageCounts(Queue.Key queueKey);
 
   void changeMessageVisibility(Queue.Key queueKey, String receiptHandle, Integer visibilityTimeout) throws SimpleQueueException;
 
+  /**
+   * Change the visibility of a batch of messages in a queue.
+   *
+   * @param receiptHandlesAndVisibilityTimeouts The receipt handles with their visibility timeouts
+   * @return The result for each receipt handle in batch order, failures do not prevent other changes
+   */
+  default List<Either<SimpleQueueException, Boolean>> changeMessageVisibilityBatch(Queue.Key queueKey, List<Tuple2<String, Integer>> receiptHandlesAndVisibilityTimeouts) {
+    List<Either<SimpleQueueException, Boolean>> results = Lists.newArrayListWithCapacity(receiptHandlesAndVisibilityTimeouts.size());
+    for (Tuple2<String, Integer> receiptHandleAndVisibilityTimeout : receiptHandlesAndVisibilityTimeouts) {
+      try {
+        changeMessageVisibility(queueKey, receiptHandleAndVisibilityTimeout._1(), receiptHandleAndVisibilityTimeout._2());
+        results.add(Either.right(true));
+      } catch (SimpleQueueException e) {
+        results.add(Either.left(e));
+      }
+    }
+    return results;
+  }
+
   Long getApproximateAgeOfOldestMessage(Queue.Key queueKey);
 
 }
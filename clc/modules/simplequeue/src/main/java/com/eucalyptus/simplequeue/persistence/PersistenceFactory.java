@@ -30,14 +30,21 @@ package com.eucalyptus.simplequeue.persistence;
 
 import java.util.Map;
 import java.util.function.Function;
+import org.apache.log4j.Logger;
+import com.eucalyptus.bootstrap.Bootstrap;
 import com.eucalyptus.cassandra.common.Cassandra;
 import com.eucalyptus.cassandra.common.CassandraPersistence;
 import com.eucalyptus.component.Topology;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
 import com.eucalyptus.simplequeue.Constants;
+import com.eucalyptus.simplequeue.SimpleQueue;
 import com.eucalyptus.simplequeue.common.policy.SimpleQueueResourceName;
 import com.eucalyptus.simplequeue.config.SimpleQueueProperties;
 import com.eucalyptus.simplequeue.persistence.cassandra.CassandraMessagePersistence;
 import com.eucalyptus.simplequeue.persistence.cassandra.CassandraQueuePersistence;
+import com.eucalyptus.simplequeue.persistence.memory.MemoryMessagePersistence;
 import com.eucalyptus.simplequeue.persistence.postgresql.PostgresqlMessagePersistence;
 import com.eucalyptus.simplequeue.persistence.postgresql.PostgresqlQueuePersistence;
 import com.google.common.base.MoreObjects;
@@ -49,18 +56,32 @@ import javaslang.Tuple2;
  * Created by ethomas on 9/7/16.
  */
 public class PersistenceFactory {
+  private static final Logger logger = Logger.getLogger( PersistenceFactory.class );
   private static final String defaultPersistence = "postgres";
+  private static final PostgresqlMessagePersistence postgresqlMessagePersistence = new PostgresqlMessagePersistence( );
+  private static final MemoryMessagePersistence memoryMessagePersistence = new MemoryMessagePersistence( postgresqlMessagePersistence );
   private static final Map<String, Tuple2<QueuePersistence,MessagePersistence>> persistenceMap =
       ImmutableMap.<String,Tuple2<QueuePersistence,MessagePersistence>>builder( )
       .put( "cassandra", Tuple.of( CassandraQueuePersistence.external( ), CassandraMessagePersistence.external( ) ) )
       .put( "euca-cassandra", Tuple.of( CassandraQueuePersistence.internal( ), CassandraMessagePersistence.internal( ) ) )
-      .put( defaultPersistence, Tuple.of( new PostgresqlQueuePersistence( ), new PostgresqlMessagePersistence( ) ) )
+      .put( defaultPersistence, Tuple.of( new PostgresqlQueuePersistence( ), postgresqlMessagePersistence ) )
       .build( );
 
   public static QueuePersistence getQueuePersistence( ) {
     return persistence( Tuple2::_1 );
   }
   public static MessagePersistence getMessagePersistence( ) {
+    final MessagePersistence messagePersistence = getStoreMessagePersistence( );
+    if ( updateMessageCache( messagePersistence ) ) {
+      return memoryMessagePersistence;
+    }
+    return messagePersistence;
+  }
+
+  /**
+   * Get the message persistence for the configured store, bypassing any cache.
+   */
+  public static MessagePersistence getStoreMessagePersistence( ) {
     return persistence( Tuple2::_2 );
   }
 
@@ -79,6 +100,45 @@ public class PersistenceFactory {
         persistenceMap.get( defaultPersistence ) ) );
   }
 
+  /**
+   * Messages can only be cached when all message operations are on this host.
+   */
+  private static boolean isMessageCacheEnabled( ) {
+    return SimpleQueueProperties.ENABLE_MESSAGE_CACHE &&
+        Topology.isEnabledLocally( SimpleQueue.class ) &&
+        Topology.enabledServices( SimpleQueue.class ).size( ) == 1;
+  }
+
+  /**
+   * Enable or disable the message cache, the cache is discarded on any topology change.
+   */
+  private static boolean updateMessageCache( final MessagePersistence messagePersistence ) {
+    return memoryMessagePersistence.setEnabled(
+        messagePersistence == postgresqlMessagePersistence && isMessageCacheEnabled( ),
+        Topology.epoch( ) );
+  }
+
+  /**
+   * Discards cached messages on topology change when there are no requests on this host.
+   */
+  public static class MessageCacheEventListener implements EventListener<ClockTick> {
+
+    public static void register( ) {
+      Listeners.register( ClockTick.class, new MessageCacheEventListener( ) );
+    }
+
+    @Override
+    public void fireEvent( final ClockTick event ) {
+      if ( Bootstrap.isOperational( ) ) {
+        try {
+          updateMessageCache( getStoreMessagePersistence( ) );
+        } catch ( final Exception e ) {
+          logger.error( "Error updating message cache", e );
+        }
+      }
+    }
+  }
+
   private static String resolveAuto( final String dbToUse ) {
     if ( "auto".equals( dbToUse ) ) {
       return Topology.isEnabled( Cassandra.class ) ?
@@ -0,0 +1,118 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simplequeue.persistence;
+
+/**
+ * Message state as held by a message store.
+ */
+public class StoredMessage {
+  private final Queue.Key queueKey;
+  private final String messageId;
+  private long sentTimestampSecs;
+  private long visibleTimestampSecs;
+  private long expiredTimestampSecs;
+  private int receiveCount;
+  private int localReceiveCount;
+  private String messageJson;
+
+  public StoredMessage(Queue.Key queueKey, String messageId) {
+    this.queueKey = queueKey;
+    this.messageId = messageId;
+  }
+
+  public StoredMessage(Queue.Key queueKey, StoredMessage storedMessage) {
+    this(queueKey, storedMessage.getMessageId());
+    this.sentTimestampSecs = storedMessage.getSentTimestampSecs();
+    this.visibleTimestampSecs = storedMessage.getVisibleTimestampSecs();
+    this.expiredTimestampSecs = storedMessage.getExpiredTimestampSecs();
+    this.receiveCount = storedMessage.getReceiveCount();
+    this.localReceiveCount = storedMessage.getLocalReceiveCount();
+    this.messageJson = storedMessage.getMessageJson();
+  }
+
+  public StoredMessage(StoredMessage storedMessage) {
+    this(storedMessage.getQueueKey(), storedMessage);
+  }
+
+  public Queue.Key getQueueKey() {
+    return queueKey;
+  }
+
+  public String getMessageId() {
+    return messageId;
+  }
+
+  public long getSentTimestampSecs() {
+    return sentTimestampSecs;
+  }
+
+  public void setSentTimestampSecs(long sentTimestampSecs) {
+    this.sentTimestampSecs = sentTimestampSecs;
+  }
+
+  public long getVisibleTimestampSecs() {
+    return visibleTimestampSecs;
+  }
+
+  public void setVisibleTimestampSecs(long visibleTimestampSecs) {
+    this.visibleTimestampSecs = visibleTimestampSecs;
+  }
+
+  public long getExpiredTimestampSecs() {
+    return expiredTimestampSecs;
+  }
+
+  public void setExpiredTimestampSecs(long expiredTimestampSecs) {
+    this.expiredTimestampSecs = expiredTimestampSecs;
+  }
+
+  public int getReceiveCount() {
+    return receiveCount;
+  }
+
+  public void setReceiveCount(int receiveCount) {
+    this.receiveCount = receiveCount;
+  }
+
+  public int getLocalReceiveCount() {
+    return localReceiveCount;
+  }
+
+  public void setLocalReceiveCount(int localReceiveCount) {
+    this.localReceiveCount = localReceiveCount;
+  }
+
+  public String getMessageJson() {
+    return messageJson;
+  }
+
+  public void setMessageJson(String messageJson) {
+    this.messageJson = messageJson;
+  }
+}
@@ -46,6 +46,7 @@
 package com.eucalyptus.simplequeue.persistence.cassandra;
 
 import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SimpleStatement;
@@ -62,9 +63,14 @@ import com.eucalyptus.simplequeue.exceptions.SimpleQueueException;
 import com.eucalyptus.simplequeue.persistence.MessageJsonHelper;
 import com.eucalyptus.simplequeue.persistence.MessagePersistence;
 import com.eucalyptus.simplequeue.persistence.Queue;
+import com.eucalyptus.util.Either;
 import com.eucalyptus.util.ThrowingFunction;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import javaslang.Tuple;
+import javaslang.Tuple2;
+import javaslang.Tuple3;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -73,6 +79,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.UUID;
 import java.util.function.Function;
@@ -271,81 +278,90 @@ public class CassandraMessagePersistence implements MessagePersistence {
   public void sendMessage(Queue queue, Message message, Map<String, String> sendAttributes) throws SimpleQueueException {
     doThrowsWithSession( session -> {
       BatchStatement batchStatement = new BatchStatement( );
+      batchStatement.addAll( sendMessageStatements( queue, message, sendAttributes ) );
+      session.execute( batchStatement );
+      return null;
+    } );
+  }
 
-      int delaySeconds = queue.getDelaySeconds( );
-      if ( sendAttributes.containsKey( Constants.DELAY_SECONDS ) ) {
-        delaySeconds = Integer.parseInt( sendAttributes.get( Constants.DELAY_SECONDS ) );
+  @Override
+  public List<Either<SimpleQueueException, Boolean>> sendMessageBatch(
+      Queue queue,
+      List<Tuple2<Message, Map<String, String>>> messages
+  ) {
+    return doWithSession( session -> {
+      // messages are in different partitions so there is no benefit from a logged batch
+      BatchStatement batchStatement = new BatchStatement( BatchStatement.Type.UNLOGGED );
+      for ( Tuple2<Message, Map<String, String>> message : messages ) {
+        batchStatement.addAll( sendMessageStatements( queue, message._1( ), message._2( ) ) );
       }
-      String messageJson = MessageJsonHelper.messageToJson( message );
+      session.execute( batchStatement );
+      List<Either<SimpleQueueException, Boolean>> results = Lists.newArrayListWithCapacity( messages.size( ) );
+      for ( int i = 0; i < messages.size( ); i++ ) {
+        results.add( Either.right( true ) );
+      }
+      return results;
+    } );
+  }
 
-      String partitionToken = partitionTokens.get( random.nextInt( partitionTokens.size( ) ) );
+  private static List<Statement> sendMessageStatements(Queue queue, Message message, Map<String, String> sendAttributes) {
+    List<Statement> statements = Lists.newArrayList( );
 
-      UUID messageId = UUID.fromString( message.getMessageId( ) );
+    int delaySeconds = queue.getDelaySeconds( );
+    if ( sendAttributes.containsKey( Constants.DELAY_SECONDS ) ) {
+      delaySeconds = Integer.parseInt( sendAttributes.get( Constants.DELAY_SECONDS ) );
+    }
+    String messageJson = MessageJsonHelper.messageToJson( message );
 
-      long nowSecs = SimpleQueueService.currentTimeSeconds( );
+    String partitionToken = partitionTokens.get( random.nextInt( partitionTokens.size( ) ) );
 
-      Date expirationTimestamp = new Date( ( nowSecs + queue.getMessageRetentionPeriod( ) ) * 1000L );
+    UUID messageId = UUID.fromString( message.getMessageId( ) );
 
-      Statement statement1 = new SimpleStatement(
-          "INSERT INTO eucalyptus_simplequeue.messages (account_id, queue_name, partition_token, message_id, message_json, send_time_secs," +
-              "receive_count, total_receive_count, expiration_timestamp) " +
-              "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) USING TTL ?",
+    long nowSecs = SimpleQueueService.currentTimeSeconds( );
+
+    Date expirationTimestamp = new Date( ( nowSecs + queue.getMessageRetentionPeriod( ) ) * 1000L );
+
+    Statement statement1 = new SimpleStatement(
+        "INSERT INTO eucalyptus_simplequeue.messages (account_id, queue_name, partition_token, message_id, message_json, send_time_secs," +
+            "receive_count, total_receive_count, expiration_timestamp) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) USING TTL ?",
+        queue.getAccountId( ),
+        queue.getQueueName( ),
+        partitionToken,
+        messageId,
+        messageJson,
+        nowSecs,
+        0,
+        0,
+        expirationTimestamp,
+        queue.getMessageRetentionPeriod( ) );
+
+    statements.add( statement1 );
+
+    if ( delaySeconds > 0 ) {
+      Statement statement2 = new SimpleStatement(
+          "UPDATE eucalyptus_simplequeue.messages USING TTL ? SET is_delayed = ? " +
+              "WHERE account_id = ? AND queue_name = ? AND partition_token = ? AND message_id = ?",
+          delaySeconds,
+          true,
           queue.getAccountId( ),
           queue.getQueueName( ),
           partitionToken,
-          messageId,
-          messageJson,
-          nowSecs,
-          0,
-          0,
-          expirationTimestamp,
-          queue.getMessageRetentionPeriod( ) );
-
-      batchStatement.add( statement1 );
-
-      if ( delaySeconds > 0 ) {
-        Statement statement2 = new SimpleStatement(
-            "UPDATE eucalyptus_simplequeue.messages USING TTL ? SET is_delayed = ? " +
-                "WHERE account_id = ? AND queue_name = ? AND partition_token = ? AND message_id = ?",
-            delaySeconds,
-            true,
-            queue.getAccountId( ),
-            queue.getQueueName( ),
-            partitionToken,
-            messageId
-        );
-        batchStatement.add( statement2 );
-      }
-      session.execute( batchStatement );
-      return null;
-    } );
+          messageId
+      );
+      statements.add( statement2 );
+    }
+    return statements;
   }
 
   @Override
   public boolean deleteMessage(Queue.Key queueKey, String receiptHandle) throws SimpleQueueException {
-    // receipt handle (currently) looks like accountId:queueName:message-id:partition-token:receive-count
-    StringTokenizer stok = new StringTokenizer(receiptHandle,":");
-    if (stok.countTokens() != 5) {
-      throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid receipt handle.");
-    }
-    String receiptHandleAccountId = stok.nextToken();
-    String receiptHandleQueueName = stok.nextToken();
-    UUID messageId = UUID.fromString(stok.nextToken());
-    String partitionToken = stok.nextToken();
-    if (!partitionTokens.contains(partitionToken)) {
-      throw new ReceiptHandleIsInvalidException("The input receipt handle \"" + receiptHandle + "\" is not a valid for this queue.");
-    }
+    Tuple3<UUID, String, Integer> receiptHandleValues = parseReceiptHandle( queueKey, receiptHandle );
+    UUID messageId = receiptHandleValues._1( );
+    String partitionToken = receiptHandleValues._2( );
+    int receiveCount = receiptHandleValues._3( );
     return doThrowsWithSession( session -> {
       boolean found = false;
-      int receiveCount = 0;
-      try {
-        receiveCount = Integer.parseInt(stok.nextToken());
-      } catch (NumberFormatException e) {
-        throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid receipt handle.");
-      }
-      if (!receiptHandleAccountId.equals(queueKey.getAccountId()) || !receiptHandleQueueName.equals(queueKey.getQueueName())) {
-        throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid for this queue.");
-      }
       Statement statement1 = new SimpleStatement(
           "SELECT receive_count FROM eucalyptus_simplequeue.messages WHERE account_id = ? AND queue_name = ? AND " +
               "partition_token = ? AND message_id = ?",
@@ -374,6 +390,65 @@ public class CassandraMessagePersistence implements MessagePersistence {
     } );
   }
 
+  @Override
+  public List<Either<SimpleQueueException, Boolean>> deleteMessageBatch(Queue.Key queueKey, List<String> receiptHandles) {
+    List<Either<SimpleQueueException, Boolean>> results = Lists.newArrayListWithCapacity( receiptHandles.size( ) );
+    List<Tuple3<UUID, String, Integer>> receiptHandleValuesList = Lists.newArrayListWithCapacity( receiptHandles.size( ) );
+    for ( String receiptHandle : receiptHandles ) {
+      try {
+        receiptHandleValuesList.add( parseReceiptHandle( queueKey, receiptHandle ) );
+        results.add( null );
+      } catch ( SimpleQueueException e ) {
+        receiptHandleValuesList.add( null );
+        results.add( Either.left( e ) );
+      }
+    }
+    return doWithSession( session -> {
+      // look up all receive counts concurrently
+      List<ResultSetFuture> receiveCountFutures = Lists.newArrayListWithCapacity( receiptHandles.size( ) );
+      for ( Tuple3<UUID, String, Integer> receiptHandleValues : receiptHandleValuesList ) {
+        receiveCountFutures.add( receiptHandleValues == null ? null : session.executeAsync( new SimpleStatement(
+            "SELECT receive_count FROM eucalyptus_simplequeue.messages WHERE account_id = ? AND queue_name = ? AND " +
+                "partition_token = ? AND message_id = ?",
+            queueKey.getAccountId( ),
+            queueKey.getQueueName( ),
+            receiptHandleValues._2( ),
+            receiptHandleValues._1( )
+        ) ) );
+      }
+      Set<UUID> deletedMessageIds = Sets.newHashSet( );
+      BatchStatement batchStatement = new BatchStatement( BatchStatement.Type.UNLOGGED );
+      for ( int i = 0; i < results.size( ); i++ ) {
+        Tuple3<UUID, String, Integer> receiptHandleValues = receiptHandleValuesList.get( i );
+        if ( receiptHandleValues == null ) continue;
+        boolean found = false;
+        for ( Row row : receiveCountFutures.get( i ).getUninterruptibly( ) ) {
+          if ( row.getInt( "receive_count" ) == receiptHandleValues._3( ) ) {
+            found = true;
+            break;
+          }
+        }
+        if ( found && deletedMessageIds.add( receiptHandleValues._1( ) ) ) {
+          batchStatement.add( new SimpleStatement(
+              "DELETE FROM eucalyptus_simplequeue.messages WHERE account_id = ? AND queue_name = ? AND partition_token = ? AND message_id = ?",
+              queueKey.getAccountId( ),
+              queueKey.getQueueName( ),
+              receiptHandleValues._2( ),
+              receiptHandleValues._1( )
+          ) );
+          results.set( i, Either.right( true ) );
+        } else {
+          // a stale receipt handle is not an error
+          results.set( i, Either.right( false ) );
+        }
+      }
+      if ( batchStatement.size( ) > 0 ) {
+        session.execute( batchStatement );
+      }
+      return results;
+    } );
+  }
+
   @Override
   public void deleteAllMessages(Queue.Key queueKey) {
     doWithSession( session -> {
@@ -423,29 +498,12 @@ public class CassandraMessagePersistence implements MessagePersistence {
 
   @Override
   public void changeMessageVisibility(Queue.Key queueKey, String receiptHandle, Integer inVisibilityTimeout) throws SimpleQueueException {
+    Tuple3<UUID, String, Integer> receiptHandleValues = parseReceiptHandle( queueKey, receiptHandle );
+    UUID messageId = receiptHandleValues._1( );
+    String partitionToken = receiptHandleValues._2( );
+    int receiveCount = receiptHandleValues._3( );
     doThrowsWithSession( session -> {
       boolean found = false;
-      // receipt handle (currently) looks like accountId:queueName:message-id:partition-token:receive-count
-      StringTokenizer stok = new StringTokenizer( receiptHandle, ":" );
-      if ( stok.countTokens( ) != 5 ) {
-        throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid receipt handle." );
-      }
-      String receiptHandleAccountId = stok.nextToken( );
-      String receiptHandleQueueName = stok.nextToken( );
-      UUID messageId = UUID.fromString( stok.nextToken( ) );
-      String partitionToken = stok.nextToken( );
-      if ( !partitionTokens.contains( partitionToken ) ) {
-        throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid for this queue." );
-      }
-      int receiveCount = 0;
-      try {
-        receiveCount = Integer.parseInt( stok.nextToken( ) );
-      } catch ( NumberFormatException e ) {
-        throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid receipt handle." );
-      }
-      if ( !receiptHandleAccountId.equals( queueKey.getAccountId( ) ) || !receiptHandleQueueName.equals( queueKey.getQueueName( ) ) ) {
-        throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid for this queue." );
-      }
       Statement statement1 = new SimpleStatement(
           "SELECT receive_count, expiration_timestamp FROM eucalyptus_simplequeue.messages WHERE account_id = ? " +
               "AND queue_name = ? AND partition_token = ? AND message_id = ?",
@@ -487,6 +545,73 @@ public class CassandraMessagePersistence implements MessagePersistence {
     } );
   }
 
+  @Override
+  public List<Either<SimpleQueueException, Boolean>> changeMessageVisibilityBatch(Queue.Key queueKey, List<Tuple2<String, Integer>> receiptHandlesAndVisibilityTimeouts) {
+    List<Either<SimpleQueueException, Boolean>> results = Lists.newArrayListWithCapacity( receiptHandlesAndVisibilityTimeouts.size( ) );
+    List<Tuple3<UUID, String, Integer>> receiptHandleValuesList = Lists.newArrayListWithCapacity( receiptHandlesAndVisibilityTimeouts.size( ) );
+    for ( Tuple2<String, Integer> receiptHandleAndVisibilityTimeout : receiptHandlesAndVisibilityTimeouts ) {
+      try {
+        receiptHandleValuesList.add( parseReceiptHandle( queueKey, receiptHandleAndVisibilityTimeout._1( ) ) );
+        results.add( null );
+      } catch ( SimpleQueueException e ) {
+        receiptHandleValuesList.add( null );
+        results.add( Either.left( e ) );
+      }
+    }
+    return doWithSession( session -> {
+      // look up all receive counts and expiration times concurrently
+      List<ResultSetFuture> messageFutures = Lists.newArrayListWithCapacity( receiptHandleValuesList.size( ) );
+      for ( Tuple3<UUID, String, Integer> receiptHandleValues : receiptHandleValuesList ) {
+        messageFutures.add( receiptHandleValues == null ? null : session.executeAsync( new SimpleStatement(
+            "SELECT receive_count, expiration_timestamp FROM eucalyptus_simplequeue.messages WHERE account_id = ? " +
+                "AND queue_name = ? AND partition_token = ? AND message_id = ?",
+            queueKey.getAccountId( ),
+            queueKey.getQueueName( ),
+            receiptHandleValues._2( ),
+            receiptHandleValues._1( )
+        ) ) );
+      }
+      BatchStatement batchStatement = new BatchStatement( BatchStatement.Type.UNLOGGED );
+      for ( int i = 0; i < results.size( ); i++ ) {
+        Tuple3<UUID, String, Integer> receiptHandleValues = receiptHandleValuesList.get( i );
+        if ( receiptHandleValues == null ) continue;
+        Date expirationTimestamp = null;
+        for ( Row row : messageFutures.get( i ).getUninterruptibly( ) ) {
+          if ( row.getInt( "receive_count" ) == receiptHandleValues._3( ) ) {
+            expirationTimestamp = row.getTimestamp( "expiration_timestamp" );
+            break;
+          }
+        }
+        if ( expirationTimestamp == null ) {
+          results.set( i, Either.left( new InvalidParameterValueException( "Value " + receiptHandlesAndVisibilityTimeouts.get( i )._1( ) + " for parameter ReceiptHandle is invalid. Reason: Message does not exist or is not available for visibility timeout change." ) ) );
+          continue;
+        }
+        int visibilityTimeout = receiptHandlesAndVisibilityTimeouts.get( i )._2( );
+        int maxVisibilityTimeout = (int) ( ( expirationTimestamp.getTime( ) - System.currentTimeMillis( ) ) / 1000 );
+        if ( maxVisibilityTimeout < visibilityTimeout ) {
+          visibilityTimeout = maxVisibilityTimeout;
+        }
+        int ttl = visibilityTimeout > 0 ? visibilityTimeout : 1;
+        Boolean isInvisible = ( visibilityTimeout > 0 ) ? true : null;
+        batchStatement.add( new SimpleStatement(
+            "UPDATE eucalyptus_simplequeue.messages USING TTL ? SET is_invisible = ? " +
+                "WHERE account_id = ? AND queue_name = ? AND partition_token = ? AND message_id = ?",
+            ttl,
+            isInvisible,
+            queueKey.getAccountId( ),
+            queueKey.getQueueName( ),
+            receiptHandleValues._2( ),
+            receiptHandleValues._1( )
+        ) );
+        results.set( i, Either.right( true ) );
+      }
+      if ( batchStatement.size( ) > 0 ) {
+        session.execute( batchStatement );
+      }
+      return results;
+    } );
+  }
+
   @Override
   public Long getApproximateAgeOfOldestMessage(Queue.Key queueKey) {
     return doWithSession( session -> {
@@ -517,6 +642,44 @@ public class CassandraMessagePersistence implements MessagePersistence {
     } );
   }
 
+  /**
+   * Parse a receipt handle for the given queue.
+   *
+   * @return The message id, partition token and receive count
+   */
+  private static Tuple3<UUID, String, Integer> parseReceiptHandle(
+      Queue.Key queueKey,
+      String receiptHandle
+  ) throws SimpleQueueException {
+    // receipt handle (currently) looks like accountId:queueName:message-id:partition-token:receive-count
+    StringTokenizer stok = new StringTokenizer( receiptHandle, ":" );
+    if ( stok.countTokens( ) != 5 ) {
+      throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid receipt handle." );
+    }
+    String receiptHandleAccountId = stok.nextToken( );
+    String receiptHandleQueueName = stok.nextToken( );
+    UUID messageId;
+    try {
+      messageId = UUID.fromString( stok.nextToken( ) );
+    } catch ( IllegalArgumentException e ) {
+      throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid receipt handle." );
+    }
+    String partitionToken = stok.nextToken( );
+    if ( !partitionTokens.contains( partitionToken ) ) {
+      throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid for this queue." );
+    }
+    int receiveCount;
+    try {
+      receiveCount = Integer.parseInt( stok.nextToken( ) );
+    } catch ( NumberFormatException e ) {
+      throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid receipt handle." );
+    }
+    if ( !receiptHandleAccountId.equals( queueKey.getAccountId( ) ) || !receiptHandleQueueName.equals( queueKey.getQueueName( ) ) ) {
+      throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid for this queue." );
+    }
+    return Tuple.of( messageId, partitionToken, receiveCount );
+  }
+
   private <R,E extends SimpleQueueException> R doThrowsWithSession(
       final ThrowingFunction<Session,R,E> callbackFunction
   ) throws E {
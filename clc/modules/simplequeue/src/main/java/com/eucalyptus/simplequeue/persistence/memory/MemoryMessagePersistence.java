@@ -0,0 +1,700 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simplequeue.persistence.memory;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import com.eucalyptus.auth.policy.ern.Ern;
+import com.eucalyptus.simplequeue.Attribute;
+import com.eucalyptus.simplequeue.Constants;
+import com.eucalyptus.simplequeue.Message;
+import com.eucalyptus.simplequeue.SimpleQueueService;
+import com.eucalyptus.simplequeue.config.SimpleQueueProperties;
+import com.eucalyptus.simplequeue.exceptions.InvalidParameterValueException;
+import com.eucalyptus.simplequeue.exceptions.ReceiptHandleIsInvalidException;
+import com.eucalyptus.simplequeue.exceptions.SimpleQueueException;
+import com.eucalyptus.simplequeue.persistence.MessageJsonHelper;
+import com.eucalyptus.simplequeue.persistence.MessagePersistence;
+import com.eucalyptus.simplequeue.persistence.MessageStore;
+import com.eucalyptus.simplequeue.persistence.Queue;
+import com.eucalyptus.simplequeue.persistence.StoredMessage;
+import com.eucalyptus.util.Either;
+import com.eucalyptus.util.Exceptions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import javaslang.Tuple;
+import javaslang.Tuple2;
+
+/**
+ * Message persistence that holds queue messages in memory.
+ *
+ * <p>Messages for each queue are loaded from the backing store on first use
+ * and changes are written back to the store via a journal. This is only
+ * correct when all message operations are performed on this host.</p>
+ *
+ * <p>Cached messages are discarded when caching is disabled or the topology
+ * changes, as other hosts may have performed message operations.</p>
+ *
+ * <p>Queues with more than the configured maximum number of messages are not
+ * cached, operations on these queues are performed directly on the store.</p>
+ */
+public class MemoryMessagePersistence implements MessagePersistence {
+
+  private static final long UNCACHED_RELOAD_MILLIS = TimeUnit.MINUTES.toMillis( 5 );
+
+  private static final Comparator<StoredMessage> VISIBILITY_ORDER =
+      Comparator.comparingLong( StoredMessage::getVisibleTimestampSecs )
+          .thenComparingLong( StoredMessage::getSentTimestampSecs )
+          .thenComparing( StoredMessage::getMessageId );
+
+  private final MessageStore store;
+  private final MessageJournal journal;
+  private final ConcurrentMap<Queue.Key,QueueMessages> queues = Maps.newConcurrentMap( );
+  private final Set<Queue.Key> staleQueues = Sets.newConcurrentHashSet( );
+  private volatile boolean enabled = false;
+  private volatile int enabledEpoch = 0;
+
+  public MemoryMessagePersistence( final MessageStore store ) {
+    this.store = store;
+    this.journal = new MessageJournal( store, staleQueues::addAll );
+  }
+
+  /**
+   * Enable or disable caching for the given topology epoch.
+   *
+   * <p>Pending changes are written and cached messages discarded when caching
+   * is disabled or when enabled for a different epoch.</p>
+   *
+   * @return True if caching is enabled
+   */
+  public boolean setEnabled( final boolean enable, final int epoch ) {
+    if ( enable != enabled || ( enable && epoch != enabledEpoch ) ) {
+      synchronized ( this ) {
+        if ( enable != enabled || ( enable && epoch != enabledEpoch ) ) {
+          invalidate( );
+          enabledEpoch = epoch;
+          enabled = enable;
+        }
+      }
+    }
+    return enable;
+  }
+
+  /**
+   * Write any pending changes and discard all cached messages.
+   */
+  public void invalidate( ) {
+    for ( final Map.Entry<Queue.Key,QueueMessages> entry : queues.entrySet( ) ) {
+      final QueueMessages queueMessages = entry.getValue( );
+      queueMessages.lock.writeLock( ).lock( );
+      try {
+        if ( !queueMessages.isDiscarded( ) ) {
+          journal.write( );
+          queueMessages.discard( );
+          queues.remove( entry.getKey( ), queueMessages );
+        }
+      } finally {
+        queueMessages.lock.writeLock( ).unlock( );
+      }
+    }
+  }
+
+  @Override
+  public UUID getNewMessageUUID( ) {
+    return store.getNewMessageUUID( );
+  }
+
+  @Override
+  public Collection<Message> receiveMessages(
+      final Queue queue,
+      final Map<String, String> receiveAttributes
+  ) throws SimpleQueueException {
+    final List<StoredMessage> deadLetterMessages = Lists.newArrayList( );
+    final Collection<Message> messages = withQueue(
+        queue.getKey( ),
+        queueMessages -> receiveMessages( queueMessages, queue, receiveAttributes, deadLetterMessages ),
+        ( ) -> store.receiveMessages( queue, receiveAttributes ) );
+    // dead letter queue updates are made without holding the source queue lock
+    for ( final StoredMessage deadLetterMessage : deadLetterMessages ) {
+      final QueueMessages queueMessages = queues.get( deadLetterMessage.getQueueKey( ) );
+      if ( queueMessages != null ) {
+        queueMessages.lock.writeLock( ).lock( );
+        try {
+          if ( queueMessages.isLoaded( ) && !staleQueues.contains( deadLetterMessage.getQueueKey( ) ) ) {
+            queueMessages.put( deadLetterMessage );
+          }
+        } finally {
+          queueMessages.lock.writeLock( ).unlock( );
+        }
+      }
+    }
+    return messages;
+  }
+
+  @Override
+  public void sendMessage(
+      final Queue queue,
+      final Message message,
+      final Map<String, String> sendAttributes
+  ) throws SimpleQueueException {
+    withQueue(
+        queue.getKey( ),
+        queueMessages -> Tuple.of( null, sendMessage( queueMessages, queue, message, sendAttributes ) ),
+        ( ) -> {
+          store.sendMessage( queue, message, sendAttributes );
+          return null;
+        } );
+  }
+
+  @Override
+  public List<Either<SimpleQueueException, Boolean>> sendMessageBatch(
+      final Queue queue,
+      final List<Tuple2<Message, Map<String, String>>> messages
+  ) {
+    try {
+      return withQueue(
+          queue.getKey( ),
+          queueMessages -> {
+            final List<Either<SimpleQueueException, Boolean>> results = Lists.newArrayListWithCapacity( messages.size( ) );
+            MessageJournal.Batch batch = null;
+            for ( final Tuple2<Message, Map<String, String>> message : messages ) {
+              if ( queueMessages.isLoaded( ) ) {
+                batch = sendMessage( queueMessages, queue, message._1( ), message._2( ) );
+              } else {
+                // queue no longer cached, journal is already written
+                store.sendMessage( queue, message._1( ), message._2( ) );
+              }
+              results.add( Either.right( true ) );
+            }
+            return Tuple.of( results, batch );
+          },
+          ( ) -> store.sendMessageBatch( queue, messages ) );
+    } catch ( final SimpleQueueException e ) {
+      throw Exceptions.toUndeclared( e );
+    }
+  }
+
+  /**
+   * Add a message to the cached queue messages.
+   *
+   * @return The journal batch to commit
+   */
+  private MessageJournal.Batch sendMessage(
+      final QueueMessages queueMessages,
+      final Queue queue,
+      final Message message,
+      final Map<String, String> sendAttributes
+  ) {
+    final StoredMessage storedMessage = new StoredMessage( queue.getKey( ), message.getMessageId( ) );
+    storedMessage.setReceiveCount( 0 );
+    storedMessage.setLocalReceiveCount( 0 );
+    storedMessage.setSentTimestampSecs( SimpleQueueService.currentTimeSeconds( ) );
+    storedMessage.setExpiredTimestampSecs( storedMessage.getSentTimestampSecs( ) + queue.getMessageRetentionPeriod( ) );
+    int delaySeconds = queue.getDelaySeconds( );
+    if ( sendAttributes.containsKey( Constants.DELAY_SECONDS ) ) {
+      delaySeconds = Integer.parseInt( sendAttributes.get( Constants.DELAY_SECONDS ) );
+    }
+    storedMessage.setVisibleTimestampSecs( storedMessage.getSentTimestampSecs( ) + delaySeconds );
+    storedMessage.setMessageJson( MessageJsonHelper.messageToJson( message ) );
+    queueMessages.put( storedMessage );
+    final MessageJournal.Batch batch = journal.store( storedMessage );
+    if ( queueMessages.size( ) > SimpleQueueProperties.MESSAGE_CACHE_MAX_QUEUE_MESSAGES ) {
+      // queue too large to cache, write changes and use the store directly for a while
+      journal.write( );
+      queueMessages.unload( System.currentTimeMillis( ) + UNCACHED_RELOAD_MILLIS );
+    }
+    return batch;
+  }
+
+  @Override
+  public boolean deleteMessage( final Queue.Key queueKey, final String receiptHandle ) throws SimpleQueueException {
+    final Tuple2<String,Integer> messageIdAndReceiveCount = parseReceiptHandle( queueKey, receiptHandle );
+    return withQueue(
+        queueKey,
+        queueMessages -> {
+          final StoredMessage storedMessage = queueMessages.get( messageIdAndReceiveCount._1( ) );
+          if ( storedMessage == null || storedMessage.getReceiveCount( ) != messageIdAndReceiveCount._2( ) ) {
+            return Tuple.of( false, null );
+          }
+          queueMessages.remove( storedMessage );
+          return Tuple.of( true, journal.remove( storedMessage ) );
+        },
+        ( ) -> store.deleteMessage( queueKey, receiptHandle ) );
+  }
+
+  @Override
+  public List<Either<SimpleQueueException, Boolean>> deleteMessageBatch(
+      final Queue.Key queueKey,
+      final List<String> receiptHandles
+  ) {
+    try {
+      return withQueue(
+          queueKey,
+          queueMessages -> {
+            final List<Either<SimpleQueueException, Boolean>> results = Lists.newArrayListWithCapacity( receiptHandles.size( ) );
+            MessageJournal.Batch batch = null;
+            for ( final String receiptHandle : receiptHandles ) {
+              try {
+                final Tuple2<String,Integer> messageIdAndReceiveCount = parseReceiptHandle( queueKey, receiptHandle );
+                final StoredMessage storedMessage = queueMessages.get( messageIdAndReceiveCount._1( ) );
+                if ( storedMessage == null || storedMessage.getReceiveCount( ) != messageIdAndReceiveCount._2( ) ) {
+                  results.add( Either.right( false ) );
+                } else {
+                  queueMessages.remove( storedMessage );
+                  batch = journal.remove( storedMessage );
+                  results.add( Either.right( true ) );
+                }
+              } catch ( final SimpleQueueException e ) {
+                results.add( Either.left( e ) );
+              }
+            }
+            return Tuple.of( results, batch );
+          },
+          ( ) -> store.deleteMessageBatch( queueKey, receiptHandles ) );
+    } catch ( final SimpleQueueException e ) {
+      throw Exceptions.toUndeclared( e );
+    }
+  }
+
+  @Override
+  public void deleteAllMessages( final Queue.Key queueKey ) {
+    while ( true ) {
+      final QueueMessages queueMessages = queues.computeIfAbsent( queueKey, key -> new QueueMessages( ) );
+      queueMessages.lock.writeLock( ).lock( );
+      try {
+        if ( queueMessages.isDiscarded( ) ) {
+          continue;
+        }
+        queueMessages.discard( );
+        queues.remove( queueKey, queueMessages );
+        journal.write( );
+        store.deleteAllMessages( queueKey );
+        return;
+      } finally {
+        queueMessages.lock.writeLock( ).unlock( );
+      }
+    }
+  }
+
+  @Override
+  public Map<String, String> getApproximateMessageCounts( final Queue.Key queueKey ) {
+    try {
+      return withQueue(
+          queueKey,
+          queueMessages -> {
+            final long now = SimpleQueueService.currentTimeSeconds( );
+            queueMessages.expire( now );
+            long delayed = 0;
+            long notVisible = 0;
+            long visible = 0;
+            for ( final StoredMessage storedMessage : queueMessages.messagesByVisibility ) {
+              if ( storedMessage.getVisibleTimestampSecs( ) <= now ) {
+                visible++;
+              } else if ( storedMessage.getReceiveCount( ) == 0 ) {
+                delayed++;
+              } else {
+                notVisible++;
+              }
+            }
+            final Map<String, String> result = Maps.newHashMap( );
+            result.put( Constants.APPROXIMATE_NUMBER_OF_MESSAGES_DELAYED, String.valueOf( delayed ) );
+            result.put( Constants.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE, String.valueOf( notVisible ) );
+            result.put( Constants.APPROXIMATE_NUMBER_OF_MESSAGES, String.valueOf( visible ) );
+            return Tuple.of( result, null );
+          },
+          ( ) -> store.getApproximateMessageCounts( queueKey ) );
+    } catch ( final SimpleQueueException e ) {
+      throw Exceptions.toUndeclared( e );
+    }
+  }
+
+  @Override
+  public void changeMessageVisibility(
+      final Queue.Key queueKey,
+      final String receiptHandle,
+      final Integer visibilityTimeout
+  ) throws SimpleQueueException {
+    final Tuple2<String,Integer> messageIdAndReceiveCount = parseReceiptHandle( queueKey, receiptHandle );
+    withQueue(
+        queueKey,
+        queueMessages -> Tuple.of( null, changeMessageVisibility(
+            queueMessages, receiptHandle, messageIdAndReceiveCount, visibilityTimeout ) ),
+        ( ) -> {
+          store.changeMessageVisibility( queueKey, receiptHandle, visibilityTimeout );
+          return null;
+        } );
+  }
+
+  @Override
+  public List<Either<SimpleQueueException, Boolean>> changeMessageVisibilityBatch(
+      final Queue.Key queueKey,
+      final List<Tuple2<String, Integer>> receiptHandlesAndVisibilityTimeouts
+  ) {
+    try {
+      return withQueue(
+          queueKey,
+          queueMessages -> {
+            final List<Either<SimpleQueueException, Boolean>> results =
+                Lists.newArrayListWithCapacity( receiptHandlesAndVisibilityTimeouts.size( ) );
+            MessageJournal.Batch batch = null;
+            for ( final Tuple2<String, Integer> receiptHandleAndVisibilityTimeout : receiptHandlesAndVisibilityTimeouts ) {
+              try {
+                final String receiptHandle = receiptHandleAndVisibilityTimeout._1( );
+                batch = changeMessageVisibility(
+                    queueMessages,
+                    receiptHandle,
+                    parseReceiptHandle( queueKey, receiptHandle ),
+                    receiptHandleAndVisibilityTimeout._2( ) );
+                results.add( Either.right( true ) );
+              } catch ( final SimpleQueueException e ) {
+                results.add( Either.left( e ) );
+              }
+            }
+            return Tuple.of( results, batch );
+          },
+          ( ) -> store.changeMessageVisibilityBatch( queueKey, receiptHandlesAndVisibilityTimeouts ) );
+    } catch ( final SimpleQueueException e ) {
+      throw Exceptions.toUndeclared( e );
+    }
+  }
+
+  /**
+   * Change the visibility of a cached queue message.
+   *
+   * @return The journal batch to commit
+   */
+  private MessageJournal.Batch changeMessageVisibility(
+      final QueueMessages queueMessages,
+      final String receiptHandle,
+      final Tuple2<String,Integer> messageIdAndReceiveCount,
+      final Integer visibilityTimeout
+  ) throws SimpleQueueException {
+    final long now = SimpleQueueService.currentTimeSeconds( );
+    final StoredMessage storedMessage = queueMessages.get( messageIdAndReceiveCount._1( ) );
+    if ( storedMessage == null ||
+        storedMessage.getReceiveCount( ) != messageIdAndReceiveCount._2( ) ||
+        storedMessage.getExpiredTimestampSecs( ) <= now ) {
+      throw new InvalidParameterValueException( "Value " + receiptHandle + " for parameter ReceiptHandle is invalid. Reason: Message does not exist or is not available for visibility timeout change." );
+    }
+    queueMessages.remove( storedMessage );
+    storedMessage.setVisibleTimestampSecs( now + visibilityTimeout );
+    queueMessages.put( storedMessage );
+    return journal.store( storedMessage );
+  }
+
+  @Override
+  public Long getApproximateAgeOfOldestMessage( final Queue.Key queueKey ) {
+    try {
+      return withQueue(
+          queueKey,
+          queueMessages -> {
+            final long now = SimpleQueueService.currentTimeSeconds( );
+            queueMessages.expire( now );
+            long oldestSentTimestampSecs = now;
+            for ( final StoredMessage storedMessage : queueMessages.messagesByVisibility ) {
+              oldestSentTimestampSecs = Math.min( oldestSentTimestampSecs, storedMessage.getSentTimestampSecs( ) );
+            }
+            return Tuple.of( now - oldestSentTimestampSecs, null );
+          },
+          ( ) -> store.getApproximateAgeOfOldestMessage( queueKey ) );
+    } catch ( final SimpleQueueException e ) {
+      throw Exceptions.toUndeclared( e );
+    }
+  }
+
+  private Tuple2<Collection<Message>,MessageJournal.Batch> receiveMessages(
+      final QueueMessages queueMessages,
+      final Queue queue,
+      final Map<String, String> receiveAttributes,
+      final List<StoredMessage> deadLetterMessages
+  ) throws SimpleQueueException {
+    final long now = SimpleQueueService.currentTimeSeconds( );
+    final List<Message> messages = Lists.newArrayList( );
+    boolean deadLetterQueue = false;
+    Queue.Key deadLetterQueueKey = null;
+    int maxReceiveCount = 0;
+    long deadLetterQueueMessageRetentionPeriod = 0;
+    try {
+      final Ern deadLetterQueueErn = Ern.parse( receiveAttributes.get( Constants.DEAD_LETTER_TARGET_ARN ) );
+      deadLetterQueueKey = new Queue.Key( deadLetterQueueErn.getAccount( ), deadLetterQueueErn.getResourceName( ) );
+      maxReceiveCount = Integer.parseInt( receiveAttributes.get( Constants.MAX_RECEIVE_COUNT ) );
+      deadLetterQueueMessageRetentionPeriod = Long.parseLong( receiveAttributes.get( Constants.MESSAGE_RETENTION_PERIOD ) );
+      deadLetterQueue = true;
+    } catch ( final Exception ignore ) {
+    }
+    int maxNumMessages = 1;
+    try {
+      maxNumMessages = Integer.parseInt( receiveAttributes.get( Constants.MAX_NUMBER_OF_MESSAGES ) );
+    } catch ( final Exception ignore ) {
+    }
+    int visibilityTimeout = queue.getVisibilityTimeout( );
+    if ( receiveAttributes.containsKey( Constants.VISIBILITY_TIMEOUT ) ) {
+      visibilityTimeout = Integer.parseInt( receiveAttributes.get( Constants.VISIBILITY_TIMEOUT ) );
+    }
+
+    MessageJournal.Batch batch = null;
+    final List<StoredMessage> receivedMessages = Lists.newArrayList( );
+    final Iterator<StoredMessage> messageIterator = queueMessages.messagesByVisibility.iterator( );
+    while ( receivedMessages.size( ) < maxNumMessages && messageIterator.hasNext( ) ) {
+      final StoredMessage storedMessage = messageIterator.next( );
+      // messages with a visibility time of exactly now should be visible
+      if ( storedMessage.getVisibleTimestampSecs( ) > now ) {
+        break;
+      }
+      messageIterator.remove( );
+      // messages with an expiration time of exactly now should expire (deleted from the store in the background)
+      if ( storedMessage.getExpiredTimestampSecs( ) <= now ) {
+        queueMessages.messagesById.remove( storedMessage.getMessageId( ) );
+        continue;
+      }
+      if ( deadLetterQueue && storedMessage.getLocalReceiveCount( ) >= maxReceiveCount ) {
+        // move to dead letter
+        queueMessages.messagesById.remove( storedMessage.getMessageId( ) );
+        journal.remove( storedMessage );
+        final StoredMessage deadLetterMessage = new StoredMessage( deadLetterQueueKey, storedMessage );
+        deadLetterMessage.setLocalReceiveCount( 0 );
+        deadLetterMessage.setExpiredTimestampSecs( storedMessage.getSentTimestampSecs( ) + deadLetterQueueMessageRetentionPeriod );
+        batch = journal.store( deadLetterMessage );
+        deadLetterMessages.add( deadLetterMessage );
+        continue;
+      }
+      receivedMessages.add( storedMessage );
+    }
+
+    // received messages were removed from the visibility ordering and are re-added with their new visibility
+    for ( final StoredMessage storedMessage : receivedMessages ) {
+      final Message message = MessageJsonHelper.jsonToMessage( storedMessage.getMessageJson( ) );
+      message.setMessageId( storedMessage.getMessageId( ) );
+      // set receive timestamp if first time being received
+      if ( storedMessage.getReceiveCount( ) == 0 ) {
+        message.getAttribute( ).add( new Attribute( Constants.APPROXIMATE_FIRST_RECEIVE_TIMESTAMP, "" + now ) );
+        storedMessage.setMessageJson( MessageJsonHelper.messageToJson( message ) );
+      }
+      storedMessage.setVisibleTimestampSecs( now + visibilityTimeout );
+      storedMessage.setLocalReceiveCount( storedMessage.getLocalReceiveCount( ) + 1 );
+      storedMessage.setReceiveCount( storedMessage.getReceiveCount( ) + 1 );
+      queueMessages.messagesByVisibility.add( storedMessage );
+      batch = journal.store( storedMessage );
+
+      // Set the 'attributes' that are stored as first class fields
+      message.getAttribute( ).add( new Attribute( Constants.APPROXIMATE_RECEIVE_COUNT, "" + storedMessage.getReceiveCount( ) ) );
+      message.getAttribute( ).add( new Attribute( Constants.SENT_TIMESTAMP, "" + storedMessage.getSentTimestampSecs( ) ) );
+      message.setReceiptHandle( queue.getAccountId( ) + ":" + queue.getQueueName( ) + ":" + storedMessage.getMessageId( ) + ":" + storedMessage.getLocalReceiveCount( ) );
+      messages.add( message );
+    }
+    return Tuple.of( messages, batch );
+  }
+
+  /**
+   * Perform an operation on the cached queue messages, or directly on the
+   * store if the queue is not cached.
+   *
+   * <p>Journaled changes are committed after the queue lock is released. If
+   * a journal write fails the affected queues are reloaded from the store on
+   * next use.</p>
+   */
+  private <T> T withQueue(
+      final Queue.Key queueKey,
+      final CachedOperation<T> cachedOperation,
+      final StoreOperation<T> storeOperation
+  ) throws SimpleQueueException {
+    while ( true ) {
+      final QueueMessages queueMessages = queues.computeIfAbsent( queueKey, key -> new QueueMessages( ) );
+      final long nowMillis = System.currentTimeMillis( );
+      queueMessages.lock.readLock( ).lock( );
+      try {
+        if ( queueMessages.isDiscarded( ) ) {
+          continue;
+        }
+        if ( !queueMessages.isLoaded( ) && !queueMessages.isLoadDue( nowMillis ) ) {
+          return storeOperation.apply( );
+        }
+      } finally {
+        queueMessages.lock.readLock( ).unlock( );
+      }
+
+      final Tuple2<T,MessageJournal.Batch> resultAndBatch;
+      queueMessages.lock.writeLock( ).lock( );
+      try {
+        if ( queueMessages.isDiscarded( ) ) {
+          continue;
+        }
+        if ( staleQueues.remove( queueKey ) && queueMessages.isLoaded( ) ) {
+          queueMessages.unload( 0L );
+        }
+        if ( !queueMessages.isLoaded( ) && !load( queueKey, queueMessages, nowMillis ) ) {
+          return storeOperation.apply( );
+        }
+        resultAndBatch = cachedOperation.apply( queueMessages );
+      } finally {
+        queueMessages.lock.writeLock( ).unlock( );
+      }
+      if ( resultAndBatch._2( ) != null ) {
+        journal.commit( resultAndBatch._2( ) );
+      }
+      return resultAndBatch._1( );
+    }
+  }
+
+  private boolean load( final Queue.Key queueKey, final QueueMessages queueMessages, final long nowMillis ) {
+    if ( !queueMessages.isLoadDue( nowMillis ) ) {
+      return false;
+    }
+    // ensure the store is current before loading
+    journal.write( );
+    if ( store.countMessages( queueKey ) > SimpleQueueProperties.MESSAGE_CACHE_MAX_QUEUE_MESSAGES ) {
+      queueMessages.unload( nowMillis + UNCACHED_RELOAD_MILLIS );
+      return false;
+    }
+    queueMessages.load( store.loadMessages( queueKey ) );
+    return true;
+  }
+
+  private static Tuple2<String,Integer> parseReceiptHandle(
+      final Queue.Key queueKey,
+      final String receiptHandle
+  ) throws SimpleQueueException {
+    // receipt handle (currently) looks like accountId:queueName:message-id:receive-count
+    final StringTokenizer stok = new StringTokenizer( receiptHandle, ":" );
+    if ( stok.countTokens( ) != 4 ) {
+      throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid receipt handle." );
+    }
+    final String receiptHandleAccountId = stok.nextToken( );
+    final String receiptHandleQueueName = stok.nextToken( );
+    final String messageId = stok.nextToken( );
+    final int receiveCount;
+    try {
+      receiveCount = Integer.parseInt( stok.nextToken( ) );
+    } catch ( final NumberFormatException e ) {
+      throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid receipt handle." );
+    }
+    if ( !receiptHandleAccountId.equals( queueKey.getAccountId( ) ) || !receiptHandleQueueName.equals( queueKey.getQueueName( ) ) ) {
+      throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid for this queue." );
+    }
+    return Tuple.of( messageId, receiveCount );
+  }
+
+  private interface CachedOperation<T> {
+    /**
+     * @return The result and the journal batch to commit (or null)
+     */
+    Tuple2<T,MessageJournal.Batch> apply( QueueMessages queueMessages ) throws SimpleQueueException;
+  }
+
+  private interface StoreOperation<T> {
+    T apply( ) throws SimpleQueueException;
+  }
+
+  /**
+   * Messages for a queue, guarded by the queue lock.
+   */
+  private static final class QueueMessages {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock( );
+    private Map<String,StoredMessage> messagesById;
+    private NavigableSet<StoredMessage> messagesByVisibility;
+    private long reloadAfter = 0L;
+    private boolean discarded = false;
+
+    boolean isLoaded( ) {
+      return messagesById != null;
+    }
+
+    boolean isLoadDue( final long nowMillis ) {
+      return reloadAfter <= nowMillis;
+    }
+
+    boolean isDiscarded( ) {
+      return discarded;
+    }
+
+    void load( final Collection<StoredMessage> storedMessages ) {
+      messagesById = Maps.newHashMapWithExpectedSize( storedMessages.size( ) );
+      messagesByVisibility = new TreeSet<>( VISIBILITY_ORDER );
+      storedMessages.forEach( this::put );
+    }
+
+    void unload( final long reloadAfter ) {
+      this.messagesById = null;
+      this.messagesByVisibility = null;
+      this.reloadAfter = reloadAfter;
+    }
+
+    void discard( ) {
+      unload( Long.MAX_VALUE );
+      discarded = true;
+    }
+
+    int size( ) {
+      return messagesById.size( );
+    }
+
+    StoredMessage get( final String messageId ) {
+      return messagesById.get( messageId );
+    }
+
+    void put( final StoredMessage storedMessage ) {
+      final StoredMessage previous = messagesById.put( storedMessage.getMessageId( ), storedMessage );
+      if ( previous != null ) {
+        messagesByVisibility.remove( previous );
+      }
+      messagesByVisibility.add( storedMessage );
+    }
+
+    void remove( final StoredMessage storedMessage ) {
+      messagesById.remove( storedMessage.getMessageId( ) );
+      messagesByVisibility.remove( storedMessage );
+    }
+
+    /**
+     * Drop expired messages, these are deleted from the store in the background.
+     */
+    void expire( final long now ) {
+      messagesByVisibility.removeIf( storedMessage -> {
+        final boolean expired = storedMessage.getExpiredTimestampSecs( ) <= now;
+        if ( expired ) {
+          messagesById.remove( storedMessage.getMessageId( ) );
+        }
+        return expired;
+      } );
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simplequeue.persistence.memory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import org.apache.log4j.Logger;
+import com.eucalyptus.simplequeue.config.SimpleQueueProperties;
+import com.eucalyptus.simplequeue.persistence.MessageStore;
+import com.eucalyptus.simplequeue.persistence.Queue;
+import com.eucalyptus.simplequeue.persistence.StoredMessage;
+import com.eucalyptus.system.Threads;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import javaslang.Tuple;
+import javaslang.Tuple2;
+
+/**
+ * Write-behind journal of message changes for a message store.
+ *
+ * <p>Changes are coalesced by message so only the latest state of a message
+ * is written. Changes are written either before the change is acknowledged
+ * (sync) or periodically in the background (group-commit).</p>
+ *
+ * <p>If a sync write fails the changes are dropped and the queues they were
+ * for are reported to the failure listener so cached state can be reloaded
+ * from the store. Failed group-commit writes are retried.</p>
+ */
+class MessageJournal {
+  private static final Logger LOG = Logger.getLogger( MessageJournal.class );
+
+  static final String WRITE_MODE_GROUP_COMMIT = "group-commit";
+
+  private final MessageStore store;
+  private final Consumer<Set<Queue.Key>> failureListener;
+  private final ScheduledExecutorService writeExecutor =
+      Executors.newSingleThreadScheduledExecutor( Threads.threadFactory( "simplequeue-message-journal-%d" ) );
+  private final AtomicBoolean writeScheduled = new AtomicBoolean( false );
+  private final Object pendingLock = new Object( );
+  private final Object writeLock = new Object( );
+  private Batch pending = new Batch( );
+
+  MessageJournal( final MessageStore store, final Consumer<Set<Queue.Key>> failureListener ) {
+    this.store = store;
+    this.failureListener = failureListener;
+  }
+
+  /**
+   * Journal the current state of the message.
+   *
+   * @return The journal batch for the change
+   */
+  Batch store( final StoredMessage storedMessage ) {
+    final Tuple2<Queue.Key,String> key = key( storedMessage );
+    synchronized ( pendingLock ) {
+      pending.removes.remove( key );
+      pending.stores.put( key, new StoredMessage( storedMessage ) );
+      return pending;
+    }
+  }
+
+  /**
+   * Journal removal of the message.
+   *
+   * @return The journal batch for the change
+   */
+  Batch remove( final StoredMessage storedMessage ) {
+    final Tuple2<Queue.Key,String> key = key( storedMessage );
+    synchronized ( pendingLock ) {
+      pending.stores.remove( key );
+      pending.removes.put( key, new StoredMessage( storedMessage ) );
+      return pending;
+    }
+  }
+
+  /**
+   * Commit changes in the given batch according to the configured write mode.
+   *
+   * <p>For sync writes this returns once the change is written, for
+   * group-commit a background write is scheduled.</p>
+   *
+   * @throws RuntimeException If the sync write of the batch failed
+   */
+  void commit( final Batch batch ) {
+    if ( WRITE_MODE_GROUP_COMMIT.equals( SimpleQueueProperties.MESSAGE_CACHE_WRITE_MODE ) ) {
+      scheduleWrite( );
+    } else {
+      synchronized ( writeLock ) {
+        if ( !batch.isComplete( ) ) {
+          writePending( );
+        }
+      }
+      batch.check( );
+    }
+  }
+
+  /**
+   * Write all pending changes to the store.
+   */
+  void write( ) {
+    synchronized ( writeLock ) {
+      writePending( );
+    }
+  }
+
+  private void writePending( ) {
+    final Batch batch;
+    synchronized ( pendingLock ) {
+      if ( pending.isEmpty( ) ) {
+        return;
+      }
+      batch = pending;
+      pending = new Batch( );
+    }
+    try {
+      store.storeMessages( batch.stores.values( ), batch.removes.values( ) );
+      batch.complete( null );
+    } catch ( final RuntimeException e ) {
+      if ( WRITE_MODE_GROUP_COMMIT.equals( SimpleQueueProperties.MESSAGE_CACHE_WRITE_MODE ) ) {
+        retain( batch );
+      } else {
+        failureListener.accept( batch.queueKeys( ) );
+      }
+      batch.complete( e );
+      throw e;
+    }
+  }
+
+  /**
+   * Retain changes for retry unless superseded.
+   */
+  private void retain( final Batch batch ) {
+    synchronized ( pendingLock ) {
+      for ( final Map.Entry<Tuple2<Queue.Key,String>,StoredMessage> entry : batch.stores.entrySet( ) ) {
+        if ( !pending.stores.containsKey( entry.getKey( ) ) && !pending.removes.containsKey( entry.getKey( ) ) ) {
+          pending.stores.put( entry.getKey( ), entry.getValue( ) );
+        }
+      }
+      for ( final Map.Entry<Tuple2<Queue.Key,String>,StoredMessage> entry : batch.removes.entrySet( ) ) {
+        if ( !pending.stores.containsKey( entry.getKey( ) ) && !pending.removes.containsKey( entry.getKey( ) ) ) {
+          pending.removes.put( entry.getKey( ), entry.getValue( ) );
+        }
+      }
+    }
+  }
+
+  private void scheduleWrite( ) {
+    if ( writeScheduled.compareAndSet( false, true ) ) {
+      writeExecutor.schedule( ( ) -> {
+        writeScheduled.set( false );
+        try {
+          write( );
+        } catch ( final Exception e ) {
+          LOG.error( "Error writing message changes, will retry", e );
+          scheduleWrite( );
+        }
+      }, SimpleQueueProperties.MESSAGE_CACHE_WRITE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS );
+    }
+  }
+
+  private static Tuple2<Queue.Key,String> key( final StoredMessage storedMessage ) {
+    return Tuple.of( storedMessage.getQueueKey( ), storedMessage.getMessageId( ) );
+  }
+
+  /**
+   * Changes that are written together.
+   */
+  static final class Batch {
+    private final Map<Tuple2<Queue.Key,String>,StoredMessage> stores = new LinkedHashMap<>( );
+    private final Map<Tuple2<Queue.Key,String>,StoredMessage> removes = new LinkedHashMap<>( );
+    private volatile boolean complete;
+    private volatile RuntimeException failure;
+
+    private boolean isEmpty( ) {
+      return stores.isEmpty( ) && removes.isEmpty( );
+    }
+
+    private boolean isComplete( ) {
+      return complete;
+    }
+
+    private void complete( final RuntimeException failure ) {
+      this.failure = failure;
+      this.complete = true;
+    }
+
+    private void check( ) {
+      final RuntimeException failure = this.failure;
+      if ( failure != null ) {
+        throw failure;
+      }
+    }
+
+    private Set<Queue.Key> queueKeys( ) {
+      final Set<Queue.Key> queueKeys = Sets.newHashSet( );
+      for ( final Tuple2<Queue.Key,String> key : Iterables.concat( stores.keySet( ), removes.keySet( ) ) ) {
+        queueKeys.add( key._1( ) );
+      }
+      return queueKeys;
+    }
+  }
+}
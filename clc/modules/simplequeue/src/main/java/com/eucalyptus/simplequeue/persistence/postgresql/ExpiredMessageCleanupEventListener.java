@@ -0,0 +1,76 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simplequeue.persistence.postgresql;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import com.eucalyptus.bootstrap.Bootstrap;
+import com.eucalyptus.component.Topology;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import com.eucalyptus.simplequeue.SimpleQueue;
+import com.eucalyptus.simplequeue.persistence.MessagePersistence;
+import com.eucalyptus.simplequeue.persistence.PersistenceFactory;
+
+/**
+ * Periodically deletes expired messages from the postgresql message store.
+ *
+ * Expired messages are not returned when receiving so removal is not time critical.
+ */
+public class ExpiredMessageCleanupEventListener implements EventListener<ClockTick> {
+
+  private static final Logger logger = Logger.getLogger( ExpiredMessageCleanupEventListener.class );
+  private static final long CLEANUP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis( 1 );
+  private static final AtomicLong lastCleanup = new AtomicLong( 0L );
+
+  public static void register( ) {
+    Listeners.register( ClockTick.class, new ExpiredMessageCleanupEventListener( ) );
+  }
+
+  @Override
+  public void fireEvent( final ClockTick event ) {
+    if ( Topology.isEnabledLocally( SimpleQueue.class ) && Bootstrap.isOperational( ) ) {
+      final long now = System.currentTimeMillis( );
+      final long last = lastCleanup.get( );
+      if ( now - last < CLEANUP_INTERVAL_MILLIS || !lastCleanup.compareAndSet( last, now ) ) {
+        return;
+      }
+      final MessagePersistence messagePersistence = PersistenceFactory.getStoreMessagePersistence( );
+      if ( messagePersistence instanceof PostgresqlMessagePersistence ) {
+        try {
+          ( (PostgresqlMessagePersistence) messagePersistence ).deleteExpiredMessages( );
+        } catch ( final Exception e ) {
+          logger.error( "Error deleting expired messages", e );
+        }
+      }
+    }
+  }
+}
@@ -50,6 +50,7 @@ import org.hibernate.annotations.Type;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Table;
@@ -61,7 +62,10 @@ import javax.persistence.UniqueConstraint;
 @Entity
 @PersistenceContext( name = "eucalyptus_simplequeue" )
 @Table( name = "messages", uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "queue_name", "message_id"},
-  name = "queues_composite_key") )
+  name = "queues_composite_key"), indexes = {
+  @Index( name = "messages_visible_idx", columnList = "account_id, queue_name, visible_timestamp_secs" ),
+  @Index( name = "messages_expired_idx", columnList = "expired_timestamp_secs" )
+} )
 public class MessageEntity extends AbstractPersistent {
   @Column(name = "account_id", nullable = false)
   String accountId;
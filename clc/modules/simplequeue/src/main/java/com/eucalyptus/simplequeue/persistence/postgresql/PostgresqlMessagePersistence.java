@@ -56,25 +56,36 @@ import com.eucalyptus.simplequeue.exceptions.InvalidParameterValueException;
 import com.eucalyptus.simplequeue.exceptions.ReceiptHandleIsInvalidException;
 import com.eucalyptus.simplequeue.exceptions.SimpleQueueException;
 import com.eucalyptus.simplequeue.persistence.MessageJsonHelper;
-import com.eucalyptus.simplequeue.persistence.MessagePersistence;
+import com.eucalyptus.simplequeue.persistence.MessageStore;
 import com.eucalyptus.simplequeue.persistence.Queue;
+import com.eucalyptus.simplequeue.persistence.StoredMessage;
 import com.eucalyptus.util.Either;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import javaslang.Tuple;
+import javaslang.Tuple2;
 
 import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.UUID;
 
 /**
  * Created by ethomas on 9/16/16.
  */
-public class PostgresqlMessagePersistence implements MessagePersistence {
+public class PostgresqlMessagePersistence implements MessageStore {
+
+  private static final int STORE_BATCH_SIZE = 500;
+  private static final int EXPIRED_DELETE_BATCH_SIZE = 1000;
 
   @Override
   public UUID getNewMessageUUID() {
@@ -94,19 +105,6 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
         List<Message> messages = Lists.newArrayList();
         Optional<SimpleQueueException> simpleQueueExceptionOptional;
         try {
-          List<MessageEntity> messageEntityList = Entities.criteriaQuery(MessageEntity.class)
-            .whereEqual(MessageEntity_.accountId, queue.getAccountId())
-            .whereEqual(MessageEntity_.queueName, queue.getQueueName())
-//      -- Just delete the expired messages here
-//        // messages with an expiration time of exactly now should expire, so we want the expiration
-//        // timestamp to be strictly greater than now
-//        .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.expiredTimestampSecs, now))
-              // messages with a visibility time of exactly now should be visible, so we want the the visibility
-              // timestamp to be less than or equal to now.
-            .where(Entities.restriction(MessageEntity.class).le(MessageEntity_.visibleTimestampSecs, now))
-            .orderBy(MessageEntity_.visibleTimestampSecs)
-              // TODO: consider what happens if this returns too many results.
-            .list();
           boolean deadLetterQueue = false;
           String deadLetterQueueAccountId = null;
           String deadLetterQueueName = null;
@@ -128,12 +126,24 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
           } catch (Exception ignore) {
           }
 
-          if (messageEntityList != null) {
+          // Only lock as many messages as are wanted, messages moved to a dead letter queue do not count
+          // so fetch again if any were moved. Rows locked by concurrent receivers are skipped.
+          boolean moreMessages = true;
+          while (moreMessages && numMessages < maxNumMessages) {
+            int fetchSize = maxNumMessages - numMessages;
+            List<MessageEntity> messageEntityList = Entities.lockSkipLocked(MessageEntity.class,
+              "account_id = :accountId and queue_name = :queueName" +
+                // messages with an expiration time of exactly now should expire, so we want the expiration
+                // timestamp to be strictly greater than now (expired messages are deleted in the background)
+              " and expired_timestamp_secs > :now" +
+                // messages with a visibility time of exactly now should be visible, so we want the the visibility
+                // timestamp to be less than or equal to now.
+              " and visible_timestamp_secs <= :now",
+              "visible_timestamp_secs",
+              ImmutableMap.of("accountId", queue.getAccountId(), "queueName", queue.getQueueName(), "now", now),
+              fetchSize);
+            moreMessages = messageEntityList.size() >= fetchSize;
             for (MessageEntity messageEntity : messageEntityList) {
-              if (messageEntity.getExpiredTimestampSecs() <= now) {
-                Entities.delete(messageEntity);
-                continue;
-              }
               if (deadLetterQueue && messageEntity.getLocalReceiveCount() >= maxReceiveCount) {
                 // move to dead letter
                 messageEntity.setLocalReceiveCount(0);
@@ -168,7 +178,6 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
               message.setReceiptHandle(messageEntity.getAccountId() + ":" + messageEntity.getQueueName() + ":" + messageEntity.getMessageId() + ":" + messageEntity.getLocalReceiveCount());
               messages.add(message);
               numMessages++;
-              if (numMessages >= maxNumMessages) break;
             }
           }
           either = Either.right(messages);
@@ -191,52 +200,56 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
       @Nullable
       @Override
       public Void apply(@Nullable Void aVoid) {
-        MessageEntity messageEntity = new MessageEntity();
-        messageEntity.setMessageId(message.getMessageId());
-        messageEntity.setAccountId(queue.getAccountId());
-        messageEntity.setQueueName(queue.getQueueName());
-        Map<String, String> attributeMap = Maps.newHashMap();
-        if (message.getAttribute() != null) {
-          for (Attribute attribute : message.getAttribute()) {
-            attributeMap.put(attribute.getName(), attribute.getValue());
-          }
-        }
-        messageEntity.setReceiveCount(0);
-        messageEntity.setLocalReceiveCount(0);
-        messageEntity.setSentTimestampSecs(SimpleQueueService.currentTimeSeconds());
-        messageEntity.setExpiredTimestampSecs(messageEntity.getSentTimestampSecs() + queue.getMessageRetentionPeriod());
-        int delaySeconds = queue.getDelaySeconds();
-        if (sendAttributes.containsKey(Constants.DELAY_SECONDS)) {
-          delaySeconds = Integer.parseInt(sendAttributes.get(Constants.DELAY_SECONDS));
+        Entities.persist(newMessageEntity(queue, message, sendAttributes));
+        return null;
+      }
+    }).apply(null);
+  }
+
+  @Override
+  public List<Either<SimpleQueueException, Boolean>> sendMessageBatch(Queue queue, List<Tuple2<Message, Map<String, String>>> messages) {
+    // all messages are inserted in one transaction so the inserts are batched
+    Entities.asDistinctTransaction(MessageEntity.class, new Function<Void, Void>() {
+      @Nullable
+      @Override
+      public Void apply(@Nullable Void aVoid) {
+        for (Tuple2<Message, Map<String, String>> message : messages) {
+          Entities.persist(newMessageEntity(queue, message._1(), message._2()));
         }
-        messageEntity.setVisibleTimestampSecs(messageEntity.getSentTimestampSecs() + delaySeconds);
-        messageEntity.setMessageJson(MessageJsonHelper.messageToJson(message));
-        Entities.persist(messageEntity);
         return null;
       }
     }).apply(null);
+    List<Either<SimpleQueueException, Boolean>> results = Lists.newArrayListWithCapacity(messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      results.add(Either.right(true));
+    }
+    return results;
+  }
+
+  private static MessageEntity newMessageEntity(Queue queue, Message message, Map<String, String> sendAttributes) {
+    MessageEntity messageEntity = new MessageEntity();
+    messageEntity.setMessageId(message.getMessageId());
+    messageEntity.setAccountId(queue.getAccountId());
+    messageEntity.setQueueName(queue.getQueueName());
+    messageEntity.setReceiveCount(0);
+    messageEntity.setLocalReceiveCount(0);
+    messageEntity.setSentTimestampSecs(SimpleQueueService.currentTimeSeconds());
+    messageEntity.setExpiredTimestampSecs(messageEntity.getSentTimestampSecs() + queue.getMessageRetentionPeriod());
+    int delaySeconds = queue.getDelaySeconds();
+    if (sendAttributes.containsKey(Constants.DELAY_SECONDS)) {
+      delaySeconds = Integer.parseInt(sendAttributes.get(Constants.DELAY_SECONDS));
+    }
+    messageEntity.setVisibleTimestampSecs(messageEntity.getSentTimestampSecs() + delaySeconds);
+    messageEntity.setMessageJson(MessageJsonHelper.messageToJson(message));
+    return messageEntity;
   }
 
   @Override
   public boolean deleteMessage(Queue.Key queueKey, String receiptHandle) throws SimpleQueueException {
     boolean found = false;
-    // receipt handle (currently) looks like accountId:queueName:message-id:receive-count
-    StringTokenizer stok = new StringTokenizer(receiptHandle,":");
-    if (stok.countTokens() != 4) {
-      throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid receipt handle.");
-    }
-    String receiptHandleAccountId = stok.nextToken();
-    String receiptHandleQueueName = stok.nextToken();
-    String messageId = stok.nextToken();
-    int receiveCount = 0;
-    try {
-      receiveCount = Integer.parseInt(stok.nextToken());
-    } catch (NumberFormatException e) {
-      throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid receipt handle.");
-    }
-    if (!receiptHandleAccountId.equals(queueKey.getAccountId()) || !receiptHandleQueueName.equals(queueKey.getQueueName())) {
-      throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid for this queue.");
-    }
+    Tuple2<String, Integer> messageIdAndReceiveCount = parseReceiptHandle(queueKey, receiptHandle);
+    String messageId = messageIdAndReceiveCount._1();
+    int receiveCount = messageIdAndReceiveCount._2();
 
     try ( TransactionResource db =
             Entities.transactionFor(MessageEntity.class) ) {
@@ -260,24 +273,68 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
   }
 
   @Override
-  public void changeMessageVisibility(Queue.Key queueKey, String receiptHandle, Integer visibilityTimeout) throws SimpleQueueException {
-    // receipt handle (currently) looks like accountId:queueName:message-id:receive-count
-    StringTokenizer stok = new StringTokenizer(receiptHandle,":");
-    if (stok.countTokens() != 4) {
-      throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid receipt handle.");
+  public List<Either<SimpleQueueException, Boolean>> deleteMessageBatch(Queue.Key queueKey, List<String> receiptHandles) {
+    List<Either<SimpleQueueException, Boolean>> results = Lists.newArrayListWithCapacity(receiptHandles.size());
+    List<Tuple2<String, Integer>> messageIdsAndReceiveCounts = Lists.newArrayListWithCapacity(receiptHandles.size());
+    Set<String> messageIds = Sets.newHashSet();
+    for (String receiptHandle : receiptHandles) {
+      try {
+        Tuple2<String, Integer> messageIdAndReceiveCount = parseReceiptHandle(queueKey, receiptHandle);
+        messageIdsAndReceiveCounts.add(messageIdAndReceiveCount);
+        messageIds.add(messageIdAndReceiveCount._1());
+        results.add(null);
+      } catch (SimpleQueueException e) {
+        messageIdsAndReceiveCounts.add(null);
+        results.add(Either.left(e));
+      }
     }
-    String receiptHandleAccountId = stok.nextToken();
-    String receiptHandleQueueName = stok.nextToken();
-    String messageId = stok.nextToken();
-    int receiveCount = 0;
-    try {
-      receiveCount = Integer.parseInt(stok.nextToken());
-    } catch (NumberFormatException e) {
-      throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid receipt handle.");
+
+    Set<String> deletedMessageIds = Sets.newHashSet();
+    if (!messageIds.isEmpty()) {
+      try ( TransactionResource db =
+              Entities.transactionFor(MessageEntity.class) ) {
+        Map<String, Integer> receiveCountsByMessageId = Maps.newHashMap();
+        for (MessageEntity messageEntity : Entities.criteriaQuery(MessageEntity.class)
+            .whereEqual(MessageEntity_.accountId, queueKey.getAccountId())
+            .whereEqual(MessageEntity_.queueName, queueKey.getQueueName())
+            .whereIn(MessageEntity_.messageId, messageIds)
+            .readonly()
+            .list()) {
+          receiveCountsByMessageId.put(messageEntity.getMessageId(), messageEntity.getReceiveCount());
+        }
+        // only delete messages that have not been received again since the receipt handle was issued
+        for (Tuple2<String, Integer> messageIdAndReceiveCount : messageIdsAndReceiveCounts) {
+          if (messageIdAndReceiveCount != null &&
+              messageIdAndReceiveCount._2().equals(receiveCountsByMessageId.get(messageIdAndReceiveCount._1()))) {
+            deletedMessageIds.add(messageIdAndReceiveCount._1());
+          }
+        }
+        if (!deletedMessageIds.isEmpty()) {
+          Entities.delete(MessageEntity.class)
+            .whereEqual(MessageEntity_.accountId, queueKey.getAccountId())
+            .whereEqual(MessageEntity_.queueName, queueKey.getQueueName())
+            .whereIn(MessageEntity_.messageId, deletedMessageIds)
+            .delete();
+        }
+        db.commit();
+      }
     }
-    if (!receiptHandleAccountId.equals(queueKey.getAccountId()) || !receiptHandleQueueName.equals(queueKey.getQueueName())) {
-      throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid for this queue.");
+
+    // a stale receipt handle is not an error, the result is false as nothing was deleted
+    for (int i = 0; i < results.size(); i++) {
+      Tuple2<String, Integer> messageIdAndReceiveCount = messageIdsAndReceiveCounts.get(i);
+      if (messageIdAndReceiveCount != null) {
+        results.set(i, Either.right(deletedMessageIds.remove(messageIdAndReceiveCount._1())));
+      }
     }
+    return results;
+  }
+
+  @Override
+  public void changeMessageVisibility(Queue.Key queueKey, String receiptHandle, Integer visibilityTimeout) throws SimpleQueueException {
+    Tuple2<String, Integer> messageIdAndReceiveCount = parseReceiptHandle(queueKey, receiptHandle);
+    String messageId = messageIdAndReceiveCount._1();
+    int receiveCount = messageIdAndReceiveCount._2();
 
     try ( TransactionResource db =
             Entities.transactionFor(MessageEntity.class) ) {
@@ -304,6 +361,53 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
 
   }
 
+  @Override
+  public List<Either<SimpleQueueException, Boolean>> changeMessageVisibilityBatch(Queue.Key queueKey, List<Tuple2<String, Integer>> receiptHandlesAndVisibilityTimeouts) {
+    List<Either<SimpleQueueException, Boolean>> results = Lists.newArrayListWithCapacity(receiptHandlesAndVisibilityTimeouts.size());
+    List<Tuple2<String, Integer>> messageIdsAndReceiveCounts = Lists.newArrayListWithCapacity(receiptHandlesAndVisibilityTimeouts.size());
+    Set<String> messageIds = Sets.newHashSet();
+    for (Tuple2<String, Integer> receiptHandleAndVisibilityTimeout : receiptHandlesAndVisibilityTimeouts) {
+      try {
+        Tuple2<String, Integer> messageIdAndReceiveCount = parseReceiptHandle(queueKey, receiptHandleAndVisibilityTimeout._1());
+        messageIdsAndReceiveCounts.add(messageIdAndReceiveCount);
+        messageIds.add(messageIdAndReceiveCount._1());
+        results.add(null);
+      } catch (SimpleQueueException e) {
+        messageIdsAndReceiveCounts.add(null);
+        results.add(Either.left(e));
+      }
+    }
+
+    if (!messageIds.isEmpty()) {
+      try ( TransactionResource db =
+              Entities.transactionFor(MessageEntity.class) ) {
+        long now = SimpleQueueService.currentTimeSeconds();
+        Map<String, MessageEntity> messageEntitiesById = Maps.newHashMap();
+        for (MessageEntity messageEntity : Entities.criteriaQuery(MessageEntity.class)
+            .whereEqual(MessageEntity_.accountId, queueKey.getAccountId())
+            .whereEqual(MessageEntity_.queueName, queueKey.getQueueName())
+            .whereIn(MessageEntity_.messageId, messageIds)
+            .list()) {
+          messageEntitiesById.put(messageEntity.getMessageId(), messageEntity);
+        }
+        // changes are written on commit, only for messages not received again since the receipt handle was issued
+        for (int i = 0; i < results.size(); i++) {
+          Tuple2<String, Integer> messageIdAndReceiveCount = messageIdsAndReceiveCounts.get(i);
+          if (messageIdAndReceiveCount == null) continue;
+          MessageEntity messageEntity = messageEntitiesById.get(messageIdAndReceiveCount._1());
+          if (messageEntity != null && messageIdAndReceiveCount._2().equals(messageEntity.getReceiveCount())) {
+            messageEntity.setVisibleTimestampSecs(now + receiptHandlesAndVisibilityTimeouts.get(i)._2());
+            results.set(i, Either.right(true));
+          } else {
+            results.set(i, Either.left(new InvalidParameterValueException("Value " + receiptHandlesAndVisibilityTimeouts.get(i)._1() + " for parameter ReceiptHandle is invalid. Reason: Message does not exist or is not available for visibility timeout change.")));
+          }
+        }
+        db.commit();
+      }
+    }
+    return results;
+  }
+
   @Override
   public Long getApproximateAgeOfOldestMessage(Queue.Key queueKey) {
     long now = SimpleQueueService.currentTimeSeconds();
@@ -324,6 +428,25 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
   }
 
 
+  /**
+   * Delete messages that have expired for all queues.
+   *
+   * Messages are deleted in batches, each in its own transaction.
+   */
+  public void deleteExpiredMessages() {
+    long now = SimpleQueueService.currentTimeSeconds();
+    int deleted;
+    do {
+      try ( TransactionResource db =
+              Entities.transactionFor(MessageEntity.class) ) {
+        // messages with an expiration time of exactly now are expired
+        deleted = Entities.deleteBatchMatching(MessageEntity.class,
+          "expired_timestamp_secs <= :now", ImmutableMap.of("now", now), EXPIRED_DELETE_BATCH_SIZE);
+        db.commit();
+      }
+    } while (deleted >= EXPIRED_DELETE_BATCH_SIZE);
+  }
+
   @Override
   public void deleteAllMessages(Queue.Key queueKey) {
     try ( TransactionResource db =
@@ -397,4 +520,122 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
     return result;
   }
 
+  @Override
+  public Collection<StoredMessage> loadMessages(Queue.Key queueKey) {
+    long now = SimpleQueueService.currentTimeSeconds();
+    List<StoredMessage> storedMessages = Lists.newArrayList();
+    try ( TransactionResource db =
+            Entities.transactionFor(MessageEntity.class) ) {
+      List<MessageEntity> messageEntityList = Entities.criteriaQuery(MessageEntity.class)
+        .whereEqual(MessageEntity_.accountId, queueKey.getAccountId())
+        .whereEqual(MessageEntity_.queueName, queueKey.getQueueName())
+        .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.expiredTimestampSecs, now))
+        .readonly()
+        .list();
+      for (MessageEntity messageEntity : messageEntityList) {
+        StoredMessage storedMessage = new StoredMessage(queueKey, messageEntity.getMessageId());
+        storedMessage.setSentTimestampSecs(messageEntity.getSentTimestampSecs());
+        storedMessage.setVisibleTimestampSecs(messageEntity.getVisibleTimestampSecs());
+        storedMessage.setExpiredTimestampSecs(messageEntity.getExpiredTimestampSecs());
+        storedMessage.setReceiveCount(messageEntity.getReceiveCount());
+        storedMessage.setLocalReceiveCount(messageEntity.getLocalReceiveCount());
+        storedMessage.setMessageJson(messageEntity.getMessageJson());
+        storedMessages.add(storedMessage);
+      }
+    }
+    return storedMessages;
+  }
+
+  @Override
+  public long countMessages(Queue.Key queueKey) {
+    long now = SimpleQueueService.currentTimeSeconds();
+    try ( TransactionResource db =
+            Entities.transactionFor(MessageEntity.class) ) {
+      return Entities.count(MessageEntity.class)
+        .whereEqual(MessageEntity_.accountId, queueKey.getAccountId())
+        .whereEqual(MessageEntity_.queueName, queueKey.getQueueName())
+        .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.expiredTimestampSecs, now))
+        .uniqueResult();
+    }
+  }
+
+  @Override
+  public void storeMessages(Collection<StoredMessage> messages, Collection<StoredMessage> removedMessages) {
+    try ( TransactionResource db =
+            Entities.transactionFor(MessageEntity.class) ) {
+      for (Map.Entry<Queue.Key, Map<String, StoredMessage>> entry : messagesByQueue(removedMessages).entrySet()) {
+        for (List<String> messageIds : Iterables.partition(entry.getValue().keySet(), STORE_BATCH_SIZE)) {
+          Entities.delete(MessageEntity.class)
+            .whereEqual(MessageEntity_.accountId, entry.getKey().getAccountId())
+            .whereEqual(MessageEntity_.queueName, entry.getKey().getQueueName())
+            .whereIn(MessageEntity_.messageId, messageIds)
+            .delete();
+        }
+      }
+      for (Map.Entry<Queue.Key, Map<String, StoredMessage>> entry : messagesByQueue(messages).entrySet()) {
+        for (List<String> messageIds : Iterables.partition(entry.getValue().keySet(), STORE_BATCH_SIZE)) {
+          Map<String, MessageEntity> messageEntitiesById = Maps.newHashMap();
+          for (MessageEntity messageEntity : Entities.criteriaQuery(MessageEntity.class)
+              .whereEqual(MessageEntity_.accountId, entry.getKey().getAccountId())
+              .whereEqual(MessageEntity_.queueName, entry.getKey().getQueueName())
+              .whereIn(MessageEntity_.messageId, messageIds)
+              .list()) {
+            messageEntitiesById.put(messageEntity.getMessageId(), messageEntity);
+          }
+          for (String messageId : messageIds) {
+            StoredMessage storedMessage = entry.getValue().get(messageId);
+            MessageEntity messageEntity = messageEntitiesById.get(messageId);
+            boolean create = messageEntity == null;
+            if (create) {
+              messageEntity = new MessageEntity();
+              messageEntity.setAccountId(entry.getKey().getAccountId());
+              messageEntity.setQueueName(entry.getKey().getQueueName());
+              messageEntity.setMessageId(messageId);
+            }
+            messageEntity.setSentTimestampSecs(storedMessage.getSentTimestampSecs());
+            messageEntity.setVisibleTimestampSecs(storedMessage.getVisibleTimestampSecs());
+            messageEntity.setExpiredTimestampSecs(storedMessage.getExpiredTimestampSecs());
+            messageEntity.setReceiveCount(storedMessage.getReceiveCount());
+            messageEntity.setLocalReceiveCount(storedMessage.getLocalReceiveCount());
+            messageEntity.setMessageJson(storedMessage.getMessageJson());
+            if (create) {
+              Entities.persist(messageEntity);
+            }
+          }
+        }
+      }
+      db.commit();
+    }
+  }
+
+  private static Tuple2<String, Integer> parseReceiptHandle(Queue.Key queueKey, String receiptHandle) throws SimpleQueueException {
+    // receipt handle (currently) looks like accountId:queueName:message-id:receive-count
+    StringTokenizer stok = new StringTokenizer(receiptHandle,":");
+    if (stok.countTokens() != 4) {
+      throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid receipt handle.");
+    }
+    String receiptHandleAccountId = stok.nextToken();
+    String receiptHandleQueueName = stok.nextToken();
+    String messageId = stok.nextToken();
+    int receiveCount = 0;
+    try {
+      receiveCount = Integer.parseInt(stok.nextToken());
+    } catch (NumberFormatException e) {
+      throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid receipt handle.");
+    }
+    if (!receiptHandleAccountId.equals(queueKey.getAccountId()) || !receiptHandleQueueName.equals(queueKey.getQueueName())) {
+      throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid for this queue.");
+    }
+    return Tuple.of(messageId, receiveCount);
+  }
+
+  private static Map<Queue.Key, Map<String, StoredMessage>> messagesByQueue(Collection<StoredMessage> storedMessages) {
+    Map<Queue.Key, Map<String, StoredMessage>> messagesByQueue = new LinkedHashMap<>();
+    for (StoredMessage storedMessage : storedMessages) {
+      messagesByQueue.computeIfAbsent(storedMessage.getQueueKey(), key -> new LinkedHashMap<>())
+        .put(storedMessage.getMessageId(), storedMessage);
+    }
+    return messagesByQueue;
+  }
+
 }
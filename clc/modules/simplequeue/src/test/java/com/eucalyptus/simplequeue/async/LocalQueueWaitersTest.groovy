@@ -0,0 +1,160 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simplequeue.async
+
+import com.eucalyptus.simplequeue.persistence.Queue
+import com.eucalyptus.util.Consumer
+import groovy.transform.CompileStatic
+import org.junit.Test
+
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+@CompileStatic
+class LocalQueueWaitersTest {
+
+  @Test
+  void testWakeOldest( ) {
+    Queue.Key queueKey = new Queue.Key( '000000000001', 'wake' )
+    TestExecutor executor = new TestExecutor( )
+    List<String> woken = [ ]
+    LocalQueueWaiters.register( queueKey, executor, wakeup( woken, 'waiter-1' ) )
+    LocalQueueWaiters.register( queueKey, executor, wakeup( woken, 'waiter-2' ) )
+
+    assertTrue( 'woken', LocalQueueWaiters.wakeOldest( queueKey ) )
+    assertEquals( 'not woken on notifying thread', [ ], woken )
+    executor.runAll( )
+    assertEquals( 'oldest woken', [ 'waiter-1' ], woken )
+
+    assertTrue( 'woken', LocalQueueWaiters.wakeOldest( queueKey ) )
+    executor.runAll( )
+    assertEquals( 'next oldest woken', [ 'waiter-1', 'waiter-2' ], woken )
+
+    assertFalse( 'no waiters', LocalQueueWaiters.wakeOldest( queueKey ) )
+    assertEquals( 'no wakeup dispatched', 0, executor.tasks.size( ) )
+  }
+
+  @Test
+  void testPassOn( ) {
+    Queue.Key queueKey = new Queue.Key( '000000000001', 'pass-on' )
+    TestExecutor executor = new TestExecutor( )
+    List<String> woken = [ ]
+    LocalQueueWaiters.register( queueKey, executor, { Boolean notified ->
+      // completed waiter passes on the wakeup
+      woken << 'waiter-1'
+      assertTrue( 'passed on', LocalQueueWaiters.wakeOldest( queueKey ) )
+      assertEquals( 'pass on not run inline', [ 'waiter-1' ], woken )
+    } as Consumer<Boolean> )
+    LocalQueueWaiters.register( queueKey, executor, wakeup( woken, 'waiter-2' ) )
+
+    assertTrue( 'woken', LocalQueueWaiters.wakeOldest( queueKey ) )
+    assertTrue( 'task run', executor.runNext( ) )
+    assertEquals( 'first waiter woken', [ 'waiter-1' ], woken )
+    assertEquals( 'pass on dispatched', 1, executor.tasks.size( ) )
+    executor.runAll( )
+    assertEquals( 'passed on to next waiter', [ 'waiter-1', 'waiter-2' ], woken )
+  }
+
+  @Test
+  void testReregisterKeepsPlace( ) {
+    Queue.Key queueKey = new Queue.Key( '000000000001', 'reregister' )
+    TestExecutor executor = new TestExecutor( )
+    List<String> woken = [ ]
+    LocalQueueWaiters.Waiter waiter1 = LocalQueueWaiters.register( queueKey, executor, wakeup( woken, 'waiter-1' ) )
+    LocalQueueWaiters.register( queueKey, executor, wakeup( woken, 'waiter-2' ) )
+
+    LocalQueueWaiters.wakeOldest( queueKey )
+    executor.runAll( )
+    LocalQueueWaiters.reregister( waiter1 ) // nothing received
+    LocalQueueWaiters.wakeOldest( queueKey )
+    executor.runAll( )
+    assertEquals( 'reregistered waiter woken first', [ 'waiter-1', 'waiter-1' ], woken )
+  }
+
+  @Test
+  void testTimeout( ) {
+    Queue.Key queueKey = new Queue.Key( '000000000001', 'timeout' )
+    TestExecutor executor = new TestExecutor( )
+    List<String> woken = [ ]
+    LocalQueueWaiters.Waiter waiter1 = LocalQueueWaiters.register( queueKey, executor, wakeup( woken, 'waiter-1' ) )
+    LocalQueueWaiters.register( queueKey, executor, wakeup( woken, 'waiter-2' ) )
+
+    LocalQueueWaiters.remove( waiter1 ) // poll timed out
+    assertTrue( 'woken', LocalQueueWaiters.wakeOldest( queueKey ) )
+    executor.runAll( )
+    assertEquals( 'timed out waiter not woken', [ 'waiter-2' ], woken )
+    assertFalse( 'no waiters', LocalQueueWaiters.wakeOldest( queueKey ) )
+  }
+
+  @Test
+  void testRejectedWakeup( ) {
+    Queue.Key queueKey = new Queue.Key( '000000000001', 'rejected' )
+    TestExecutor executor = new TestExecutor( )
+    List<String> woken = [ ]
+    LocalQueueWaiters.register( queueKey, { Runnable task ->
+      throw new RejectedExecutionException( 'shutdown' )
+    } as Executor, wakeup( woken, 'waiter-1' ) )
+    LocalQueueWaiters.register( queueKey, executor, wakeup( woken, 'waiter-2' ) )
+
+    assertTrue( 'woken', LocalQueueWaiters.wakeOldest( queueKey ) )
+    executor.runAll( )
+    assertEquals( 'next waiter woken', [ 'waiter-2' ], woken )
+  }
+
+  private static Consumer<Boolean> wakeup( List<String> woken, String name ) {
+    return { Boolean notified -> woken << name } as Consumer<Boolean>
+  }
+
+  static class TestExecutor implements Executor {
+    final List<Runnable> tasks = [ ]
+
+    @Override
+    void execute( Runnable command ) {
+      tasks << command
+    }
+
+    boolean runNext( ) {
+      if ( tasks.isEmpty( ) ) {
+        false
+      } else {
+        tasks.remove( 0 ).run( )
+        true
+      }
+    }
+
+    void runAll( ) {
+      while ( runNext( ) ) { }
+    }
+  }
+}
@@ -0,0 +1,371 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simplequeue.persistence.memory
+
+import com.eucalyptus.simplequeue.Constants
+import com.eucalyptus.simplequeue.Message
+import com.eucalyptus.simplequeue.SimpleQueueService
+import com.eucalyptus.simplequeue.config.SimpleQueueProperties
+import com.eucalyptus.simplequeue.exceptions.InvalidParameterValueException
+import com.eucalyptus.simplequeue.exceptions.ReceiptHandleIsInvalidException
+import com.eucalyptus.simplequeue.exceptions.SimpleQueueException
+import com.eucalyptus.simplequeue.persistence.MessageJsonHelper
+import com.eucalyptus.simplequeue.persistence.MessageStore
+import com.eucalyptus.simplequeue.persistence.Queue
+import com.eucalyptus.simplequeue.persistence.StoredMessage
+import com.eucalyptus.util.Either
+import groovy.transform.CompileStatic
+import javaslang.Tuple
+import javaslang.Tuple2
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+@CompileStatic
+class MemoryMessagePersistenceTest {
+
+  private String writeMode
+  private int writeInterval
+
+  @Before
+  void saveProperties( ) {
+    writeMode = SimpleQueueProperties.MESSAGE_CACHE_WRITE_MODE
+    writeInterval = SimpleQueueProperties.MESSAGE_CACHE_WRITE_INTERVAL_MILLIS
+  }
+
+  @After
+  void restoreProperties( ) {
+    SimpleQueueProperties.MESSAGE_CACHE_WRITE_MODE = writeMode
+    SimpleQueueProperties.MESSAGE_CACHE_WRITE_INTERVAL_MILLIS = writeInterval
+  }
+
+  @Test
+  void testSyncWrite( ) {
+    SimpleQueueProperties.MESSAGE_CACHE_WRITE_MODE = 'sync'
+    TestMessageStore store = new TestMessageStore( )
+    MemoryMessagePersistence persistence = new MemoryMessagePersistence( store )
+    Queue queue = queue( )
+    persistence.sendMessage( queue, message( 'message-1' ), [:] )
+    assertEquals( 'stored after send', [ 'message-1' ] as Set, store.messages.keySet( ) )
+
+    Collection<Message> received = persistence.receiveMessages( queue, receiveAttributes( 30 ) )
+    assertEquals( 'received', [ 'message-1' ], received.collect{ Message message -> message.messageId } )
+    assertEquals( 'stored receive count', 1, store.messages[ 'message-1' ].receiveCount )
+
+    assertTrue( 'deleted', persistence.deleteMessage( queue.key, received.iterator( ).next( ).receiptHandle ) )
+    assertTrue( 'removed after delete', store.messages.isEmpty( ) )
+  }
+
+  @Test
+  void testSyncWriteFailure( ) {
+    SimpleQueueProperties.MESSAGE_CACHE_WRITE_MODE = 'sync'
+    TestMessageStore store = new TestMessageStore( )
+    MemoryMessagePersistence persistence = new MemoryMessagePersistence( store )
+    Queue queue = queue( )
+    persistence.sendMessage( queue, message( 'message-1' ), [:] )
+    store.fail = true
+    try {
+      persistence.sendMessage( queue, message( 'message-2' ), [:] )
+      fail( 'Expected write failure' )
+    } catch ( RuntimeException e ) {
+      assertEquals( 'failure', 'store failed', e.message )
+    }
+    store.fail = false
+
+    Collection<Message> received = persistence.receiveMessages( queue, receiveAttributes( 30, 10 ) )
+    assertEquals( 'received only written message', [ 'message-1' ], received.collect{ Message message -> message.messageId } )
+    assertEquals( 'failed change not written later', [ 'message-1' ] as Set, store.messages.keySet( ) )
+  }
+
+  @Test
+  void testGroupCommit( ) {
+    SimpleQueueProperties.MESSAGE_CACHE_WRITE_MODE = MessageJournal.WRITE_MODE_GROUP_COMMIT
+    SimpleQueueProperties.MESSAGE_CACHE_WRITE_INTERVAL_MILLIS = 60000
+    TestMessageStore store = new TestMessageStore( )
+    MemoryMessagePersistence persistence = new MemoryMessagePersistence( store )
+    Queue queue = queue( )
+    persistence.sendMessage( queue, message( 'message-1' ), [:] )
+    persistence.sendMessage( queue, message( 'message-2' ), [:] )
+    assertTrue( 'not stored after send', store.messages.isEmpty( ) )
+
+    Collection<Message> received = persistence.receiveMessages( queue, receiveAttributes( 30 ) )
+    assertEquals( 'received count', 1, received.size( ) )
+    assertTrue( 'deleted', persistence.deleteMessage( queue.key, received.iterator( ).next( ).receiptHandle ) )
+
+    persistence.invalidate( )
+    assertEquals( 'write count', 1, store.writes )
+    assertEquals( 'stored after write', 1, store.messages.size( ) )
+    assertFalse( 'deleted not stored', store.messages.containsKey( received.iterator( ).next( ).messageId ) )
+  }
+
+  @Test
+  void testJournalReplay( ) {
+    SimpleQueueProperties.MESSAGE_CACHE_WRITE_MODE = MessageJournal.WRITE_MODE_GROUP_COMMIT
+    SimpleQueueProperties.MESSAGE_CACHE_WRITE_INTERVAL_MILLIS = 60000
+    TestMessageStore store = new TestMessageStore( )
+    Queue queue = queue( )
+    MemoryMessagePersistence persistence = new MemoryMessagePersistence( store )
+    persistence.sendMessage( queue, message( 'message-1' ), [:] )
+    persistence.sendMessage( queue, message( 'message-2' ), [:] )
+    Collection<Message> received = persistence.receiveMessages( queue, receiveAttributes( 30 ) )
+    persistence.invalidate( )
+
+    MemoryMessagePersistence reloaded = new MemoryMessagePersistence( store )
+    assertEquals( 'counts',
+        [ (Constants.APPROXIMATE_NUMBER_OF_MESSAGES): '1', (Constants.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE): '1', (Constants.APPROXIMATE_NUMBER_OF_MESSAGES_DELAYED): '0' ],
+        reloaded.getApproximateMessageCounts( queue.key ) )
+    assertTrue( 'delete with receipt from before reload',
+        reloaded.deleteMessage( queue.key, received.iterator( ).next( ).receiptHandle ) )
+    Collection<Message> receivedAfterReload = reloaded.receiveMessages( queue, receiveAttributes( 30, 10 ) )
+    assertEquals( 'received after reload', 1, receivedAfterReload.size( ) )
+    assertNotEquals( 'different message', received.iterator( ).next( ).messageId, receivedAfterReload.iterator( ).next( ).messageId )
+  }
+
+  @Test
+  void testVisibilityExpiry( ) {
+    SimpleQueueProperties.MESSAGE_CACHE_WRITE_MODE = 'sync'
+    TestMessageStore store = new TestMessageStore( )
+    MemoryMessagePersistence persistence = new MemoryMessagePersistence( store )
+    Queue queue = queue( )
+    persistence.sendMessage( queue, message( 'message-1' ), [:] )
+
+    Collection<Message> received = persistence.receiveMessages( queue, receiveAttributes( 30 ) )
+    assertEquals( 'received', 1, received.size( ) )
+    assertTrue( 'not visible', persistence.receiveMessages( queue, receiveAttributes( 30 ) ).isEmpty( ) )
+
+    persistence.changeMessageVisibility( queue.key, received.iterator( ).next( ).receiptHandle, 0 )
+    Collection<Message> receivedAgain = persistence.receiveMessages( queue, receiveAttributes( 0 ) )
+    assertEquals( 'visible after timeout change', 1, receivedAgain.size( ) )
+    assertTrue( 'receive count in receipt', receivedAgain.iterator( ).next( ).receiptHandle.endsWith( ':2' ) )
+
+    assertEquals( 'visible after zero timeout', 1, persistence.receiveMessages( queue, receiveAttributes( 0 ) ).size( ) )
+    assertEquals( 'stored receive count', 3, store.messages[ 'message-1' ].receiveCount )
+  }
+
+  @Test
+  void testMessageExpiry( ) {
+    SimpleQueueProperties.MESSAGE_CACHE_WRITE_MODE = 'sync'
+    TestMessageStore store = new TestMessageStore( )
+    MemoryMessagePersistence persistence = new MemoryMessagePersistence( store )
+    Queue queue = queue( '0' )
+    persistence.sendMessage( queue, message( 'message-1' ), [:] )
+    assertTrue( 'expired not received', persistence.receiveMessages( queue, receiveAttributes( 30 ) ).isEmpty( ) )
+    assertEquals( 'expired not counted', '0',
+        persistence.getApproximateMessageCounts( queue.key ).get( Constants.APPROXIMATE_NUMBER_OF_MESSAGES ) )
+  }
+
+  @Test
+  void testBatchResults( ) {
+    SimpleQueueProperties.MESSAGE_CACHE_WRITE_MODE = 'sync'
+    TestMessageStore store = new TestMessageStore( )
+    MemoryMessagePersistence persistence = new MemoryMessagePersistence( store )
+    Queue queue = queue( )
+    List<Tuple2<Message,Map<String,String>>> messages = [ 'message-1', 'message-2', 'message-3' ].collect{ String messageId ->
+      Tuple.of( message( messageId ), [:] as Map<String,String> )
+    }
+    List<Either<SimpleQueueException,Boolean>> sendResults = persistence.sendMessageBatch( queue, messages )
+    assertEquals( 'send results', [ true, true, true ], sendResults.collect{ Either<SimpleQueueException,Boolean> result -> result.getRight( ) } )
+    assertEquals( 'stored after send', [ 'message-1', 'message-2', 'message-3' ] as Set, store.messages.keySet( ) )
+
+    Map<String,String> receiptHandles = persistence.receiveMessages( queue, receiveAttributes( 30, 10 ) )
+        .collectEntries{ Message message -> [ (message.messageId): message.receiptHandle ] } as Map<String,String>
+    assertEquals( 'received', [ 'message-1', 'message-2', 'message-3' ] as Set, receiptHandles.keySet( ) )
+    String staleReceiptHandle = receiptHandles[ 'message-2' ].replaceAll( ':1$', ':5' )
+    String otherQueueReceiptHandle = receiptHandles[ 'message-3' ].replace( ':queue:', ':other:' )
+
+    List<Tuple2<String,Integer>> visibilityChanges = [
+        Tuple.of( receiptHandles[ 'message-1' ], 0 ),
+        Tuple.of( 'invalid', 0 ),
+        Tuple.of( staleReceiptHandle, 0 ),
+        Tuple.of( otherQueueReceiptHandle, 0 ),
+        Tuple.of( receiptHandles[ 'message-3' ], 60 ),
+    ]
+    List<Either<SimpleQueueException,Boolean>> visibilityResults = persistence.changeMessageVisibilityBatch( queue.key, visibilityChanges )
+    assertEquals( 'visibility result count', 5, visibilityResults.size( ) )
+    assertTrue( 'visibility changed', visibilityResults[ 0 ].getRight( ) )
+    assertTrue( 'malformed receipt handle', visibilityResults[ 1 ].getLeft( ) instanceof ReceiptHandleIsInvalidException )
+    assertTrue( 'stale receipt handle', visibilityResults[ 2 ].getLeft( ) instanceof InvalidParameterValueException )
+    assertTrue( 'other queue receipt handle', visibilityResults[ 3 ].getLeft( ) instanceof ReceiptHandleIsInvalidException )
+    assertTrue( 'visibility changed', visibilityResults[ 4 ].getRight( ) )
+    assertTrue( 'stored visibility', store.messages[ 'message-3' ].visibleTimestampSecs >= store.messages[ 'message-3' ].sentTimestampSecs + 60 )
+
+    Collection<Message> receivedAgain = persistence.receiveMessages( queue, receiveAttributes( 30, 10 ) )
+    assertEquals( 'received after visibility change', [ 'message-1' ], receivedAgain.collect{ Message message -> message.messageId } )
+
+    List<String> deletes = [
+        receiptHandles[ 'message-2' ],
+        'invalid',
+        receiptHandles[ 'message-1' ],
+        otherQueueReceiptHandle,
+        receivedAgain.iterator( ).next( ).receiptHandle,
+    ]
+    List<Either<SimpleQueueException,Boolean>> deleteResults = persistence.deleteMessageBatch( queue.key, deletes )
+    assertEquals( 'delete result count', 5, deleteResults.size( ) )
+    assertTrue( 'deleted', deleteResults[ 0 ].getRight( ) )
+    assertTrue( 'malformed receipt handle', deleteResults[ 1 ].getLeft( ) instanceof ReceiptHandleIsInvalidException )
+    assertFalse( 'stale receipt handle not deleted', deleteResults[ 2 ].getRight( ) )
+    assertTrue( 'other queue receipt handle', deleteResults[ 3 ].getLeft( ) instanceof ReceiptHandleIsInvalidException )
+    assertTrue( 'deleted', deleteResults[ 4 ].getRight( ) )
+    assertEquals( 'stored after delete', [ 'message-3' ] as Set, store.messages.keySet( ) )
+  }
+
+  @Test
+  void testCacheDiscardedWhenDisabled( ) {
+    SimpleQueueProperties.MESSAGE_CACHE_WRITE_MODE = 'sync'
+    TestMessageStore store = new TestMessageStore( )
+    MemoryMessagePersistence persistence = new MemoryMessagePersistence( store )
+    Queue queue = queue( )
+    assertTrue( 'enabled', persistence.setEnabled( true, 1 ) )
+    persistence.sendMessage( queue, message( 'message-1' ), [:] )
+
+    // messages handled by another host while caching is disabled
+    assertFalse( 'disabled', persistence.setEnabled( false, 2 ) )
+    store.storeMessages( [ storedMessage( queue, 'message-2' ) ], [ store.messages[ 'message-1' ] ] )
+
+    assertTrue( 'enabled', persistence.setEnabled( true, 3 ) )
+    assertEquals( 'received from store after enable', [ 'message-2' ],
+        persistence.receiveMessages( queue, receiveAttributes( 30, 10 ) ).collect{ Message message -> message.messageId } )
+
+    // topology change without this host seeing caching disabled
+    store.storeMessages( [ storedMessage( queue, 'message-3' ) ], [ ] )
+    assertTrue( 'enabled', persistence.setEnabled( true, 3 ) )
+    assertTrue( 'cached for same epoch', persistence.receiveMessages( queue, receiveAttributes( 30, 10 ) ).isEmpty( ) )
+    assertTrue( 'enabled', persistence.setEnabled( true, 4 ) )
+    assertEquals( 'received from store after epoch change', [ 'message-3' ],
+        persistence.receiveMessages( queue, receiveAttributes( 30, 10 ) ).collect{ Message message -> message.messageId } )
+  }
+
+  private static Queue queue( String retentionPeriod = '345600' ) {
+    Queue queue = new Queue( )
+    queue.accountId = '000000000001'
+    queue.queueName = 'queue'
+    queue.attributes = [
+        (Constants.DELAY_SECONDS): '0',
+        (Constants.MESSAGE_RETENTION_PERIOD): retentionPeriod,
+        (Constants.VISIBILITY_TIMEOUT): '30',
+    ]
+    queue
+  }
+
+  private static Message message( String messageId ) {
+    Message message = new Message( )
+    message.messageId = messageId
+    message.body = "Body for ${messageId}"
+    message
+  }
+
+  private static StoredMessage storedMessage( Queue queue, String messageId ) {
+    StoredMessage storedMessage = new StoredMessage( queue.key, messageId )
+    storedMessage.receiveCount = 0
+    storedMessage.localReceiveCount = 0
+    storedMessage.sentTimestampSecs = SimpleQueueService.currentTimeSeconds( )
+    storedMessage.visibleTimestampSecs = storedMessage.sentTimestampSecs
+    storedMessage.expiredTimestampSecs = storedMessage.sentTimestampSecs + 345600
+    storedMessage.messageJson = MessageJsonHelper.messageToJson( message( messageId ) )
+    storedMessage
+  }
+
+  private static Map<String,String> receiveAttributes( int visibilityTimeout, int maxMessages = 1 ) {
+    [
+        (Constants.VISIBILITY_TIMEOUT): String.valueOf( visibilityTimeout ),
+        (Constants.MAX_NUMBER_OF_MESSAGES): String.valueOf( maxMessages ),
+    ]
+  }
+
+  static class TestMessageStore implements MessageStore {
+    final Map<String,StoredMessage> messages = [:]
+    boolean fail
+    int writes
+
+    @Override
+    Collection<StoredMessage> loadMessages( Queue.Key queueKey ) {
+      messages.values( ).collect{ StoredMessage storedMessage -> new StoredMessage( storedMessage ) }
+    }
+
+    @Override
+    long countMessages( Queue.Key queueKey ) {
+      messages.size( )
+    }
+
+    @Override
+    void storeMessages( Collection<StoredMessage> storedMessages, Collection<StoredMessage> removedMessages ) {
+      if ( fail ) throw new IllegalStateException( 'store failed' )
+      writes++
+      storedMessages.each{ StoredMessage storedMessage ->
+        messages.put( storedMessage.messageId, new StoredMessage( storedMessage ) )
+      }
+      removedMessages.each{ StoredMessage storedMessage -> messages.remove( storedMessage.messageId ) }
+    }
+
+    @Override
+    UUID getNewMessageUUID( ) {
+      UUID.randomUUID( )
+    }
+
+    @Override
+    Collection<Message> receiveMessages( Queue queue, Map<String, String> receiveAttributes ) {
+      throw new UnsupportedOperationException( )
+    }
+
+    @Override
+    void sendMessage( Queue queue, Message message, Map<String, String> sendAttributes ) {
+      throw new UnsupportedOperationException( )
+    }
+
+    @Override
+    boolean deleteMessage( Queue.Key queueKey, String receiptHandle ) {
+      throw new UnsupportedOperationException( )
+    }
+
+    @Override
+    void deleteAllMessages( Queue.Key queueKey ) {
+      messages.clear( )
+    }
+
+    @Override
+    Map<String, String> getApproximateMessageCounts( Queue.Key queueKey ) {
+      throw new UnsupportedOperationException( )
+    }
+
+    @Override
+    void changeMessageVisibility( Queue.Key queueKey, String receiptHandle, Integer visibilityTimeout ) {
+      throw new UnsupportedOperationException( )
+    }
+
+    @Override
+    Long getApproximateAgeOfOldestMessage( Queue.Key queueKey ) {
+      throw new UnsupportedOperationException( )
+    }
+  }
+}
@@ -40,6 +40,7 @@ import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PrePersist;
+import javax.persistence.PreRemove;
 import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
@@ -420,5 +421,16 @@ public class ActivityTask extends AbstractOwnedPersistent implements ActivityTas
   protected void updateTimeout( ) {
     updateTimeStamps( );
     setTimeoutTimestamp( Optional.fromNullable( calculateNextTimeout( ) ).transform( Pair.<String,Date>right( ) ).orNull( ) );
+    PendingTimeouts.schedule( pendingTimeout( ), getTimeoutTimestamp( ) );
+  }
+
+  @PreRemove
+  protected void removeTimeout( ) {
+    PendingTimeouts.remove( pendingTimeout( ) );
+  }
+
+  private PendingTimeouts.PendingTimeout pendingTimeout( ) {
+    return PendingTimeouts.PendingTimeout.activityTask(
+        getOwnerAccountNumber( ), getDomainUuid( ), getWorkflowRunId( ), getScheduledEventId( ) );
   }
 }
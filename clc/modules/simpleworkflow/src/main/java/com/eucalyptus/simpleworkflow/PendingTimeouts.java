@@ -0,0 +1,232 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import com.eucalyptus.util.Pair;
+import com.google.common.base.MoreObjects;
+
+/**
+ * Timeouts for timers, activity tasks and workflow executions on this host.
+ *
+ * Timeouts are tracked only while started, i.e. while this host processes
+ * timeouts. Entities schedule their timeouts as they are persisted so due
+ * timeouts can be processed without querying the database. Timeouts are
+ * hints only, an entity must be checked when its timeout is processed.
+ */
+public class PendingTimeouts {
+
+  private static volatile TimeoutWheel<PendingTimeout> wheel;
+
+  /**
+   * Start tracking timeouts, any previously tracked timeouts are discarded.
+   */
+  public static void start( final long now ) {
+    wheel = new TimeoutWheel<>( SimpleWorkflowProperties.getTimeoutTickDurationMillis( ), now );
+  }
+
+  /**
+   * Stop tracking timeouts.
+   */
+  public static void stop( ) {
+    wheel = null;
+  }
+
+  public static boolean isStarted( ) {
+    return wheel != null;
+  }
+
+  /**
+   * The resolution of tracked timeouts, zero if not started.
+   */
+  public static long getTickMillis( ) {
+    final TimeoutWheel<PendingTimeout> timeoutWheel = wheel;
+    return timeoutWheel == null ? 0L : timeoutWheel.getTickMillis( );
+  }
+
+  /**
+   * Schedule the timeout, a null due date removes any scheduled timeout.
+   */
+  public static void schedule( final PendingTimeout timeout,
+                               @Nullable final Date due ) {
+    final TimeoutWheel<PendingTimeout> timeoutWheel = wheel;
+    if ( timeoutWheel != null ) {
+      synchronized ( timeoutWheel ) {
+        if ( due == null ) {
+          timeoutWheel.remove( timeout );
+        } else {
+          timeoutWheel.schedule( timeout, due.getTime( ) );
+        }
+      }
+    }
+  }
+
+  /**
+   * Schedule the timeout unless it is already scheduled.
+   *
+   * <p>Used when loading timeouts, scheduled timeouts will be more recent.</p>
+   */
+  public static void scheduleIfAbsent( final PendingTimeout timeout,
+                                       @Nullable final Date due ) {
+    final TimeoutWheel<PendingTimeout> timeoutWheel = wheel;
+    if ( timeoutWheel != null && due != null ) {
+      synchronized ( timeoutWheel ) {
+        timeoutWheel.scheduleIfAbsent( timeout, due.getTime( ) );
+      }
+    }
+  }
+
+  public static void remove( final PendingTimeout timeout ) {
+    schedule( timeout, null );
+  }
+
+  /**
+   * Remove and return the timeouts due at the given time.
+   *
+   * @return The due timeouts with their scheduled times
+   */
+  public static List<Pair<PendingTimeout,Long>> due( final long now ) {
+    final TimeoutWheel<PendingTimeout> timeoutWheel = wheel;
+    if ( timeoutWheel != null ) {
+      synchronized ( timeoutWheel ) {
+        return timeoutWheel.advance( now );
+      }
+    }
+    return Collections.emptyList( );
+  }
+
+  public static int size( ) {
+    final TimeoutWheel<PendingTimeout> timeoutWheel = wheel;
+    if ( timeoutWheel != null ) {
+      synchronized ( timeoutWheel ) {
+        return timeoutWheel.size( );
+      }
+    }
+    return 0;
+  }
+
+  public static final class PendingTimeout {
+    public enum Type { Timer, ActivityTask, WorkflowExecution }
+
+    private final Type type;
+    private final String accountNumber;
+    private final String domainUuid;
+    private final String runId;
+    private final String id;
+
+    private PendingTimeout( final Type type,
+                            final String accountNumber,
+                            final String domainUuid,
+                            final String runId,
+                            final String id ) {
+      this.type = type;
+      this.accountNumber = accountNumber;
+      this.domainUuid = domainUuid;
+      this.runId = runId;
+      this.id = id;
+    }
+
+    public static PendingTimeout timer( final String accountNumber,
+                                        final String domainUuid,
+                                        final String runId,
+                                        final String timerId ) {
+      return new PendingTimeout( Type.Timer, accountNumber, domainUuid, runId, timerId );
+    }
+
+    public static PendingTimeout activityTask( final String accountNumber,
+                                               final String domainUuid,
+                                               final String runId,
+                                               final Long scheduledEventId ) {
+      return new PendingTimeout( Type.ActivityTask, accountNumber, domainUuid, runId, String.valueOf( scheduledEventId ) );
+    }
+
+    public static PendingTimeout workflowExecution( final String accountNumber,
+                                                    final String domainUuid,
+                                                    final String runId ) {
+      return new PendingTimeout( Type.WorkflowExecution, accountNumber, domainUuid, runId, "" );
+    }
+
+    public Type getType( ) {
+      return type;
+    }
+
+    public String getAccountNumber( ) {
+      return accountNumber;
+    }
+
+    public String getDomainUuid( ) {
+      return domainUuid;
+    }
+
+    public String getRunId( ) {
+      return runId;
+    }
+
+    /**
+     * The timer identifier or activity task scheduled event identifier.
+     */
+    public String getId( ) {
+      return id;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass() != o.getClass() ) return false;
+
+      final PendingTimeout that = (PendingTimeout) o;
+
+      return type == that.type &&
+          Objects.equals( accountNumber, that.accountNumber ) &&
+          Objects.equals( domainUuid, that.domainUuid ) &&
+          Objects.equals( runId, that.runId ) &&
+          Objects.equals( id, that.id );
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash( type, accountNumber, domainUuid, runId, id );
+    }
+
+    @Override
+    public String toString( ) {
+      return MoreObjects.toStringHelper( this )
+          .add( "type", type )
+          .add( "accountNumber", accountNumber )
+          .add( "domainUuid", domainUuid )
+          .add( "runId", runId )
+          .add( "id", id )
+          .toString( );
+    }
+  }
+}
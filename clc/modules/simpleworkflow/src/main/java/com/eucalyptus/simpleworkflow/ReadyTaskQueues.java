@@ -0,0 +1,259 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import com.eucalyptus.simpleworkflow.NotifyClient.NotifyTaskList;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * In-memory queues of decision and activity tasks ready for pollers.
+ *
+ * Queues are keyed by account, domain, task type and task list. A queue is
+ * loaded from the database on first use and is then maintained as tasks are
+ * scheduled on this host. The queue is reloaded when it is marked stale,
+ * when it is empty and a task list notification was received (tasks may be
+ * scheduled on another host) and periodically as a fallback. Queues that
+ * are not polled are discarded.
+ *
+ * Queued tasks are candidates only, pollers must verify that a task is
+ * still pending when taking it.
+ */
+public class ReadyTaskQueues {
+
+  private static final ConcurrentMap<NotifyTaskList,ReadyTaskQueue> queues = Maps.newConcurrentMap( );
+
+  /**
+   * Poll for the next candidate task, loading the queue if necessary.
+   *
+   * @param taskList The task list to poll
+   * @param loader Supplier for the pending tasks in creation order
+   * @return The task or null if there are no ready tasks
+   */
+  @Nullable
+  public static ReadyTask poll( final NotifyTaskList taskList,
+                                final Supplier<List<ReadyTask>> loader ) {
+    return queues.computeIfAbsent( taskList, key -> new ReadyTaskQueue( ) ).poll( loader );
+  }
+
+  /**
+   * Add newly scheduled tasks to the queue for the task list.
+   *
+   * If the scheduled tasks are not known the queue is marked stale.
+   */
+  public static void offer( final NotifyTaskList taskList,
+                            final Collection<ReadyTask> tasks ) {
+    final ReadyTaskQueue queue = queues.get( taskList );
+    if ( queue != null ) {
+      if ( tasks.isEmpty( ) ) {
+        queue.invalidate( );
+      } else {
+        queue.offer( tasks );
+      }
+    }
+  }
+
+  /**
+   * Return a task that could not be taken to the end of the queue.
+   */
+  public static void requeue( final NotifyTaskList taskList,
+                              final ReadyTask task ) {
+    final ReadyTaskQueue queue = queues.get( taskList );
+    if ( queue != null ) {
+      queue.offer( Collections.singleton( task ) );
+    }
+  }
+
+  /**
+   * Note a notification for the task list, the source may be another host.
+   */
+  public static void notified( final NotifyTaskList taskList ) {
+    final ReadyTaskQueue queue = queues.get( taskList );
+    if ( queue != null ) {
+      queue.notified( );
+    }
+  }
+
+  /**
+   * Mark the queue for the task list as requiring a reload.
+   */
+  public static void invalidate( final NotifyTaskList taskList ) {
+    final ReadyTaskQueue queue = queues.get( taskList );
+    if ( queue != null ) {
+      queue.invalidate( );
+    }
+  }
+
+  /**
+   * Discard queues not polled since the given time.
+   */
+  public static void evictIdle( final long polledBefore ) {
+    for ( final Map.Entry<NotifyTaskList,ReadyTaskQueue> entry : queues.entrySet( ) ) {
+      if ( entry.getValue( ).idleSince( polledBefore ) ) {
+        queues.remove( entry.getKey( ), entry.getValue( ) );
+      }
+    }
+  }
+
+  /**
+   * Discard all queues, they will be rebuilt from the database on use.
+   */
+  public static void clear( ) {
+    queues.clear( );
+  }
+
+  public static final class ReadyTask {
+    private final String domainUuid;
+    private final String runId;
+    private final Long scheduledEventId;
+
+    private ReadyTask( final String domainUuid,
+                       final String runId,
+                       final Long scheduledEventId ) {
+      this.domainUuid = domainUuid;
+      this.runId = runId;
+      this.scheduledEventId = scheduledEventId;
+    }
+
+    public static ReadyTask decision( final String domainUuid,
+                                      final String runId ) {
+      return new ReadyTask( domainUuid, runId, null );
+    }
+
+    public static ReadyTask activity( final String domainUuid,
+                                      final String runId,
+                                      final Long scheduledEventId ) {
+      return new ReadyTask( domainUuid, runId, scheduledEventId );
+    }
+
+    public String getDomainUuid( ) {
+      return domainUuid;
+    }
+
+    public String getRunId( ) {
+      return runId;
+    }
+
+    @Nullable
+    public Long getScheduledEventId( ) {
+      return scheduledEventId;
+    }
+
+    @SuppressWarnings( "RedundantIfStatement" )
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass() != o.getClass() ) return false;
+
+      final ReadyTask readyTask = (ReadyTask) o;
+
+      if ( !domainUuid.equals( readyTask.domainUuid ) ) return false;
+      if ( !runId.equals( readyTask.runId ) ) return false;
+      if ( scheduledEventId != null ? !scheduledEventId.equals( readyTask.scheduledEventId ) : readyTask.scheduledEventId != null ) return false;
+
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = domainUuid.hashCode();
+      result = 31 * result + runId.hashCode();
+      result = 31 * result + ( scheduledEventId != null ? scheduledEventId.hashCode() : 0 );
+      return result;
+    }
+
+    @Override
+    public String toString( ) {
+      return MoreObjects.toStringHelper( this )
+          .omitNullValues( )
+          .add( "domainUuid", domainUuid )
+          .add( "runId", runId )
+          .add( "scheduledEventId", scheduledEventId )
+          .toString( );
+    }
+  }
+
+  private static final class ReadyTaskQueue {
+    private final Deque<ReadyTask> tasks = new ArrayDeque<>( );
+    private final Set<ReadyTask> queued = Sets.newHashSet( );
+    private boolean stale = true;
+    private boolean notified = false;
+    private long loaded = 0L;
+    private long polled = System.currentTimeMillis( );
+
+    synchronized ReadyTask poll( final Supplier<List<ReadyTask>> loader ) {
+      final long now = System.currentTimeMillis( );
+      polled = now;
+      if ( stale || ( notified && tasks.isEmpty( ) ) ||
+          ( now - loaded ) > SimpleWorkflowProperties.getReadyTaskQueueRefreshDurationMillis( ) ) {
+        final List<ReadyTask> pending = loader.get( );
+        stale = false;
+        notified = false;
+        loaded = now;
+        offer( pending );
+      }
+      final ReadyTask task = tasks.pollFirst( );
+      if ( task != null ) {
+        queued.remove( task );
+      }
+      return task;
+    }
+
+    synchronized void offer( final Collection<ReadyTask> readyTasks ) {
+      for ( final ReadyTask task : readyTasks ) {
+        if ( queued.add( task ) ) {
+          tasks.addLast( task );
+        }
+      }
+    }
+
+    synchronized boolean idleSince( final long timestamp ) {
+      return polled < timestamp;
+    }
+
+    synchronized void notified( ) {
+      notified = true;
+    }
+
+    synchronized void invalidate( ) {
+      stale = true;
+    }
+  }
+}
@@ -100,6 +100,36 @@ public class SimpleWorkflowProperties {
       changeListener = SimpleWorkflowIntervalPropertyChangeListener.class )
   public static volatile String deprecatedDomainRetentionDuration = "1d";
 
+  @ConfigurableField(
+      initial = "1m",
+      description = "Maximum time before a task list ready queue is reloaded.",
+      changeListener = SimpleWorkflowIntervalPropertyChangeListener.class )
+  public static volatile String readyTaskQueueRefreshDuration = "1m";
+
+  @ConfigurableField(
+      initial = "10m",
+      description = "Time after which an unused task list ready queue is discarded.",
+      changeListener = SimpleWorkflowIntervalPropertyChangeListener.class )
+  public static volatile String readyTaskQueueIdleDuration = "10m";
+
+  @ConfigurableField( initial = "10", description = "Maximum number of ready tasks tried for each task poll." )
+  public static volatile int taskPollAttempts = 10;
+
+  @ConfigurableField(
+      initial = "500ms",
+      description = "Resolution for timer, activity task and workflow execution timeouts.",
+      changeListener = SimpleWorkflowIntervalPropertyChangeListener.class )
+  public static volatile String timeoutTickDuration = "500ms";
+
+  @ConfigurableField(
+      initial = "30s",
+      description = "Period ahead for which pending timeouts are loaded.",
+      changeListener = SimpleWorkflowIntervalPropertyChangeListener.class )
+  public static volatile String timeoutLookaheadDuration = "30s";
+
+  @ConfigurableField( initial = "50000", description = "Maximum number of workflow history events cached for decision tasks." )
+  public static volatile int historyEventCacheSize = 50000;
+
   @ConfigurableField(
       initial = "",
       description = "Configuration for simple workflow clients",
@@ -121,6 +151,18 @@ public class SimpleWorkflowProperties {
   private static AtomicLong deprecatedDomainRetentionDurationMillis =
       new AtomicLong( Intervals.parse( deprecatedDomainRetentionDuration, TimeUnit.DAYS.toMillis( 1 ) ) );
 
+  private static AtomicLong readyTaskQueueRefreshDurationMillis =
+      new AtomicLong( Intervals.parse( readyTaskQueueRefreshDuration, TimeUnit.MINUTES.toMillis( 1 ) ) );
+
+  private static AtomicLong readyTaskQueueIdleDurationMillis =
+      new AtomicLong( Intervals.parse( readyTaskQueueIdleDuration, TimeUnit.MINUTES.toMillis( 10 ) ) );
+
+  private static AtomicLong timeoutTickDurationMillis =
+      new AtomicLong( Intervals.parse( timeoutTickDuration, 500L ) );
+
+  private static AtomicLong timeoutLookaheadDurationMillis =
+      new AtomicLong( Intervals.parse( timeoutLookaheadDuration, TimeUnit.SECONDS.toMillis( 30 ) ) );
+
   public static boolean isSystemOnly() {
     return systemOnly;
   }
@@ -169,6 +211,30 @@ public class SimpleWorkflowProperties {
     return deprecatedDomainRetentionDurationMillis.get();
   }
 
+  public static long getReadyTaskQueueRefreshDurationMillis() {
+    return readyTaskQueueRefreshDurationMillis.get();
+  }
+
+  public static long getReadyTaskQueueIdleDurationMillis() {
+    return readyTaskQueueIdleDurationMillis.get();
+  }
+
+  public static int getTaskPollAttempts() {
+    return Math.max( 1, taskPollAttempts );
+  }
+
+  public static long getTimeoutTickDurationMillis() {
+    return Math.max( 1L, timeoutTickDurationMillis.get() );
+  }
+
+  public static long getTimeoutLookaheadDurationMillis() {
+    return timeoutLookaheadDurationMillis.get();
+  }
+
+  public static int getHistoryEventCacheSize() {
+    return Math.max( 0, historyEventCacheSize );
+  }
+
   public static final class SimpleWorkflowIntervalPropertyChangeListener implements PropertyChangeListener {
     @Override
     public void fireChange( final ConfigurableProperty configurableProperty,
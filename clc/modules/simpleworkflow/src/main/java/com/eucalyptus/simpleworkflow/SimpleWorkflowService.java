@@ -35,6 +35,7 @@ import static com.eucalyptus.simpleworkflow.WorkflowExecutions.WorkflowHistoryEv
 import static com.eucalyptus.simpleworkflow.common.model.ScheduleActivityTaskFailedCause.*;
 import java.lang.System;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Deque;
@@ -58,6 +59,7 @@ import com.eucalyptus.auth.AuthQuotaException;
 import com.eucalyptus.auth.principal.AccountFullName;
 import com.eucalyptus.auth.principal.UserFullName;
 import com.eucalyptus.bootstrap.OrderedShutdown;
+import com.eucalyptus.component.Topology;
 import com.eucalyptus.component.annotation.ComponentNamed;
 import com.eucalyptus.context.Context;
 import com.eucalyptus.context.Contexts;
@@ -69,6 +71,8 @@ import com.eucalyptus.event.ClockTick;
 import com.eucalyptus.event.EventListener;
 import com.eucalyptus.event.Listeners;
 import com.eucalyptus.simpleworkflow.NotifyClient.NotifyTaskList;
+import com.eucalyptus.simpleworkflow.ReadyTaskQueues.ReadyTask;
+import com.eucalyptus.simpleworkflow.common.SimpleWorkflow;
 import com.eucalyptus.simpleworkflow.common.SimpleWorkflowMetadatas;
 import com.eucalyptus.simpleworkflow.common.model.*;
 import com.eucalyptus.simpleworkflow.tokens.TaskToken;
@@ -90,12 +94,13 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
-import com.google.common.collect.Collections2;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
+import com.google.common.collect.SetMultimap;
 
 /**
  *
@@ -832,7 +837,12 @@ public class SimpleWorkflowService {
       }
     }, WorkflowExecution.class, request.getWorkflowId( ) );
 
-    notifyTaskList( accountFullName, workflowExecution.getDomainName( ), "decision", workflowExecution.getTaskList( ) );
+    notifyTaskList(
+        accountFullName,
+        workflowExecution.getDomainName( ),
+        "decision",
+        workflowExecution.getTaskList( ),
+        Collections.singleton( ReadyTask.decision( workflowExecution.getDomainUuid( ), workflowExecution.getDisplayName( ) ) ) );
 
     final Run run = new Run( );
     run.setRunId( workflowExecution.getDisplayName() );
@@ -850,76 +860,87 @@ public class SimpleWorkflowService {
 
     final String domain = request.getDomain( );
     final String taskList = request.getTaskList( ).getName( );
+    final NotifyTaskList readyList = NotifyTaskList.of( accountFullName, domain, "activity", taskList );
+    final Supplier<List<ReadyTask>> readyTaskLoader = () -> {
+      final List<ActivityTask> pending = activityTasks.listByExample(
+          ActivityTask.examplePending( accountFullName, domain, taskList ),
+          Predicates.alwaysTrue( ),
+          Functions.identity( ) );
+      Collections.sort( pending, Ordering.natural( ).onResultOf( AbstractPersistentSupport.creation( ) ) );
+      return Lists.newArrayList( Lists.transform(
+          pending,
+          task -> ReadyTask.activity( task.getDomainUuid( ), task.getWorkflowRunId( ), task.getScheduledEventId( ) ) ) );
+    };
     final Callable<com.eucalyptus.simpleworkflow.common.model.ActivityTask> taskCallable =
         () -> {
           com.eucalyptus.simpleworkflow.common.model.ActivityTask activityTask = null;
-          final List<ActivityTask> pending = activityTasks.listByExample(
-              ActivityTask.examplePending( accountFullName, domain, taskList ),
-              accessible,
-              Functions.identity( ) );
-          Collections.sort( pending, Ordering.natural( ).onResultOf( AbstractPersistentSupport.creation( ) ) );
-          for ( final List<ActivityTask> pendingSegment : shufflePartitions( pending ) ) {
-            for ( final ActivityTask pendingTask : pendingSegment ) {
-              if ( activityTask != null ) break;
-              try ( final WorkflowLock lock = WorkflowLock.tryLock(
+          ReadyTask readyTask;
+          int attempts = SimpleWorkflowProperties.getTaskPollAttempts( );
+          while ( activityTask == null && attempts-- > 0 &&
+              ( readyTask = ReadyTaskQueues.poll( readyList, readyTaskLoader ) ) != null ) {
+            final ReadyTask pendingTask = readyTask;
+            try ( final WorkflowLock lock = WorkflowLock.tryLock(
+                accountFullName,
+                pendingTask.getDomainUuid( ),
+                pendingTask.getRunId( ) ) ) {
+              if ( !lock.isHeldByCurrentThread( ) ) {
+                ReadyTaskQueues.requeue( readyList, pendingTask );
+                continue;
+              }
+              activityTask = activityTasks.updateByExample(
+                  ActivityTask.exampleWithUniqueName( accountFullName, pendingTask.getRunId( ), pendingTask.getScheduledEventId( ) ),
                   accountFullName,
-                  pendingTask.getDomainUuid( ),
-                  pendingTask.getWorkflowRunId() ) ) {
-                if ( !lock.isHeldByCurrentThread( ) ) {
-                  continue;
-                }
-                activityTask = activityTasks.updateByExample(
-                    pendingTask,
-                    accountFullName,
-                    pendingTask.getDisplayName(),
-                    new Function<ActivityTask,com.eucalyptus.simpleworkflow.common.model.ActivityTask>(){
-                      @Nullable
-                      @Override
-                      public com.eucalyptus.simpleworkflow.common.model.ActivityTask apply( final ActivityTask activityTask ) {
-                        if ( activityTask.getState( ) == ActivityTask.State.Pending ) {
-                          final WorkflowExecution workflowExecution = activityTask.getWorkflowExecution( );
-                          final Long startedId = workflowExecution.addHistoryEvent(
-                              WorkflowHistoryEvent.create( workflowExecution, new ActivityTaskStartedEventAttributes( )
-                                  .withIdentity( request.getIdentity( ) )
-                                  .withScheduledEventId( activityTask.getScheduledEventId( ) )
-                              )
-                          );
-                          activityTask.setState( ActivityTask.State.Active );
-                          activityTask.setStartedEventId( startedId );
-
-                          return new com.eucalyptus.simpleworkflow.common.model.ActivityTask( )
-                              .withStartedEventId( startedId )
-                              .withInput( activityTask.getInput() )
-                              .withTaskToken( taskTokenManager.encryptTaskToken( new TaskToken(
-                                  accountFullName.getAccountNumber(),
-                                  workflowExecution.getDomain().getNaturalId(),
-                                  workflowExecution.getDisplayName(),
-                                  activityTask.getScheduledEventId(),
-                                  startedId,
-                                  System.currentTimeMillis(),
-                                  System.currentTimeMillis() ) ) )
-                              .withActivityId( activityTask.getDisplayName() )
-                              .withActivityType( new com.eucalyptus.simpleworkflow.common.model.ActivityType()
-                                  .withName( activityTask.getActivityType() )
-                                  .withVersion( activityTask.getActivityVersion() ) )
-                              .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution()
-                                  .withRunId( workflowExecution.getDisplayName() )
-                                  .withWorkflowId( workflowExecution.getWorkflowId() ) );
-                        }
-                        return null;
+                  pendingTask.getRunId( ) + "/" + pendingTask.getScheduledEventId( ),
+                  new Function<ActivityTask,com.eucalyptus.simpleworkflow.common.model.ActivityTask>(){
+                    @Nullable
+                    @Override
+                    public com.eucalyptus.simpleworkflow.common.model.ActivityTask apply( final ActivityTask activityTask ) {
+                      if ( !accessible.apply( activityTask ) ) {
+                        ReadyTaskQueues.requeue( readyList, pendingTask );
+                      } else if ( activityTask.getState( ) == ActivityTask.State.Pending ) {
+                        final WorkflowExecution workflowExecution = activityTask.getWorkflowExecution( );
+                        final Long startedId = workflowExecution.addHistoryEvent(
+                            WorkflowHistoryEvent.create( workflowExecution, new ActivityTaskStartedEventAttributes( )
+                                .withIdentity( request.getIdentity( ) )
+                                .withScheduledEventId( activityTask.getScheduledEventId( ) )
+                            )
+                        );
+                        activityTask.setState( ActivityTask.State.Active );
+                        activityTask.setStartedEventId( startedId );
+
+                        return new com.eucalyptus.simpleworkflow.common.model.ActivityTask( )
+                            .withStartedEventId( startedId )
+                            .withInput( activityTask.getInput() )
+                            .withTaskToken( taskTokenManager.encryptTaskToken( new TaskToken(
+                                accountFullName.getAccountNumber(),
+                                workflowExecution.getDomain().getNaturalId(),
+                                workflowExecution.getDisplayName(),
+                                activityTask.getScheduledEventId(),
+                                startedId,
+                                System.currentTimeMillis(),
+                                System.currentTimeMillis() ) ) )
+                            .withActivityId( activityTask.getDisplayName() )
+                            .withActivityType( new com.eucalyptus.simpleworkflow.common.model.ActivityType()
+                                .withName( activityTask.getActivityType() )
+                                .withVersion( activityTask.getActivityVersion() ) )
+                            .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution()
+                                .withRunId( workflowExecution.getDisplayName() )
+                                .withWorkflowId( workflowExecution.getWorkflowId() ) );
                       }
-                    });
-
-              } catch ( SwfMetadataException e ) {
-                logger.info( "Activity task for domain " + domain + ", list " + taskList + " not found" );
-              } catch ( Exception e ) {
-                if ( PersistenceExceptions.isStaleUpdate( e ) ) {
-                  logger.info( "Activity task for domain " + domain + ", list " + taskList + " already taken"  );
-                } else if (  PersistenceExceptions.isLockError( e ) ) {
-                  logger.info( "Activity task for domain " + domain + ", list " + taskList + " locking error" );
-                } else {
-                  logger.error( "Error taking activity task for domain " + domain + ", list " + taskList, e );
-                }
+                      return null;
+                    }
+                  });
+            } catch ( SwfMetadataNotFoundException e ) {
+              logger.info( "Activity task for domain " + domain + ", list " + taskList + " not found" );
+            } catch ( Exception e ) {
+              if ( PersistenceExceptions.isStaleUpdate( e ) ) {
+                logger.info( "Activity task for domain " + domain + ", list " + taskList + " already taken"  );
+              } else if (  PersistenceExceptions.isLockError( e ) ) {
+                logger.info( "Activity task for domain " + domain + ", list " + taskList + " locking error" );
+                ReadyTaskQueues.requeue( readyList, pendingTask );
+              } else {
+                logger.error( "Error taking activity task for domain " + domain + ", list " + taskList, e );
+                ReadyTaskQueues.requeue( readyList, pendingTask );
               }
             }
           }
@@ -1021,7 +1042,12 @@ public class SimpleWorkflowService {
       }
 
       if ( domainTaskListPair != null ) {
-        notifyTaskList( accountFullName, domainTaskListPair.getLeft(), "decision", domainTaskListPair.getRight() );
+        notifyTaskList(
+            accountFullName,
+            domainTaskListPair.getLeft( ),
+            "decision",
+            domainTaskListPair.getRight( ),
+            Collections.singleton( ReadyTask.decision( token.getDomainUuid( ), token.getRunId( ) ) ) );
       }
     } catch ( SwfMetadataNotFoundException e ) {
       throw new SimpleWorkflowClientException(
@@ -1098,7 +1124,12 @@ public class SimpleWorkflowService {
       }
 
       if ( workflowExecution.getDecisionStatus() == Pending ) {
-        notifyTaskList( accountFullName, workflowExecution.getDomainName(), "decision", workflowExecution.getTaskList() );
+        notifyTaskList(
+            accountFullName,
+            workflowExecution.getDomainName( ),
+            "decision",
+            workflowExecution.getTaskList( ),
+            Collections.singleton( ReadyTask.decision( token.getDomainUuid( ), token.getRunId( ) ) ) );
       }
     } catch( Exception e ) {
       throw handleException( e );
@@ -1172,7 +1203,12 @@ public class SimpleWorkflowService {
       }
 
       if ( workflowExecution.getDecisionStatus( ) == Pending ) {
-        notifyTaskList( accountFullName, workflowExecution.getDomainName(), "decision", workflowExecution.getTaskList() );
+        notifyTaskList(
+            accountFullName,
+            workflowExecution.getDomainName( ),
+            "decision",
+            workflowExecution.getTaskList( ),
+            Collections.singleton( ReadyTask.decision( token.getDomainUuid( ), token.getRunId( ) ) ) );
       }
     } catch( Exception e ) {
       throw handleException( e );
@@ -1190,85 +1226,123 @@ public class SimpleWorkflowService {
 
     final String domain = request.getDomain( );
     final String taskList = request.getTaskList( ).getName( );
-    final Callable<DecisionTask> taskCallable = () -> {
+    final int pageSize = WorkflowHistories.pageSize( request.getMaximumPageSize( ) );
+    if ( request.getNextPageToken( ) != null ) {
+      return request.reply( decisionTaskPage(
+          accountFullName,
+          accessible,
+          domain,
+          request.getNextPageToken( ),
+          MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ),
+          pageSize ) );
+    }
+    final NotifyTaskList readyList = NotifyTaskList.of( accountFullName, domain, "decision", taskList );
+    final Supplier<List<ReadyTask>> readyTaskLoader = () -> {
       final List<WorkflowExecution> pending = workflowExecutions.listByExample(
           WorkflowExecution.exampleWithPendingDecision( accountFullName, domain, taskList ),
-          accessible,
+          Predicates.alwaysTrue( ),
           Functions.identity( ) );
       Collections.sort( pending, Ordering.natural( ).onResultOf( AbstractPersistentSupport.creation( ) ) );
+      return Lists.newArrayList( Lists.transform(
+          pending,
+          execution -> ReadyTask.decision( execution.getDomainUuid( ), execution.getDisplayName( ) ) ) );
+    };
+    final Callable<DecisionTask> taskCallable = () -> {
       DecisionTask decisionTask = null;
-      for ( final List<WorkflowExecution> pendingSegment : shufflePartitions( pending ) ) {
-        for ( final WorkflowExecution execution : pendingSegment ) {
-          if ( decisionTask != null ) break;
-          try ( final WorkflowLock lock = WorkflowLock.tryLock(
+      ReadyTask readyTask;
+      int attempts = SimpleWorkflowProperties.getTaskPollAttempts( );
+      while ( decisionTask == null && attempts-- > 0 &&
+          ( readyTask = ReadyTaskQueues.poll( readyList, readyTaskLoader ) ) != null ) {
+        final ReadyTask execution = readyTask;
+        try ( final WorkflowLock lock = WorkflowLock.tryLock(
+            accountFullName,
+            execution.getDomainUuid( ),
+            execution.getRunId( ) ) ) {
+          if ( !lock.isHeldByCurrentThread( ) ) {
+            ReadyTaskQueues.requeue( readyList, execution );
+            continue;
+          }
+          decisionTask = workflowExecutions.updateByExample(
+              WorkflowExecution.exampleWithUniqueName( accountFullName, domain, execution.getRunId( ) ),
               accountFullName,
-              execution.getDomainUuid( ),
-              execution.getDisplayName( ) ) ) {
-            if ( !lock.isHeldByCurrentThread( ) ) {
-              continue;
-            }
-            decisionTask = workflowExecutions.updateByExample(
-                WorkflowExecution.exampleWithUniqueName( accountFullName, execution.getDomainName( ), execution.getDisplayName( ) ),
-                accountFullName,
-                execution.getDisplayName(),
-                new Function<WorkflowExecution,DecisionTask>( ) {
-                  @Nullable
-                  @Override
-                  public DecisionTask apply( final WorkflowExecution workflowExecution ) {
-                    if ( workflowExecution.getDecisionStatus( ) == Pending ) {
-                      final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-                      final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
-                      final WorkflowHistoryEvent scheduled = Iterables.find(
-                          reverseEvents,
-                          CollectionUtils.propertyPredicate( "DecisionTaskScheduled", EVENT_TYPE ) );
-                      final Optional<WorkflowHistoryEvent> previousStarted = Iterables.tryFind(
-                          reverseEvents,
-                          CollectionUtils.propertyPredicate( "DecisionTaskStarted", EVENT_TYPE ) );
-                      workflowExecution.setDecisionStatus( Active );
-                      workflowExecution.setDecisionTimestamp( new Date( ) );
-                      final WorkflowHistoryEvent started = WorkflowHistoryEvent.create(
-                          workflowExecution,
-                          new DecisionTaskStartedEventAttributes()
-                              .withIdentity( request.getIdentity() )
-                              .withScheduledEventId( scheduled.getEventId() ) );
-                      workflowExecution.addHistoryEvent( started );
-                      return new DecisionTask( )
-                          .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution( )
-                              .withWorkflowId( workflowExecution.getWorkflowId( ) )
-                              .withRunId( workflowExecution.getDisplayName( ) ) )
-                          .withWorkflowType( new com.eucalyptus.simpleworkflow.common.model.WorkflowType()
-                              .withName( workflowExecution.getWorkflowType( ).getDisplayName( ) )
-                              .withVersion( workflowExecution.getWorkflowType( ).getWorkflowVersion( ) ) )
-                          .withTaskToken( taskTokenManager.encryptTaskToken( new TaskToken(
-                              accountFullName.getAccountNumber( ),
-                              workflowExecution.getDomain( ).getNaturalId( ),
-                              workflowExecution.getDisplayName( ),
-                              scheduled.getEventId( ),
-                              started.getEventId( ),
-                              System.currentTimeMillis( ),
-                              System.currentTimeMillis( ) ) ) )  //TODO:STEVE: token expiry date
-                          .withStartedEventId( started.getEventId() )
-                          .withPreviousStartedEventId( previousStarted.transform( WorkflowExecutions.WorkflowHistoryEventLongFunctions.EVENT_ID ).or( 0L ) )
-                          .withEvents( Collections2.transform(
-                              MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ) ? reverseEvents : events,
-                              TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class )
-                          ) );
+              execution.getRunId( ),
+              new Function<WorkflowExecution,DecisionTask>( ) {
+                @Nullable
+                @Override
+                public DecisionTask apply( final WorkflowExecution workflowExecution ) {
+                  if ( !accessible.apply( workflowExecution ) ) {
+                    ReadyTaskQueues.requeue( readyList, execution );
+                  } else if ( workflowExecution.getDecisionStatus( ) == Pending ) {
+                    final WorkflowHistoryEvent scheduled =
+                        WorkflowHistories.latest( workflowExecution, "DecisionTaskScheduled", null );
+                    if ( scheduled == null ) {
+                      throw new IllegalStateException( "Decision task scheduled event not found for " + workflowExecution.getDisplayName( ) );
                     }
-                    return null;
+                    final WorkflowHistoryEvent previousStarted =
+                        WorkflowHistories.latest( workflowExecution, "DecisionTaskStarted", null );
+                    // read the page of existing events before adding the started event
+                    final boolean reverseOrder = MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE );
+                    final WorkflowHistories.HistoryPage page = WorkflowHistories.page(
+                        workflowExecution,
+                        null,
+                        reverseOrder,
+                        reverseOrder ? pageSize - 1 : pageSize );
+                    workflowExecution.setDecisionStatus( Active );
+                    workflowExecution.setDecisionTimestamp( new Date( ) );
+                    final WorkflowHistoryEvent started = WorkflowHistoryEvent.create(
+                        workflowExecution,
+                        new DecisionTaskStartedEventAttributes()
+                            .withIdentity( request.getIdentity() )
+                            .withScheduledEventId( scheduled.getEventId() ) );
+                    workflowExecution.addHistoryEvent( started );
+                    final List<HistoryEvent> events = Lists.newArrayList( page.getEvents( ) );
+                    Long nextEventId = page.getNextEventId( );
+                    if ( reverseOrder ) {
+                      events.add( 0, WorkflowHistories.historyEvent( started ) );
+                    } else if ( nextEventId == null && events.size( ) < pageSize ) {
+                      events.add( WorkflowHistories.historyEvent( started ) );
+                    } else if ( nextEventId == null ) {
+                      nextEventId = started.getEventId( );
+                    }
+                    final String taskToken = taskTokenManager.encryptTaskToken( new TaskToken(
+                        accountFullName.getAccountNumber( ),
+                        workflowExecution.getDomain( ).getNaturalId( ),
+                        workflowExecution.getDisplayName( ),
+                        scheduled.getEventId( ),
+                        started.getEventId( ),
+                        System.currentTimeMillis( ),
+                        System.currentTimeMillis( ) ) );  //TODO:STEVE: token expiry date
+                    return new DecisionTask( )
+                        .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution( )
+                            .withWorkflowId( workflowExecution.getWorkflowId( ) )
+                            .withRunId( workflowExecution.getDisplayName( ) ) )
+                        .withWorkflowType( new com.eucalyptus.simpleworkflow.common.model.WorkflowType()
+                            .withName( workflowExecution.getWorkflowType( ).getDisplayName( ) )
+                            .withVersion( workflowExecution.getWorkflowType( ).getWorkflowVersion( ) ) )
+                        .withTaskToken( taskToken )
+                        .withStartedEventId( started.getEventId() )
+                        .withPreviousStartedEventId( previousStarted == null ? 0L : previousStarted.getEventId( ) )
+                        .withEvents( events )
+                        .withNextPageToken( nextEventId == null ? null : WorkflowHistories.pageToken( taskToken, nextEventId ) );
                   }
-                } );
-          } catch ( Exception e ) {
-            final StaleObjectStateException stale = Exceptions.findCause( e, StaleObjectStateException.class );
-            if ( stale != null ) try {
-              Entities.evictCache( Class.forName( stale.getEntityName( ) ) );
-            } catch ( ClassNotFoundException ce ) { /* eviction failure */ }
-            if ( PersistenceExceptions.isStaleUpdate( e ) ) {
-              logger.info( "Decision task for workflow " + execution.getDisplayName() + " already taken" );
-            } else if (  PersistenceExceptions.isLockError( e ) ) {
-              logger.info( "Decision task for workflow " + execution.getDisplayName() + " locking error" );
-            } else {
-              logger.error( "Error taking decision task for workflow " + execution.getDisplayName( ), e );
-            }
+                  return null;
+                }
+              } );
+        } catch ( SwfMetadataNotFoundException e ) {
+          logger.info( "Decision task for workflow " + execution.getRunId( ) + " not found" );
+        } catch ( Exception e ) {
+          final StaleObjectStateException stale = Exceptions.findCause( e, StaleObjectStateException.class );
+          if ( stale != null ) try {
+            Entities.evictCache( Class.forName( stale.getEntityName( ) ) );
+          } catch ( ClassNotFoundException ce ) { /* eviction failure */ }
+          if ( PersistenceExceptions.isStaleUpdate( e ) ) {
+            logger.info( "Decision task for workflow " + execution.getRunId( ) + " already taken" );
+          } else if (  PersistenceExceptions.isLockError( e ) ) {
+            logger.info( "Decision task for workflow " + execution.getRunId( ) + " locking error" );
+            ReadyTaskQueues.requeue( readyList, execution );
+          } else {
+            logger.error( "Error taking decision task for workflow " + execution.getRunId( ), e );
+            ReadyTaskQueues.requeue( readyList, execution );
           }
         }
       }
@@ -1282,6 +1356,59 @@ public class SimpleWorkflowService {
     }
   }
 
+  /**
+   * Get a subsequent page of events for a decision task, the task list is not polled.
+   */
+  private DecisionTask decisionTaskPage( final AccountFullName accountFullName,
+                                         final Predicate<? super WorkflowExecution> accessible,
+                                         final String domain,
+                                         final String nextPageToken,
+                                         final boolean reverseOrder,
+                                         final int pageSize ) throws SimpleWorkflowException {
+    final Pair<String,Long> taskTokenEventIdPair = WorkflowHistories.decodePageToken( nextPageToken );
+    if ( taskTokenEventIdPair == null ) {
+      throw new SimpleWorkflowClientException( "ValidationError", "Invalid next page token" );
+    }
+    final String taskToken = taskTokenEventIdPair.getLeft( );
+    try {
+      final TaskToken token = taskTokenManager.decryptTaskToken( accountFullName.getAccountNumber( ), taskToken );
+      return workflowExecutions.lookupByExample(
+          WorkflowExecution.exampleWithUniqueName( accountFullName, domain, token.getRunId( ) ),
+          accountFullName,
+          token.getRunId( ),
+          accessible,
+          workflowExecution -> {
+            final WorkflowHistories.HistoryPage page = WorkflowHistories.page(
+                workflowExecution,
+                taskTokenEventIdPair.getRight( ),
+                reverseOrder,
+                pageSize );
+            final WorkflowHistoryEvent previousStarted =
+                WorkflowHistories.latest( workflowExecution, "DecisionTaskStarted", token.getStartedEventId( ) );
+            return new DecisionTask( )
+                .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution( )
+                    .withWorkflowId( workflowExecution.getWorkflowId( ) )
+                    .withRunId( workflowExecution.getDisplayName( ) ) )
+                .withWorkflowType( new com.eucalyptus.simpleworkflow.common.model.WorkflowType()
+                    .withName( workflowExecution.getWorkflowType( ).getDisplayName( ) )
+                    .withVersion( workflowExecution.getWorkflowType( ).getWorkflowVersion( ) ) )
+                .withTaskToken( taskToken )
+                .withStartedEventId( token.getStartedEventId( ) )
+                .withPreviousStartedEventId( previousStarted == null ? 0L : previousStarted.getEventId( ) )
+                .withEvents( page.getEvents( ) )
+                .withNextPageToken( page.getNextEventId( ) == null ?
+                    null :
+                    WorkflowHistories.pageToken( taskToken, page.getNextEventId( ) ) );
+          } );
+    } catch ( SwfMetadataNotFoundException e ) {
+      throw new SimpleWorkflowClientException(
+          "UnknownResourceFault",
+          "Unknown execution for next page token" );
+    } catch ( Exception e ) {
+      throw handleException( e );
+    }
+  }
+
   public SimpleWorkflowMessage respondDecisionTaskCompleted( final RespondDecisionTaskCompletedRequest request ) throws SimpleWorkflowException {
     final Context ctx = Contexts.lookup( );
     final UserFullName userFullName = ctx.getUserFullName( );
@@ -1300,6 +1427,7 @@ public class SimpleWorkflowService {
           Functions.identity( ) );
 
       final Set<Pair<String,String>> notificationTypeListPairs = Sets.newHashSet( );
+      final SetMultimap<Pair<String,String>,ReadyTask> notificationReadyTasks = HashMultimap.create( );
       try ( final WorkflowLock lock = WorkflowLock.lock( accountFullName, domain, token.getRunId() ) ) {
         workflowExecutions.withRetries( ).updateByExample(
           WorkflowExecution.exampleWithUniqueName( accountFullName, domain.getDisplayName( ), token.getRunId( ) ),
@@ -1312,6 +1440,7 @@ public class SimpleWorkflowService {
               if ( accessible.apply( workflowExecution ) ) {
                 // clear pending notifications in case of retries
                 notificationTypeListPairs.clear( );
+                notificationReadyTasks.clear( );
 
                 // verify token is valid
                 final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
@@ -1332,6 +1461,9 @@ public class SimpleWorkflowService {
                   workflowExecution.setDecisionStatus( Pending );
                   workflowExecution.setDecisionTimestamp( new Date( ) );
                   notificationTypeListPairs.add( Pair.pair( "decision", workflowExecution.getTaskList( ) ) );
+                  notificationReadyTasks.put(
+                      Pair.pair( "decision", workflowExecution.getTaskList( ) ),
+                      ReadyTask.decision( domain.getNaturalId( ), token.getRunId( ) ) );
                 }
 
                 // setup activity count supplier
@@ -1528,6 +1660,9 @@ public class SimpleWorkflowService {
                           deleteActivities( activityTasks, accountFullName, workflowExecution );
 
                           notificationTypeListPairs.add( Pair.pair( "decision", taskList ) );
+                          notificationReadyTasks.put(
+                              Pair.pair( "decision", taskList ),
+                              ReadyTask.decision( domain.getNaturalId( ), workflowExecutionContinued.getDisplayName( ) ) );
                         }
                       }
 
@@ -1708,6 +1843,9 @@ public class SimpleWorkflowService {
                         activityTaskScheduledCount++;
 
                         notificationTypeListPairs.add( Pair.pair( "activity", list ) );
+                        notificationReadyTasks.put(
+                            Pair.pair( "activity", list ),
+                            ReadyTask.activity( domain.getNaturalId( ), workflowExecution.getDisplayName( ), scheduledId ) );
                       } catch ( final ScheduleActivityTaskException e ) {
                         workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
                             workflowExecution,
@@ -1832,6 +1970,9 @@ public class SimpleWorkflowService {
                   workflowExecution.setDecisionStatus( Pending );
                   workflowExecution.setDecisionTimestamp( new Date( ) );
                   notificationTypeListPairs.add( Pair.pair( "decision", workflowExecution.getTaskList( ) ) );
+                  notificationReadyTasks.put(
+                      Pair.pair( "decision", workflowExecution.getTaskList( ) ),
+                      ReadyTask.decision( domain.getNaturalId( ), token.getRunId( ) ) );
                 } else {
                   workflowExecution.updateTimeStamps( );
                 }
@@ -1847,7 +1988,8 @@ public class SimpleWorkflowService {
                 accountFullName,
                 domain.getDisplayName( ),
                 notificationTypeListPair.getLeft( ),
-                notificationTypeListPair.getRight( ) );
+                notificationTypeListPair.getRight( ),
+                notificationReadyTasks.get( notificationTypeListPair ) );
           }
     } catch( Exception e ) {
       throw handleException( e );
@@ -1912,7 +2054,12 @@ public class SimpleWorkflowService {
       }
 
       if ( domainTaskListPair != null ) {
-        notifyTaskList( accountFullName, domainTaskListPair.getLeft( ), "decision", domainTaskListPair.getRight( ) );
+        notifyTaskList(
+            accountFullName,
+            domainTaskListPair.getLeft( ),
+            "decision",
+            domainTaskListPair.getRight( ),
+            Collections.singleton( ReadyTask.decision( domainUuidRunIdPair.getLeft( ), domainUuidRunIdPair.getRight( ) ) ) );
       }
     } catch ( SwfMetadataNotFoundException e ) {
       throw new SimpleWorkflowClientException(
@@ -1982,7 +2129,12 @@ public class SimpleWorkflowService {
       }
 
       if ( domainTaskListPair != null ) {
-        notifyTaskList( accountFullName, domainTaskListPair.getLeft( ), "decision", domainTaskListPair.getRight( ) );
+        notifyTaskList(
+            accountFullName,
+            domainTaskListPair.getLeft( ),
+            "decision",
+            domainTaskListPair.getRight( ),
+            Collections.singleton( ReadyTask.decision( domainUuidRunIdPair.getLeft( ), domainUuidRunIdPair.getRight( ) ) ) );
       }
     } catch ( SwfMetadataNotFoundException e ) {
       throw new SimpleWorkflowClientException(
@@ -2062,21 +2214,35 @@ public class SimpleWorkflowService {
     final Predicate<? super WorkflowExecution> accessible =
         SimpleWorkflowMetadatas.filteringFor( WorkflowExecution.class ).byPrivileges( ).buildPredicate( );
 
+    final String runId = request.getExecution( ).getRunId( );
+    final Long fromEventId;
+    if ( request.getNextPageToken( ) != null ) {
+      final Pair<String,Long> runIdEventIdPair = WorkflowHistories.decodePageToken( request.getNextPageToken( ) );
+      if ( runIdEventIdPair == null || !runIdEventIdPair.getLeft( ).equals( runId ) ) {
+        throw new SimpleWorkflowClientException( "ValidationError", "Invalid next page token" );
+      }
+      fromEventId = runIdEventIdPair.getRight( );
+    } else {
+      fromEventId = null;
+    }
+    final boolean reverseOrder = MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE );
+    final int pageSize = WorkflowHistories.pageSize( request.getMaximumPageSize( ) );
+
     final History history;
     try {
       history = workflowExecutions.lookupByExample(
-          WorkflowExecution.exampleWithName( accountFullName, request.getExecution().getRunId( ) ),
+          WorkflowExecution.exampleWithName( accountFullName, runId ),
           accountFullName,
-          request.getExecution().getRunId(),
+          runId,
           accessible,
           workflowExecution -> {
-            final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-            final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
+            final WorkflowHistories.HistoryPage page =
+                WorkflowHistories.page( workflowExecution, fromEventId, reverseOrder, pageSize );
             return new History( )
-                .withEvents( Collections2.transform(
-                    MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ) ? reverseEvents : events,
-                    TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class )
-                ) );
+                .withEvents( page.getEvents( ) )
+                .withNextPageToken( page.getNextEventId( ) == null ?
+                    null :
+                    WorkflowHistories.pageToken( runId, page.getNextEventId( ) ) );
           }
       );
     } catch ( SwfMetadataNotFoundException e ) {
@@ -2268,12 +2434,6 @@ public class SimpleWorkflowService {
     return MoreObjects.firstNonNull( value, defaultValue );
   }
 
-  private static <T> Iterable<List<T>> shufflePartitions( final List<T> pending ) {
-    return (Iterable<List<T>>) Iterables.transform(
-        Iterables.partition( pending, 40 ),
-        segment -> { List<T> copy = Lists.newArrayList( segment ); Collections.shuffle( copy ); return copy; } );
-  }
-
   private static void noteTaskListActivity( final AccountFullName accountFullName,
                                             final String domain,
                                             final String type,
@@ -2301,6 +2461,19 @@ public class SimpleWorkflowService {
                                       final String domain,
                                       final String type,
                                       final String taskList ) {
+    notifyTaskList( accountFullName, domain, type, taskList, Collections.<ReadyTask>emptySet( ) );
+  }
+
+  /**
+   * Notify for the task list, ready tasks are queued or if not known the
+   * ready queue for the list is reloaded on next use.
+   */
+  private static void notifyTaskList( final AccountFullName accountFullName,
+                                      final String domain,
+                                      final String type,
+                                      final String taskList,
+                                      final Collection<ReadyTask> readyTasks ) {
+    ReadyTaskQueues.offer( NotifyTaskList.of( accountFullName, domain, type, taskList ), readyTasks );
     noteTaskListActivity( accountFullName, domain, type, taskList );
     NotifyClient.notifyTaskList( accountFullName, domain, type, taskList );
   }
@@ -2342,6 +2515,7 @@ public class SimpleWorkflowService {
                 (notified) -> {
                   try {
                     if (notified) {
+                      ReadyTaskQueues.notified( NotifyTaskList.of( accountFullName, domain, type, taskList ) );
                       final SimpleWorkflowMessage taskResponse = responseCallable.call();
                       if (taskResponse != null) {
                         taskResponse.setCorrelationId(correlationId);
@@ -2406,6 +2580,12 @@ public class SimpleWorkflowService {
     public void fireEvent( final ClockTick event ) {
       taskListActivityCleanup( System.currentTimeMillis( ) - TimeUnit.SECONDS.toMillis( 10 ) );
       pollerCleanup( System.currentTimeMillis( ) );
+      if ( !Topology.isEnabledLocally( SimpleWorkflow.class ) ) {
+        ReadyTaskQueues.clear( );
+      } else {
+        ReadyTaskQueues.evictIdle(
+            System.currentTimeMillis( ) - SimpleWorkflowProperties.getReadyTaskQueueIdleDurationMillis( ) );
+      }
     }
   }
 
@@ -0,0 +1,239 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.eucalyptus.util.Pair;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Hierarchical timing wheel for keyed timeouts.
+ *
+ * Each level has 2^bits slots, a slot on level n covers 2^(n*bits) ticks.
+ * Timeouts are placed on the lowest level that covers them and are moved
+ * down a level when the wheel reaches their slot, timeouts beyond the range
+ * of the top level are parked in its last slot and re-placed on cascade. So
+ * advancing the wheel only touches slots that are reached, never all the
+ * scheduled timeouts.
+ *
+ * Due times are rounded up to a tick so a timeout is never returned before
+ * it is due, but may be returned up to a tick late. Scheduling a key that is
+ * already present replaces its timeout. Timeouts scheduled for a time the
+ * wheel has passed are returned on the next advance.
+ *
+ * This class is not thread safe.
+ */
+public final class TimeoutWheel<K> {
+
+  private final long tickMillis;
+  private final int bits;
+  private final int levels;
+  private final int mask;
+  private final List<List<Set<K>>> wheel;
+  private final Map<K,Entry> entries = Maps.newHashMap( );
+  private Set<K> expired = Sets.newHashSet( );
+  private long nextTick;
+
+  /**
+   * Create a wheel with four levels of 256 slots.
+   *
+   * @param tickMillis The wheel resolution
+   * @param now The current time
+   */
+  public TimeoutWheel( final long tickMillis,
+                       final long now ) {
+    this( tickMillis, 8, 4, now );
+  }
+
+  public TimeoutWheel( final long tickMillis,
+                       final int bits,
+                       final int levels,
+                       final long now ) {
+    if ( tickMillis < 1 ) throw new IllegalArgumentException( "Invalid tick: " + tickMillis );
+    if ( bits < 1 || levels < 1 || ( bits * levels ) > 48 ) {
+      throw new IllegalArgumentException( "Invalid wheel size: " + bits + "/" + levels );
+    }
+    this.tickMillis = tickMillis;
+    this.bits = bits;
+    this.levels = levels;
+    this.mask = ( 1 << bits ) - 1;
+    this.wheel = Lists.newArrayListWithCapacity( levels );
+    for ( int level = 0; level < levels; level++ ) {
+      final List<Set<K>> slots = Lists.newArrayListWithCapacity( 1 << bits );
+      for ( int slot = 0; slot <= mask; slot++ ) {
+        slots.add( Sets.<K>newHashSet( ) );
+      }
+      wheel.add( slots );
+    }
+    this.nextTick = now / tickMillis;
+  }
+
+  /**
+   * Schedule or reschedule the timeout for the given key.
+   *
+   * @param key The key
+   * @param due The time at which the timeout is due
+   */
+  public void schedule( final K key, final long due ) {
+    remove( key );
+    final Entry entry = new Entry( due );
+    entries.put( key, entry );
+    place( key, entry );
+  }
+
+  /**
+   * Schedule the timeout for the given key if not already scheduled.
+   *
+   * @return True if scheduled
+   */
+  public boolean scheduleIfAbsent( final K key, final long due ) {
+    if ( entries.containsKey( key ) ) {
+      return false;
+    }
+    schedule( key, due );
+    return true;
+  }
+
+  /**
+   * Remove any timeout for the given key.
+   *
+   * @return True if a timeout was removed
+   */
+  public boolean remove( final K key ) {
+    final Entry entry = entries.remove( key );
+    if ( entry != null ) {
+      entry.slot.remove( key );
+    }
+    return entry != null;
+  }
+
+  /**
+   * Advance the wheel to the given time, removing timeouts that are due.
+   *
+   * @param now The current time
+   * @return The due keys with their scheduled times, in tick order
+   */
+  public List<Pair<K,Long>> advance( final long now ) {
+    final List<Pair<K,Long>> due = Lists.newArrayList( );
+    if ( !expired.isEmpty( ) ) {
+      for ( final K key : expired ) {
+        due.add( Pair.pair( key, entries.remove( key ).due ) );
+      }
+      expired = Sets.newHashSet( );
+    }
+    final long targetTick = now / tickMillis;
+    while ( nextTick <= targetTick ) {
+      final long tick = nextTick;
+      for ( int level = levels - 1; level > 0; level-- ) {
+        if ( ( tick & ( ( 1L << ( bits * level ) ) - 1 ) ) == 0 ) {
+          cascade( level, (int) ( ( tick >>> ( bits * level ) ) & mask ) );
+        }
+      }
+      final List<Set<K>> slots = wheel.get( 0 );
+      final int index = (int) ( tick & mask );
+      final Set<K> slot = slots.get( index );
+      if ( !slot.isEmpty( ) ) {
+        slots.set( index, Sets.<K>newHashSet( ) );
+        for ( final K key : slot ) {
+          final Entry entry = entries.get( key );
+          if ( entry.tick <= tick ) {
+            entries.remove( key );
+            due.add( Pair.pair( key, entry.due ) );
+          } else {
+            place( key, entry );
+          }
+        }
+      }
+      nextTick = tick + 1;
+    }
+    return due;
+  }
+
+  public long getTickMillis( ) {
+    return tickMillis;
+  }
+
+  public int size( ) {
+    return entries.size( );
+  }
+
+  public void clear( ) {
+    entries.clear( );
+    expired.clear( );
+    for ( final List<Set<K>> slots : wheel ) {
+      for ( final Set<K> slot : slots ) {
+        slot.clear( );
+      }
+    }
+  }
+
+  private void cascade( final int level, final int index ) {
+    final List<Set<K>> slots = wheel.get( level );
+    final Set<K> slot = slots.get( index );
+    if ( !slot.isEmpty( ) ) {
+      slots.set( index, Sets.<K>newHashSet( ) );
+      for ( final K key : slot ) {
+        place( key, entries.get( key ) );
+      }
+    }
+  }
+
+  private void place( final K key, final Entry entry ) {
+    if ( entry.tick < nextTick ) {
+      expired.add( key );
+      entry.slot = expired;
+      return;
+    }
+    final long tick = entry.tick;
+    final long delta = tick - nextTick;
+    int level = 0;
+    while ( level < ( levels - 1 ) && delta >= ( 1L << ( bits * ( level + 1 ) ) ) ) {
+      level++;
+    }
+    final long slotTick = Math.min( tick, nextTick + ( 1L << ( bits * levels ) ) - 1 );
+    final Set<K> slot = wheel.get( level ).get( (int) ( ( slotTick >>> ( bits * level ) ) & mask ) );
+    slot.add( key );
+    entry.slot = slot;
+  }
+
+  private final class Entry {
+    private final long due;
+    private final long tick;
+    private Set<K> slot;
+
+    private Entry( final long due ) {
+      this.due = due;
+      this.tick = ( due + tickMillis - 1 ) / tickMillis;
+    }
+  }
+}
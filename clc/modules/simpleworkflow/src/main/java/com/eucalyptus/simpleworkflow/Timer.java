@@ -37,6 +37,7 @@ import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PrePersist;
+import javax.persistence.PreRemove;
 import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
@@ -246,5 +247,16 @@ public class Timer extends AbstractOwnedPersistent implements SimpleWorkflowMeta
   protected void updateTimeout( ) {
     updateTimeStamps( );
     setTimeoutTimestamp( calculateTimeout( ) );
+    PendingTimeouts.schedule( pendingTimeout( ), getTimeoutTimestamp( ) );
+  }
+
+  @PreRemove
+  protected void removeTimeout( ) {
+    PendingTimeouts.remove( pendingTimeout( ) );
+  }
+
+  private PendingTimeouts.PendingTimeout pendingTimeout( ) {
+    return PendingTimeouts.PendingTimeout.timer(
+        getOwnerAccountNumber( ), getDomainUuid( ), getWorkflowRunId( ), getDisplayName( ) );
   }
 }
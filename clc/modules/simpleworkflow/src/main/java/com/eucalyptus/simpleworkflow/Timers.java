@@ -44,7 +44,8 @@ public interface Timers {
                              Predicate<? super Timer> filter,
                              Function<? super Timer,T> transform ) throws SwfMetadataException;
 
-  <T> List<T> listFired( Function<? super Timer,T> transform ) throws SwfMetadataException;
+  <T> List<T> listFired( long timestamp,
+                         Function<? super Timer,T> transform ) throws SwfMetadataException;
 
   <T> T updateByExample( Timer example,
                          OwnerFullName ownerFullName,
@@ -54,6 +54,9 @@ import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Transient;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
 import org.hibernate.annotations.Type;
 import com.eucalyptus.component.ComponentIds;
 import com.eucalyptus.entities.AuxiliaryDatabaseObject;
@@ -196,8 +199,12 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
 
   @OneToMany( fetch = FetchType.LAZY, cascade = { CascadeType.PERSIST, CascadeType.REMOVE }, orphanRemoval = true, mappedBy = "workflowExecution" )
   @OrderBy( "eventOrder" )
+  @LazyCollection( LazyCollectionOption.EXTRA )
   private List<WorkflowHistoryEvent> workflowHistory;
 
+  @Transient
+  private Long workflowHistorySize;
+
   @OneToMany( fetch = FetchType.LAZY, cascade = { CascadeType.REMOVE }, orphanRemoval = true, mappedBy = "workflowExecution" )
   @OrderColumn( name = "scheduled_event_id" )
   private List<ActivityTask> activityTasks;
@@ -352,9 +359,15 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
   public Long addHistoryEvent( final WorkflowHistoryEvent event ) throws WorkflowHistorySizeLimitException {
     // Order would be filled in on save, but we may need the event
     // identifier before the entity is stored
-    event.setEventOrder( (long) workflowHistory.size( ) );
+    // History is extra lazy so the size is queried (once) rather than
+    // loading all events
+    if ( workflowHistorySize == null ) {
+      workflowHistorySize = (long) workflowHistory.size( );
+    }
+    event.setEventOrder( workflowHistorySize );
     workflowHistory.add( event );
-    if ( workflowHistory.size( ) > SimpleWorkflowProperties.getWorkflowExecutionHistorySize() ) {
+    workflowHistorySize = workflowHistorySize + 1;
+    if ( workflowHistorySize > SimpleWorkflowProperties.getWorkflowExecutionHistorySize() ) {
       throw new WorkflowHistorySizeLimitException( this );
     }
     updateTimeStamps( ); // ensure workflow version incremented
@@ -545,6 +558,7 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
 
   public void setWorkflowHistory( final List<WorkflowHistoryEvent> workflowHistory ) {
     this.workflowHistory = workflowHistory;
+    this.workflowHistorySize = null;
   }
 
   @PreUpdate
@@ -552,6 +566,9 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
   protected void updateTimeout( ) {
     updateTimeStamps( );
     setTimeoutTimestamp( calculateNextTimeout( ) );
+    PendingTimeouts.schedule(
+        PendingTimeouts.PendingTimeout.workflowExecution( getOwnerAccountNumber( ), getDomainUuid( ), getDisplayName( ) ),
+        getState( ) == ExecutionStatus.Open ? getTimeoutTimestamp( ) : null );
   }
 
   public static final class WorkflowHistorySizeLimitException extends RuntimeException {
@@ -0,0 +1,223 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow;
+
+import static com.eucalyptus.simpleworkflow.WorkflowExecutions.WorkflowHistoryEventToHistoryEventTransform;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.simpleworkflow.common.model.HistoryEvent;
+import com.eucalyptus.util.Exceptions;
+import com.eucalyptus.util.Pair;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Longs;
+
+/**
+ * Paged access to workflow execution history.
+ *
+ * Pages are read using range queries on the event order so only the
+ * requested events are loaded. Converted history events are cached by run
+ * identifier and event identifier, events are immutable once stored so
+ * repeated polls for an execution reuse previously converted events.
+ *
+ * Query methods must be called in a transaction for the workflow execution.
+ */
+public class WorkflowHistories {
+
+  public static final int MAXIMUM_PAGE_SIZE = 1000;
+
+  private static final AtomicReference<Pair<Integer,Cache<Pair<String,Long>,HistoryEvent>>> historyEventCacheReference =
+      new AtomicReference<>( );
+
+  /**
+   * Get the page size to use for the requested maximum.
+   */
+  public static int pageSize( @Nullable final Integer maximumPageSize ) {
+    return maximumPageSize == null || maximumPageSize <= 0 || maximumPageSize > MAXIMUM_PAGE_SIZE ?
+        MAXIMUM_PAGE_SIZE :
+        maximumPageSize;
+  }
+
+  /**
+   * Get a page of history events for the execution.
+   *
+   * @param execution The workflow execution
+   * @param fromEventId The first event to include, null for the first (or last if reversed) event
+   * @param reverse True to page from the latest event
+   * @param pageSize The maximum number of events to include
+   * @return The page
+   */
+  public static HistoryPage page( final WorkflowExecution execution,
+                                  @Nullable final Long fromEventId,
+                                  final boolean reverse,
+                                  final int pageSize ) {
+    final Criteria criteria = Entities.createCriteria( WorkflowHistoryEvent.class )
+        .add( Restrictions.eq( "workflowExecution", execution ) )
+        .addOrder( reverse ? Order.desc( "eventOrder" ) : Order.asc( "eventOrder" ) )
+        .setMaxResults( pageSize + 1 );
+    if ( fromEventId != null ) {
+      criteria.add( reverse ?
+          Restrictions.le( "eventOrder", fromEventId - 1 ) :
+          Restrictions.ge( "eventOrder", fromEventId - 1 ) );
+    }
+    @SuppressWarnings( "unchecked" )
+    final List<WorkflowHistoryEvent> events = (List<WorkflowHistoryEvent>) criteria.list( );
+    final List<HistoryEvent> historyEvents = Lists.newArrayListWithCapacity( Math.min( pageSize, events.size( ) ) );
+    for ( final WorkflowHistoryEvent event : events.subList( 0, Math.min( pageSize, events.size( ) ) ) ) {
+      historyEvents.add( historyEvent( execution.getDisplayName( ), event ) );
+    }
+    return new HistoryPage(
+        historyEvents,
+        events.size( ) > pageSize ? events.get( pageSize ).getEventId( ) : null );
+  }
+
+  /**
+   * Get the latest event of the given type.
+   *
+   * @param execution The workflow execution
+   * @param eventType The event type
+   * @param beforeEventId Only events before this event are considered, null for any event
+   * @return The event or null if not found
+   */
+  @Nullable
+  public static WorkflowHistoryEvent latest( final WorkflowExecution execution,
+                                             final String eventType,
+                                             @Nullable final Long beforeEventId ) {
+    final Criteria criteria = Entities.createCriteria( WorkflowHistoryEvent.class )
+        .add( Restrictions.eq( "workflowExecution", execution ) )
+        .add( Restrictions.eq( "eventType", eventType ) )
+        .addOrder( Order.desc( "eventOrder" ) )
+        .setMaxResults( 1 );
+    if ( beforeEventId != null ) {
+      criteria.add( Restrictions.lt( "eventOrder", beforeEventId - 1 ) );
+    }
+    return (WorkflowHistoryEvent) criteria.uniqueResult( );
+  }
+
+  /**
+   * Convert an event that is not yet committed, the result is not cached.
+   */
+  public static HistoryEvent historyEvent( final WorkflowHistoryEvent event ) {
+    return WorkflowHistoryEventToHistoryEventTransform.INSTANCE.apply( event );
+  }
+
+  public static String pageToken( final String id,
+                                  final Long nextEventId ) {
+    return BaseEncoding.base64Url( ).encode( ( id + "/" + nextEventId ).getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  /**
+   * Decode a page token.
+   *
+   * @return The identifier and next event identifier, or null if the token is not valid
+   */
+  @Nullable
+  public static Pair<String,Long> decodePageToken( final String pageToken ) {
+    try {
+      final String token = new String( BaseEncoding.base64Url( ).decode( pageToken ), StandardCharsets.UTF_8 );
+      final int index = token.lastIndexOf( '/' );
+      final Long nextEventId = index > 0 ? Longs.tryParse( token.substring( index + 1 ) ) : null;
+      return nextEventId == null || nextEventId < 1 ?
+          null :
+          Pair.pair( token.substring( 0, index ), nextEventId );
+    } catch ( IllegalArgumentException e ) {
+      return null;
+    }
+  }
+
+  private static HistoryEvent historyEvent( final String runId,
+                                            final WorkflowHistoryEvent event ) {
+    try {
+      return historyEventCache( ).get(
+          Pair.pair( runId, event.getEventId( ) ),
+          () -> WorkflowHistoryEventToHistoryEventTransform.INSTANCE.apply( event ) );
+    } catch ( ExecutionException e ) {
+      throw Exceptions.toUndeclared( e.getCause( ) );
+    }
+  }
+
+  /**
+   * Get the history event cache, the cache is replaced if the configured size changes.
+   */
+  private static Cache<Pair<String,Long>,HistoryEvent> historyEventCache( ) {
+    Cache<Pair<String,Long>,HistoryEvent> cache;
+    final Pair<Integer,Cache<Pair<String,Long>,HistoryEvent>> cachePair = historyEventCacheReference.get( );
+    final int cacheSize = SimpleWorkflowProperties.getHistoryEventCacheSize( );
+    if ( cachePair == null || cacheSize != cachePair.getLeft( ) ) {
+      final Pair<Integer,Cache<Pair<String,Long>,HistoryEvent>> newCachePair =
+          Pair.pair( cacheSize, historyEventCache( cacheSize ) );
+      if ( historyEventCacheReference.compareAndSet( cachePair, newCachePair ) || cachePair == null ) {
+        cache = newCachePair.getRight( );
+      } else {
+        cache = cachePair.getRight( );
+      }
+    } else {
+      cache = cachePair.getRight( );
+    }
+    return cache;
+  }
+
+  private static Cache<Pair<String,Long>,HistoryEvent> historyEventCache( final int cacheSize ) {
+    return CacheBuilder.newBuilder( )
+        .maximumSize( cacheSize )
+        .expireAfterAccess( 10, TimeUnit.MINUTES )
+        .build( );
+  }
+
+  public static final class HistoryPage {
+    private final List<HistoryEvent> events;
+    private final Long nextEventId;
+
+    private HistoryPage( final List<HistoryEvent> events,
+                         @Nullable final Long nextEventId ) {
+      this.events = Collections.unmodifiableList( events );
+      this.nextEventId = nextEventId;
+    }
+
+    public List<HistoryEvent> getEvents( ) {
+      return events;
+    }
+
+    @Nullable
+    public Long getNextEventId( ) {
+      return nextEventId;
+    }
+  }
+}
@@ -51,11 +51,12 @@ public class PersistenceActivityTasks extends SwfPersistenceSupport<ActivityTask
     super( "activity-task" );
   }
 
-  public <T> List<T> listTimedOut( final Function<? super ActivityTask,T> transform ) throws SwfMetadataException {
+  public <T> List<T> listTimedOut( final long timestamp,
+                                   final Function<? super ActivityTask,T> transform ) throws SwfMetadataException {
     return listByExample(
         ActivityTask.exampleWithOwner( null ),
         Predicates.alwaysTrue(),
-        Restrictions.lt( "timeoutTimestamp", new Date( ) ),
+        Restrictions.lt( "timeoutTimestamp", new Date( timestamp ) ),
         Collections.<String,String>emptyMap( ),
         transform );
   }
@@ -51,11 +51,12 @@ public class PersistenceTimers extends SwfPersistenceSupport<SimpleWorkflowMetad
     super( "timer" );
   }
 
-  public <T> List<T> listFired( final Function<? super Timer,T> transform ) throws SwfMetadataException {
+  public <T> List<T> listFired( final long timestamp,
+                                final Function<? super Timer,T> transform ) throws SwfMetadataException {
     return listByExample(
         Timer.exampleWithOwner( null ),
         Predicates.alwaysTrue(),
-        Restrictions.lt( "timeoutTimestamp", new Date() ),
+        Restrictions.lt( "timeoutTimestamp", new Date( timestamp ) ),
         Collections.<String,String>emptyMap(),
         transform );
   }
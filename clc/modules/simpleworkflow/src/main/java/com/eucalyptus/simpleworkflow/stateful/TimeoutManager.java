@@ -29,6 +29,9 @@
 package com.eucalyptus.simpleworkflow.stateful;
 
 import static com.eucalyptus.simpleworkflow.NotifyClient.NotifyTaskList;
+import static com.eucalyptus.simpleworkflow.PendingTimeouts.PendingTimeout;
+import static com.eucalyptus.simpleworkflow.SimpleWorkflowProperties.getTimeoutLookaheadDurationMillis;
+import static com.eucalyptus.simpleworkflow.SimpleWorkflowProperties.getTimeoutTickDurationMillis;
 import static com.eucalyptus.simpleworkflow.SimpleWorkflowProperties.getWorkflowExecutionDurationMillis;
 import static com.eucalyptus.simpleworkflow.WorkflowExecution.DecisionStatus.Idle;
 import static com.eucalyptus.simpleworkflow.WorkflowExecution.DecisionStatus.Pending;
@@ -36,10 +39,14 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 import com.eucalyptus.simpleworkflow.common.stateful.PolledNotifications;
 import org.apache.log4j.Logger;
+import com.eucalyptus.auth.principal.AccountFullName;
 import com.eucalyptus.bootstrap.Bootstrap;
 import com.eucalyptus.component.Topology;
 import com.eucalyptus.entities.Entities;
@@ -53,12 +60,15 @@ import com.eucalyptus.simpleworkflow.ActivityTypes;
 import com.eucalyptus.simpleworkflow.Domain;
 import com.eucalyptus.simpleworkflow.Domains;
 import com.eucalyptus.simpleworkflow.NotifyClient;
+import com.eucalyptus.simpleworkflow.PendingTimeouts;
+import com.eucalyptus.simpleworkflow.ReadyTaskQueues;
 import com.eucalyptus.simpleworkflow.SwfMetadataException;
 import com.eucalyptus.simpleworkflow.SwfMetadataNotFoundException;
 import com.eucalyptus.simpleworkflow.Timer;
 import com.eucalyptus.simpleworkflow.Timers;
 import com.eucalyptus.simpleworkflow.WorkflowExecution;
 import com.eucalyptus.simpleworkflow.WorkflowExecutions;
+import com.eucalyptus.simpleworkflow.WorkflowHistories;
 import com.eucalyptus.simpleworkflow.WorkflowHistoryEvent;
 import com.eucalyptus.simpleworkflow.WorkflowLock;
 import com.eucalyptus.simpleworkflow.WorkflowType;
@@ -76,18 +86,23 @@ import com.eucalyptus.simpleworkflow.persist.PersistenceDomains;
 import com.eucalyptus.simpleworkflow.persist.PersistenceTimers;
 import com.eucalyptus.simpleworkflow.persist.PersistenceWorkflowExecutions;
 import com.eucalyptus.simpleworkflow.persist.PersistenceWorkflowTypes;
-import com.eucalyptus.util.CollectionUtils;
+import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.Exceptions;
 import com.eucalyptus.util.Pair;
+import com.eucalyptus.util.metrics.MonitoredAction;
+import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
-import com.google.common.base.Optional;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
+ * Timeout processing for timers, activity tasks, decision tasks and workflow
+ * executions.
  *
+ * Pending timeouts are tracked in memory and processed when due. Timeouts due
+ * within the look ahead period are loaded from the database on each clock
+ * tick, this covers timeouts from other hosts and takeover of timeout
+ * processing.
  */
 public class TimeoutManager {
 
@@ -100,76 +115,87 @@ public class TimeoutManager {
   private final Domains domains = new PersistenceDomains( );
   private final Timers timers = new PersistenceTimers( );
 
-  public void doTimeouts( ) {
-    timeoutActivityTasks( );
-    timeoutDecisionTasksAndWorkflows( );
+  /**
+   * Load timeouts that are due before the given time.
+   */
+  public void loadTimeouts( final long until ) {
+    try {
+      for ( final Pair<PendingTimeout,Date> timeout : timers.listFired( until, timer -> Pair.pair(
+          PendingTimeout.timer(
+              timer.getOwnerAccountNumber( ),
+              timer.getDomainUuid( ),
+              timer.getWorkflowRunId( ),
+              timer.getDisplayName( ) ),
+          timer.getTimeoutTimestamp( ) ) ) ) {
+        PendingTimeouts.scheduleIfAbsent( timeout.getLeft( ), timeout.getRight( ) );
+      }
+    } catch ( final SwfMetadataException e ) {
+      logger.error( "Error loading timer timeouts", e );
+    }
+
+    try {
+      for ( final Pair<PendingTimeout,Date> timeout : activityTasks.listTimedOut( until, task -> Pair.pair(
+          PendingTimeout.activityTask(
+              task.getOwnerAccountNumber( ),
+              task.getDomainUuid( ),
+              task.getWorkflowRunId( ),
+              task.getScheduledEventId( ) ),
+          task.getTimeoutTimestamp( ) ) ) ) {
+        PendingTimeouts.scheduleIfAbsent( timeout.getLeft( ), timeout.getRight( ) );
+      }
+    } catch ( final SwfMetadataException e ) {
+      logger.error( "Error loading activity task timeouts", e );
+    }
+
+    try {
+      for ( final Pair<PendingTimeout,Date> timeout : workflowExecutions.listTimedOut( until, workflowExecution -> Pair.pair(
+          PendingTimeout.workflowExecution(
+              workflowExecution.getOwnerAccountNumber( ),
+              workflowExecution.getDomainUuid( ),
+              workflowExecution.getDisplayName( ) ),
+          workflowTimeout( workflowExecution ) ) ) ) {
+        PendingTimeouts.scheduleIfAbsent( timeout.getLeft( ), timeout.getRight( ) );
+      }
+    } catch ( final SwfMetadataException e ) {
+      logger.error( "Error loading workflow execution/decision task timeouts", e );
+    }
   }
 
-  public void doTimers( ) {
+  /**
+   * Process timeouts that are due at the given time.
+   */
+  public void processTimeouts( final long now ) {
+    final List<Pair<PendingTimeout,Long>> dueTimeouts = PendingTimeouts.due( now );
+    if ( dueTimeouts.isEmpty( ) ) {
+      return;
+    }
     final Set<NotifyTaskList> taskLists = Sets.newHashSet( );
-    try {
-      for ( final Timer timer : timers.listFired( Functions.<Timer>identity( ) ) ) try {
-        try ( final WorkflowLock lock = WorkflowLock.lock(
-            timer.getOwnerAccountNumber( ),
-            timer.getDomainUuid( ),
-            timer.getWorkflowRunId( ) ) ) {
-          workflowExecutions.withRetries( ).updateByExample(
-              WorkflowExecution.exampleWithName( timer.getOwner( ), timer.getWorkflowRunId( ) ),
-              timer.getOwner( ),
-              timer.getWorkflowRunId( ),
-              new Function<WorkflowExecution, Void>( ){
-                @Nullable
-                @Override
-                public Void apply( final WorkflowExecution workflowExecution ) {
-                  try {
-                    timers.updateByExample(
-                        timer,
-                        timer.getOwner( ),
-                        timer.getDisplayName( ),
-                        new Function<Timer, Void>( ) {
-                          @Override
-                          public Void apply( final Timer timer ) {
-                            final WorkflowExecution workflowExecution = timer.getWorkflowExecution( );
-                            workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
-                                workflowExecution,
-                                new TimerFiredEventAttributes( )
-                                    .withStartedEventId( timer.getStartedEventId( ) )
-                                    .withTimerId( timer.getDisplayName( ) )
-                            ) );
-                            if ( workflowExecution.getDecisionStatus() != Pending ) {
-                              workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
-                                  workflowExecution,
-                                  new DecisionTaskScheduledEventAttributes( )
-                                      .withTaskList( new TaskList( ).withName( workflowExecution.getTaskList( ) ) )
-                                      .withStartToCloseTimeout( String.valueOf( workflowExecution.getTaskStartToCloseTimeout( ) ) )
-                              ) );
-                              if ( workflowExecution.getDecisionStatus() == Idle ) {
-                                workflowExecution.setDecisionStatus( Pending );
-                                workflowExecution.setDecisionTimestamp( new Date( ) );
-                                addToNotifyLists( taskLists, workflowExecution );
-                              }
-                            }
-                            Entities.delete( timer );
-                            return null;
-                          }
-                        } );
-                  } catch ( SwfMetadataException e ) {
-                    throw Exceptions.toUndeclared( e );
-                  }
-                  return null;
-                }
-              }
-          );
+    long maximumLag = 0;
+    for ( final Pair<PendingTimeout,Long> dueTimeout : dueTimeouts ) {
+      final PendingTimeout pendingTimeout = dueTimeout.getLeft( );
+      maximumLag = Math.max( maximumLag, System.currentTimeMillis( ) - dueTimeout.getRight( ) );
+      try {
+        switch ( pendingTimeout.getType( ) ) {
+          case Timer:
+            fireTimer( pendingTimeout, taskLists );
+            break;
+          case ActivityTask:
+            timeoutActivityTask( pendingTimeout, taskLists );
+            break;
+          case WorkflowExecution:
+            timeoutDecisionTaskOrWorkflow( pendingTimeout, taskLists );
+            break;
         }
-      } catch ( SwfMetadataException e ) {
+      } catch ( final SwfMetadataException e ) {
         if ( !handleException( e ) ) {
-          logger.error( "Error processing fired timer: " +  timer.getWorkflowRunId() + "/" + timer.getStartedEventId( ), e );
+          logger.error( "Error processing timeout: " + pendingTimeout, e );
         }
       }
-    } catch ( SwfMetadataException e ) {
-      logger.error( "Error processing fired timers", e );
     }
     notifyLists( taskLists );
+    ThruputMetrics.addDataPoint( MonitoredAction.SWF_TIMEOUTS_DUE, dueTimeouts.size( ) );
+    ThruputMetrics.addDataPoint( MonitoredAction.SWF_TIMEOUTS_LAG, maximumLag );
+    ThruputMetrics.addDataPoint( MonitoredAction.SWF_TIMEOUTS_TIMING, System.currentTimeMillis( ) - now );
   }
 
   public void doExpunge( ) {
@@ -217,132 +243,184 @@ public class TimeoutManager {
     }
   }
 
-  private void timeoutActivityTasks( ) {
-    final Set<NotifyTaskList> taskLists = Sets.newHashSet( );
-    try {
-      for ( final ActivityTask task : activityTasks.listTimedOut( Functions.<ActivityTask>identity( ) ) ) {
-        try ( final WorkflowLock lock =
-                  WorkflowLock.lock( task.getOwnerAccountNumber( ), task.getDomainUuid( ), task.getWorkflowRunId( ) ) ) {
-          activityTasks.withRetries( ).updateByExample(
-              task,
-              task.getOwner( ),
-              task.getDisplayName( ),
-              new Function<ActivityTask, Void>() {
+  private void fireTimer( final PendingTimeout pendingTimeout,
+                          final Set<NotifyTaskList> taskLists ) throws SwfMetadataException {
+    final AccountFullName owner = AccountFullName.getInstance( pendingTimeout.getAccountNumber( ) );
+    try ( final WorkflowLock lock = WorkflowLock.lock(
+        pendingTimeout.getAccountNumber( ),
+        pendingTimeout.getDomainUuid( ),
+        pendingTimeout.getRunId( ) ) ) {
+      workflowExecutions.withRetries( ).updateByExample(
+          WorkflowExecution.exampleWithName( owner, pendingTimeout.getRunId( ) ),
+          owner,
+          pendingTimeout.getRunId( ),
+          new Function<WorkflowExecution, Void>( ){
+            @Nullable
             @Override
-            public Void apply( final ActivityTask activityTask ) {
-              final Pair<String,Date> timeout = activityTask.calculateNextTimeout( );
-              if ( timeout != null ) {
-                final WorkflowExecution workflowExecution = activityTask.getWorkflowExecution();
-                workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
-                    workflowExecution,
-                    new ActivityTaskTimedOutEventAttributes()
-                        .withDetails( activityTask.getHeartbeatDetails() )
-                        .withScheduledEventId( activityTask.getScheduledEventId() )
-                        .withStartedEventId( activityTask.getStartedEventId() )
-                        .withTimeoutType( timeout.getLeft() )
-                ) );
-                if ( workflowExecution.getDecisionStatus( ) != Pending ) {
-                  workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
-                      workflowExecution,
-                      new DecisionTaskScheduledEventAttributes( )
-                          .withTaskList( new TaskList( ).withName( workflowExecution.getTaskList( ) ) )
-                          .withStartToCloseTimeout( String.valueOf( workflowExecution.getTaskStartToCloseTimeout( ) ) )
-                  ) );
-                  if ( workflowExecution.getDecisionStatus() == Idle ) {
-                    workflowExecution.setDecisionStatus( Pending );
-                    workflowExecution.setDecisionTimestamp( new Date( ) );
-                    addToNotifyLists( taskLists, workflowExecution );
-                  }
-                }
-                Entities.delete( activityTask );
+            public Void apply( final WorkflowExecution workflowExecution ) {
+              try {
+                timers.updateByExample(
+                    Timer.exampleWithUniqueName( owner, pendingTimeout.getRunId( ), pendingTimeout.getId( ) ),
+                    owner,
+                    pendingTimeout.getId( ),
+                    new Function<Timer, Void>( ) {
+                      @Override
+                      public Void apply( final Timer timer ) {
+                        final Date timerTimeout = timer.getTimeoutTimestamp( );
+                        if ( timerTimeout == null || timerTimeout.after( new Date( ) ) ) {
+                          PendingTimeouts.schedule( pendingTimeout, timerTimeout );
+                          return null;
+                        }
+                        final WorkflowExecution workflowExecution = timer.getWorkflowExecution( );
+                        workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
+                            workflowExecution,
+                            new TimerFiredEventAttributes( )
+                                .withStartedEventId( timer.getStartedEventId( ) )
+                                .withTimerId( timer.getDisplayName( ) )
+                        ) );
+                        if ( workflowExecution.getDecisionStatus() != Pending ) {
+                          workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
+                              workflowExecution,
+                              new DecisionTaskScheduledEventAttributes( )
+                                  .withTaskList( new TaskList( ).withName( workflowExecution.getTaskList( ) ) )
+                                  .withStartToCloseTimeout( String.valueOf( workflowExecution.getTaskStartToCloseTimeout( ) ) )
+                          ) );
+                          if ( workflowExecution.getDecisionStatus() == Idle ) {
+                            workflowExecution.setDecisionStatus( Pending );
+                            workflowExecution.setDecisionTimestamp( new Date( ) );
+                            addToNotifyLists( taskLists, workflowExecution );
+                          }
+                        }
+                        Entities.delete( timer );
+                        return null;
+                      }
+                    } );
+              } catch ( SwfMetadataException e ) {
+                throw Exceptions.toUndeclared( e );
               }
               return null;
             }
-          } );
-        } catch ( SwfMetadataException e ) {
-          if ( !handleException( e ) ) {
-            if ( Exceptions.isCausedBy( e, SwfMetadataNotFoundException.class ) ) {
-              logger.debug( "Activity task not found for timeout: " + task.getWorkflowRunId( ) + "/" + task.getScheduledEventId( ) );
-            } else {
-              logger.error( "Error processing activity task timeout: " + task.getWorkflowRunId( ) + "/" + task.getScheduledEventId( ), e );
-            }
           }
-        }
-      }
-    } catch ( SwfMetadataException e ) {
-      logger.error( "Error processing activity task timeouts", e );
+      );
     }
-    notifyLists( taskLists );
   }
 
-  private void timeoutDecisionTasksAndWorkflows( ) {
-    final Set<NotifyTaskList> taskLists = Sets.newHashSet( );
-    try {
-      final long now = System.currentTimeMillis();
-      for ( final WorkflowExecution workflowExecution :
-          workflowExecutions.listTimedOut( now, Functions.<WorkflowExecution>identity( ) ) ) {
-        try ( final WorkflowLock lock = WorkflowLock.lock(
-            workflowExecution.getOwnerAccountNumber( ),
-            workflowExecution.getDomainUuid( ),
-            workflowExecution.getDisplayName( ) ) ) {
-          workflowExecutions.withRetries( ).updateByExample(
-              workflowExecution,
-              workflowExecution.getOwner( ),
-              workflowExecution.getDisplayName( ),
-              new Function<WorkflowExecution, Void>() {
-            @Override
-            public Void apply( final WorkflowExecution workflowExecution ) {
-              final Date timeout = workflowExecution.calculateNextTimeout( );
-              if ( timeout != null ) {
-                if ( workflowExecution.isWorkflowTimedOut( now, getWorkflowExecutionDurationMillis( ) ) ) {
-                  workflowExecution.closeWorkflow(
-                      WorkflowExecution.CloseStatus.Timed_Out,
-                      WorkflowHistoryEvent.create(
-                          workflowExecution,
-                          new WorkflowExecutionTimedOutEventAttributes()
-                              .withTimeoutType( "START_TO_CLOSE" )
-                              .withChildPolicy( workflowExecution.getChildPolicy() )
-                      ) );
-                } else { // decision task timed out
-                  final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-                  final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
-                  final WorkflowHistoryEvent scheduled = Iterables.find(
-                      reverseEvents,
-                      CollectionUtils.propertyPredicate( "DecisionTaskScheduled", WorkflowExecutions.WorkflowHistoryEventStringFunctions.EVENT_TYPE ) );
-                  final Optional<WorkflowHistoryEvent> previousStarted = Iterables.tryFind(
-                      reverseEvents,
-                      CollectionUtils.propertyPredicate( "DecisionTaskStarted", WorkflowExecutions.WorkflowHistoryEventStringFunctions.EVENT_TYPE ) );
-                  workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
-                      workflowExecution,
-                      new DecisionTaskTimedOutEventAttributes( )
-                          .withTimeoutType( "START_TO_CLOSE" )
-                          .withScheduledEventId( scheduled.getEventId( ) )
-                          .withStartedEventId( previousStarted.transform( WorkflowExecutions.WorkflowHistoryEventLongFunctions.EVENT_ID ).orNull( ) )
-                  ) );
-                  workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
-                      workflowExecution,
-                      new DecisionTaskScheduledEventAttributes( )
-                          .withTaskList( new TaskList( ).withName( workflowExecution.getTaskList( ) ) )
-                          .withStartToCloseTimeout( String.valueOf( workflowExecution.getTaskStartToCloseTimeout( ) ) )
-                  ) );
-                  workflowExecution.setDecisionStatus( Pending );
-                  workflowExecution.setDecisionTimestamp( new Date( ) );
-                  addToNotifyLists( taskLists, workflowExecution );
-                }
+  private void timeoutActivityTask( final PendingTimeout pendingTimeout,
+                                    final Set<NotifyTaskList> taskLists ) throws SwfMetadataException {
+    final AccountFullName owner = AccountFullName.getInstance( pendingTimeout.getAccountNumber( ) );
+    try ( final WorkflowLock lock =
+              WorkflowLock.lock( pendingTimeout.getAccountNumber( ), pendingTimeout.getDomainUuid( ), pendingTimeout.getRunId( ) ) ) {
+      activityTasks.withRetries( ).updateByExample(
+          ActivityTask.exampleWithUniqueName( owner, pendingTimeout.getRunId( ), Long.valueOf( pendingTimeout.getId( ) ) ),
+          owner,
+          pendingTimeout.getId( ),
+          new Function<ActivityTask, Void>() {
+        @Override
+        public Void apply( final ActivityTask activityTask ) {
+          final Pair<String,Date> timeout = activityTask.calculateNextTimeout( );
+          if ( timeout != null && timeout.getRight( ).after( new Date( ) ) ) {
+            PendingTimeouts.schedule( pendingTimeout, timeout.getRight( ) );
+          } else if ( timeout != null ) {
+            final WorkflowExecution workflowExecution = activityTask.getWorkflowExecution();
+            workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
+                workflowExecution,
+                new ActivityTaskTimedOutEventAttributes()
+                    .withDetails( activityTask.getHeartbeatDetails() )
+                    .withScheduledEventId( activityTask.getScheduledEventId() )
+                    .withStartedEventId( activityTask.getStartedEventId() )
+                    .withTimeoutType( timeout.getLeft() )
+            ) );
+            if ( workflowExecution.getDecisionStatus( ) != Pending ) {
+              workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
+                  workflowExecution,
+                  new DecisionTaskScheduledEventAttributes( )
+                      .withTaskList( new TaskList( ).withName( workflowExecution.getTaskList( ) ) )
+                      .withStartToCloseTimeout( String.valueOf( workflowExecution.getTaskStartToCloseTimeout( ) ) )
+              ) );
+              if ( workflowExecution.getDecisionStatus() == Idle ) {
+                workflowExecution.setDecisionStatus( Pending );
+                workflowExecution.setDecisionTimestamp( new Date( ) );
+                addToNotifyLists( taskLists, workflowExecution );
               }
-              return null;
             }
-          } );
-        } catch ( final SwfMetadataException e ) {
-          if ( !handleException( e ) ) {
-            logger.error( "Error processing workflow execution/decision task timeout: " + workflowExecution.getDisplayName(), e );
+            Entities.delete( activityTask );
           }
+          return null;
         }
+      } );
+    }
+  }
+
+  private void timeoutDecisionTaskOrWorkflow( final PendingTimeout pendingTimeout,
+                                              final Set<NotifyTaskList> taskLists ) throws SwfMetadataException {
+    final AccountFullName owner = AccountFullName.getInstance( pendingTimeout.getAccountNumber( ) );
+    try ( final WorkflowLock lock = WorkflowLock.lock(
+        pendingTimeout.getAccountNumber( ),
+        pendingTimeout.getDomainUuid( ),
+        pendingTimeout.getRunId( ) ) ) {
+      workflowExecutions.withRetries( ).updateByExample(
+          WorkflowExecution.exampleForOpenWorkflow( owner, null, null, pendingTimeout.getRunId( ) ),
+          owner,
+          pendingTimeout.getRunId( ),
+          new Function<WorkflowExecution, Void>() {
+        @Override
+        public Void apply( final WorkflowExecution workflowExecution ) {
+          final long now = System.currentTimeMillis( );
+          final Date timeout = workflowExecution.calculateNextTimeout( );
+          if ( workflowExecution.isWorkflowTimedOut( now, getWorkflowExecutionDurationMillis( ) ) ) {
+            workflowExecution.closeWorkflow(
+                WorkflowExecution.CloseStatus.Timed_Out,
+                WorkflowHistoryEvent.create(
+                    workflowExecution,
+                    new WorkflowExecutionTimedOutEventAttributes()
+                        .withTimeoutType( "START_TO_CLOSE" )
+                        .withChildPolicy( workflowExecution.getChildPolicy() )
+                ) );
+          } else if ( timeout != null && timeout.getTime( ) <= now ) { // decision task timed out
+            final WorkflowHistoryEvent scheduled =
+                WorkflowHistories.latest( workflowExecution, "DecisionTaskScheduled", null );
+            final WorkflowHistoryEvent previousStarted =
+                WorkflowHistories.latest( workflowExecution, "DecisionTaskStarted", null );
+            workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
+                workflowExecution,
+                new DecisionTaskTimedOutEventAttributes( )
+                    .withTimeoutType( "START_TO_CLOSE" )
+                    .withScheduledEventId( scheduled == null ? null : scheduled.getEventId( ) )
+                    .withStartedEventId( previousStarted == null ? null : previousStarted.getEventId( ) )
+            ) );
+            workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
+                workflowExecution,
+                new DecisionTaskScheduledEventAttributes( )
+                    .withTaskList( new TaskList( ).withName( workflowExecution.getTaskList( ) ) )
+                    .withStartToCloseTimeout( String.valueOf( workflowExecution.getTaskStartToCloseTimeout( ) ) )
+            ) );
+            workflowExecution.setDecisionStatus( Pending );
+            workflowExecution.setDecisionTimestamp( new Date( ) );
+            addToNotifyLists( taskLists, workflowExecution );
+          } else {
+            PendingTimeouts.schedule( pendingTimeout, workflowTimeout( workflowExecution ) );
+          }
+          return null;
+        }
+      } );
+    }
+  }
+
+  /**
+   * Earliest of the workflow execution timeout and the maximum duration.
+   */
+  @Nullable
+  private static Date workflowTimeout( final WorkflowExecution workflowExecution ) {
+    final long maximumDurationMillis = getWorkflowExecutionDurationMillis( );
+    Date timeout = workflowExecution.getTimeoutTimestamp( );
+    if ( maximumDurationMillis > 0 ) {
+      final Date maximumDurationTimeout =
+          new Date( workflowExecution.getCreationTimestamp( ).getTime( ) + maximumDurationMillis );
+      if ( timeout == null || maximumDurationTimeout.before( timeout ) ) {
+        timeout = maximumDurationTimeout;
       }
-    } catch ( final SwfMetadataException e ) {
-      logger.error( "Error processing workflow execution/decision task timeouts", e );
     }
-    notifyLists( taskLists );
+    return timeout;
   }
 
   private boolean handleException( final Throwable e ) {
@@ -375,15 +453,42 @@ public class TimeoutManager {
 
   private void notifyLists( final Set<NotifyTaskList> taskLists ) {
     for ( final NotifyTaskList list : taskLists ) {
+      ReadyTaskQueues.invalidate( list );
       NotifyClient.notifyTaskList( list );
     }
   }
 
   public static class TimeoutManagerEventListener implements EventListener<ClockTick> {
-    private final TimeoutManager timeoutManager = new TimeoutManager();
+    private static final ScheduledExecutorService timeoutExecutor = Executors
+        .newSingleThreadScheduledExecutor( Threads.threadFactory( "simpleworkflow-timeouts-%d" ) );
+    private static final TimeoutManager timeoutManager = new TimeoutManager();
+    private static volatile boolean active = false;
 
     public static void register( ) {
       Listeners.register( ClockTick.class, new TimeoutManagerEventListener( ) );
+      scheduleProcessTimeouts( );
+    }
+
+    /**
+     * Scheduled for each run so changes to the tick duration take effect.
+     */
+    private static void scheduleProcessTimeouts( ) {
+      timeoutExecutor.schedule(
+          TimeoutManagerEventListener::processTimeouts,
+          getTimeoutTickDurationMillis( ),
+          TimeUnit.MILLISECONDS );
+    }
+
+    private static void processTimeouts( ) {
+      try {
+        if ( active ) {
+          timeoutManager.processTimeouts( System.currentTimeMillis( ) );
+        }
+      } catch ( final Throwable e ) {
+        logger.error( "Error processing timeouts", e );
+      } finally {
+        scheduleProcessTimeouts( );
+      }
     }
 
     @Override
@@ -391,9 +496,22 @@ public class TimeoutManager {
       if ( Bootstrap.isOperational( ) &&
           Topology.isEnabledLocally( PolledNotifications.class ) &&
           Topology.isEnabled( SimpleWorkflow.class ) ) {
-        timeoutManager.doTimeouts( );
-        timeoutManager.doTimers( );
+        final long now = System.currentTimeMillis( );
+        if ( !PendingTimeouts.isStarted( ) ) {
+          logger.info( "Starting workflow timeout processing" );
+          PendingTimeouts.start( now );
+        } else if ( PendingTimeouts.getTickMillis( ) != getTimeoutTickDurationMillis( ) ) {
+          // discarded timeouts are persisted and reloaded below
+          logger.info( "Restarting workflow timeout processing for tick duration change" );
+          PendingTimeouts.start( now );
+        }
+        timeoutManager.loadTimeouts( now + getTimeoutLookaheadDurationMillis( ) );
+        active = true;
         timeoutManager.doExpunge( );
+      } else if ( active ) {
+        logger.info( "Stopping workflow timeout processing" );
+        active = false;
+        PendingTimeouts.stop( );
       }
     }
   }
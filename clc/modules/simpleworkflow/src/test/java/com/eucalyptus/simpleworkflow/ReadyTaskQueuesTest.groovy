@@ -0,0 +1,107 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow
+
+import com.eucalyptus.simpleworkflow.NotifyClient.NotifyTaskList
+import com.eucalyptus.simpleworkflow.ReadyTaskQueues.ReadyTask
+import com.google.common.base.Supplier
+import groovy.transform.CompileStatic
+import org.junit.Test
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+@CompileStatic
+class ReadyTaskQueuesTest {
+
+  @Test
+  void testLoadAndPoll( ) {
+    NotifyTaskList list = taskList( 'load' )
+    int loads = 0
+    Supplier<List<ReadyTask>> loader = { loads++; [ task( '1' ), task( '2' ) ] } as Supplier<List<ReadyTask>>
+    assertEquals( 'first task', task( '1' ), ReadyTaskQueues.poll( list, loader ) )
+    assertEquals( 'second task', task( '2' ), ReadyTaskQueues.poll( list, loader ) )
+    assertNull( 'no task', ReadyTaskQueues.poll( list, loader ) )
+    assertEquals( 'loads', 1, loads )
+  }
+
+  @Test
+  void testOfferAndRequeue( ) {
+    NotifyTaskList list = taskList( 'offer' )
+    Supplier<List<ReadyTask>> loader = { [ task( '1' ) ] } as Supplier<List<ReadyTask>>
+    assertEquals( 'loaded task', task( '1' ), ReadyTaskQueues.poll( list, loader ) )
+    ReadyTaskQueues.offer( list, [ task( '2' ), task( '3' ), task( '2' ) ] )
+    ReadyTaskQueues.requeue( list, task( '1' ) )
+    ReadyTaskQueues.requeue( list, task( '3' ) )
+    assertEquals( 'offered task', task( '2' ), ReadyTaskQueues.poll( list, loader ) )
+    assertEquals( 'offered task', task( '3' ), ReadyTaskQueues.poll( list, loader ) )
+    assertEquals( 'requeued task', task( '1' ), ReadyTaskQueues.poll( list, loader ) )
+    assertNull( 'no task', ReadyTaskQueues.poll( list, loader ) )
+  }
+
+  @Test
+  void testEvictIdle( ) {
+    NotifyTaskList list = taskList( 'evict' )
+    int loads = 0
+    Supplier<List<ReadyTask>> loader = { loads++; [ task( '1' ), task( '2' ) ] } as Supplier<List<ReadyTask>>
+    assertEquals( 'loaded task', task( '1' ), ReadyTaskQueues.poll( list, loader ) )
+    ReadyTaskQueues.evictIdle( System.currentTimeMillis( ) - 60_000 )
+    assertEquals( 'queued task', task( '2' ), ReadyTaskQueues.poll( list, loader ) )
+    assertEquals( 'loads', 1, loads )
+    ReadyTaskQueues.evictIdle( System.currentTimeMillis( ) + 1 )
+    ReadyTaskQueues.offer( list, [ task( '3' ) ] )
+    assertEquals( 'reloaded task after eviction', task( '1' ), ReadyTaskQueues.poll( list, loader ) )
+    assertEquals( 'loads', 2, loads )
+  }
+
+  @Test
+  void testReload( ) {
+    NotifyTaskList list = taskList( 'reload' )
+    int loads = 0
+    Supplier<List<ReadyTask>> loader = { loads++; [ task( '1' ) ] } as Supplier<List<ReadyTask>>
+    assertEquals( 'loaded task', task( '1' ), ReadyTaskQueues.poll( list, loader ) )
+    assertNull( 'no task', ReadyTaskQueues.poll( list, loader ) )
+    assertEquals( 'loads', 1, loads )
+    ReadyTaskQueues.notified( list )
+    assertEquals( 'reloaded task on notification', task( '1' ), ReadyTaskQueues.poll( list, loader ) )
+    assertEquals( 'loads', 2, loads )
+    ReadyTaskQueues.invalidate( list )
+    assertEquals( 'reloaded task when stale', task( '1' ), ReadyTaskQueues.poll( list, loader ) )
+    assertEquals( 'loads', 3, loads )
+  }
+
+  private static NotifyTaskList taskList( String name ) {
+    NotifyTaskList.of( '000000000000', 'domain', 'decision', name )
+  }
+
+  private static ReadyTask task( String runId ) {
+    ReadyTask.decision( 'domain-uuid', runId )
+  }
+}
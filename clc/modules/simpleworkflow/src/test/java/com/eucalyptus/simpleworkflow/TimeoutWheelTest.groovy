@@ -0,0 +1,110 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow
+
+import com.eucalyptus.util.Pair
+import groovy.transform.CompileStatic
+import org.junit.Test
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+@CompileStatic
+class TimeoutWheelTest {
+
+  @Test
+  void testAdvance( ) {
+    TimeoutWheel<String> wheel = new TimeoutWheel<>( 10, 2, 3, 1000 )
+    wheel.schedule( 'a', 1015 )
+    wheel.schedule( 'b', 1100 )
+    wheel.schedule( 'c', 1900 )
+    wheel.schedule( 'd', 5000 ) // beyond the range of the top level
+    assertEquals( 'size', 4, wheel.size( ) )
+    assertEquals( 'not due', [], keys( wheel.advance( 1009 ) ) )
+    assertEquals( 'a not due', [], keys( wheel.advance( 1019 ) ) )
+    assertEquals( 'a due', [ 'a' ], keys( wheel.advance( 1020 ) ) )
+    assertEquals( 'b not due', [], keys( wheel.advance( 1099 ) ) )
+    assertEquals( 'b due', [ 'b' ], keys( wheel.advance( 1100 ) ) )
+    assertEquals( 'c due', [ 'c' ], keys( wheel.advance( 1950 ) ) )
+    assertEquals( 'd not due', [], keys( wheel.advance( 4999 ) ) )
+    assertEquals( 'd due', [ 'd' ], keys( wheel.advance( 5000 ) ) )
+    assertEquals( 'size', 0, wheel.size( ) )
+  }
+
+  @Test
+  void testDueTimes( ) {
+    TimeoutWheel<String> wheel = new TimeoutWheel<>( 10, 1000 )
+    wheel.schedule( 'a', 1015 )
+    wheel.schedule( 'b', 1005 )
+    List<Pair<String,Long>> due = wheel.advance( 1020 )
+    assertEquals( 'due keys', [ 'b', 'a' ], keys( due ) )
+    assertEquals( 'due times', [ 1005L, 1015L ], due.collect{ Pair<String,Long> pair -> pair.right } )
+  }
+
+  @Test
+  void testRescheduleAndRemove( ) {
+    TimeoutWheel<String> wheel = new TimeoutWheel<>( 10, 2, 3, 1000 )
+    wheel.schedule( 'a', 1050 )
+    wheel.schedule( 'b', 1050 )
+    wheel.schedule( 'a', 1500 )
+    assertTrue( 'removed', wheel.remove( 'b' ) )
+    assertFalse( 'not removed', wheel.remove( 'b' ) )
+    assertFalse( 'scheduled', wheel.scheduleIfAbsent( 'a', 1100 ) )
+    assertEquals( 'none due', [], keys( wheel.advance( 1100 ) ) )
+    assertEquals( 'rescheduled due', [ 'a' ], keys( wheel.advance( 1500 ) ) )
+  }
+
+  @Test
+  void testPastDue( ) {
+    TimeoutWheel<String> wheel = new TimeoutWheel<>( 10, 1000 )
+    assertEquals( 'none due', [], keys( wheel.advance( 2000 ) ) )
+    wheel.schedule( 'a', 500 )
+    wheel.schedule( 'b', 2005 )
+    assertEquals( 'past due', [ 'a' ], keys( wheel.advance( 2005 ) ) )
+    assertEquals( 'due', [ 'b' ], keys( wheel.advance( 2010 ) ) )
+  }
+
+  @Test
+  void testNotDueEarly( ) {
+    TimeoutWheel<String> wheel = new TimeoutWheel<>( 500, 1000 )
+    wheel.schedule( 'a', 1499 )
+    wheel.schedule( 'b', 1500 )
+    wheel.schedule( 'c', 1501 )
+    assertEquals( 'none due', [], keys( wheel.advance( 1000 ) ) )
+    assertEquals( 'none due mid tick', [], keys( wheel.advance( 1498 ) ) )
+    assertEquals( 'due at tick', [ 'a', 'b' ], keys( wheel.advance( 1500 ) ).sort( ) )
+    assertEquals( 'not due mid tick', [], keys( wheel.advance( 1999 ) ) )
+    assertEquals( 'due', [ 'c' ], keys( wheel.advance( 2000 ) ) )
+  }
+
+  private static List<String> keys( List<Pair<String,Long>> due ) {
+    due.collect{ Pair<String,Long> pair -> pair.left }
+  }
+}
@@ -0,0 +1,70 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow
+
+import com.eucalyptus.util.Pair
+import com.google.common.io.BaseEncoding
+import groovy.transform.CompileStatic
+import org.junit.Test
+
+import java.nio.charset.StandardCharsets
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+@CompileStatic
+class WorkflowHistoriesTest {
+
+  @Test
+  void testPageToken( ) {
+    String token = WorkflowHistories.pageToken( 'a/b+c=', 42L )
+    Pair<String,Long> decoded = WorkflowHistories.decodePageToken( token )
+    assertNotNull( 'decoded', decoded )
+    assertEquals( 'identifier', 'a/b+c=', decoded.left )
+    assertEquals( 'event identifier', 42L, decoded.right )
+  }
+
+  @Test
+  void testInvalidPageToken( ) {
+    assertNull( 'invalid encoding', WorkflowHistories.decodePageToken( '!!!' ) )
+    assertNull( 'missing event identifier', WorkflowHistories.decodePageToken(
+        BaseEncoding.base64Url( ).encode( 'id'.getBytes( StandardCharsets.UTF_8 ) ) ) )
+    assertNull( 'invalid event identifier', WorkflowHistories.decodePageToken(
+        WorkflowHistories.pageToken( 'id', 0L ) ) )
+  }
+
+  @Test
+  void testPageSize( ) {
+    assertEquals( 'default', WorkflowHistories.MAXIMUM_PAGE_SIZE, WorkflowHistories.pageSize( null ) )
+    assertEquals( 'zero', WorkflowHistories.MAXIMUM_PAGE_SIZE, WorkflowHistories.pageSize( 0 ) )
+    assertEquals( 'requested', 10, WorkflowHistories.pageSize( 10 ) )
+    assertEquals( 'limited', WorkflowHistories.MAXIMUM_PAGE_SIZE, WorkflowHistories.pageSize( 5000 ) )
+  }
+}
@@ -43,14 +43,29 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 
 import org.apache.log4j.Logger;
+import org.jboss.netty.channel.DefaultFileRegion;
+import org.jboss.netty.channel.FileRegion;
 import org.jboss.netty.handler.stream.ChunkedFile;
 
 import edu.ucsb.eucalyptus.constants.IsData;
 
 public class ChunkedDataFile extends ChunkedFile implements IsData {
   private static Logger LOG = Logger.getLogger(ChunkedDataFile.class);
+  private final RandomAccessFile file;
 
   public ChunkedDataFile(RandomAccessFile file, long offset, long length, int chunkSize) throws IOException {
     super(file, offset, length, chunkSize);
+    this.file = file;
+  }
+
+  /**
+   * Get a file region for the data not yet read from this file.
+   *
+   * The region can be written to a channel in place of this chunked input to transfer the data without copying it through the heap. The region
+   * shares the underlying file, releasing the region closes the file.
+   */
+  public FileRegion toFileRegion() {
+    long position = getCurrentOffset();
+    return new DefaultFileRegion(file.getChannel(), position, getEndOffset() - position);
   }
 }
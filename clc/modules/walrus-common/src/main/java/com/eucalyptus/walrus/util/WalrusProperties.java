@@ -65,9 +65,11 @@ public class WalrusProperties {
   public static int MAX_KEYS = 1000;
 
   public static int IO_CHUNK_SIZE = 102400;
+  public static final int MULTIPART_COPY_THREADS = 4;
   public static boolean shouldEnforceUsageLimits = true;
   public static boolean enableTorrents = false;
   public static boolean enableVirtualHosting = true;
+  public static boolean enableZeroCopyGet = true;
   public static long MAX_INLINE_DATA_SIZE = 10 * M;
   public static final String NAMESPACE_VERSION = "2006-03-01";
   public static final String CONTENT_LEN = "Content-Length";
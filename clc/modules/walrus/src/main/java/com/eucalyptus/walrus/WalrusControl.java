@@ -138,6 +138,9 @@ public class WalrusControl implements WalrusService {
     if (System.getProperty("euca.virtualhosting.disable") != null) {
       WalrusProperties.enableVirtualHosting = false;
     }
+    if (System.getProperty("euca.walrus.zerocopy.disable") != null) {
+      WalrusProperties.enableZeroCopyGet = false;
+    }
     try {
       if (storageManager != null) {
         storageManager.start();
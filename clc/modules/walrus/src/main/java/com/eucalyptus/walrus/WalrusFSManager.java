@@ -1691,7 +1691,7 @@ public class WalrusFSManager extends WalrusManager {
     long size = 0;
     Date lastModified = null;
     String eTag = new String();
-    String eTagString = new String();
+    StringBuilder eTagString = new StringBuilder();
     String prevObjectName = null;
 
     // Look for manifest and other parts
@@ -1745,7 +1745,7 @@ public class WalrusFSManager extends WalrusManager {
       PartInfo include = null;
       for (Part requestPart : requestParts) {
         if ((include = partsMap.remove(requestPart.getPartNumber())) != null) {
-          eTagString += include.getEtag();
+          eTagString.append(include.getEtag());
           size += include.getSize();
           include.setCleanup(Boolean.FALSE); // set the part cleanup to false to indicate that part should
         } else {
@@ -1771,7 +1771,7 @@ public class WalrusFSManager extends WalrusManager {
     }
 
     MessageDigest digest = Digest.MD5.get();
-    digest.update(eTagString.getBytes());
+    digest.update(eTagString.toString().getBytes());
     eTag = "uuid-" + Hashes.bytesToHex(digest.digest());
     lastModified = new Date();
 
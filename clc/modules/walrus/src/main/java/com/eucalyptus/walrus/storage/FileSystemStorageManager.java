@@ -39,17 +39,22 @@
 
 package com.eucalyptus.walrus.storage;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.jboss.netty.handler.stream.ChunkedInput;
@@ -61,12 +66,14 @@ import com.eucalyptus.storage.common.fs.FileIO;
 import com.eucalyptus.storage.common.fs.FileReader;
 import com.eucalyptus.storage.common.fs.FileWriter;
 import com.eucalyptus.system.BaseDirectory;
+import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.EucalyptusCloudException;
 import com.eucalyptus.walrus.StorageManager;
 import com.eucalyptus.walrus.entities.PartInfo;
 import com.eucalyptus.walrus.entities.WalrusInfo;
 import com.eucalyptus.walrus.exceptions.WalrusException;
 import com.eucalyptus.walrus.msgs.WalrusDataGetResponseType;
+import com.eucalyptus.walrus.util.WalrusProperties;
 
 import edu.ucsb.eucalyptus.util.StreamConsumer;
 import edu.ucsb.eucalyptus.util.SystemUtil;
@@ -74,6 +81,9 @@ import edu.ucsb.eucalyptus.util.SystemUtil;
 public class FileSystemStorageManager implements StorageManager {
 
   public static final String FILE_SEPARATOR = "/";
+
+  private static final ExecutorService multipartCopyExecutor = Executors.newFixedThreadPool(WalrusProperties.MULTIPART_COPY_THREADS,
+      Threads.threadFactory("walrus-multipart-copy-%d"));
   private static Logger LOG = Logger.getLogger(FileSystemStorageManager.class);
 
   public FileSystemStorageManager() {}
@@ -138,23 +148,26 @@ public class FileSystemStorageManager implements StorageManager {
     if (!objectFile.exists()) {
       throw new IOException("Unable to read: " + path);
     }
-    BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(objectFile));
     int bytesRead = 0;
-    try {
-      if (offset > 0) {
-        inputStream.skip(offset);
+    // positional reads from the channel avoid buffering and skipping through the file
+    try (FileChannel channel = new FileInputStream(objectFile).getChannel()) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      long position = Math.max(0, offset);
+      while (buffer.hasRemaining()) {
+        int read = channel.read(buffer, position);
+        if (read < 0) {
+          if (bytesRead == 0) {
+            bytesRead = -1;
+          }
+          break;
+        }
+        bytesRead += read;
+        position += read;
       }
-      bytesRead = inputStream.read(bytes);
     } catch (IOException ex) {
       LOG.error(ex);
       Logs.extreme().error(ex, ex);
       throw ex;
-    } finally {
-      try {
-        inputStream.close();
-      } catch (IOException ex) {
-        LOG.error(ex);
-      }
     }
     return bytesRead;
   }
@@ -256,79 +269,58 @@ public class FileSystemStorageManager implements StorageManager {
     }
   }
 
+  /**
+   * Copy multipart object parts into a single object.
+   *
+   * Parts are copied concurrently, each to its offset in the destination file.
+   */
   @Override
   public void copyMultipartObject(List<PartInfo> parts, String destinationBucket, String destinationObject) throws Exception {
-    Iterator<PartInfo> partIterator = null;
-
-    if (parts != null && (partIterator = parts.iterator()) != null && partIterator.hasNext()) {
+    if (parts != null && !parts.isEmpty()) {
+      final File newObjectFile =
+          new File(WalrusInfo.getWalrusInfo().getStorageDir() + FILE_SEPARATOR + destinationBucket + FILE_SEPARATOR + destinationObject);
+      List<Future<Void>> copyFutures = new ArrayList<>(parts.size());
       try {
-        File newObjectFile =
-            new File(WalrusInfo.getWalrusInfo().getStorageDir() + FILE_SEPARATOR + destinationBucket + FILE_SEPARATOR + destinationObject);
-        FileInputStream fileInputStream = null;
-        FileChannel fileIn = null;
-        FileOutputStream fileOutputStream = null;
-        FileChannel fileOut = null;
-        try {
-          fileOutputStream = new FileOutputStream(newObjectFile);
-          fileOut = fileOutputStream.getChannel();
-          PartInfo part = null;
-          File partFile = null;
-
-          do {
-            part = partIterator.next();
-            partFile =
-                new File(WalrusInfo.getWalrusInfo().getStorageDir() + FILE_SEPARATOR + part.getBucketName() + FILE_SEPARATOR + part.getObjectName());
-            fileInputStream = new FileInputStream(partFile);
-            fileIn = fileInputStream.getChannel();
-            fileIn.transferTo(0, fileIn.size(), fileOut);
-
-            // Get ready for next iteration
-            try {
-              fileIn.close();
-              fileIn = null;
-            } catch (IOException e) {
-              LOG.warn("Failed to close channel", e);
-            }
-            try {
-              fileInputStream.close();
-              fileInputStream = null;
-            } catch (IOException e) {
-              LOG.warn("Failed to close stream", e);
-            }
-            partFile = null;
-            part = null;
-          } while (partIterator.hasNext());
-        } finally {
-          if (fileIn != null) {
-            try {
-              fileIn.close();
-            } catch (IOException e) {
-              LOG.warn("Failed to close channel", e);
-            }
-          }
-          if (fileInputStream != null) {
-            try {
-              fileInputStream.close();
-            } catch (IOException e) {
-              LOG.warn("Failed to close stream", e);
-            }
-          }
-          if (fileOut != null) {
-            try {
-              fileOut.close();
-            } catch (IOException e) {
-              LOG.warn("Failed to close channel", e);
-            }
-          }
-          if (fileOutputStream != null) {
-            try {
-              fileOutputStream.close();
-            } catch (IOException e) {
-              LOG.warn("Failed to close stream", e);
+        List<File> partFiles = new ArrayList<>(parts.size());
+        List<Long> partSizes = new ArrayList<>(parts.size());
+        long size = 0;
+        for (PartInfo part : parts) {
+          File partFile =
+              new File(WalrusInfo.getWalrusInfo().getStorageDir() + FILE_SEPARATOR + part.getBucketName() + FILE_SEPARATOR + part.getObjectName());
+          long partSize = partFile.length();
+          partFiles.add(partFile);
+          partSizes.add(partSize);
+          size += partSize;
+        }
+        try (RandomAccessFile newObjectRaf = new RandomAccessFile(newObjectFile, "rw")) {
+          newObjectRaf.setLength(size);
+        }
+
+        long offset = 0;
+        for (int i = 0; i < partFiles.size(); i++) {
+          final File partFile = partFiles.get(i);
+          final long partSize = partSizes.get(i);
+          final long partOffset = offset;
+          offset += partSize;
+          copyFutures.add(multipartCopyExecutor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              copyPart(partFile, newObjectFile, partOffset, partSize);
+              return null;
             }
+          }));
+        }
+        for (Future<Void> copyFuture : copyFutures) {
+          try {
+            copyFuture.get();
+          } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
           }
         }
       } catch (Exception e) {
+        for (Future<Void> copyFuture : copyFutures) {
+          copyFuture.cancel(true);
+        }
         LOG.error("Failed to copy multipart source object to " + destinationObject, e);
         throw e;
       }
@@ -337,6 +329,30 @@ public class FileSystemStorageManager implements StorageManager {
     }
   }
 
+  /**
+   * Copy exactly partSize bytes of the part to its offset in the destination file.
+   *
+   * The size is the one used to lay out the destination, so a part that changed size since then fails the copy rather than overlapping its
+   * neighbours or leaving a gap.
+   */
+  private static void copyPart(File partFile, File newObjectFile, long offset, long partSize) throws IOException {
+    try (FileChannel fileIn = new FileInputStream(partFile).getChannel();
+        FileChannel fileOut = new RandomAccessFile(newObjectFile, "rw").getChannel()) {
+      if (fileIn.size() != partSize) {
+        throw new IOException("Size of part " + partFile.getName() + " changed from " + partSize + " to " + fileIn.size() + " bytes during copy");
+      }
+      fileOut.position(offset);
+      long transferred = 0;
+      while (transferred < partSize) {
+        long count = fileIn.transferTo(transferred, partSize - transferred, fileOut);
+        if (count <= 0) {
+          throw new IOException("Copy of part " + partFile.getName() + " stopped after " + transferred + " of " + partSize + " bytes");
+        }
+        transferred += count;
+      }
+    }
+  }
+
   public String getObjectPath(String bucket, String object) {
     return WalrusInfo.getWalrusInfo().getStorageDir() + FILE_SEPARATOR + bucket + FILE_SEPARATOR + object;
   }
@@ -0,0 +1,113 @@
+/*************************************************************************
+ * Copyright 2017 Ent. Services Development Corporation LP
+ *
+ * Redistribution and use of this software in source and binary forms,
+ * with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *   Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ *   Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ************************************************************************/
+
+package com.eucalyptus.walrus.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.FileRegion;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.eucalyptus.storage.common.ChunkedDataFile;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares object GET throughput for chunked copying and zero-copy file region transfers.
+ */
+@Ignore("Manual development test")
+public class ZeroCopyGetTest {
+  private static final Logger LOG = Logger.getLogger(ZeroCopyGetTest.class);
+
+  private static final long OBJECT_SIZE = 512 * 1024 * 1024;
+  private static final int CHUNK_SIZE = 8192;
+  private static final int ITERATIONS = 5;
+
+  @Test
+  public void testThroughput() throws Exception {
+    File objectFile = File.createTempFile("walrus-zero-copy", ".data");
+    objectFile.deleteOnExit();
+    byte[] data = new byte[1024 * 1024];
+    new Random().nextBytes(data);
+    try (FileOutputStream out = new FileOutputStream(objectFile)) {
+      for (long written = 0; written < OBJECT_SIZE; written += data.length) {
+        out.write(data);
+      }
+    }
+
+    try (FileChannel sink = new FileOutputStream("/dev/null").getChannel()) {
+      for (int i = 0; i < ITERATIONS; i++) {
+        long chunkedStart = System.nanoTime();
+        long chunkedTransferred = 0;
+        ChunkedDataFile chunkedFile = new ChunkedDataFile(new RandomAccessFile(objectFile, "r"), 0, OBJECT_SIZE, CHUNK_SIZE);
+        try {
+          while (chunkedFile.hasNextChunk()) {
+            ChannelBuffer chunk = (ChannelBuffer) chunkedFile.nextChunk();
+            chunkedTransferred += chunk.readBytes(sink, chunk.readableBytes());
+          }
+        } finally {
+          chunkedFile.close();
+        }
+        long chunkedNanos = System.nanoTime() - chunkedStart;
+        assertEquals("Chunked bytes transferred", OBJECT_SIZE, chunkedTransferred);
+
+        long regionStart = System.nanoTime();
+        long regionTransferred = 0;
+        FileRegion region = new ChunkedDataFile(new RandomAccessFile(objectFile, "r"), 0, OBJECT_SIZE, CHUNK_SIZE).toFileRegion();
+        try {
+          while (regionTransferred < region.getCount()) {
+            long transferred = region.transferTo(sink, regionTransferred);
+            if (transferred <= 0) {
+              break;
+            }
+            regionTransferred += transferred;
+          }
+        } finally {
+          region.releaseExternalResources();
+        }
+        long regionNanos = System.nanoTime() - regionStart;
+        assertEquals("File region bytes transferred", OBJECT_SIZE, regionTransferred);
+
+        LOG.info(String.format("Chunked: %.1f MiB/s, file region: %.1f MiB/s",
+            mibPerSecond(chunkedNanos), mibPerSecond(regionNanos)));
+      }
+    }
+  }
+
+  private static double mibPerSecond(long nanos) {
+    return (OBJECT_SIZE / (1024d * 1024d)) / (nanos / 1000000000d);
+  }
+}